@@ -0,0 +1,300 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.collections;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>Growable list of <code>int</code> values backed by <code>int[]</code>, so that values are never boxed.
+ * Members are named after <code>com.carrotsearch.hppc.IntArrayList</code>, so code written against HPPC
+ * can switch to this class by changing imports.</p>
+ */
+public class IntArrayList implements Iterable<IntCursor>, Cloneable {
+    public static final int[] EMPTY_ARRAY = new int[0];
+    private static final int DEFAULT_EXPECTED_ELEMENTS = 4;
+
+    public int[] buffer;
+    public int elementsCount;
+
+    public IntArrayList() {
+        this(DEFAULT_EXPECTED_ELEMENTS);
+    }
+
+    public IntArrayList(int expectedElements) {
+        buffer = expectedElements > 0 ? new int[expectedElements] : EMPTY_ARRAY;
+    }
+
+    public IntArrayList(IntArrayList list) {
+        this(list.size());
+        addAll(list);
+    }
+
+    public static IntArrayList from(int... elements) {
+        IntArrayList list = new IntArrayList(elements.length);
+        list.add(elements);
+        return list;
+    }
+
+    public void add(int e1) {
+        ensureBufferSpace(1);
+        buffer[elementsCount++] = e1;
+    }
+
+    public void add(int e1, int e2) {
+        ensureBufferSpace(2);
+        buffer[elementsCount++] = e1;
+        buffer[elementsCount++] = e2;
+    }
+
+    public void add(int[] elements, int start, int length) {
+        ensureBufferSpace(length);
+        System.arraycopy(elements, start, buffer, elementsCount, length);
+        elementsCount += length;
+    }
+
+    public final void add(int... elements) {
+        add(elements, 0, elements.length);
+    }
+
+    public int addAll(IntArrayList list) {
+        add(list.buffer, 0, list.elementsCount);
+        return list.elementsCount;
+    }
+
+    public void insert(int index, int e1) {
+        if (index < 0 || index > elementsCount) {
+            throw new IndexOutOfBoundsException();
+        }
+        ensureBufferSpace(1);
+        System.arraycopy(buffer, index, buffer, index + 1, elementsCount - index);
+        buffer[index] = e1;
+        elementsCount++;
+    }
+
+    public int get(int index) {
+        checkIndex(index);
+        return buffer[index];
+    }
+
+    public int set(int index, int e1) {
+        checkIndex(index);
+        int previous = buffer[index];
+        buffer[index] = e1;
+        return previous;
+    }
+
+    public int removeAt(int index) {
+        checkIndex(index);
+        int previous = buffer[index];
+        System.arraycopy(buffer, index + 1, buffer, index, elementsCount - index - 1);
+        elementsCount--;
+        return previous;
+    }
+
+    public void removeRange(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > elementsCount || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException();
+        }
+        System.arraycopy(buffer, toIndex, buffer, fromIndex, elementsCount - toIndex);
+        elementsCount -= toIndex - fromIndex;
+    }
+
+    public int removeFirst(int e1) {
+        int index = indexOf(e1);
+        if (index >= 0) {
+            removeAt(index);
+        }
+        return index;
+    }
+
+    public int removeLast(int e1) {
+        int index = lastIndexOf(e1);
+        if (index >= 0) {
+            removeAt(index);
+        }
+        return index;
+    }
+
+    public int removeAll(int e1) {
+        int to = 0;
+        for (int from = 0; from < elementsCount; ++from) {
+            if (buffer[from] != e1) {
+                buffer[to++] = buffer[from];
+            }
+        }
+        int removed = elementsCount - to;
+        elementsCount = to;
+        return removed;
+    }
+
+    public boolean contains(int e1) {
+        return indexOf(e1) >= 0;
+    }
+
+    public int indexOf(int e1) {
+        for (int i = 0; i < elementsCount; ++i) {
+            if (buffer[i] == e1) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int lastIndexOf(int e1) {
+        for (int i = elementsCount - 1; i >= 0; --i) {
+            if (buffer[i] == e1) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public boolean isEmpty() {
+        return elementsCount == 0;
+    }
+
+    public int size() {
+        return elementsCount;
+    }
+
+    public void ensureCapacity(int expectedElements) {
+        if (expectedElements > buffer.length) {
+            buffer = Arrays.copyOf(buffer, expectedElements);
+        }
+    }
+
+    protected void ensureBufferSpace(int expectedAdditions) {
+        int required = elementsCount + expectedAdditions;
+        if (required > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(required, buffer.length + (buffer.length >> 1) + 4));
+        }
+    }
+
+    /**
+     * Truncates the list or extends it with zeros so that it has exactly <code>newSize</code> elements.
+     */
+    public void resize(int newSize) {
+        if (newSize > buffer.length) {
+            ensureCapacity(newSize);
+        }
+        if (newSize > elementsCount) {
+            Arrays.fill(buffer, elementsCount, newSize, 0);
+        }
+        elementsCount = newSize;
+    }
+
+    public void trimToSize() {
+        if (buffer.length != elementsCount) {
+            buffer = toArray();
+        }
+    }
+
+    public void clear() {
+        elementsCount = 0;
+    }
+
+    public void release() {
+        buffer = EMPTY_ARRAY;
+        elementsCount = 0;
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(buffer, elementsCount);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= elementsCount) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+
+    /**
+     * Returns iterator that reuses the same cursor for every element.
+     */
+    @Override
+    public Iterator<IntCursor> iterator() {
+        return new Iterator<IntCursor>() {
+            private final IntCursor cursor = new IntCursor();
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < elementsCount;
+            }
+
+            @Override
+            public IntCursor next() {
+                if (next >= elementsCount) {
+                    throw new NoSuchElementException();
+                }
+                cursor.index = next;
+                cursor.value = buffer[next++];
+                return cursor;
+            }
+        };
+    }
+
+    @Override
+    public IntArrayList clone() {
+        IntArrayList clone = new IntArrayList(0);
+        clone.buffer = toArray();
+        clone.elementsCount = elementsCount;
+        return clone;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || obj.getClass() != getClass()) {
+            return false;
+        }
+        IntArrayList other = (IntArrayList) obj;
+        if (other.elementsCount != elementsCount) {
+            return false;
+        }
+        for (int i = 0; i < elementsCount; ++i) {
+            if (buffer[i] != other.buffer[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for (int i = 0; i < elementsCount; ++i) {
+            hash = 31 * hash + buffer[i];
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < elementsCount; ++i) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(buffer[i]);
+        }
+        return sb.append(']').toString();
+    }
+}
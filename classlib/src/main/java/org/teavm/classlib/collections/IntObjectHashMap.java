@@ -0,0 +1,387 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.collections;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * <p>Hash map from <code>int</code> keys to object values. Keys and values are kept in primitive arrays
+ * of an open addressing table with linear probing, so that neither keys nor entries are allocated as objects.
+ * Members are named after <code>com.carrotsearch.hppc.IntObjectHashMap</code>, so code written against HPPC can switch
+ * to this class by changing imports.</p>
+ *
+ * <p>Key <code>0</code> is stored separately, at the end of {@link #keys} and {@link #values}, all other slots
+ * with key <code>0</code> are free.</p>
+ */
+@SuppressWarnings("unchecked")
+public class IntObjectHashMap<VType> implements Iterable<IntObjectCursor<VType>>, Cloneable {
+    private static final int DEFAULT_EXPECTED_ELEMENTS = 4;
+    private static final double DEFAULT_LOAD_FACTOR = 0.75;
+    private static final int MIN_CAPACITY = 4;
+
+    public int[] keys;
+    public Object[] values;
+    protected int assigned;
+    protected int mask;
+    protected int resizeAt;
+    protected boolean hasEmptyKey;
+    protected final double loadFactor;
+
+    public IntObjectHashMap() {
+        this(DEFAULT_EXPECTED_ELEMENTS);
+    }
+
+    public IntObjectHashMap(int expectedElements) {
+        this(expectedElements, DEFAULT_LOAD_FACTOR);
+    }
+
+    public IntObjectHashMap(int expectedElements, double loadFactor) {
+        if (loadFactor <= 0 || loadFactor >= 1) {
+            throw new IllegalArgumentException("Load factor must be between 0 and 1: " + loadFactor);
+        }
+        this.loadFactor = loadFactor;
+        allocateBuffers(minBufferSize(expectedElements));
+    }
+
+    public VType put(int key, VType value) {
+        if (key == 0) {
+            hasEmptyKey = true;
+            VType previous = (VType) values[mask + 1];
+            values[mask + 1] = value;
+            return previous;
+        }
+        int slot = hashKey(key) & mask;
+        int existing;
+        while ((existing = keys[slot]) != 0) {
+            if (existing == key) {
+                VType previous = (VType) values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        insertAt(slot, key, value);
+        return null;
+    }
+
+    /**
+     * Puts value only if there is no mapping for the key.
+     *
+     * @return whether the value was put.
+     */
+    public boolean putIfAbsent(int key, VType value) {
+        int index = indexOf(key);
+        if (indexExists(index)) {
+            return false;
+        }
+        indexInsert(index, key, value);
+        return true;
+    }
+
+    public int putAll(IntObjectHashMap<VType> map) {
+        int count = size();
+        for (IntObjectCursor<VType> c : map) {
+            put(c.key, c.value);
+        }
+        return size() - count;
+    }
+
+    public VType get(int key) {
+        return getOrDefault(key, null);
+    }
+
+    public VType getOrDefault(int key, VType defaultValue) {
+        if (key == 0) {
+            return hasEmptyKey ? (VType) values[mask + 1] : defaultValue;
+        }
+        int slot = hashKey(key) & mask;
+        int existing;
+        while ((existing = keys[slot]) != 0) {
+            if (existing == key) {
+                return (VType) values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return defaultValue;
+    }
+
+    public boolean containsKey(int key) {
+        return indexExists(indexOf(key));
+    }
+
+    public VType remove(int key) {
+        if (key == 0) {
+            hasEmptyKey = false;
+            VType previous = (VType) values[mask + 1];
+            values[mask + 1] = null;
+            return previous;
+        }
+        int slot = hashKey(key) & mask;
+        int existing;
+        while ((existing = keys[slot]) != 0) {
+            if (existing == key) {
+                VType previous = (VType) values[slot];
+                shiftConflictingKeys(slot);
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Returns slot of the key if it is present, otherwise a negative number that can be passed to
+     * {@link #indexInsert(int, int, Object)}.
+     */
+    public int indexOf(int key) {
+        if (key == 0) {
+            return hasEmptyKey ? mask + 1 : ~(mask + 1);
+        }
+        int slot = hashKey(key) & mask;
+        int existing;
+        while ((existing = keys[slot]) != 0) {
+            if (existing == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return ~slot;
+    }
+
+    public boolean indexExists(int index) {
+        return index >= 0;
+    }
+
+    public VType indexGet(int index) {
+        return (VType) values[index];
+    }
+
+    public VType indexReplace(int index, VType newValue) {
+        VType previous = (VType) values[index];
+        values[index] = newValue;
+        return previous;
+    }
+
+    public void indexInsert(int index, int key, VType value) {
+        index = ~index;
+        if (key == 0) {
+            hasEmptyKey = true;
+            values[index] = value;
+        } else {
+            insertAt(index, key, value);
+        }
+    }
+
+    private void insertAt(int slot, int key, VType value) {
+        if (assigned == resizeAt) {
+            rehash(keys.length * 2 - 2);
+            slot = hashKey(key) & mask;
+            while (keys[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        assigned++;
+    }
+
+    private void shiftConflictingKeys(int gapSlot) {
+        // Move keys that were displaced past the gap back, so that lookups never stop at the gap
+        int distance = 0;
+        while (true) {
+            int slot = (gapSlot + (++distance)) & mask;
+            int existing = keys[slot];
+            if (existing == 0) {
+                break;
+            }
+            int idealSlot = hashKey(existing) & mask;
+            if (((slot - idealSlot) & mask) >= distance) {
+                keys[gapSlot] = existing;
+                values[gapSlot] = values[slot];
+                gapSlot = slot;
+                distance = 0;
+            }
+        }
+        keys[gapSlot] = 0;
+        values[gapSlot] = null;
+        assigned--;
+    }
+
+    public int size() {
+        return assigned + (hasEmptyKey ? 1 : 0);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public void clear() {
+        assigned = 0;
+        hasEmptyKey = false;
+        Arrays.fill(keys, 0);
+        Arrays.fill(values, null);
+    }
+
+    public void release() {
+        assigned = 0;
+        hasEmptyKey = false;
+        allocateBuffers(minBufferSize(DEFAULT_EXPECTED_ELEMENTS));
+    }
+
+    public void ensureCapacity(int expectedElements) {
+        if (expectedElements > resizeAt) {
+            rehash(minBufferSize(expectedElements));
+        }
+    }
+
+    private int minBufferSize(int elements) {
+        long length = (long) Math.ceil(elements / loadFactor);
+        if (length == elements) {
+            length++;
+        }
+        int capacity = MIN_CAPACITY;
+        while (capacity < length) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private void allocateBuffers(int capacity) {
+        keys = new int[capacity + 1];
+        values = new Object[capacity + 1];
+        mask = capacity - 1;
+        resizeAt = Math.min(capacity - 1, (int) Math.ceil(capacity * loadFactor));
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        int oldMask = mask;
+        allocateBuffers(capacity);
+        keys[mask + 1] = oldKeys[oldMask + 1];
+        values[mask + 1] = oldValues[oldMask + 1];
+        for (int i = 0; i <= oldMask; ++i) {
+            int key = oldKeys[i];
+            if (key != 0) {
+                int slot = hashKey(key) & mask;
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static int hashKey(int key) {
+        int hash = key * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Returns iterator that reuses the same cursor for every mapping.
+     */
+    @Override
+    public Iterator<IntObjectCursor<VType>> iterator() {
+        return new Iterator<IntObjectCursor<VType>>() {
+            private final IntObjectCursor<VType> cursor = new IntObjectCursor<>();
+            private int next = nextSlot(0);
+
+            private int nextSlot(int slot) {
+                while (slot <= mask && keys[slot] == 0) {
+                    slot++;
+                }
+                return slot <= mask || (slot == mask + 1 && hasEmptyKey) ? slot : -1;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public IntObjectCursor<VType> next() {
+                if (next < 0) {
+                    throw new NoSuchElementException();
+                }
+                cursor.index = next;
+                cursor.key = keys[next];
+                cursor.value = (VType) values[next];
+                next = nextSlot(next + 1);
+                return cursor;
+            }
+        };
+    }
+
+    @Override
+    public IntObjectHashMap<VType> clone() {
+        IntObjectHashMap<VType> clone = new IntObjectHashMap<>(0, loadFactor);
+        clone.keys = keys.clone();
+        clone.values = values.clone();
+        clone.assigned = assigned;
+        clone.mask = mask;
+        clone.resizeAt = resizeAt;
+        clone.hasEmptyKey = hasEmptyKey;
+        return clone;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || obj.getClass() != getClass()) {
+            return false;
+        }
+        IntObjectHashMap<?> other = (IntObjectHashMap<?>) obj;
+        if (other.size() != size()) {
+            return false;
+        }
+        for (IntObjectCursor<VType> c : this) {
+            int index = other.indexOf(c.key);
+            if (index < 0 || !Objects.equals(other.values[index], c.value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for (IntObjectCursor<VType> c : this) {
+            hash += hashKey(c.key) ^ Objects.hashCode(c.value);
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        boolean first = true;
+        for (IntObjectCursor<VType> c : this) {
+            if (!first) {
+                sb.append(", ");
+            }
+            first = false;
+            sb.append(c.key).append("=>").append(c.value);
+        }
+        return sb.append(']').toString();
+    }
+}
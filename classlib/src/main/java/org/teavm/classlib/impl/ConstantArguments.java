@@ -0,0 +1,83 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.impl;
+
+import org.teavm.model.BasicBlock;
+import org.teavm.model.Instruction;
+import org.teavm.model.Program;
+import org.teavm.model.Variable;
+import org.teavm.model.instructions.AssignInstruction;
+import org.teavm.model.instructions.IntegerConstantInstruction;
+import org.teavm.model.instructions.StringConstantInstruction;
+import org.teavm.model.util.DefinitionExtractor;
+
+/**
+ * <p>Finds values of method arguments that are known at build time, for transformers that replace calls
+ * with constant arguments by precompiled code.</p>
+ */
+final class ConstantArguments {
+    private ConstantArguments() {
+    }
+
+    /**
+     * Maps every variable to its only definition, or to <code>null</code> if the variable is assigned
+     * more than once or defined by a phi.
+     */
+    static Instruction[] findDefinitions(Program program) {
+        Instruction[] definitions = new Instruction[program.variableCount()];
+        boolean[] ambiguous = new boolean[program.variableCount()];
+        DefinitionExtractor definitionExtractor = new DefinitionExtractor();
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            BasicBlock block = program.basicBlockAt(i);
+            block.getPhis().forEach(phi -> ambiguous[phi.getReceiver().getIndex()] = true);
+            for (Instruction insn : block.getInstructions()) {
+                insn.acceptVisitor(definitionExtractor);
+                for (Variable var : definitionExtractor.getDefinedVariables()) {
+                    if (definitions[var.getIndex()] != null) {
+                        ambiguous[var.getIndex()] = true;
+                    }
+                    definitions[var.getIndex()] = insn;
+                }
+            }
+        }
+        for (int i = 0; i < definitions.length; ++i) {
+            if (ambiguous[i]) {
+                definitions[i] = null;
+            }
+        }
+        return definitions;
+    }
+
+    private static Instruction resolve(Instruction[] definitions, Variable var) {
+        Instruction insn = definitions[var.getIndex()];
+        for (int i = 0; i < definitions.length && insn instanceof AssignInstruction; ++i) {
+            insn = definitions[((AssignInstruction) insn).getAssignee().getIndex()];
+        }
+        return insn;
+    }
+
+    static String stringConstant(Instruction[] definitions, Variable var) {
+        Instruction insn = resolve(definitions, var);
+        return insn instanceof StringConstantInstruction ? ((StringConstantInstruction) insn).getConstant() : null;
+    }
+
+    static Integer integerConstant(Instruction[] definitions, Variable var) {
+        Instruction insn = resolve(definitions, var);
+        return insn instanceof IntegerConstantInstruction
+                ? ((IntegerConstantInstruction) insn).getConstant()
+                : null;
+    }
+}
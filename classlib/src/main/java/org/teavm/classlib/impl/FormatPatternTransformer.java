@@ -0,0 +1,193 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.impl;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.teavm.classlib.java.text.TPrecompiledFormats;
+import org.teavm.diagnostics.Diagnostics;
+import org.teavm.model.AccessLevel;
+import org.teavm.model.BasicBlock;
+import org.teavm.model.ClassHolder;
+import org.teavm.model.ClassHolderTransformer;
+import org.teavm.model.ClassReaderSource;
+import org.teavm.model.ElementModifier;
+import org.teavm.model.FieldHolder;
+import org.teavm.model.Instruction;
+import org.teavm.model.MethodHolder;
+import org.teavm.model.MethodReference;
+import org.teavm.model.Program;
+import org.teavm.model.ValueType;
+import org.teavm.model.Variable;
+import org.teavm.model.emit.ProgramEmitter;
+import org.teavm.model.instructions.AssignInstruction;
+import org.teavm.model.instructions.ConstructInstruction;
+import org.teavm.model.instructions.EmptyInstruction;
+import org.teavm.model.instructions.InvocationType;
+import org.teavm.model.instructions.InvokeInstruction;
+import org.teavm.model.instructions.StringConstantInstruction;
+
+/**
+ * <p>Replaces <code>new DecimalFormat(String)</code> and <code>new SimpleDateFormat(String)</code> with constant
+ * patterns by calls to a generated method. The method parses nothing: it creates a prototype once from
+ * the pattern parsed at build time and returns its copies. Incorrect patterns are left intact to fail
+ * at run time.</p>
+ */
+public class FormatPatternTransformer implements ClassHolderTransformer {
+    private static final String DECIMAL_FORMAT = "java.text.DecimalFormat";
+    private static final String SIMPLE_DATE_FORMAT = "java.text.SimpleDateFormat";
+    private static final String PRECOMPILED_FORMATS = "java.text.PrecompiledFormats";
+    private static final ValueType STRING_TYPE = ValueType.object("java.lang.String");
+
+    @Override
+    public void transformClass(ClassHolder cls, ClassReaderSource innerSource, Diagnostics diagnostics) {
+        if (cls.getName().startsWith("java.text.") || cls.hasModifier(ElementModifier.INTERFACE)) {
+            return;
+        }
+        Map<String, MethodReference> factories = new HashMap<>();
+        for (MethodHolder method : cls.getMethods().toArray(new MethodHolder[0])) {
+            if (method.getProgram() != null) {
+                transformProgram(cls, method.getProgram(), factories, innerSource);
+            }
+        }
+    }
+
+    private void transformProgram(ClassHolder cls, Program program, Map<String, MethodReference> factories,
+            ClassReaderSource classSource) {
+        Instruction[] definitions = null;
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            BasicBlock block = program.basicBlockAt(i);
+            List<Instruction> instructions = block.getInstructions();
+            for (int j = 0; j < instructions.size(); ++j) {
+                Instruction insn = instructions.get(j);
+                if (!(insn instanceof InvokeInstruction)) {
+                    continue;
+                }
+                InvokeInstruction invoke = (InvokeInstruction) insn;
+                MethodReference method = invoke.getMethod();
+                if (invoke.getType() != InvocationType.SPECIAL || invoke.getInstance() == null
+                        || !isConstructor(method)) {
+                    continue;
+                }
+
+                if (definitions == null) {
+                    definitions = ConstantArguments.findDefinitions(program);
+                }
+                String pattern = ConstantArguments.stringConstant(definitions, invoke.getArguments().get(0));
+                if (pattern == null) {
+                    continue;
+                }
+                int constructIndex = findConstruction(instructions, j, invoke.getInstance(), method.getClassName());
+                if (constructIndex < 0) {
+                    continue;
+                }
+
+                String key = method.getClassName() + ":" + pattern;
+                MethodReference factory = factories.get(key);
+                if (factory == null && !factories.containsKey(key)) {
+                    factory = createFactory(cls, method.getClassName(), pattern, factories.size(), classSource);
+                    factories.put(key, factory);
+                }
+                if (factory != null) {
+                    ConstructInstruction construct = (ConstructInstruction) instructions.get(constructIndex);
+                    InvokeInstruction factoryInvoke = new InvokeInstruction();
+                    factoryInvoke.setType(InvocationType.SPECIAL);
+                    factoryInvoke.setMethod(factory);
+                    factoryInvoke.setReceiver(construct.getReceiver());
+                    factoryInvoke.setLocation(construct.getLocation());
+                    instructions.set(constructIndex, factoryInvoke);
+                    EmptyInstruction empty = new EmptyInstruction();
+                    empty.setLocation(invoke.getLocation());
+                    instructions.set(j, empty);
+                }
+            }
+        }
+    }
+
+    private static boolean isConstructor(MethodReference method) {
+        return (method.getClassName().equals(DECIMAL_FORMAT) || method.getClassName().equals(SIMPLE_DATE_FORMAT))
+                && method.getName().equals("<init>") && method.parameterCount() == 1
+                && method.parameterType(0).equals(STRING_TYPE);
+    }
+
+    /*
+     * Factory is called in place of allocation, so that all copies of the object get the result. It's only correct
+     * when nothing but constants and copies of the object are evaluated between allocation and constructor call.
+     */
+    private static int findConstruction(List<Instruction> instructions, int index, Variable instance,
+            String className) {
+        Set<Variable> copies = new HashSet<>();
+        copies.add(instance);
+        for (int i = index - 1; i >= 0; --i) {
+            Instruction insn = instructions.get(i);
+            if (insn instanceof ConstructInstruction) {
+                ConstructInstruction construct = (ConstructInstruction) insn;
+                return copies.contains(construct.getReceiver()) && construct.getType().equals(className) ? i : -1;
+            } else if (insn instanceof AssignInstruction) {
+                AssignInstruction assign = (AssignInstruction) insn;
+                if (copies.contains(assign.getReceiver())) {
+                    copies.add(assign.getAssignee());
+                }
+            } else if (!(insn instanceof StringConstantInstruction)) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private MethodReference createFactory(ClassHolder cls, String className, String pattern, int index,
+            ClassReaderSource classSource) {
+        String data;
+        try {
+            data = className.equals(DECIMAL_FORMAT)
+                    ? TPrecompiledFormats.precompileDecimalFormat(pattern)
+                    : TPrecompiledFormats.precompileSimpleDateFormat(pattern);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        ValueType type = ValueType.object(className);
+
+        FieldHolder field = new FieldHolder("$$format$$" + index);
+        field.setType(type);
+        field.setLevel(AccessLevel.PRIVATE);
+        field.getModifiers().add(ElementModifier.STATIC);
+        cls.addField(field);
+
+        MethodHolder method = new MethodHolder("$$format$$" + index, type);
+        method.setLevel(AccessLevel.PRIVATE);
+        method.getModifiers().add(ElementModifier.STATIC);
+        cls.addMethod(method);
+
+        ProgramEmitter pe = ProgramEmitter.create(method, classSource);
+        if (className.equals(DECIMAL_FORMAT)) {
+            pe.when(pe.getField(field.getReference(), type).isNull())
+                    .thenDo(() -> pe.setField(field.getReference(), pe.invoke(PRECOMPILED_FORMATS,
+                            "decimalFormatPrototype", type, pe.constant(data))));
+            pe.invoke(PRECOMPILED_FORMATS, "decimalFormat", type, pe.getField(field.getReference(), type))
+                    .returnValue();
+        } else {
+            pe.when(pe.getField(field.getReference(), type).isNull())
+                    .thenDo(() -> pe.setField(field.getReference(), pe.invoke(PRECOMPILED_FORMATS,
+                            "simpleDateFormatPrototype", type, pe.constant(pattern), pe.constant(data))));
+            pe.invoke(PRECOMPILED_FORMATS, "simpleDateFormat", type, pe.getField(field.getReference(), type))
+                    .returnValue();
+        }
+        return method.getReference();
+    }
+}
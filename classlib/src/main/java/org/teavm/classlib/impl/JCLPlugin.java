@@ -52,5 +52,7 @@ public class JCLPlugin implements TeaVMPlugin {
                 String.class, MethodType.class, MethodType.class, MethodHandle.class, MethodType.class,
                 CallSite.class), new LambdaMetafactorySubstitutor());
         host.add(new ScalaHacks());
+        host.add(new PatternCompileTransformer());
+        host.add(new FormatPatternTransformer());
     }
 }
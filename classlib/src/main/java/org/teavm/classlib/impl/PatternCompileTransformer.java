@@ -0,0 +1,144 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.teavm.classlib.java.util.regex.TRegexAutomaton;
+import org.teavm.diagnostics.Diagnostics;
+import org.teavm.model.AccessLevel;
+import org.teavm.model.BasicBlock;
+import org.teavm.model.ClassHolder;
+import org.teavm.model.ClassHolderTransformer;
+import org.teavm.model.ClassReaderSource;
+import org.teavm.model.ElementModifier;
+import org.teavm.model.FieldHolder;
+import org.teavm.model.Instruction;
+import org.teavm.model.MethodHolder;
+import org.teavm.model.MethodReference;
+import org.teavm.model.Program;
+import org.teavm.model.ValueType;
+import org.teavm.model.emit.ProgramEmitter;
+import org.teavm.model.instructions.InvocationType;
+import org.teavm.model.instructions.InvokeInstruction;
+
+/**
+ * <p>Replaces <code>Pattern.compile</code> calls with constant arguments by calls to a generated method
+ * that creates the pattern once from automaton built at compile time, so the regular expression is neither
+ * parsed nor compiled at run time. Expressions that can't be matched by automaton are left intact.</p>
+ */
+public class PatternCompileTransformer implements ClassHolderTransformer {
+    private static final String PATTERN = "java.util.regex.Pattern";
+    private static final String AUTOMATON = "java.util.regex.RegexAutomaton";
+    private static final ValueType PATTERN_TYPE = ValueType.object(PATTERN);
+    private static final ValueType STRING_TYPE = ValueType.object("java.lang.String");
+
+    @Override
+    public void transformClass(ClassHolder cls, ClassReaderSource innerSource, Diagnostics diagnostics) {
+        if (cls.getName().startsWith("java.util.regex.") || cls.hasModifier(ElementModifier.INTERFACE)) {
+            return;
+        }
+        Map<String, MethodReference> factories = new HashMap<>();
+        for (MethodHolder method : cls.getMethods().toArray(new MethodHolder[0])) {
+            if (method.getProgram() != null) {
+                transformProgram(cls, method.getProgram(), factories, innerSource);
+            }
+        }
+    }
+
+    private void transformProgram(ClassHolder cls, Program program, Map<String, MethodReference> factories,
+            ClassReaderSource classSource) {
+        Instruction[] definitions = null;
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            BasicBlock block = program.basicBlockAt(i);
+            for (Instruction insn : block.getInstructions()) {
+                if (!(insn instanceof InvokeInstruction)) {
+                    continue;
+                }
+                InvokeInstruction invoke = (InvokeInstruction) insn;
+                MethodReference method = invoke.getMethod();
+                if (invoke.getType() != InvocationType.SPECIAL || invoke.getInstance() != null
+                        || !isCompile(method)) {
+                    continue;
+                }
+
+                if (definitions == null) {
+                    definitions = ConstantArguments.findDefinitions(program);
+                }
+                String regex = ConstantArguments.stringConstant(definitions, invoke.getArguments().get(0));
+                Integer flags = invoke.getArguments().size() == 2
+                        ? ConstantArguments.integerConstant(definitions, invoke.getArguments().get(1))
+                        : Integer.valueOf(0);
+                if (regex == null || flags == null) {
+                    continue;
+                }
+
+                String key = flags + ":" + regex;
+                MethodReference factory = factories.get(key);
+                if (factory == null && !factories.containsKey(key)) {
+                    factory = createFactory(cls, regex, flags, factories.size(), classSource);
+                    factories.put(key, factory);
+                }
+                if (factory != null) {
+                    invoke.setMethod(factory);
+                    invoke.getArguments().clear();
+                }
+            }
+        }
+    }
+
+    private static boolean isCompile(MethodReference method) {
+        if (!method.getClassName().equals(PATTERN) || !method.getName().equals("compile")
+                || !method.getReturnType().equals(PATTERN_TYPE) || method.parameterCount() == 0
+                || !method.parameterType(0).equals(STRING_TYPE)) {
+            return false;
+        }
+        return method.parameterCount() == 1
+                || (method.parameterCount() == 2 && method.parameterType(1) == ValueType.INTEGER);
+    }
+
+    private MethodReference createFactory(ClassHolder cls, String regex, int flags, int index,
+            ClassReaderSource classSource) {
+        String data;
+        try {
+            data = TRegexAutomaton.precompile(regex, flags);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (data == null) {
+            return null;
+        }
+
+        FieldHolder field = new FieldHolder("$$pattern$$" + index);
+        field.setType(PATTERN_TYPE);
+        field.setLevel(AccessLevel.PRIVATE);
+        field.getModifiers().add(ElementModifier.STATIC);
+        cls.addField(field);
+
+        MethodHolder method = new MethodHolder("$$pattern$$" + index, PATTERN_TYPE);
+        method.setLevel(AccessLevel.PRIVATE);
+        method.getModifiers().add(ElementModifier.STATIC);
+        cls.addMethod(method);
+
+        ProgramEmitter pe = ProgramEmitter.create(method, classSource);
+        pe.when(pe.getField(field.getReference(), field.getType()).isNull())
+                .thenDo(() -> pe.setField(field.getReference(), pe.invoke(AUTOMATON, "pattern", PATTERN_TYPE,
+                        pe.constant(regex), pe.constant(flags), pe.constant(data))));
+        pe.getField(field.getReference(), field.getType())
+                .returnValue();
+        return method.getReference();
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.impl.text;
+
+/**
+ * <p>Finds the shortest decimal representation of a double that reads back to the same value, using
+ * Ryu algorithm by Ulf Adams. As <code>Double.toString</code> requires, at least two digits are produced,
+ * so that when one digit is enough, the closest two-digit decimal is taken.</p>
+ */
+public final class DoubleAnalyzer {
+    private static final int MANTISSA_BITS = 52;
+    private static final int BIAS = 1023;
+    private static final int POW5_BITCOUNT = 125;
+    private static final long[] REMOVAL_DIVISORS = { 10, 100, 10000, 100000000 };
+    private static final double MAX_SHORT_MANTISSA = 1E15;
+    private static final double MIN_SHORT_VALUE = 1E-22;
+    // Relative error of decimal number that is rounded to double and then multiplied by a power of ten
+    private static final double SHORT_SCALING_ERROR = 2.5E-16;
+
+    private DoubleAnalyzer() {
+    }
+
+    /**
+     * Fills <code>result</code> with decimal digits of a finite positive double, so that
+     * <code>value = result.mantissa * 10<sup>result.exponent</sup></code> and mantissa has no trailing zeros.
+     */
+    public static void analyze(double value, Result result) {
+        long bits = Double.doubleToLongBits(value);
+        int ieeeExponent = (int) (bits >>> MANTISSA_BITS) & 0x7FF;
+        long ieeeMantissa = bits & ((1L << MANTISSA_BITS) - 1);
+
+        // Integers that fit into mantissa don't need any arithmetic except for removing trailing zeros
+        int integerShift = BIAS + MANTISSA_BITS - ieeeExponent;
+        if (integerShift >= 0 && integerShift <= MANTISSA_BITS
+                && (ieeeMantissa & ((1L << integerShift) - 1)) == 0) {
+            long output = (ieeeMantissa | (1L << MANTISSA_BITS)) >>> integerShift;
+            int exponent = 0;
+            while (output % 10 == 0) {
+                output /= 10;
+                ++exponent;
+            }
+            result.mantissa = output;
+            result.exponent = exponent;
+            return;
+        }
+        if (value < MAX_SHORT_MANTISSA && value > MIN_SHORT_VALUE && analyzeShort(value, result)) {
+            return;
+        }
+
+        int e2;
+        long m2;
+        if (ieeeExponent == 0) {
+            e2 = 1 - BIAS - MANTISSA_BITS - 2;
+            m2 = ieeeMantissa;
+        } else {
+            e2 = ieeeExponent - BIAS - MANTISSA_BITS - 2;
+            m2 = ieeeMantissa | (1L << MANTISSA_BITS);
+        }
+        boolean acceptBounds = (m2 & 1) == 0;
+
+        long mv = 4 * m2;
+        long mp = mv + 2;
+        long mm = mv - (ieeeMantissa != 0 || ieeeExponent <= 1 ? 2 : 1);
+
+        int e10;
+        long vr;
+        long vp;
+        long vm;
+        int lastRemovedDigit = 0;
+        boolean vmIsTrailingZeros = false;
+        boolean vrIsTrailingZeros = false;
+        if (e2 >= 0) {
+            int q = log10Pow2(e2) - (e2 > 3 ? 1 : 0);
+            e10 = q;
+            int k = POW5_BITCOUNT + pow5bits(q) - 1;
+            int i = -e2 + q + k;
+            long mulHigh = inversePowerHigh(q);
+            long mulLow = inversePowerLow(q);
+            vr = mulShift(mv, mulHigh, mulLow, i);
+            vp = mulShift(mp, mulHigh, mulLow, i);
+            vm = mulShift(mm, mulHigh, mulLow, i);
+            if (q <= 21) {
+                if (mv % 5 == 0) {
+                    vrIsTrailingZeros = multipleOfPowerOf5(mv, q);
+                } else if (acceptBounds) {
+                    vmIsTrailingZeros = multipleOfPowerOf5(mm, q);
+                } else if (multipleOfPowerOf5(mp, q)) {
+                    --vp;
+                }
+            }
+        } else {
+            int q = log10Pow5(-e2) - (-e2 > 1 ? 1 : 0);
+            e10 = q + e2;
+            int i = -e2 - q;
+            int j = q - pow5bits(i) + POW5_BITCOUNT;
+            long mulHigh = powerHigh(i);
+            long mulLow = powerLow(i);
+            vr = mulShift(mv, mulHigh, mulLow, j);
+            vp = mulShift(mp, mulHigh, mulLow, j);
+            vm = mulShift(mm, mulHigh, mulLow, j);
+            if (q <= 1) {
+                vrIsTrailingZeros = true;
+                if (acceptBounds) {
+                    vmIsTrailingZeros = mm == mv - 2;
+                } else {
+                    --vp;
+                }
+            } else if (q < 63) {
+                vrIsTrailingZeros = (mv & ((1L << q) - 1)) == 0;
+            }
+            if (vr < 100) {
+                // Happens only for the smallest subnormals, where the two digits we must keep
+                // are all we have, so get the next digit to round them
+                j = q - 1 - pow5bits(i + 1) + POW5_BITCOUNT;
+                lastRemovedDigit = (int) (mulShift(mv, powerHigh(i + 1), powerLow(i + 1), j) % 10);
+            }
+        }
+
+        int removed = 0;
+        long output;
+        if (vmIsTrailingZeros || vrIsTrailingZeros) {
+            while (vr >= 100 && vp / 10 > vm / 10) {
+                vmIsTrailingZeros &= vm % 10 == 0;
+                vrIsTrailingZeros &= lastRemovedDigit == 0;
+                lastRemovedDigit = (int) (vr % 10);
+                vr /= 10;
+                vp /= 10;
+                vm /= 10;
+                ++removed;
+            }
+            if (vmIsTrailingZeros) {
+                while (vr >= 100 && vm % 10 == 0) {
+                    vrIsTrailingZeros &= lastRemovedDigit == 0;
+                    lastRemovedDigit = (int) (vr % 10);
+                    vr /= 10;
+                    vp /= 10;
+                    vm /= 10;
+                    ++removed;
+                }
+            }
+            if (vrIsTrailingZeros && lastRemovedDigit == 5 && vr % 2 == 0) {
+                lastRemovedDigit = 4;
+            }
+            boolean roundUp = vr == vm && (!acceptBounds || !vmIsTrailingZeros) || lastRemovedDigit >= 5;
+            output = vr + (roundUp ? 1 : 0);
+        } else {
+            boolean roundUp = lastRemovedDigit >= 5;
+            // Short numbers lose most of 17 digits, so try to remove 8, 4, 2 and 1 digits at once
+            for (int k = REMOVAL_DIVISORS.length - 1; k >= 0; --k) {
+                long divisor = REMOVAL_DIVISORS[k];
+                if (vr >= divisor * 10 && vp / divisor > vm / divisor) {
+                    long vrDiv = vr / divisor;
+                    roundUp = vr - vrDiv * divisor >= divisor / 2;
+                    vr = vrDiv;
+                    vp /= divisor;
+                    vm /= divisor;
+                    removed += 1 << k;
+                }
+            }
+            while (vr >= 100 && vp / 10 > vm / 10) {
+                long vrDiv10 = vr / 10;
+                roundUp = vr - 10 * vrDiv10 >= 5;
+                vr = vrDiv10;
+                vp /= 10;
+                vm /= 10;
+                ++removed;
+            }
+            output = vr + (vr == vm || roundUp ? 1 : 0);
+        }
+
+        int exponent = e10 + removed;
+        while (output % 10 == 0) {
+            output /= 10;
+            ++exponent;
+        }
+        result.mantissa = output;
+        result.exponent = exponent;
+    }
+
+    /*
+     * Any two decimals of at most 15 significant digits read as different doubles, so if one of them reads
+     * as the value, no other decimal of that length or shorter does, and it's what Ryu would find.
+     * Such decimal, like a price, is found by scaling the value by increasing powers of ten, until it's
+     * close enough to an integer that reads back exactly. This takes a few floating point operations
+     * per digit, rather than 128-bit multiplications.
+     */
+    private static boolean analyzeShort(double value, Result result) {
+        double[] powers = DoubleSynthesizer.EXACT_POWERS;
+        for (int k = 1; k < powers.length; ++k) {
+            double scaled = value * powers[k];
+            if (scaled >= MAX_SHORT_MANTISSA) {
+                break;
+            }
+            double mantissa = Math.floor(scaled + 0.5);
+            if (Math.abs(scaled - mantissa) <= scaled * SHORT_SCALING_ERROR && mantissa / powers[k] == value
+                    && mantissa < MAX_SHORT_MANTISSA) {
+                result.mantissa = (long) mantissa;
+                result.exponent = -k;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static long powerHigh(int i) {
+        return PowersOfFive.high(i) >>> 3;
+    }
+
+    static long powerLow(int i) {
+        return (PowersOfFive.low(i) >>> 3) | (PowersOfFive.high(i) << 61);
+    }
+
+    // Ryu needs floor(2^k / 5^i) + 1, the table keeps ceil(2^(k + 3) / 5^i), that is exact for i <= 27
+    static long inversePowerHigh(int i) {
+        if (i == 0) {
+            return 1L << 61;
+        }
+        long high = PowersOfFive.high(-i);
+        if (i <= 27 && PowersOfFive.low(-i) == 0) {
+            --high;
+        }
+        return (high >>> 3) + (inversePowerLow(i) == 0 ? 1 : 0);
+    }
+
+    static long inversePowerLow(int i) {
+        if (i == 0) {
+            return 1;
+        }
+        long high = PowersOfFive.high(-i);
+        long low = PowersOfFive.low(-i);
+        if (i <= 27) {
+            if (low == 0) {
+                --high;
+            }
+            --low;
+        }
+        return ((low >>> 3) | (high << 61)) + 1;
+    }
+
+    private static long mulShift(long m, long mulHigh, long mulLow, int shift) {
+        long low = PowersOfFive.multiplyHigh(m, mulLow);
+        long highPartLow = m * mulHigh;
+        long high = PowersOfFive.multiplyHigh(m, mulHigh);
+        long sumLow = low + highPartLow;
+        if ((sumLow ^ Long.MIN_VALUE) < (low ^ Long.MIN_VALUE)) {
+            ++high;
+        }
+        shift -= 64;
+        return (sumLow >>> shift) | (high << (64 - shift));
+    }
+
+    private static boolean multipleOfPowerOf5(long value, int q) {
+        int count = 0;
+        while (value % 5 == 0) {
+            value /= 5;
+            ++count;
+        }
+        return count >= q;
+    }
+
+    static int pow5bits(int e) {
+        return ((e * 1217359) >>> 19) + 1;
+    }
+
+    static int log10Pow2(int e) {
+        return (e * 78913) >>> 18;
+    }
+
+    static int log10Pow5(int e) {
+        return (e * 732923) >>> 20;
+    }
+
+    public static final class Result {
+        public long mantissa;
+        public int exponent;
+    }
+}
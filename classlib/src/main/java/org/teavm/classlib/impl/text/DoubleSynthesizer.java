@@ -0,0 +1,131 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.impl.text;
+
+/**
+ * <p>Converts decimal numbers to correctly rounded doubles. Small numbers that are exact in double precision
+ * are computed by a single multiplication or division, the rest goes through Eisel-Lemire algorithm.</p>
+ *
+ * <p>Mantissa of at most 19 digits, that is an exact value, always gets the right result from Eisel-Lemire.
+ * When a parser has to drop digits, it passes them as well, and the number is compared
+ * with the halfway point between two candidates digit by digit if the dropped part matters.</p>
+ */
+public final class DoubleSynthesizer {
+    private static final int MANTISSA_BITS = 52;
+    private static final long INFINITY_BITS = 0x7FF0000000000000L;
+    static final double[] EXACT_POWERS = { 1E0, 1E1, 1E2, 1E3, 1E4, 1E5, 1E6, 1E7, 1E8, 1E9, 1E10, 1E11,
+            1E12, 1E13, 1E14, 1E15, 1E16, 1E17, 1E18, 1E19, 1E20, 1E21, 1E22 };
+
+    private DoubleSynthesizer() {
+    }
+
+    /**
+     * Computes double closest to <code>mantissa * 10<sup>exponent</sup></code>, where mantissa is treated
+     * as unsigned number.
+     */
+    public static double synthesizeDouble(long mantissa, int exponent, boolean negative) {
+        double result;
+        if (exponent >= -22 && exponent <= 22 && mantissa >>> (MANTISSA_BITS + 1) == 0) {
+            result = exponent >= 0 ? mantissa * EXACT_POWERS[exponent] : mantissa / EXACT_POWERS[-exponent];
+        } else {
+            result = Double.longBitsToDouble(toBits(mantissa, exponent));
+        }
+        return negative ? -result : result;
+    }
+
+    /**
+     * Computes double closest to a number with too many digits. <code>mantissa</code> and <code>exponent</code>
+     * represent the number truncated to 19 significant digits, all digits are in <code>digits</code> from
+     * <code>start</code> to <code>end</code>, possibly with decimal point among them, and
+     * <code>digitsExponent</code> is decimal exponent of the last one.
+     */
+    public static double synthesizeDouble(long mantissa, int exponent, boolean negative, char[] digits, int start,
+            int end, int digitsExponent) {
+        long bits = toBits(mantissa, exponent);
+        if (bits != toBits(mantissa + 1, exponent)) {
+            int binaryExponent = (int) (bits >>> MANTISSA_BITS);
+            long binaryMantissa = bits & ((1L << MANTISSA_BITS) - 1);
+            if (binaryExponent == 0) {
+                binaryExponent = 1;
+            } else {
+                binaryMantissa |= 1L << MANTISSA_BITS;
+            }
+            int cmp = ExactDecimal.compareWithHalfway(digits, start, end, digitsExponent, binaryMantissa,
+                    binaryExponent - 1075);
+            if (cmp > 0 || cmp == 0 && (bits & 1) != 0) {
+                ++bits;
+            }
+        }
+        double result = Double.longBitsToDouble(bits);
+        return negative ? -result : result;
+    }
+
+    private static long toBits(long w, int q) {
+        if (w == 0 || q < PowersOfFive.MIN_EXPONENT) {
+            return 0;
+        }
+        if (q > 308) {
+            return INFINITY_BITS;
+        }
+        int lz = Long.numberOfLeadingZeros(w);
+        w <<= lz;
+
+        long factor = PowersOfFive.high(q);
+        long high = PowersOfFive.multiplyHigh(w, factor);
+        long low = w * factor;
+        if ((high & 0x1FF) == 0x1FF) {
+            long secondHigh = PowersOfFive.multiplyHigh(w, PowersOfFive.low(q));
+            low += secondHigh;
+            if ((secondHigh ^ Long.MIN_VALUE) > (low ^ Long.MIN_VALUE)) {
+                ++high;
+            }
+        }
+
+        int upperBit = (int) (high >>> 63);
+        int shift = upperBit + 64 - MANTISSA_BITS - 3;
+        long mantissa = high >>> shift;
+        int power2 = binaryExponent(q) + upperBit - lz + 1023;
+        if (power2 <= 0) {
+            if (-power2 + 1 >= 64) {
+                return 0;
+            }
+            mantissa >>>= -power2 + 1;
+            mantissa += mantissa & 1;
+            mantissa >>>= 1;
+            return mantissa;
+        }
+
+        // Exactly halfway between two doubles, which is only possible for small exponents,
+        // round to even instead of rounding up
+        if ((low == 0 || low == 1) && q >= -4 && q <= 23 && (mantissa & 3) == 1 && mantissa << shift == high) {
+            mantissa &= ~1L;
+        }
+        mantissa += mantissa & 1;
+        mantissa >>>= 1;
+        if (mantissa >= 2L << MANTISSA_BITS) {
+            mantissa = 1L << MANTISSA_BITS;
+            power2++;
+        }
+        if (power2 >= 0x7FF) {
+            return INFINITY_BITS;
+        }
+        return ((long) power2 << MANTISSA_BITS) | (mantissa & ((1L << MANTISSA_BITS) - 1));
+    }
+
+    static int binaryExponent(int q) {
+        return (((152170 + 65536) * q) >> 16) + 63;
+    }
+}
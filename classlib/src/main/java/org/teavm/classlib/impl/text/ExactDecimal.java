@@ -0,0 +1,146 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.impl.text;
+
+import java.util.Arrays;
+
+/**
+ * Unsigned big number with just enough operations to compare a decimal number with a binary one exactly.
+ */
+final class ExactDecimal {
+    private static final int POW5_13 = 1220703125;
+    private int[] data = new int[8];
+    private int size;
+
+    private ExactDecimal() {
+    }
+
+    /**
+     * Compares <code>digits * 10<sup>exponent</sup></code> with the number in the middle between
+     * <code>mantissa * 2<sup>binaryExponent</sup></code> and the next one, i.e.
+     * <code>(2 * mantissa + 1) * 2<sup>binaryExponent - 1</sup></code>.
+     */
+    static int compareWithHalfway(char[] digits, int start, int end, int exponent, long mantissa,
+            int binaryExponent) {
+        ExactDecimal decimal = new ExactDecimal();
+        int chunk = 0;
+        int chunkSize = 1;
+        for (int i = start; i < end; ++i) {
+            char c = digits[i];
+            if (c == '.') {
+                continue;
+            }
+            chunk = chunk * 10 + (c - '0');
+            chunkSize *= 10;
+            if (chunkSize == 1000000000) {
+                decimal.multiplyAdd(chunkSize, chunk);
+                chunk = 0;
+                chunkSize = 1;
+            }
+        }
+        decimal.multiplyAdd(chunkSize, chunk);
+
+        ExactDecimal halfway = new ExactDecimal();
+        halfway.set(2 * mantissa + 1);
+
+        if (exponent >= 0) {
+            decimal.multiplyByPowerOf5(exponent);
+        } else {
+            halfway.multiplyByPowerOf5(-exponent);
+        }
+        int shift = binaryExponent - 1 - exponent;
+        if (shift >= 0) {
+            halfway.shiftLeft(shift);
+        } else {
+            decimal.shiftLeft(-shift);
+        }
+        return decimal.compareTo(halfway);
+    }
+
+    private void set(long value) {
+        data[0] = (int) value;
+        data[1] = (int) (value >>> 32);
+        size = data[1] != 0 ? 2 : data[0] != 0 ? 1 : 0;
+    }
+
+    private void multiplyAdd(int factor, int addend) {
+        long carry = addend & 0xFFFFFFFFL;
+        long unsignedFactor = factor & 0xFFFFFFFFL;
+        for (int i = 0; i < size; ++i) {
+            long product = (data[i] & 0xFFFFFFFFL) * unsignedFactor + carry;
+            data[i] = (int) product;
+            carry = product >>> 32;
+        }
+        if (carry != 0) {
+            ensureCapacity(size + 1);
+            data[size++] = (int) carry;
+        }
+    }
+
+    private void multiplyByPowerOf5(int power) {
+        while (power >= 13) {
+            multiplyAdd(POW5_13, 0);
+            power -= 13;
+        }
+        int factor = 1;
+        while (power-- > 0) {
+            factor *= 5;
+        }
+        multiplyAdd(factor, 0);
+    }
+
+    private void shiftLeft(int shift) {
+        if (size == 0) {
+            return;
+        }
+        int words = shift >>> 5;
+        int bits = shift & 31;
+        ensureCapacity(size + words + 1);
+        data[size + words] = 0;
+        for (int i = size - 1; i >= 0; --i) {
+            int value = data[i];
+            if (bits != 0) {
+                data[i + words + 1] |= value >>> (32 - bits);
+            }
+            data[i + words] = value << bits;
+        }
+        Arrays.fill(data, 0, words, 0);
+        size += words + 1;
+        while (size > 0 && data[size - 1] == 0) {
+            --size;
+        }
+    }
+
+    private int compareTo(ExactDecimal other) {
+        if (size != other.size) {
+            return size > other.size ? 1 : -1;
+        }
+        for (int i = size - 1; i >= 0; --i) {
+            int a = data[i] ^ Integer.MIN_VALUE;
+            int b = other.data[i] ^ Integer.MIN_VALUE;
+            if (a != b) {
+                return a > b ? 1 : -1;
+            }
+        }
+        return 0;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (data.length < capacity) {
+            data = Arrays.copyOf(data, Math.max(capacity, data.length * 2));
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.impl.text;
+
+/**
+ * <p>Single precision counterpart of {@link DoubleAnalyzer}. Multipliers are upper 64 bits of the ones used
+ * for doubles.</p>
+ */
+public final class FloatAnalyzer {
+    private static final int MANTISSA_BITS = 23;
+    private static final int BIAS = 127;
+    private static final int POW5_BITCOUNT = 61;
+    private static final double MAX_SHORT_MANTISSA = 1E6;
+    private static final double MIN_SHORT_VALUE = 1E-22;
+    private static final double SHORT_SCALING_ERROR = 6E-8;
+
+    private FloatAnalyzer() {
+    }
+
+    /**
+     * Fills <code>result</code> with decimal digits of a finite positive float, so that
+     * <code>value = result.mantissa * 10<sup>result.exponent</sup></code> and mantissa has no trailing zeros.
+     */
+    public static void analyze(float value, Result result) {
+        if (value < MAX_SHORT_MANTISSA && value > MIN_SHORT_VALUE && analyzeShort(value, result)) {
+            return;
+        }
+        int bits = Float.floatToIntBits(value);
+        int ieeeExponent = (bits >>> MANTISSA_BITS) & 0xFF;
+        int ieeeMantissa = bits & ((1 << MANTISSA_BITS) - 1);
+
+        int e2;
+        int m2;
+        if (ieeeExponent == 0) {
+            e2 = 1 - BIAS - MANTISSA_BITS - 2;
+            m2 = ieeeMantissa;
+        } else {
+            e2 = ieeeExponent - BIAS - MANTISSA_BITS - 2;
+            m2 = ieeeMantissa | (1 << MANTISSA_BITS);
+        }
+        boolean acceptBounds = (m2 & 1) == 0;
+
+        int mv = 4 * m2;
+        int mp = mv + 2;
+        int mm = mv - (ieeeMantissa != 0 || ieeeExponent <= 1 ? 2 : 1);
+
+        int e10;
+        int vr;
+        int vp;
+        int vm;
+        int lastRemovedDigit = 0;
+        boolean vmIsTrailingZeros = false;
+        boolean vrIsTrailingZeros = false;
+        if (e2 >= 0) {
+            int q = DoubleAnalyzer.log10Pow2(e2);
+            e10 = q;
+            int k = POW5_BITCOUNT + DoubleAnalyzer.pow5bits(q) - 1;
+            int i = -e2 + q + k;
+            long factor = DoubleAnalyzer.inversePowerHigh(q) + 1;
+            vr = mulShift(mv, factor, i);
+            vp = mulShift(mp, factor, i);
+            vm = mulShift(mm, factor, i);
+            if (q != 0 && (vp - 1) / 10 <= vm / 10) {
+                int l = POW5_BITCOUNT + DoubleAnalyzer.pow5bits(q - 1) - 1;
+                factor = DoubleAnalyzer.inversePowerHigh(q - 1) + 1;
+                lastRemovedDigit = mulShift(mv, factor, -e2 + q - 1 + l) % 10;
+            }
+            if (q <= 9) {
+                if (mv % 5 == 0) {
+                    vrIsTrailingZeros = multipleOfPowerOf5(mv, q);
+                } else if (acceptBounds) {
+                    vmIsTrailingZeros = multipleOfPowerOf5(mm, q);
+                } else if (multipleOfPowerOf5(mp, q)) {
+                    --vp;
+                }
+            }
+        } else {
+            int q = DoubleAnalyzer.log10Pow5(-e2);
+            e10 = q + e2;
+            int i = -e2 - q;
+            int j = q - DoubleAnalyzer.pow5bits(i) + POW5_BITCOUNT;
+            long factor = DoubleAnalyzer.powerHigh(i);
+            vr = mulShift(mv, factor, j);
+            vp = mulShift(mp, factor, j);
+            vm = mulShift(mm, factor, j);
+            // The smallest subnormals have just two digits, which we must keep, so they need the next digit
+            // for rounding as well
+            if (q != 0 && ((vp - 1) / 10 <= vm / 10 || vr < 100)) {
+                j = q - 1 - DoubleAnalyzer.pow5bits(i + 1) + POW5_BITCOUNT;
+                lastRemovedDigit = mulShift(mv, DoubleAnalyzer.powerHigh(i + 1), j) % 10;
+            }
+            if (q <= 1) {
+                vrIsTrailingZeros = true;
+                if (acceptBounds) {
+                    vmIsTrailingZeros = mm == mv - 2;
+                } else {
+                    --vp;
+                }
+            } else if (q < 31) {
+                vrIsTrailingZeros = (mv & ((1 << (q - 1)) - 1)) == 0;
+            }
+        }
+
+        int removed = 0;
+        int output;
+        if (vmIsTrailingZeros || vrIsTrailingZeros) {
+            while (vr >= 100 && vp / 10 > vm / 10) {
+                vmIsTrailingZeros &= vm % 10 == 0;
+                vrIsTrailingZeros &= lastRemovedDigit == 0;
+                lastRemovedDigit = vr % 10;
+                vr /= 10;
+                vp /= 10;
+                vm /= 10;
+                ++removed;
+            }
+            if (vmIsTrailingZeros) {
+                while (vr >= 100 && vm % 10 == 0) {
+                    vrIsTrailingZeros &= lastRemovedDigit == 0;
+                    lastRemovedDigit = vr % 10;
+                    vr /= 10;
+                    vp /= 10;
+                    vm /= 10;
+                    ++removed;
+                }
+            }
+            if (vrIsTrailingZeros && lastRemovedDigit == 5 && vr % 2 == 0) {
+                lastRemovedDigit = 4;
+            }
+            boolean roundUp = vr == vm && (!acceptBounds || !vmIsTrailingZeros) || lastRemovedDigit >= 5;
+            output = vr + (roundUp ? 1 : 0);
+        } else {
+            while (vr >= 100 && vp / 10 > vm / 10) {
+                lastRemovedDigit = vr % 10;
+                vr /= 10;
+                vp /= 10;
+                vm /= 10;
+                ++removed;
+            }
+            output = vr + (vr == vm || lastRemovedDigit >= 5 ? 1 : 0);
+        }
+
+        int exponent = e10 + removed;
+        while (output % 10 == 0) {
+            output /= 10;
+            ++exponent;
+        }
+        result.mantissa = output;
+        result.exponent = exponent;
+    }
+
+    // Same as DoubleAnalyzer.analyzeShort, for decimals of at most 6 digits, which read as different floats
+    private static boolean analyzeShort(float value, Result result) {
+        double[] powers = DoubleSynthesizer.EXACT_POWERS;
+        for (int k = 0; k < powers.length; ++k) {
+            double scaled = value * powers[k];
+            if (scaled >= MAX_SHORT_MANTISSA) {
+                break;
+            }
+            double mantissa = Math.floor(scaled + 0.5);
+            if (Math.abs(scaled - mantissa) <= scaled * SHORT_SCALING_ERROR
+                    && (float) (mantissa / powers[k]) == value && mantissa < MAX_SHORT_MANTISSA) {
+                int output = (int) mantissa;
+                int exponent = -k;
+                while (output % 10 == 0) {
+                    output /= 10;
+                    ++exponent;
+                }
+                result.mantissa = output;
+                result.exponent = exponent;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int mulShift(int m, long factor, int shift) {
+        long low = m * (factor & 0xFFFFFFFFL);
+        long high = m * (factor >>> 32);
+        return (int) (((low >>> 32) + high) >>> (shift - 32));
+    }
+
+    private static boolean multipleOfPowerOf5(int value, int q) {
+        int count = 0;
+        while (value % 5 == 0) {
+            value /= 5;
+            ++count;
+        }
+        return count >= q;
+    }
+
+    public static final class Result {
+        public int mantissa;
+        public int exponent;
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.impl.text;
+
+/**
+ * <p>Single precision counterpart of {@link DoubleSynthesizer}. There's no shortcut for small numbers,
+ * since JavaScript performs float arithmetic in double precision.</p>
+ */
+public final class FloatSynthesizer {
+    private static final int MANTISSA_BITS = 23;
+    private static final int INFINITY_BITS = 0x7F800000;
+
+    private FloatSynthesizer() {
+    }
+
+    /**
+     * Computes float closest to <code>mantissa * 10<sup>exponent</sup></code>, where mantissa is treated
+     * as unsigned number.
+     */
+    public static float synthesizeFloat(long mantissa, int exponent, boolean negative) {
+        float result = Float.intBitsToFloat(toBits(mantissa, exponent));
+        return negative ? -result : result;
+    }
+
+    /**
+     * Computes float closest to a number with too many digits, see
+     * {@link DoubleSynthesizer#synthesizeDouble(long, int, boolean, char[], int, int, int)}.
+     */
+    public static float synthesizeFloat(long mantissa, int exponent, boolean negative, char[] digits, int start,
+            int end, int digitsExponent) {
+        int bits = toBits(mantissa, exponent);
+        if (bits != toBits(mantissa + 1, exponent)) {
+            int binaryExponent = bits >>> MANTISSA_BITS;
+            int binaryMantissa = bits & ((1 << MANTISSA_BITS) - 1);
+            if (binaryExponent == 0) {
+                binaryExponent = 1;
+            } else {
+                binaryMantissa |= 1 << MANTISSA_BITS;
+            }
+            int cmp = ExactDecimal.compareWithHalfway(digits, start, end, digitsExponent, binaryMantissa,
+                    binaryExponent - 150);
+            if (cmp > 0 || cmp == 0 && (bits & 1) != 0) {
+                ++bits;
+            }
+        }
+        float result = Float.intBitsToFloat(bits);
+        return negative ? -result : result;
+    }
+
+    private static int toBits(long w, int q) {
+        if (w == 0 || q < -64) {
+            return 0;
+        }
+        if (q > 38) {
+            return INFINITY_BITS;
+        }
+        int lz = Long.numberOfLeadingZeros(w);
+        w <<= lz;
+
+        long factor = PowersOfFive.high(q);
+        long high = PowersOfFive.multiplyHigh(w, factor);
+        long low = w * factor;
+        if ((high & 0x3FFFFFFFFFL) == 0x3FFFFFFFFFL) {
+            long secondHigh = PowersOfFive.multiplyHigh(w, PowersOfFive.low(q));
+            low += secondHigh;
+            if ((secondHigh ^ Long.MIN_VALUE) > (low ^ Long.MIN_VALUE)) {
+                ++high;
+            }
+        }
+
+        int upperBit = (int) (high >>> 63);
+        int shift = upperBit + 64 - MANTISSA_BITS - 3;
+        long mantissa = high >>> shift;
+        int power2 = DoubleSynthesizer.binaryExponent(q) + upperBit - lz + 127;
+        if (power2 <= 0) {
+            if (-power2 + 1 >= 64) {
+                return 0;
+            }
+            mantissa >>>= -power2 + 1;
+            mantissa += mantissa & 1;
+            mantissa >>>= 1;
+            return (int) mantissa;
+        }
+
+        if ((low == 0 || low == 1) && q >= -17 && q <= 10 && (mantissa & 3) == 1 && mantissa << shift == high) {
+            mantissa &= ~1L;
+        }
+        mantissa += mantissa & 1;
+        mantissa >>>= 1;
+        if (mantissa >= 2L << MANTISSA_BITS) {
+            mantissa = 1L << MANTISSA_BITS;
+            power2++;
+        }
+        if (power2 >= 0xFF) {
+            return INFINITY_BITS;
+        }
+        return (power2 << MANTISSA_BITS) | (int) (mantissa & ((1 << MANTISSA_BITS) - 1));
+    }
+}
@@ -72,15 +72,24 @@ public class SystemNativeGenerator implements Generator, DependencyPlugin {
         String dest = context.getParameterName(3);
         String destPos = context.getParameterName(4);
         String length = context.getParameterName(5);
-        writer.append("if (" + src + " !== " +  dest + " || " + destPos + " < " + srcPos + ") {").indent().newLine();
+        writer.append("var srcData = " + src + ".data, destData = " + dest + ".data;").softNewLine();
+        writer.append("if (srcData === destData && typeof destData.copyWithin === 'function') {").indent()
+                .softNewLine();
+        writer.append("destData.copyWithin(" + destPos + ", " + srcPos + ", (" + srcPos + " + " + length + ") | 0);")
+                .softNewLine();
+        writer.outdent().append("} else if (ArrayBuffer.isView(srcData)) {").indent().softNewLine();
+        writer.append("destData.set(srcData.subarray(" + srcPos + ", (" + srcPos + " + " + length + ") | 0), "
+                + destPos + ");").softNewLine();
+        writer.outdent().append("} else if (srcData !== destData || " + destPos + " < " + srcPos + ") {")
+                .indent().softNewLine();
         writer.append("for (var i = 0; i < " + length + "; i = (i + 1) | 0) {").indent().softNewLine();
-        writer.append(dest + ".data[" + destPos + "++] = " + src + ".data[" + srcPos + "++];").softNewLine();
+        writer.append("destData[" + destPos + "++] = srcData[" + srcPos + "++];").softNewLine();
         writer.outdent().append("}").softNewLine();
         writer.outdent().append("} else {").indent().softNewLine();
         writer.append(srcPos + " = (" + srcPos + " + " + length + ") | 0;").softNewLine();
         writer.append(destPos + " = (" + destPos + " + " + length + ") | 0;").softNewLine();
         writer.append("for (var i = 0; i < " + length + "; i = (i + 1) | 0) {").indent().softNewLine();
-        writer.append(dest + ".data[--" + destPos + "] = " + src + ".data[--" + srcPos + "];").softNewLine();
+        writer.append("destData[--" + destPos + "] = srcData[--" + srcPos + "];").softNewLine();
         writer.outdent().append("}").softNewLine();
         writer.outdent().append("}").softNewLine();
     }
@@ -15,6 +15,8 @@
  */
 package org.teavm.classlib.java.lang;
 
+import org.teavm.classlib.impl.text.DoubleAnalyzer;
+import org.teavm.classlib.impl.text.FloatAnalyzer;
 import org.teavm.classlib.java.io.TSerializable;
 import org.teavm.classlib.java.util.TArrays;
 
@@ -23,25 +25,6 @@ import org.teavm.classlib.java.util.TArrays;
  * @author Alexey Andreev
  */
 class TAbstractStringBuilder extends TObject implements TSerializable, TCharSequence {
-    private static final float[] powersOfTen = { 1E1f, 1E2f, 1E4f, 1E8f, 1E16f, 1E32f };
-    private static final double[] doublePowersOfTen = { 1E1, 1E2, 1E4, 1E8, 1E16, 1E32, 1E64, 1E128, 1E256 };
-    private static final float[] negPowersOfTen = { 1E-1f, 1E-2f, 1E-4f, 1E-8f, 1E-16f, 1E-32f };
-    private static final double[] negDoublePowersOfTen = { 1E-1, 1E-2, 1E-4, 1E-8, 1E-16, 1E-32,
-            1E-64, 1E-128, 1E-256 };
-    private static final int[] intPowersOfTen = { 1, 10, 100, 1000, 10000, 100000, 1000000, 10000000, 100000000,
-            1000000000 };
-    private static final long[] longPowersOfTen = { 1, 10, 100, 1000, 10000, 100000, 1000000, 10000000, 100000000,
-            1000000000, 10000000000L, 100000000000L, 1000000000000L, 10000000000000L, 100000000000000L,
-            1000000000000000L, 10000000000000000L, 100000000000000000L, 1000000000000000000L };
-    private static final long[] longLogPowersOfTen = { 1, 10, 100, 10000, 100000000, 10000000000000000L, };
-    private static final int FLOAT_DECIMAL_PRECISION = 7;
-    private static final int DOUBLE_DECIMAL_PRECISION = 16;
-    private static final float FLOAT_DECIMAL_FACTOR = 1E6f;
-    private static final double DOUBLE_DECIMAL_FACTOR = 1E15;
-    private static final int FLOAT_MAX_EXPONENT = 38;
-    private static final int DOUBLE_MAX_EXPONENT = 308;
-    private static final int FLOAT_MAX_POS = 1000000;
-    private static final long DOUBLE_MAX_POS = 1000000000000000L;
     char[] buffer;
     private int length;
 
@@ -194,14 +177,12 @@ class TAbstractStringBuilder extends TObject implements TSerializable, TCharSequ
 
     protected TAbstractStringBuilder insert(int target, float value) {
         if (value == 0) {
-            insertSpace(target, target + 3);
-            buffer[target++] = '0';
-            buffer[target++] = '.';
-            buffer[target++] = '0';
-            return this;
-        } else if (value == -0) {
-            insertSpace(target, target + 4);
-            buffer[target++] = '-';
+            if (1 / value > 0) {
+                insertSpace(target, target + 3);
+            } else {
+                insertSpace(target, target + 4);
+                buffer[target++] = '-';
+            }
             buffer[target++] = '0';
             buffer[target++] = '.';
             buffer[target++] = '0';
@@ -229,117 +210,10 @@ class TAbstractStringBuilder extends TObject implements TSerializable, TCharSequ
             buffer[target++] = 'y';
             return this;
         }
-        // Get absolute value
-        boolean negative = false;
-        int sz = 1; // Decimal point always included
-        if (value < 0) {
-            negative = true;
-            value = -value;
-            ++sz; // including '-' sign of mantissa
-        }
-
-        // Split into decimal mantissa and decimal exponent
-        int exp = 0;
-        int mantissa = 0;
-        int intPart = 1;
-        int digits = 0;
-        if (value >= 1) {
-            int bit = 32;
-            exp = 0;
-            float digit = 1;
-            for (int i = powersOfTen.length - 1; i >= 0; --i) {
-                if ((exp | bit) <= FLOAT_MAX_EXPONENT && powersOfTen[i] * digit <= value) {
-                    digit *= powersOfTen[i];
-                    exp |= bit;
-                }
-                bit >>= 1;
-            }
-            mantissa = (int) ((value / (digit / FLOAT_DECIMAL_FACTOR)) + 0.5f);
-        } else {
-            int bit = 32;
-            exp = 0;
-            float digit = 1;
-            for (int i = negPowersOfTen.length - 1; i >= 0; --i) {
-                if ((exp | bit) <= 38 && negPowersOfTen[i] * digit * 10 > value) {
-                    digit *= negPowersOfTen[i];
-                    exp |= bit;
-                }
-                bit >>= 1;
-            }
-            exp = -exp;
-            mantissa = (int) (((value * FLOAT_MAX_POS) / digit) + 0.5f);
-        }
-
-        // Remove trailing zeros
-        digits = FLOAT_DECIMAL_PRECISION;
-        int zeros = trailingDecimalZeros(mantissa);
-        if (zeros > 0) {
-            digits -= zeros;
-        }
-
-        // Handle special case of exponent close to 0
-        if (exp < 7 && exp >= -3) {
-            if (exp >= 0) {
-                intPart = exp + 1;
-                digits = Math.max(digits, intPart + 1);
-                exp = 0;
-            } else if (exp < 0) {
-                mantissa /= intPowersOfTen[-exp];
-                digits -= exp;
-                exp = 0;
-            }
-        }
-
-        // Extend buffer to store exponent
-        if (exp != 0) {
-            sz += 2;
-            if (exp <= -10 || exp >= 10) {
-                ++sz;
-            }
-            if (exp < 0) {
-                ++sz;
-            }
-        }
-
-        if (exp != 0 && digits == intPart) {
-            digits++;
-        }
-        sz += digits;
-
-        // Print mantissa
-        insertSpace(target, target + sz);
-        if (negative) {
-            buffer[target++] = '-';
-        }
-        int pos = FLOAT_MAX_POS;
-        for (int i = 0; i < digits; ++i) {
-            int intDigit;
-            if (pos > 0) {
-                intDigit = mantissa / pos;
-                mantissa %= pos;
-            } else {
-                intDigit = 0;
-            }
-            buffer[target++] = (char) ('0' + intDigit);
-            if (--intPart == 0) {
-                buffer[target++] = '.';
-            }
-            pos /= 10;
-        }
-
-        // Print exponent
-        if (exp != 0) {
-            buffer[target++] = 'E';
-            if (exp < 0) {
-                exp = -exp;
-                buffer[target++] = '-';
-            }
-            if (exp >= 10) {
-                buffer[target++] = (char) ('0' + exp / 10);
-            }
-            buffer[target++] = (char) ('0' + exp % 10);
-        }
-        return this;
+        FloatAnalyzer.Result number = new FloatAnalyzer.Result();
+        FloatAnalyzer.analyze(Math.abs(value), number);
+        return insertDecimal(target, value < 0, number.mantissa / 100000000, number.mantissa % 100000000,
+                number.exponent);
     }
 
     protected TAbstractStringBuilder append(double value) {
@@ -348,14 +222,12 @@ class TAbstractStringBuilder extends TObject implements TSerializable, TCharSequ
 
     protected TAbstractStringBuilder insert(int target, double value) {
         if (value == 0) {
-            insertSpace(target, target + 3);
-            buffer[target++] = '0';
-            buffer[target++] = '.';
-            buffer[target++] = '0';
-            return this;
-        } else if (value == -0) {
-            insertSpace(target, target + 4);
-            buffer[target++] = '-';
+            if (1 / value > 0) {
+                insertSpace(target, target + 3);
+            } else {
+                insertSpace(target, target + 4);
+                buffer[target++] = '-';
+            }
             buffer[target++] = '0';
             buffer[target++] = '.';
             buffer[target++] = '0';
@@ -383,162 +255,98 @@ class TAbstractStringBuilder extends TObject implements TSerializable, TCharSequ
             buffer[target++] = 'y';
             return this;
         }
-        // Get absolute value
-        boolean negative = false;
-        int sz = 1; // Decimal point always included
-        if (value < 0) {
-            negative = true;
-            value = -value;
-            ++sz; // including '-' sign of mantissa
-        }
-
-        // Split into decimal mantissa and decimal exponent
-        int exp = 0;
-        long mantissa = 0;
-        int intPart = 1;
-        int digits = 0;
-        if (value >= 1) {
-            int bit = 256;
-            exp = 0;
-            double digit = 1;
-            for (int i = doublePowersOfTen.length - 1; i >= 0; --i) {
-                if ((exp | bit) <= DOUBLE_MAX_EXPONENT && doublePowersOfTen[i] * digit <= value) {
-                    digit *= doublePowersOfTen[i];
-                    exp |= bit;
-                }
-                bit >>= 1;
+        DoubleAnalyzer.Result number = new DoubleAnalyzer.Result();
+        DoubleAnalyzer.analyze(Math.abs(value), number);
+        return insertDecimal(target, value < 0, (int) (number.mantissa / 100000000),
+                (int) (number.mantissa % 100000000), number.exponent);
+    }
+
+    // Writes (high * 10^8 + low) * 10^exponent the way Double.toString does: in plain notation
+    // for numbers from 10^-3 to 10^7 and in computerized scientific notation otherwise
+    private TAbstractStringBuilder insertDecimal(int target, boolean negative, int high, int low, int exponent) {
+        int digitCount = high != 0 ? decimalLength(high) + 8 : decimalLength(low);
+        int sciExponent = digitCount - 1 + exponent;
+        int sz = negative ? 1 : 0;
+        if (sciExponent >= 0 && sciExponent < 7) {
+            int intDigits = sciExponent + 1;
+            sz += digitCount > intDigits ? digitCount + 1 : intDigits + 2;
+            insertSpace(target, target + sz);
+            if (negative) {
+                buffer[target++] = '-';
             }
-            mantissa = (long) (((value / digit) * DOUBLE_DECIMAL_FACTOR) + 0.5);
-        } else {
-            int bit = 256;
-            exp = 0;
-            double digit = 1;
-            for (int i = negDoublePowersOfTen.length - 1; i >= 0; --i) {
-                if ((exp | bit) <= DOUBLE_MAX_EXPONENT && negDoublePowersOfTen[i] * digit * 10 > value) {
-                    digit *= negDoublePowersOfTen[i];
-                    exp |= bit;
+            writeDigits(target, high, low, digitCount, intDigits);
+            if (digitCount > intDigits) {
+                buffer[target + intDigits] = '.';
+            } else {
+                target += digitCount;
+                for (int i = digitCount; i < intDigits; ++i) {
+                    buffer[target++] = '0';
                 }
-                bit >>= 1;
-            }
-            exp = -exp;
-            mantissa = (long) (((value * DOUBLE_MAX_POS) / digit) + 0.5);
-        }
-
-        // Remove trailing zeros
-        digits = DOUBLE_DECIMAL_PRECISION;
-        int zeros = trailingDecimalZeros(mantissa);
-        if (zeros > 0) {
-            digits -= zeros;
-        }
-
-        // Handle special case of exponent close to 0
-        if (exp < 7 && exp >= -3) {
-            if (exp >= 0) {
-                intPart = exp + 1;
-                digits = Math.max(digits, intPart + 1);
-                exp = 0;
-            } else if (exp < 0) {
-                mantissa /= longPowersOfTen[-exp];
-                digits -= exp;
-                exp = 0;
+                buffer[target++] = '.';
+                buffer[target] = '0';
             }
-        }
-
-        // Extend buffer to store exponent
-        if (exp != 0) {
-            sz += 2;
-            if (exp <= -10 || exp >= 10) {
-                ++sz;
+        } else if (sciExponent < 0 && sciExponent >= -3) {
+            int zeros = -sciExponent - 1;
+            sz += 2 + zeros + digitCount;
+            insertSpace(target, target + sz);
+            if (negative) {
+                buffer[target++] = '-';
             }
-            if (exp <= -100 || exp >= 100) {
-                ++sz;
+            buffer[target++] = '0';
+            buffer[target++] = '.';
+            for (int i = 0; i < zeros; ++i) {
+                buffer[target++] = '0';
             }
-            if (exp < 0) {
-                ++sz;
+            writeDigits(target, high, low, digitCount, digitCount);
+        } else {
+            int absExponent = Math.abs(sciExponent);
+            int exponentLength = absExponent >= 100 ? 3 : absExponent >= 10 ? 2 : 1;
+            sz += (digitCount > 1 ? digitCount + 1 : 3) + 1 + exponentLength + (sciExponent < 0 ? 1 : 0);
+            insertSpace(target, target + sz);
+            if (negative) {
+                buffer[target++] = '-';
             }
-        }
-
-        if (exp != 0 && digits == intPart) {
-            digits++;
-        }
-        sz += digits;
-
-        // Print mantissa
-        insertSpace(target, target + sz);
-        if (negative) {
-            buffer[target++] = '-';
-        }
-        long pos = DOUBLE_MAX_POS;
-        for (int i = 0; i < digits; ++i) {
-            int intDigit;
-            if (pos > 0) {
-                intDigit = (int) (mantissa / pos);
-                mantissa %= pos;
+            writeDigits(target, high, low, digitCount, 1);
+            buffer[target + 1] = '.';
+            if (digitCount > 1) {
+                target += digitCount + 1;
             } else {
-                intDigit = 0;
+                buffer[target + 2] = '0';
+                target += 3;
             }
-            buffer[target++] = (char) ('0' + intDigit);
-            if (--intPart == 0) {
-                buffer[target++] = '.';
-            }
-            pos /= 10;
-        }
-
-        // Print exponent
-        if (exp != 0) {
             buffer[target++] = 'E';
-            if (exp < 0) {
-                exp = -exp;
+            if (sciExponent < 0) {
                 buffer[target++] = '-';
             }
-            if (exp >= 100) {
-                buffer[target++] = (char) ('0' + exp / 100);
-                exp %= 100;
-                buffer[target++] = (char) ('0' + exp / 10);
-            } else if (exp >= 10) {
-                buffer[target++] = (char) ('0' + exp / 10);
+            target += exponentLength;
+            for (int i = 0; i < exponentLength; ++i) {
+                buffer[--target] = (char) ('0' + absExponent % 10);
+                absExponent /= 10;
             }
-            buffer[target++] = (char) ('0' + exp % 10);
         }
         return this;
     }
 
-    private static int trailingDecimalZeros(int n) {
-        if (n % 1000000000 == 0) {
-            return 9;
-        }
-        int result = 0;
-        int zeros = 1;
-        if (n % 100000000 == 0) {
-            result |= 8;
-            zeros *= 100000000;
-        }
-        if (n % (zeros * 10000) == 0) {
-            result |= 4;
-            zeros *= 10000;
-        }
-        if (n % (zeros * 100) == 0) {
-            result |= 2;
-            zeros *= 100;
-        }
-        if (n % (zeros * 10) == 0) {
-            result |= 1;
+    // Writes digits starting at target, leaving a room for decimal point before digit with index pointIndex
+    private void writeDigits(int target, int high, int low, int digitCount, int pointIndex) {
+        int lowDigits = high != 0 ? 8 : digitCount;
+        int part = low;
+        for (int i = digitCount - 1; i >= 0; --i) {
+            if (i == digitCount - 1 - lowDigits) {
+                part = high;
+            }
+            buffer[target + i + (i >= pointIndex ? 1 : 0)] = (char) ('0' + part % 10);
+            part /= 10;
         }
-        return result;
     }
 
-    private static int trailingDecimalZeros(long n) {
-        long zeros = 1;
-        int result = 0;
-        int bit = 16;
-        for (int i = longLogPowersOfTen.length - 1; i >= 0; --i) {
-            if (n % (zeros * longLogPowersOfTen[i]) == 0) {
-                result |= bit;
-                zeros *= longLogPowersOfTen[i];
-            }
-            bit >>>= 1;
+    private static int decimalLength(int value) {
+        int length = 1;
+        while (value >= 10) {
+            value /= 10;
+            ++length;
         }
-        return result;
+        return length;
     }
 
     protected TAbstractStringBuilder append(char c) {
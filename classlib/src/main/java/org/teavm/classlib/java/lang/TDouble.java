@@ -15,6 +15,7 @@
  */
 package org.teavm.classlib.java.lang;
 
+import org.teavm.classlib.impl.text.DoubleSynthesizer;
 import org.teavm.jso.JSBody;
 
 public class TDouble extends TNumber implements TComparable<TDouble> {
@@ -85,22 +86,30 @@ public class TDouble extends TNumber implements TComparable<TDouble> {
         if (c < '0' || c > '9') {
             throw new TNumberFormatException();
         }
+
+        // Keep first 19 significant digits, that fit into unsigned long, and remember where the rest is,
+        // in case they are needed to round the result
         long mantissa = 0;
+        int significantDigits = 0;
+        boolean truncated = false;
+        int start = -1;
         int exp = 0;
-        while (string.charAt(index) == '0') {
-            if (++index == string.length()) {
-                return 0;
-            }
-        }
+        int fractionDigits = 0;
         while (index < string.length()) {
             c = string.charAt(index);
             if (c < '0' || c > '9') {
                 break;
             }
-            if (mantissa < 1E17) {
-                mantissa = mantissa * 10 + (c - '0');
+            if (significantDigits < 19) {
+                if (c != '0' || significantDigits > 0) {
+                    if (significantDigits++ == 0) {
+                        start = index;
+                    }
+                    mantissa = mantissa * 10 + (c - '0');
+                }
             } else {
                 ++exp;
+                truncated |= c != '0';
             }
             ++index;
         }
@@ -112,10 +121,18 @@ public class TDouble extends TNumber implements TComparable<TDouble> {
                 if (c < '0' || c > '9') {
                     break;
                 }
-                if (mantissa < 1E17) {
-                    mantissa = mantissa * 10 + (c - '0');
+                if (significantDigits < 19) {
+                    if (c != '0' || significantDigits > 0) {
+                        if (significantDigits++ == 0) {
+                            start = index;
+                        }
+                        mantissa = mantissa * 10 + (c - '0');
+                    }
                     --exp;
+                } else {
+                    truncated |= c != '0';
                 }
+                ++fractionDigits;
                 ++index;
                 hasOneDigit = true;
             }
@@ -123,6 +140,8 @@ public class TDouble extends TNumber implements TComparable<TDouble> {
                 throw new TNumberFormatException();
             }
         }
+        int end = index;
+        int numExp = 0;
         if (index < string.length()) {
             c = string.charAt(index);
             if (c != 'e' && c != 'E') {
@@ -136,14 +155,15 @@ public class TDouble extends TNumber implements TComparable<TDouble> {
             } else if (string.charAt(index) == '+') {
                 ++index;
             }
-            int numExp = 0;
             boolean hasOneDigit = false;
             while (index < string.length()) {
                 c = string.charAt(index);
                 if (c < '0' || c > '9') {
                     break;
                 }
-                numExp = 10 * numExp + (c - '0');
+                if (numExp < 100000) {
+                    numExp = 10 * numExp + (c - '0');
+                }
                 hasOneDigit = true;
                 ++index;
             }
@@ -153,15 +173,12 @@ public class TDouble extends TNumber implements TComparable<TDouble> {
             if (negativeExp) {
                 numExp = -numExp;
             }
-            exp += numExp;
-        }
-        if (exp > 308 || exp == 308 && mantissa > 17976931348623157L) {
-            return !negative ? POSITIVE_INFINITY : NEGATIVE_INFINITY;
         }
-        if (negative) {
-            mantissa = -mantissa;
+        if (!truncated) {
+            return DoubleSynthesizer.synthesizeDouble(mantissa, exp + numExp, negative);
         }
-        return mantissa * decimalExponent(exp);
+        return DoubleSynthesizer.synthesizeDouble(mantissa, exp + numExp, negative, string.toCharArray(), start, end,
+                numExp - fractionDigits);
     }
 
     public static double decimalExponent(int n) {
@@ -253,7 +270,9 @@ public class TDouble extends TNumber implements TComparable<TDouble> {
         } else {
             doubleMantissa = abs * 0x1p1022 * binaryExponent(negExp - 1022);
         }
-        long mantissa = (long) (doubleMantissa + 0.5) & 0xFFFFFFFFFFFFFL;
+        // Scaling by a power of two is exact, so no rounding is needed. Adding 0.5 would round odd mantissas
+        // up, as they have no fractional bits left
+        long mantissa = (long) doubleMantissa & 0xFFFFFFFFFFFFFL;
         return mantissa | ((exp + 1023L) << 52) | (value < 0 || 1 / value == NEGATIVE_INFINITY ? (1L << 63) : 0);
     }
 
@@ -271,7 +290,9 @@ public class TDouble extends TNumber implements TComparable<TDouble> {
         int rawExp = (int) ((bits >> 52) & 0x7FFL);
         long mantissa = bits & 0xFFFFFFFFFFFFFL;
         if (rawExp == 0) {
-            mantissa <<= 1;
+            // Subnormal numbers have the same scale as the smallest normal ones. 2^-1075 is not a double,
+            // so mantissa must not be shifted instead
+            rawExp = 1;
         } else {
             mantissa |= 1L << 52;
         }
@@ -15,6 +15,7 @@
  */
 package org.teavm.classlib.java.lang;
 
+import org.teavm.classlib.impl.text.FloatSynthesizer;
 import org.teavm.interop.Import;
 import org.teavm.jso.JSBody;
 
@@ -120,22 +121,29 @@ public class TFloat extends TNumber implements TComparable<TFloat> {
         if (c < '0' || c > '9') {
             throw new TNumberFormatException();
         }
-        int mantissa = 0;
+
+        // Scanned the same way as in TDouble.parseDouble
+        long mantissa = 0;
+        int significantDigits = 0;
+        boolean truncated = false;
+        int start = -1;
         int exp = 0;
-        while (string.charAt(index) == '0') {
-            if (++index == string.length()) {
-                return 0;
-            }
-        }
+        int fractionDigits = 0;
         while (index < string.length()) {
             c = string.charAt(index);
             if (c < '0' || c > '9') {
                 break;
             }
-            if (mantissa < 1E8) {
-                mantissa = mantissa * 10 + (c - '0');
+            if (significantDigits < 19) {
+                if (c != '0' || significantDigits > 0) {
+                    if (significantDigits++ == 0) {
+                        start = index;
+                    }
+                    mantissa = mantissa * 10 + (c - '0');
+                }
             } else {
                 ++exp;
+                truncated |= c != '0';
             }
             ++index;
         }
@@ -147,10 +155,18 @@ public class TFloat extends TNumber implements TComparable<TFloat> {
                 if (c < '0' || c > '9') {
                     break;
                 }
-                if (mantissa < 1E38) {
-                    mantissa = mantissa * 10 + (c - '0');
+                if (significantDigits < 19) {
+                    if (c != '0' || significantDigits > 0) {
+                        if (significantDigits++ == 0) {
+                            start = index;
+                        }
+                        mantissa = mantissa * 10 + (c - '0');
+                    }
                     --exp;
+                } else {
+                    truncated |= c != '0';
                 }
+                ++fractionDigits;
                 ++index;
                 hasOneDigit = true;
             }
@@ -158,6 +174,8 @@ public class TFloat extends TNumber implements TComparable<TFloat> {
                 throw new TNumberFormatException();
             }
         }
+        int end = index;
+        int numExp = 0;
         if (index < string.length()) {
             c = string.charAt(index);
             if (c != 'e' && c != 'E') {
@@ -171,14 +189,15 @@ public class TFloat extends TNumber implements TComparable<TFloat> {
             } else if (string.charAt(index) == '+') {
                 ++index;
             }
-            int numExp = 0;
             boolean hasOneDigit = false;
             while (index < string.length()) {
                 c = string.charAt(index);
                 if (c < '0' || c > '9') {
                     break;
                 }
-                numExp = 10 * numExp + (c - '0');
+                if (numExp < 100000) {
+                    numExp = 10 * numExp + (c - '0');
+                }
                 hasOneDigit = true;
                 ++index;
             }
@@ -188,34 +207,12 @@ public class TFloat extends TNumber implements TComparable<TFloat> {
             if (negativeExp) {
                 numExp = -numExp;
             }
-            exp += numExp;
         }
-        if (exp > 38 || exp == 38 && mantissa > 34028234) {
-            return !negative ? POSITIVE_INFINITY : NEGATIVE_INFINITY;
+        if (!truncated) {
+            return FloatSynthesizer.synthesizeFloat(mantissa, exp + numExp, negative);
         }
-        if (negative) {
-            mantissa = -mantissa;
-        }
-        return mantissa * decimalExponent(exp);
-    }
-
-    private static float decimalExponent(int n) {
-        float d;
-        if (n < 0) {
-            d = 0.1f;
-            n = -n;
-        } else {
-            d = 10;
-        }
-        float result = 1;
-        while (n != 0) {
-            if (n % 2 != 0) {
-                result *= d;
-            }
-            d *= d;
-            n /= 2;
-        }
-        return result;
+        return FloatSynthesizer.synthesizeFloat(mantissa, exp + numExp, negative, string.toCharArray(), start, end,
+                numExp - fractionDigits);
     }
 
     public static TFloat valueOf(TString s) throws TNumberFormatException {
@@ -264,7 +261,9 @@ public class TFloat extends TNumber implements TComparable<TFloat> {
         } else {
             doubleMantissa = abs * 0x1p126f * binaryExponent(negExp - 126);
         }
-        int mantissa = (int) (doubleMantissa + 0.5f) & 0x7FFFFF;
+        // Rounding is done in double precision, where adding 0.5 to a 24-bit mantissa is exact. JavaScript
+        // does not round results of float arithmetic, so value may have extra bits
+        int mantissa = (int) (doubleMantissa + 0.5) & 0x7FFFFF;
         return mantissa | ((exp + 127) << 23) | (value < 0 || 1 / value == NEGATIVE_INFINITY  ? (1 << 31) : 0);
     }
 
@@ -282,7 +281,7 @@ public class TFloat extends TNumber implements TComparable<TFloat> {
         int rawExp = (bits >> 23) & 0xFF;
         int mantissa = bits & 0x7FFFFF;
         if (rawExp == 0) {
-            mantissa <<= 1;
+            rawExp = 1;
         } else {
             mantissa |= 1L << 23;
         }
@@ -17,6 +17,7 @@ package org.teavm.classlib.java.lang;
 
 import org.teavm.backend.javascript.spi.GeneratedBy;
 import org.teavm.interop.Import;
+import org.teavm.interop.Pure;
 
 public final class TMath extends TObject {
     public static final double E = 2.71828182845904523536;
@@ -27,26 +28,32 @@ public final class TMath extends TObject {
 
     @GeneratedBy(MathNativeGenerator.class)
     @Import(module = "math", name = "sin")
+    @Pure
     public static native double sin(double a);
 
     @GeneratedBy(MathNativeGenerator.class)
     @Import(module = "math", name = "cos")
+    @Pure
     public static native double cos(double a);
 
     @GeneratedBy(MathNativeGenerator.class)
     @Import(module = "math", name = "tan")
+    @Pure
     public static native double tan(double a);
 
     @GeneratedBy(MathNativeGenerator.class)
     @Import(module = "math", name = "asin")
+    @Pure
     public static native double asin(double a);
 
     @GeneratedBy(MathNativeGenerator.class)
     @Import(module = "math", name = "acos")
+    @Pure
     public static native double acos(double a);
 
     @GeneratedBy(MathNativeGenerator.class)
     @Import(module = "math", name = "atan")
+    @Pure
     public static native double atan(double a);
 
     public static double toRadians(double angdeg) {
@@ -59,10 +66,12 @@ public final class TMath extends TObject {
 
     @GeneratedBy(MathNativeGenerator.class)
     @Import(module = "math", name = "exp")
+    @Pure
     public static native double exp(double a);
 
     @GeneratedBy(MathNativeGenerator.class)
     @Import(module = "math", name = "log")
+    @Pure
     public static native double log(double a);
 
     public static double log10(double a) {
@@ -71,6 +80,7 @@ public final class TMath extends TObject {
 
     @GeneratedBy(MathNativeGenerator.class)
     @Import(module = "math", name = "sqrt")
+    @Pure
     public static native double sqrt(double a);
 
     public static double cbrt(double a) {
@@ -84,14 +94,17 @@ public final class TMath extends TObject {
 
     @GeneratedBy(MathNativeGenerator.class)
     @Import(module = "math", name = "ceil")
+    @Pure
     public static native double ceil(double a);
 
     @GeneratedBy(MathNativeGenerator.class)
     @Import(module = "math", name = "floor")
+    @Pure
     public static native double floor(double a);
 
     @GeneratedBy(MathNativeGenerator.class)
     @Import(module = "math", name = "pow")
+    @Pure
     public static native double pow(double x, double y);
 
     public static double rint(double a) {
@@ -100,6 +113,7 @@ public final class TMath extends TObject {
 
     @GeneratedBy(MathNativeGenerator.class)
     @Import(module = "math", name = "atan2")
+    @Pure
     public static native double atan2(double y, double x);
 
     public static int round(float a) {
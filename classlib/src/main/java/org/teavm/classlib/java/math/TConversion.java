@@ -15,6 +15,8 @@
  */
 package org.teavm.classlib.java.math;
 
+import java.util.Arrays;
+
 /**
  * Static library that provides {@link TBigInteger} base conversion from/to any
  * integer represented in an {@link java.lang.String} Object.
@@ -44,6 +46,17 @@ class TConversion {
             308915776, 387420489, 481890304, 594823321, 729000000, 887503681, 1073741824, 1291467969, 1544804416,
             1838265625, 60466176 };
 
+    /**
+     * Minimal length in digits (number of {@code int} elements) of a number
+     * to convert it to decimal string by divide-and-conquer algorithm.
+     */
+    static final int whenUseDivideAndConquer = TMultiplication.isLowLevel() ? 40 : 24;
+
+    /**
+     * Powers of ten {@code 10^(9 * 2^k)} used to split numbers into halves
+     * when converting them to decimal string.
+     */
+    private static TBigInteger[] decimalSplitPowers = new TBigInteger[0];
 
     /** @see TBigInteger#toString(int) */
     static String bigInteger2String(TBigInteger val, int radix) {
@@ -190,37 +203,10 @@ class TConversion {
                 } while (v != 0);
             }
         } else {
-            int[] temp = new int[numberLength];
-            int tempLen = numberLength;
-            System.arraycopy(digits, 0, temp, 0, tempLen);
-            BIG_LOOP: while (true) {
-                // divide the array of digits by bigRadix and convert
-                // remainders
-                // to characters collecting them in the char array
-                long result11 = 0;
-                for (int i1 = tempLen - 1; i1 >= 0; i1--) {
-                    long temp1 = (result11 << 32) + (temp[i1] & 0xFFFFFFFFL);
-                    long res = divideLongByBillion(temp1);
-                    temp[i1] = (int) res;
-                    result11 = (int) (res >> 32);
-                }
-                int resDigit = (int) result11;
-                int previous = currentChar;
-                do {
-                    result[--currentChar] = (char) (0x0030 + (resDigit % 10));
-                    resDigit /= 10;
-                } while (resDigit != 0 && currentChar != 0);
-                int delta = 9 - previous + currentChar;
-                for (int i = 0; (i < delta) && (currentChar > 0); i++) {
-                    result[--currentChar] = '0';
-                }
-                int j = tempLen - 1;
-                for (; temp[j] == 0; j--) {
-                    if (j == 0) { // means temp[0] == 0
-                        break BIG_LOOP;
-                    }
-                }
-                tempLen = j + 1;
+            if (numberLength < whenUseDivideAndConquer) {
+                currentChar = writeDecimalDigits(digits, numberLength, result, currentChar);
+            } else {
+                currentChar = writeDecimalDigits(val.abs(), result, currentChar);
             }
             while (result[currentChar] == '0') {
                 currentChar++;
@@ -279,6 +265,98 @@ class TConversion {
         return result1.toString();
     }
 
+    /**
+     * Writes decimal digits of a non-negative number right to left, so that the last one
+     * is written at {@code currentChar - 1}. Every 9 digits are produced by division by
+     * {@code 10^9}, so the result may have up to 8 leading zeros.
+     *
+     * @return index of the first written character
+     */
+    private static int writeDecimalDigits(int[] digits, int numberLength, char[] result, int currentChar) {
+        int[] temp = new int[numberLength];
+        int tempLen = numberLength;
+        System.arraycopy(digits, 0, temp, 0, tempLen);
+        BIG_LOOP: while (true) {
+            // divide the array of digits by bigRadix and convert
+            // remainders
+            // to characters collecting them in the char array
+            long result11 = 0;
+            for (int i1 = tempLen - 1; i1 >= 0; i1--) {
+                long temp1 = (result11 << 32) + (temp[i1] & 0xFFFFFFFFL);
+                long res = divideLongByBillion(temp1);
+                temp[i1] = (int) res;
+                result11 = (int) (res >> 32);
+            }
+            int resDigit = (int) result11;
+            int previous = currentChar;
+            do {
+                result[--currentChar] = (char) (0x0030 + (resDigit % 10));
+                resDigit /= 10;
+            } while (resDigit != 0 && currentChar != 0);
+            int delta = 9 - previous + currentChar;
+            for (int i = 0; (i < delta) && (currentChar > 0); i++) {
+                result[--currentChar] = '0';
+            }
+            int j = tempLen - 1;
+            for (; temp[j] == 0; j--) {
+                if (j == 0) { // means temp[0] == 0
+                    break BIG_LOOP;
+                }
+            }
+            tempLen = j + 1;
+        }
+        return currentChar;
+    }
+
+    /**
+     * Writes decimal digits of a non-negative number like {@link #writeDecimalDigits(int[], int, char[], int)}
+     * does, but recursively splits the number into halves by division by powers of ten,
+     * which takes {@code O(M(n) log n)} time with fast division, {@code M(n)} being the cost
+     * of multiplication.
+     *
+     * @return index of the first written character
+     */
+    private static int writeDecimalDigits(TBigInteger val, char[] result, int currentChar) {
+        int k = 0;
+        while (splitPower(k).compareTo(val) <= 0) {
+            ++k;
+        }
+        return writeDecimalDigits(val, k, false, result, currentChar);
+    }
+
+    private static int writeDecimalDigits(TBigInteger val, int k, boolean pad, char[] result, int currentChar) {
+        int end = currentChar;
+        if (val.numberLength < whenUseDivideAndConquer || k == 0) {
+            currentChar = writeDecimalDigits(val.digits, val.numberLength, result, currentChar);
+        } else {
+            TBigInteger[] qr = val.divideAndRemainder(splitPower(k - 1));
+            currentChar = writeDecimalDigits(qr[1], k - 1, true, result, currentChar);
+            currentChar = end - (9 << (k - 1));
+            currentChar = pad
+                    ? writeDecimalDigits(qr[0], k - 1, true, result, currentChar)
+                    : writeDecimalDigits(qr[0], result, currentChar);
+        }
+        if (pad) {
+            int start = end - (9 << k);
+            while (currentChar > start) {
+                result[--currentChar] = '0';
+            }
+        }
+        return currentChar;
+    }
+
+    private static TBigInteger splitPower(int k) {
+        TBigInteger[] powers = decimalSplitPowers;
+        if (k >= powers.length) {
+            powers = Arrays.copyOf(powers, k + 1);
+            for (int i = decimalSplitPowers.length; i <= k; ++i) {
+                powers[i] = i == 0 ? TBigInteger.valueOf(1000000000) : powers[i - 1].multiply(powers[i - 1]);
+            }
+            decimalSplitPowers = powers;
+        }
+        return powers[k];
+    }
+
     /* can process only 32-bit numbers */
     static String toDecimalScaledString(long value, int scale) {
         int resLengthInChars;
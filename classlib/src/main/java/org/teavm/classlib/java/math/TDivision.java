@@ -15,6 +15,8 @@
  */
 package org.teavm.classlib.java.math;
 
+import java.util.Arrays;
+
 /**
  * Static library that provides all operations related with division and modular
  * arithmetic to {@link TBigInteger}. Some methods are provided in both mutable
@@ -40,6 +42,154 @@ class TDivision {
     private TDivision() {
     }
 
+    /**
+     * Minimal divisor length in digits (number of {@code int} elements) to use
+     * Burnikel-Ziegler division.
+     */
+    static final int whenUseBurnikelZiegler = TMultiplication.isLowLevel() ? 80 : 48;
+
+    /**
+     * Minimal difference between dividend and divisor lengths to use
+     * Burnikel-Ziegler division.
+     */
+    static final int burnikelZieglerOffset = TMultiplication.isLowLevel() ? 40 : 24;
+
+    /**
+     * Divides the array 'a' by the array 'b' and gets the quotient and the
+     * remainder. Uses Burnikel-Ziegler algorithm for large numbers and
+     * Knuth's algorithm otherwise.
+     *
+     * @param quot
+     *            the quotient, may be {@code null}
+     * @param quotLength
+     *            the quotient's length
+     * @param a
+     *            the dividend
+     * @param aLength
+     *            the dividend's length
+     * @param b
+     *            the divisor
+     * @param bLength
+     *            the divisor's length
+     * @return the remainder
+     */
+    static int[] divide(int[] quot, int quotLength, int[] a, int aLength, int[] b, int bLength) {
+        if (bLength >= whenUseBurnikelZiegler && aLength - bLength >= burnikelZieglerOffset) {
+            return divideBurnikelZiegler(quot, quotLength, a, aLength, b, bLength);
+        }
+        return divideKnuth(quot, quotLength, a, aLength, b, bLength);
+    }
+
+    /**
+     * Divides the array 'a' by the array 'b' with the recursive algorithm by
+     * C. Burnikel and J. Ziegler, "Fast Recursive Division". The dividend is split
+     * into blocks of {@code n} digits, where {@code n} is the divisor's length
+     * rounded up to make all recursive calls operate on even lengths, and divided
+     * two blocks at a time, so that it takes {@code O(M(n) log n)} operations
+     * for every block, {@code M(n)} being the cost of multiplication.
+     *
+     * @see #divide(int[], int, int[], int, int[], int)
+     */
+    private static int[] divideBurnikelZiegler(int[] quot, int quotLength, int[] a, int aLength, int[] b,
+            int bLength) {
+        int m = 1 << (32 - Integer.numberOfLeadingZeros(bLength / whenUseBurnikelZiegler));
+        int n = (bLength + m - 1) / m * m;
+        int blockBits = n << 5;
+        int sigma = blockBits - TBitLevel.bitLength(new TBigInteger(1, bLength, b));
+        TBigInteger divisor = new TBigInteger(1, bLength, b).shiftLeft(sigma);
+        TBigInteger dividend = new TBigInteger(1, aLength, a).shiftLeft(sigma);
+        // the highest block must have a leading zero bit, so that it is less than the divisor
+        int t = Math.max(2, (dividend.bitLength() + blockBits) / blockBits);
+
+        if (quot != null) {
+            Arrays.fill(quot, 0, quotLength, 0);
+        }
+        TBigInteger z = TMultiplication.slice(dividend, (t - 2) * n, t * n);
+        TBigInteger[] qr;
+        for (int i = t - 2; i > 0; --i) {
+            qr = divide2n1n(z, divisor, n);
+            copyBlock(qr[0], quot, quotLength, i * n);
+            z = qr[1].shiftLeft(blockBits).add(TMultiplication.slice(dividend, (i - 1) * n, i * n));
+        }
+        qr = divide2n1n(z, divisor, n);
+        copyBlock(qr[0], quot, quotLength, 0);
+
+        TBigInteger remainder = qr[1].shiftRight(sigma);
+        int[] result = new int[bLength];
+        System.arraycopy(remainder.digits, 0, result, 0, remainder.numberLength);
+        return result;
+    }
+
+    private static void copyBlock(TBigInteger block, int[] quot, int quotLength, int offset) {
+        if (quot != null && block.sign != 0) {
+            System.arraycopy(block.digits, 0, quot, offset, Math.min(block.numberLength, quotLength - offset));
+        }
+    }
+
+    /**
+     * Divides a number of at most {@code 2n} digits by a number of {@code n} digits,
+     * where the divisor's highest bit is set and {@code a < b * 2^(32n)}.
+     *
+     * @return {@code [a / b, a % b]}
+     */
+    private static TBigInteger[] divide2n1n(TBigInteger a, TBigInteger b, int n) {
+        if ((n & 1) != 0 || n < whenUseBurnikelZiegler) {
+            return divideAndRemainderKnuth(a, b);
+        }
+        int half = n >> 1;
+        TBigInteger[] qr1 = divide3n2n(TMultiplication.slice(a, half, a.numberLength), b, half);
+        TBigInteger[] qr2 = divide3n2n(qr1[1].shiftLeft(half << 5).add(TMultiplication.slice(a, 0, half)), b,
+                half);
+        return new TBigInteger[] { qr1[0].shiftLeft(half << 5).add(qr2[0]), qr2[1] };
+    }
+
+    /**
+     * Divides a number of at most {@code 3n} digits by a number of {@code 2n} digits,
+     * where the divisor's highest bit is set and {@code a < b * 2^(32n)}.
+     *
+     * @return {@code [a / b, a % b]}
+     */
+    private static TBigInteger[] divide3n2n(TBigInteger a, TBigInteger b, int n) {
+        int shift = n << 5;
+        TBigInteger a12 = TMultiplication.slice(a, n, a.numberLength);
+        TBigInteger b1 = TMultiplication.slice(b, n, b.numberLength);
+        TBigInteger b2 = TMultiplication.slice(b, 0, n);
+        TBigInteger q;
+        TBigInteger r;
+        TBigInteger d;
+        if (TMultiplication.slice(a, 2 * n, a.numberLength).compareTo(b1) < 0) {
+            TBigInteger[] qr = divide2n1n(a12, b1, n);
+            q = qr[0];
+            r = qr[1];
+            d = q.multiply(b2);
+        } else {
+            // the quotient digit is at most 2^(32n) - 1
+            q = TBigInteger.ONE.shiftLeft(shift).subtract(TBigInteger.ONE);
+            r = a12.subtract(b1.shiftLeft(shift)).add(b1);
+            d = b2.shiftLeft(shift).subtract(b2);
+        }
+        r = r.shiftLeft(shift).add(TMultiplication.slice(a, 0, n));
+        while (r.compareTo(d) < 0) {
+            r = r.add(b);
+            q = q.subtract(TBigInteger.ONE);
+        }
+        return new TBigInteger[] { q, r.subtract(d) };
+    }
+
+    private static TBigInteger[] divideAndRemainderKnuth(TBigInteger a, TBigInteger b) {
+        if (a.compareTo(b) < 0) {
+            return new TBigInteger[] { TBigInteger.ZERO, a };
+        }
+        int quotLength = a.numberLength - b.numberLength + 1;
+        int[] quot = new int[quotLength];
+        int[] rem = divideKnuth(quot, quotLength, a.digits, a.numberLength, b.digits, b.numberLength);
+        TBigInteger q = new TBigInteger(1, quotLength, quot);
+        TBigInteger r = new TBigInteger(1, b.numberLength, rem);
+        q.cutOffLeadingZeroes();
+        r.cutOffLeadingZeroes();
+        return new TBigInteger[] { q, r };
+    }
+
     /**
      * Divides the array 'a' by the array 'b' and gets the quotient and the
      * remainder. Implements the Knuth's division algorithm. See D. Knuth, The
@@ -60,7 +210,7 @@ class TDivision {
      *            the divisor's length
      * @return the remainder
      */
-    static int[] divide(int[] quot, int quotLength, int[] a, int aLength, int[] b, int bLength) {
+    private static int[] divideKnuth(int[] quot, int quotLength, int[] a, int aLength, int[] b, int bLength) {
 
         int[] normA = new int[aLength + 1]; // the normalized dividend
         // an extra byte is needed for correct shift
@@ -15,6 +15,8 @@
  */
 package org.teavm.classlib.java.math;
 
+import org.teavm.interop.DelegateTo;
+
 /**
  * Static library that provides all multiplication of {@link TBigInteger} methods.
  */
@@ -27,8 +29,16 @@ class TMultiplication {
     /**
      * Break point in digits (number of {@code int} elements)
      * between Karatsuba and Pencil and Paper multiply.
+     * In JavaScript every {@code long} operation of Pencil and Paper multiply
+     * is emulated, so faster algorithms pay off on smaller numbers.
      */
-    static final int whenUseKaratsuba = 63; // an heuristic value
+    static final int whenUseKaratsuba = isLowLevel() ? 80 : 48;
+
+    /**
+     * Break point in digits (number of {@code int} elements)
+     * between Toom-Cook 3 and Karatsuba multiply.
+     */
+    static final int whenUseToomCook = isLowLevel() ? 160 : 120;
 
     /**
      * An array with powers of ten that fit in the type {@code int}.
@@ -82,6 +92,19 @@ class TMultiplication {
         return karatsuba(x, y);
     }
 
+    /**
+     * Tells whether the code runs in WebAssembly, where {@code long} arithmetic is native.
+     * Used to choose thresholds between algorithms.
+     */
+    @DelegateTo("isLowLevelImpl")
+    static boolean isLowLevel() {
+        return false;
+    }
+
+    private static boolean isLowLevelImpl() {
+        return true;
+    }
+
     /**
      * Performs the multiplication with the Karatsuba's algorithm.
      * <b>Karatsuba's algorithm:</b>
@@ -109,6 +132,9 @@ class TMultiplication {
         if (op2.numberLength < whenUseKaratsuba) {
             return multiplyPAP(op1, op2);
         }
+        if (op2.numberLength >= whenUseToomCook) {
+            return toomCook3(op1, op2);
+        }
         /*  Karatsuba:  u = u1*B + u0
          *              v = v1*B + v0
          *  u*v = (u1*v1)*B^2 + ((u1-u0)*(v0-v1) + u1*v1 + u0*v0)*B + u0*v0
@@ -130,6 +156,68 @@ class TMultiplication {
         return upper.add(middle).add(lower);
     }
 
+    /**
+     * Performs the multiplication with the Toom-Cook 3 algorithm, using the interpolation sequence
+     * by M. Bodrato and A. Zanoni, "What about Toom-Cook matrices optimality?".
+     * Both factors are split into three parts of {@code k} digits, so that
+     * {@code a = a2 * B^2 + a1 * B + a0}, {@code B = 2^(32k)}, then the product polynomial is
+     * evaluated in points {@code 0, 1, -1, 2} and {@code infinity} and interpolated back.
+     *
+     * @param op1 first factor of the product, {@code op1.numberLength >= op2.numberLength}
+     * @param op2 second factor of the product
+     * @return {@code op1 * op2}
+     * @see #karatsuba(TBigInteger, TBigInteger)
+     */
+    static TBigInteger toomCook3(TBigInteger op1, TBigInteger op2) {
+        int k = (op1.numberLength + 2) / 3;
+        TBigInteger a0 = slice(op1, 0, k);
+        TBigInteger a1 = slice(op1, k, 2 * k);
+        TBigInteger a2 = slice(op1, 2 * k, op1.numberLength);
+        TBigInteger b0 = slice(op2, 0, k);
+        TBigInteger b1 = slice(op2, k, 2 * k);
+        TBigInteger b2 = slice(op2, 2 * k, op2.numberLength);
+
+        TBigInteger v0 = karatsuba(a0, b0);
+        TBigInteger da = a2.add(a0);
+        TBigInteger db = b2.add(b0);
+        TBigInteger vm1 = karatsuba(da.subtract(a1), db.subtract(b1));
+        da = da.add(a1);
+        db = db.add(b1);
+        TBigInteger v1 = karatsuba(da, db);
+        TBigInteger v2 = karatsuba(da.add(a2).shiftLeftOneBit().subtract(a0),
+                db.add(b2).shiftLeftOneBit().subtract(b0));
+        TBigInteger vinf = karatsuba(a2, b2);
+
+        // Interpolation, all divisions are exact
+        TBigInteger t2 = v2.subtract(vm1).divide(TBigInteger.SMALL_VALUES[3]);
+        TBigInteger tm1 = v1.subtract(vm1).shiftRight(1);
+        TBigInteger t1 = v1.subtract(v0);
+        t2 = t2.subtract(t1).shiftRight(1);
+        t1 = t1.subtract(tm1).subtract(vinf);
+        t2 = t2.subtract(vinf.shiftLeftOneBit());
+        tm1 = tm1.subtract(t2);
+
+        int shift = k << 5;
+        TBigInteger result = vinf.shiftLeft(shift).add(t2).shiftLeft(shift).add(t1).shiftLeft(shift).add(tm1)
+                .shiftLeft(shift).add(v0);
+        return op1.sign != op2.sign ? result.negate() : result;
+    }
+
+    /**
+     * Returns non-negative number made of digits of {@code |val|} in range [{@code from}, {@code to}).
+     */
+    static TBigInteger slice(TBigInteger val, int from, int to) {
+        to = Math.min(to, val.numberLength);
+        if (from >= to) {
+            return TBigInteger.ZERO;
+        }
+        int[] digits = new int[to - from];
+        System.arraycopy(val.digits, from, digits, 0, digits.length);
+        TBigInteger result = new TBigInteger(1, digits.length, digits);
+        result.cutOffLeadingZeroes();
+        return result;
+    }
+
     /**
      * Multiplies two BigIntegers.
      * Implements traditional scholar algorithm described by Knuth.
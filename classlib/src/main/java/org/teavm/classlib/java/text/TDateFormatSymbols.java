@@ -16,12 +16,15 @@
 package org.teavm.classlib.java.text;
 
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import org.teavm.classlib.impl.unicode.CLDRHelper;
 import org.teavm.classlib.java.io.TSerializable;
 import org.teavm.classlib.java.lang.TCloneable;
 import org.teavm.classlib.java.util.TLocale;
 
 public class TDateFormatSymbols implements TSerializable, TCloneable {
+    private static final Map<TLocale, TDateFormatSymbols> localeSymbols = new HashMap<>();
     private TLocale locale;
     private String localPatternChars;
     String[] ampms;
@@ -32,13 +35,34 @@ public class TDateFormatSymbols implements TSerializable, TCloneable {
     String[] weekdays;
     String[][] zoneStrings;
 
-
     public TDateFormatSymbols() {
         this(TLocale.getDefault());
     }
 
     public TDateFormatSymbols(TLocale locale) {
         this.locale = locale;
+        TDateFormatSymbols shared = localeSymbols.get(locale);
+        if (shared == null) {
+            shared = new TDateFormatSymbols(locale, locale.getLanguage(), locale.getCountry());
+            localeSymbols.put(locale, shared);
+        }
+        // Arrays are never modified in place, setters and getters copy them, so they can be shared
+        ampms = shared.ampms;
+        eras = shared.eras;
+        months = shared.months;
+        shortMonths = shared.shortMonths;
+        shortWeekdays = shared.shortWeekdays;
+        weekdays = shared.weekdays;
+    }
+
+    private TDateFormatSymbols(TLocale locale, String language, String country) {
+        this.locale = locale;
+        ampms = CLDRHelper.resolveAmPm(language, country);
+        eras = CLDRHelper.resolveEras(language, country);
+        months = CLDRHelper.resolveMonths(language, country);
+        shortMonths = CLDRHelper.resolveShortMonths(language, country);
+        shortWeekdays = CLDRHelper.resolveShortWeekdays(language, country);
+        weekdays = CLDRHelper.resolveWeekdays(language, country);
     }
 
     @Override
@@ -122,16 +146,10 @@ public class TDateFormatSymbols implements TSerializable, TCloneable {
     }
 
     public String[] getAmPmStrings() {
-        if (ampms == null) {
-            ampms = CLDRHelper.resolveAmPm(locale.getLanguage(), locale.getCountry());
-        }
         return ampms.clone();
     }
 
     public String[] getEras() {
-        if (eras == null) {
-            eras = CLDRHelper.resolveEras(locale.getLanguage(), locale.getCountry());
-        }
         return eras.clone();
     }
 
@@ -143,30 +161,18 @@ public class TDateFormatSymbols implements TSerializable, TCloneable {
     }
 
     public String[] getMonths() {
-        if (months == null) {
-            months = CLDRHelper.resolveMonths(locale.getLanguage(), locale.getCountry());
-        }
         return months.clone();
     }
 
     public String[] getShortMonths() {
-        if (shortMonths == null) {
-            shortMonths = CLDRHelper.resolveShortMonths(locale.getLanguage(), locale.getCountry());
-        }
         return shortMonths.clone();
     }
 
     public String[] getShortWeekdays() {
-        if (shortWeekdays == null) {
-            shortWeekdays = CLDRHelper.resolveShortWeekdays(locale.getLanguage(), locale.getCountry());
-        }
         return shortWeekdays.clone();
     }
 
     public String[] getWeekdays() {
-        if (weekdays == null) {
-            weekdays = CLDRHelper.resolveWeekdays(locale.getLanguage(), locale.getCountry());
-        }
         return weekdays.clone();
     }
 
@@ -24,6 +24,7 @@ import org.teavm.classlib.impl.unicode.CLDRHelper;
 import org.teavm.classlib.java.lang.TArithmeticException;
 import org.teavm.classlib.java.lang.TDouble;
 import org.teavm.classlib.java.lang.TString;
+import org.teavm.classlib.java.util.TCurrency;
 import org.teavm.classlib.java.util.TLocale;
 
 /**
@@ -57,7 +58,9 @@ public class TDecimalFormat extends TNumberFormat {
     }
 
     public TDecimalFormat(String pattern) {
-        this(pattern, new TDecimalFormatSymbols());
+        // Symbols are never modified by format, and getDecimalFormatSymbols returns a copy
+        symbols = TDecimalFormatSymbols.forLocale(TLocale.getDefault());
+        applyPattern(pattern);
     }
 
     public TDecimalFormat(String pattern, TDecimalFormatSymbols value) {
@@ -65,6 +68,24 @@ public class TDecimalFormat extends TNumberFormat {
         applyPattern(pattern);
     }
 
+    TDecimalFormat(TDecimalFormatParser parser) {
+        symbols = TDecimalFormatSymbols.forLocale(TLocale.getDefault());
+        parser.apply(this);
+    }
+
+    /**
+     * Creates format with the same pattern and settings as this one and with symbols of the default locale.
+     */
+    TDecimalFormat copyForDefaultLocale() {
+        TDecimalFormat copy = (TDecimalFormat) clone();
+        TLocale defaultLocale = TLocale.getDefault();
+        if (!symbols.getLocale().equals(defaultLocale)) {
+            copy.symbols = TDecimalFormatSymbols.forLocale(defaultLocale);
+            copy.currency = TCurrency.getInstance(defaultLocale);
+        }
+        return copy;
+    }
+
     public void applyPattern(String pattern) {
         TDecimalFormatParser parser = new TDecimalFormatParser();
         parser.parse(pattern);
@@ -1214,7 +1235,7 @@ public class TDecimalFormat extends TNumberFormat {
     }
 
     static class TextField implements FormatField {
-        private String text;
+        String text;
 
         public TextField(String text) {
             this.text = text;
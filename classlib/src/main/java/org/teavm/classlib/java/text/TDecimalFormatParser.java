@@ -17,6 +17,8 @@ package org.teavm.classlib.java.text;
 
 import java.util.ArrayList;
 import java.util.List;
+import org.teavm.classlib.impl.Base46;
+import org.teavm.classlib.impl.CharFlow;
 import org.teavm.classlib.java.text.TDecimalFormat.FormatField;
 
 /**
@@ -24,6 +26,11 @@ import org.teavm.classlib.java.text.TDecimalFormat.FormatField;
  * @author Alexey Andreev
  */
 class TDecimalFormatParser {
+    private static final int FIELD_TEXT = 0;
+    private static final int FIELD_CURRENCY = 1;
+    private static final int FIELD_PERCENT = 2;
+    private static final int FIELD_PER_MILL = 3;
+    private static final int FIELD_MINUS = 4;
     private FormatField[] positivePrefix;
     private FormatField[] positiveSuffix;
     private FormatField[] negativePrefix;
@@ -91,6 +98,93 @@ class TDecimalFormatParser {
         format.setMultiplier(multiplier);
     }
 
+    void write(StringBuilder sb) {
+        writeFields(sb, positivePrefix);
+        writeFields(sb, positiveSuffix);
+        writeFields(sb, negativePrefix);
+        writeFields(sb, negativeSuffix);
+        Base46.encodeUnsigned(sb, groupSize);
+        Base46.encodeUnsigned(sb, minimumIntLength);
+        Base46.encodeUnsigned(sb, intLength);
+        Base46.encodeUnsigned(sb, minimumFracLength);
+        Base46.encodeUnsigned(sb, fracLength);
+        Base46.encodeUnsigned(sb, exponentLength);
+        Base46.encodeUnsigned(sb, multiplier);
+        Base46.encodeUnsigned(sb, decimalSeparatorRequired ? 1 : 0);
+    }
+
+    private static void writeFields(StringBuilder sb, FormatField[] fields) {
+        if (fields == null) {
+            Base46.encodeUnsigned(sb, 0);
+            return;
+        }
+        Base46.encodeUnsigned(sb, fields.length + 1);
+        for (FormatField field : fields) {
+            if (field instanceof TDecimalFormat.TextField) {
+                String text = ((TDecimalFormat.TextField) field).text;
+                Base46.encodeUnsigned(sb, FIELD_TEXT);
+                Base46.encodeUnsigned(sb, text.length());
+                sb.append(text);
+            } else if (field instanceof TDecimalFormat.CurrencyField) {
+                Base46.encodeUnsigned(sb, FIELD_CURRENCY);
+            } else if (field instanceof TDecimalFormat.PercentField) {
+                Base46.encodeUnsigned(sb, FIELD_PERCENT);
+            } else if (field instanceof TDecimalFormat.PerMillField) {
+                Base46.encodeUnsigned(sb, FIELD_PER_MILL);
+            } else {
+                Base46.encodeUnsigned(sb, FIELD_MINUS);
+            }
+        }
+    }
+
+    static TDecimalFormatParser read(CharFlow flow) {
+        TDecimalFormatParser parser = new TDecimalFormatParser();
+        parser.positivePrefix = readFields(flow);
+        parser.positiveSuffix = readFields(flow);
+        parser.negativePrefix = readFields(flow);
+        parser.negativeSuffix = readFields(flow);
+        parser.groupSize = Base46.decodeUnsigned(flow);
+        parser.minimumIntLength = Base46.decodeUnsigned(flow);
+        parser.intLength = Base46.decodeUnsigned(flow);
+        parser.minimumFracLength = Base46.decodeUnsigned(flow);
+        parser.fracLength = Base46.decodeUnsigned(flow);
+        parser.exponentLength = Base46.decodeUnsigned(flow);
+        parser.multiplier = Base46.decodeUnsigned(flow);
+        parser.decimalSeparatorRequired = Base46.decodeUnsigned(flow) != 0;
+        return parser;
+    }
+
+    private static FormatField[] readFields(CharFlow flow) {
+        int count = Base46.decodeUnsigned(flow);
+        if (count == 0) {
+            return null;
+        }
+        FormatField[] fields = new FormatField[count - 1];
+        for (int i = 0; i < fields.length; ++i) {
+            switch (Base46.decodeUnsigned(flow)) {
+                case FIELD_TEXT: {
+                    int length = Base46.decodeUnsigned(flow);
+                    fields[i] = new TDecimalFormat.TextField(new String(flow.characters, flow.pointer, length));
+                    flow.pointer += length;
+                    break;
+                }
+                case FIELD_CURRENCY:
+                    fields[i] = new TDecimalFormat.CurrencyField();
+                    break;
+                case FIELD_PERCENT:
+                    fields[i] = new TDecimalFormat.PercentField();
+                    break;
+                case FIELD_PER_MILL:
+                    fields[i] = new TDecimalFormat.PerMillField();
+                    break;
+                default:
+                    fields[i] = new TDecimalFormat.MinusField();
+                    break;
+            }
+        }
+        return fields;
+    }
+
     FormatField[] parseText(boolean suffix, boolean end) {
         List<FormatField> fields = new ArrayList<>();
         StringBuilder sb = new StringBuilder();
@@ -15,6 +15,8 @@
  */
 package org.teavm.classlib.java.text;
 
+import java.util.HashMap;
+import java.util.Map;
 import org.teavm.classlib.impl.unicode.CLDRHelper;
 import org.teavm.classlib.impl.unicode.DecimalData;
 import org.teavm.classlib.java.util.TLocale;
@@ -24,6 +26,7 @@ import org.teavm.classlib.java.util.TLocale;
  * @author Alexey Andreev
  */
 public class TDecimalFormatSymbols implements Cloneable {
+    private static final Map<TLocale, TDecimalFormatSymbols> localeSymbols = new HashMap<>();
     private TLocale locale;
     private char zeroDigit;
     private char groupingSeparator;
@@ -43,12 +46,24 @@ public class TDecimalFormatSymbols implements Cloneable {
     }
 
     public TDecimalFormatSymbols(TLocale locale) {
+        TDecimalFormatSymbols shared = forLocale(locale);
+        this.locale = locale;
+        zeroDigit = shared.zeroDigit;
+        groupingSeparator = shared.groupingSeparator;
+        decimalSeparator = shared.decimalSeparator;
+        perMill = shared.perMill;
+        percent = shared.percent;
+        digit = shared.digit;
+        patternSeparator = shared.patternSeparator;
+        nan = shared.nan;
+        infinity = shared.infinity;
+        minusSign = shared.minusSign;
+        monetaryDecimalSeparator = shared.monetaryDecimalSeparator;
+        exponentSeparator = shared.exponentSeparator;
+    }
+
+    private TDecimalFormatSymbols(TLocale locale, DecimalData data) {
         this.locale = locale;
-        initData();
-    }
-
-    private void initData() {
-        DecimalData data = CLDRHelper.resolveDecimalData(locale.getLanguage(), locale.getCountry());
         zeroDigit = '0';
         groupingSeparator = (char) data.getGroupingSeparator();
         decimalSeparator = (char) data.getDecimalSeparator();
@@ -63,6 +78,20 @@ public class TDecimalFormatSymbols implements Cloneable {
         exponentSeparator = data.getExponentSeparator();
     }
 
+    /**
+     * Returns symbols of the locale resolved from CLDR data once and shared by all formats of this locale.
+     * The instance must not be modified or exposed.
+     */
+    static TDecimalFormatSymbols forLocale(TLocale locale) {
+        TDecimalFormatSymbols symbols = localeSymbols.get(locale);
+        if (symbols == null) {
+            DecimalData data = CLDRHelper.resolveDecimalData(locale.getLanguage(), locale.getCountry());
+            symbols = new TDecimalFormatSymbols(locale, data);
+            localeSymbols.put(locale, symbols);
+        }
+        return symbols;
+    }
+
     public static TLocale[] getAvailableLocales() {
         return TLocale.getAvailableLocales();
     }
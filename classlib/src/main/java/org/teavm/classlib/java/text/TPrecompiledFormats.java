@@ -0,0 +1,71 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.text;
+
+import org.teavm.classlib.impl.CharFlow;
+import org.teavm.classlib.java.util.TLocale;
+
+/**
+ * <p>Creates formats for patterns that were parsed at build time.</p>
+ *
+ * <p>For every <code>new DecimalFormat(String)</code> and <code>new SimpleDateFormat(String)</code> with
+ * constant pattern the class library calls <code>precompile*</code> method at build time. Generated code
+ * creates prototype from the result once, by calling <code>*Prototype</code> method, and then creates every
+ * format as a copy of the prototype, so that neither the pattern is parsed nor locale data is looked up
+ * again.</p>
+ */
+public final class TPrecompiledFormats {
+    private TPrecompiledFormats() {
+    }
+
+    /**
+     * Parses pattern of {@link TDecimalFormat} into serialized form.
+     *
+     * @throws IllegalArgumentException if the pattern is incorrect.
+     */
+    public static String precompileDecimalFormat(String pattern) {
+        TDecimalFormatParser parser = new TDecimalFormatParser();
+        parser.parse(pattern);
+        StringBuilder sb = new StringBuilder();
+        parser.write(sb);
+        return sb.toString();
+    }
+
+    public static TDecimalFormat decimalFormatPrototype(String data) {
+        return new TDecimalFormat(TDecimalFormatParser.read(new CharFlow(data.toCharArray())));
+    }
+
+    public static TDecimalFormat decimalFormat(TDecimalFormat prototype) {
+        return prototype.copyForDefaultLocale();
+    }
+
+    /**
+     * Parses pattern of {@link TSimpleDateFormat} into serialized form.
+     *
+     * @throws IllegalArgumentException if the pattern is incorrect.
+     */
+    public static String precompileSimpleDateFormat(String pattern) {
+        return TSimpleDatePatternParser.compile(pattern);
+    }
+
+    public static TSimpleDateFormat simpleDateFormatPrototype(String pattern, String data) {
+        return new TSimpleDateFormat(pattern, data, TLocale.getDefault());
+    }
+
+    public static TSimpleDateFormat simpleDateFormat(TSimpleDateFormat prototype) {
+        return prototype.copyForDefaultLocale();
+    }
+}
@@ -29,6 +29,7 @@ public class TSimpleDateFormat extends TDateFormat {
     private TDateFormatSymbols dateFormatSymbols;
     private TDateFormatElement[] elements;
     private String pattern;
+    private String compiledPattern;
     private TLocale locale;
 
     public TSimpleDateFormat() {
@@ -66,17 +67,40 @@ public class TSimpleDateFormat extends TDateFormat {
         return buffer;
     }
 
+    TSimpleDateFormat(String pattern, String compiledPattern, TLocale locale) {
+        dateFormatSymbols = new TDateFormatSymbols(locale);
+        this.locale = locale;
+        this.pattern = pattern;
+        this.compiledPattern = compiledPattern;
+        buildElements();
+    }
+
     public void applyPattern(String pattern) {
+        compiledPattern = TSimpleDatePatternParser.compile(pattern);
         this.pattern = pattern;
-        reparsePattern();
+        buildElements();
     }
 
-    private void reparsePattern() {
+    private void buildElements() {
         TSimpleDatePatternParser parser = new TSimpleDatePatternParser(dateFormatSymbols, locale);
-        parser.parsePattern(pattern);
+        parser.build(compiledPattern);
         elements = parser.getElements().toArray(new TDateFormatElement[0]);
     }
 
+    /**
+     * Creates format with the same pattern as this one and with symbols and calendar of the default locale.
+     * Elements are reused when this format was created for the default locale as well.
+     */
+    TSimpleDateFormat copyForDefaultLocale() {
+        TLocale defaultLocale = TLocale.getDefault();
+        if (!locale.equals(defaultLocale)) {
+            return new TSimpleDateFormat(pattern, compiledPattern, defaultLocale);
+        }
+        TSimpleDateFormat copy = (TSimpleDateFormat) clone();
+        copy.calendar = TCalendar.getInstance();
+        return copy;
+    }
+
     @Override
     public TDate parse(String string, TParsePosition position) {
         TCalendar calendar = (TCalendar) this.calendar.clone();
@@ -108,7 +132,7 @@ public class TSimpleDateFormat extends TDateFormat {
 
     public void setDateFormatSymbols(TDateFormatSymbols newFormatSymbols) {
         dateFormatSymbols = (TDateFormatSymbols) newFormatSymbols.clone();
-        reparsePattern();
+        buildElements();
     }
 
     public String toPattern() {
@@ -17,6 +17,8 @@ package org.teavm.classlib.java.text;
 
 import java.util.ArrayList;
 import java.util.List;
+import org.teavm.classlib.impl.Base46;
+import org.teavm.classlib.impl.CharFlow;
 import org.teavm.classlib.java.util.TCalendar;
 import org.teavm.classlib.java.util.TLocale;
 
@@ -25,11 +27,10 @@ import org.teavm.classlib.java.util.TLocale;
  * @author Alexey Andreev
  */
 class TSimpleDatePatternParser {
+    private static final char TEXT = '\'';
     private TDateFormatSymbols symbols;
     private TLocale locale;
     private List<TDateFormatElement> elements = new ArrayList<>();
-    private int index;
-    private String pattern;
 
     public TSimpleDatePatternParser(TDateFormatSymbols symbols, TLocale locale) {
         this.symbols = symbols;
@@ -41,23 +42,85 @@ class TSimpleDatePatternParser {
     }
 
     public void parsePattern(String pattern) {
-        elements.clear();
-        this.pattern = pattern;
-        for (index = 0; index < pattern.length();) {
+        build(compile(pattern));
+    }
+
+    /**
+     * Splits pattern into fields and literal text, so that {@link #build(String)} creates elements
+     * without dealing with quotes. Doesn't need any locale data and can be called at build time.
+     */
+    static String compile(String pattern) {
+        StringBuilder sb = new StringBuilder();
+        StringBuilder text = new StringBuilder();
+        int index = 0;
+        while (index < pattern.length()) {
             char c = pattern.charAt(index);
-            switch (c) {
-                case '\'': {
+            if (c == '\'') {
+                ++index;
+                while (index < pattern.length()) {
+                    c = pattern.charAt(index++);
+                    if (c == '\'') {
+                        if (index < pattern.length() && pattern.charAt(index) == '\'') {
+                            text.append('\'');
+                            ++index;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        text.append(c);
+                    }
+                }
+                writeText(sb, text);
+            } else if (isControl(c)) {
+                int count = 1;
+                ++index;
+                while (index < pattern.length() && pattern.charAt(index) == c) {
                     ++index;
-                    parseQuoted();
-                    break;
+                    ++count;
+                }
+                if (c == 'X' && count > 3) {
+                    throw new IllegalArgumentException("Wrong number of repetitions of X pattern at " + index);
+                }
+                if (isField(c)) {
+                    sb.append(c);
+                    Base46.encodeUnsigned(sb, count);
+                }
+            } else {
+                while (index < pattern.length() && !isControl(pattern.charAt(index))) {
+                    text.append(pattern.charAt(index++));
                 }
+                writeText(sb, text);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void writeText(StringBuilder sb, StringBuilder text) {
+        sb.append(TEXT);
+        Base46.encodeUnsigned(sb, text.length());
+        sb.append(text);
+        text.setLength(0);
+    }
+
+    /**
+     * Creates elements from the result of {@link #compile(String)}.
+     */
+    public void build(String compiledPattern) {
+        elements.clear();
+        CharFlow flow = new CharFlow(compiledPattern.toCharArray());
+        while (flow.pointer < flow.characters.length) {
+            char c = flow.characters[flow.pointer++];
+            int rep = Base46.decodeUnsigned(flow);
+            switch (c) {
+                case TEXT:
+                    elements.add(new TDateFormatElement.ConstantText(new String(flow.characters, flow.pointer, rep)));
+                    flow.pointer += rep;
+                    break;
                 case 'G':
-                    parseRepetitions();
                     elements.add(new TDateFormatElement.EraText(symbols));
                     break;
                 case 'y':
                 case 'Y': {
-                    int rep = parseRepetitions();
                     if (rep == 2) {
                         elements.add(new TDateFormatElement.Year(TCalendar.YEAR));
                     } else {
@@ -67,7 +130,6 @@ class TSimpleDatePatternParser {
                 }
                 case 'M':
                 case 'L': {
-                    int rep = parseRepetitions();
                     if (rep <= 2) {
                         elements.add(new TDateFormatElement.NumericMonth(rep));
                     } else {
@@ -76,143 +138,87 @@ class TSimpleDatePatternParser {
                     break;
                 }
                 case 'w': {
-                    int rep = parseRepetitions();
                     elements.add(new TDateFormatElement.Numeric(TCalendar.WEEK_OF_YEAR, rep));
                     break;
                 }
                 case 'W': {
-                    int rep = parseRepetitions();
                     elements.add(new TDateFormatElement.Numeric(TCalendar.WEEK_OF_MONTH, rep));
                     break;
                 }
                 case 'D': {
-                    int rep = parseRepetitions();
                     elements.add(new TDateFormatElement.Numeric(TCalendar.DAY_OF_YEAR, rep));
                     break;
                 }
                 case 'd': {
-                    int rep = parseRepetitions();
                     elements.add(new TDateFormatElement.Numeric(TCalendar.DAY_OF_MONTH, rep));
                     break;
                 }
                 case 'F': {
-                    int rep = parseRepetitions();
                     elements.add(new TDateFormatElement.Numeric(TCalendar.DAY_OF_WEEK_IN_MONTH, rep));
                     break;
                 }
                 case 'E':
                 case 'c': {
-                    int rep = parseRepetitions();
                     elements.add(new TDateFormatElement.WeekdayText(symbols, rep <= 3));
                     break;
                 }
                 case 'u': {
-                    int rep = parseRepetitions();
                     elements.add(new TDateFormatElement.NumericWeekday(rep));
                     break;
                 }
                 case 'a': {
-                    parseRepetitions();
                     elements.add(new TDateFormatElement.AmPmText(symbols));
                     break;
                 }
                 case 'H': {
-                    int rep = parseRepetitions();
                     elements.add(new TDateFormatElement.Numeric(TCalendar.HOUR_OF_DAY, rep));
                     break;
                 }
                 case 'k': {
-                    int rep = parseRepetitions();
                     elements.add(new TDateFormatElement.NumericHour(TCalendar.HOUR_OF_DAY, rep, 24));
                     break;
                 }
                 case 'K': {
-                    int rep = parseRepetitions();
                     elements.add(new TDateFormatElement.Numeric(TCalendar.HOUR, rep));
                     break;
                 }
                 case 'h': {
-                    int rep = parseRepetitions();
                     elements.add(new TDateFormatElement.NumericHour(TCalendar.HOUR, rep, 12));
                     break;
                 }
                 case 'm': {
-                    int rep = parseRepetitions();
                     elements.add(new TDateFormatElement.Numeric(TCalendar.MINUTE, rep));
                     break;
                 }
                 case 's': {
-                    int rep = parseRepetitions();
                     elements.add(new TDateFormatElement.Numeric(TCalendar.SECOND, rep));
                     break;
                 }
                 case 'S': {
-                    int rep = parseRepetitions();
                     elements.add(new TDateFormatElement.Numeric(TCalendar.MILLISECOND, rep));
                     break;
                 }
                 case 'z': {
-                    parseRepetitions();
                     elements.add(new TDateFormatElement.GeneralTimezone(locale));
                     break;
                 }
                 case 'Z': {
-                    parseRepetitions();
                     elements.add(new TDateFormatElement.Rfc822Timezone(locale));
                     break;
                 }
                 case 'X': {
-                    int rep = parseRepetitions();
-                    if (rep > 3) {
-                        throw new IllegalArgumentException("Wrong number of repetitions of X pattern at " + index);
-                    }
                     elements.add(new TDateFormatElement.Iso8601Timezone(rep));
                     break;
                 }
-                default:
-                    if (isControl(c)) {
-                        parseRepetitions();
-                    } else {
-                        StringBuilder sb = new StringBuilder();
-                        while (index < pattern.length() && !isControl(pattern.charAt(index))) {
-                            sb.append(pattern.charAt(index++));
-                        }
-                        elements.add(new TDateFormatElement.ConstantText(sb.toString()));
-                    }
-                    break;
             }
         }
     }
 
-    private boolean isControl(char c) {
+    private static boolean isControl(char c) {
         return c == '\'' || c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z';
     }
 
-    private void parseQuoted() {
-        StringBuilder sb = new StringBuilder();
-        while (index < pattern.length()) {
-            char c = pattern.charAt(index++);
-            if (c == '\'') {
-                if (index < pattern.length() && pattern.charAt(index) == '\'') {
-                    sb.append('\'');
-                    ++index;
-                } else {
-                    break;
-                }
-            } else {
-                sb.append(c);
-            }
-        }
-        elements.add(new TDateFormatElement.ConstantText(sb.toString()));
-    }
-
-    private int parseRepetitions() {
-        int count = 1;
-        char orig = pattern.charAt(index++);
-        while (index < pattern.length() && pattern.charAt(index) == orig) {
-            ++index;
-            ++count;
-        }
-        return count;
+    private static boolean isField(char c) {
+        return "GyYMLwWDdFEcuaHkKhmsSzZX".indexOf(c) >= 0;
     }
 }
@@ -0,0 +1,47 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util;
+
+import java.io.IOException;
+import org.teavm.backend.javascript.codegen.SourceWriter;
+import org.teavm.backend.javascript.spi.Generator;
+import org.teavm.backend.javascript.spi.GeneratorContext;
+import org.teavm.model.MethodReference;
+
+public class ArraysNativeGenerator implements Generator {
+    @Override
+    public void generate(GeneratorContext context, SourceWriter writer, MethodReference methodRef) throws IOException {
+        switch (methodRef.getName()) {
+            case "fillRange":
+                generateFillRange(context, writer);
+                break;
+        }
+    }
+
+    private void generateFillRange(GeneratorContext context, SourceWriter writer) throws IOException {
+        String array = context.getParameterName(1);
+        String fromIndex = context.getParameterName(2);
+        String toIndex = context.getParameterName(3);
+        writer.append("var data = " + array + ".data, value = data[" + fromIndex + "];").softNewLine();
+        writer.append("if (typeof data.fill === 'function') {").indent().softNewLine();
+        writer.append("data.fill(value, " + fromIndex + ", " + toIndex + ");").softNewLine();
+        writer.outdent().append("} else {").indent().softNewLine();
+        writer.append("while (" + fromIndex + " < " + toIndex + ") {").indent().softNewLine();
+        writer.append("data[" + fromIndex + "++] = value;").softNewLine();
+        writer.outdent().append("}").softNewLine();
+        writer.outdent().append("}").softNewLine();
+    }
+}
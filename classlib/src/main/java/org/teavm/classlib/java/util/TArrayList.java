@@ -18,6 +18,8 @@ package org.teavm.classlib.java.util;
 import java.util.Arrays;
 import org.teavm.classlib.java.io.TSerializable;
 import org.teavm.classlib.java.lang.*;
+import org.teavm.classlib.java.util.stream.TStream;
+import org.teavm.classlib.java.util.stream.impl.TArrayStreamImpl;
 import org.teavm.interop.Rename;
 
 /**
@@ -143,6 +145,17 @@ public class TArrayList<E> extends TAbstractList<E> implements TCloneable, TSeri
         return true;
     }
 
+    @Override
+    public void sort(TComparator<? super E> c) {
+        TArrays.sort(array, 0, size, c);
+        ++modCount;
+    }
+
+    @Override
+    public TStream<E> stream() {
+        return new TArrayStreamImpl<>(array, 0, size);
+    }
+
     @Override
     protected void removeRange(int start, int end) {
         if (start > end) {
@@ -17,6 +17,8 @@ package org.teavm.classlib.java.util;
 
 import java.lang.reflect.Array;
 import java.util.Objects;
+import org.teavm.backend.javascript.spi.GeneratedBy;
+import org.teavm.classlib.java.lang.TArrayIndexOutOfBoundsException;
 import org.teavm.classlib.java.lang.TClass;
 import org.teavm.classlib.java.lang.TComparable;
 import org.teavm.classlib.java.lang.TDouble;
@@ -28,8 +30,24 @@ import org.teavm.classlib.java.lang.TObject;
 import org.teavm.classlib.java.lang.TString;
 import org.teavm.classlib.java.lang.TStringBuilder;
 import org.teavm.classlib.java.lang.reflect.TArray;
+import org.teavm.classlib.java.util.stream.TDoubleStream;
+import org.teavm.classlib.java.util.stream.TIntStream;
+import org.teavm.classlib.java.util.stream.TLongStream;
+import org.teavm.classlib.java.util.stream.TStream;
+import org.teavm.classlib.java.util.stream.impl.TArrayDoubleStreamImpl;
+import org.teavm.classlib.java.util.stream.impl.TArrayIntStreamImpl;
+import org.teavm.classlib.java.util.stream.impl.TArrayLongStreamImpl;
+import org.teavm.classlib.java.util.stream.impl.TArrayStreamImpl;
+import org.teavm.interop.Address;
+import org.teavm.interop.DelegateTo;
+import org.teavm.interop.Unmanaged;
+import org.teavm.runtime.Allocator;
+import org.teavm.runtime.RuntimeArray;
+import org.teavm.runtime.RuntimeClass;
 
 public class TArrays extends TObject {
+    private static final int INSERTION_SORT_THRESHOLD = 47;
+
     public static char[] copyOf(char[] array, int length) {
         char[] result = new char[length];
         int sz = TMath.min(length, array.length);
@@ -324,11 +342,10 @@ public class TArrays extends TObject {
     }
 
     public static void fill(long[] a, int fromIndex, int toIndex, long val) {
-        if (fromIndex > toIndex) {
-            throw new TIllegalArgumentException();
-        }
-        while (fromIndex < toIndex) {
-            a[fromIndex++] = val;
+        checkFillRange(a.length, fromIndex, toIndex);
+        if (fromIndex < toIndex) {
+            a[fromIndex] = val;
+            fillRange(a, fromIndex, toIndex);
         }
     }
 
@@ -337,11 +354,10 @@ public class TArrays extends TObject {
     }
 
     public static void fill(int[] a, int fromIndex, int toIndex, int val) {
-        if (fromIndex > toIndex) {
-            throw new TIllegalArgumentException();
-        }
-        while (fromIndex < toIndex) {
-            a[fromIndex++] = val;
+        checkFillRange(a.length, fromIndex, toIndex);
+        if (fromIndex < toIndex) {
+            a[fromIndex] = val;
+            fillRange(a, fromIndex, toIndex);
         }
     }
 
@@ -350,11 +366,10 @@ public class TArrays extends TObject {
     }
 
     public static void fill(short[] a, int fromIndex, int toIndex, short val) {
-        if (fromIndex > toIndex) {
-            throw new TIllegalArgumentException();
-        }
-        while (fromIndex < toIndex) {
-            a[fromIndex++] = val;
+        checkFillRange(a.length, fromIndex, toIndex);
+        if (fromIndex < toIndex) {
+            a[fromIndex] = val;
+            fillRange(a, fromIndex, toIndex);
         }
     }
 
@@ -363,11 +378,10 @@ public class TArrays extends TObject {
     }
 
     public static void fill(char[] a, int fromIndex, int toIndex, char val) {
-        if (fromIndex > toIndex) {
-            throw new TIllegalArgumentException();
-        }
-        while (fromIndex < toIndex) {
-            a[fromIndex++] = val;
+        checkFillRange(a.length, fromIndex, toIndex);
+        if (fromIndex < toIndex) {
+            a[fromIndex] = val;
+            fillRange(a, fromIndex, toIndex);
         }
     }
 
@@ -376,11 +390,10 @@ public class TArrays extends TObject {
     }
 
     public static void fill(byte[] a, int fromIndex, int toIndex, byte val) {
-        if (fromIndex > toIndex) {
-            throw new TIllegalArgumentException();
-        }
-        while (fromIndex < toIndex) {
-            a[fromIndex++] = val;
+        checkFillRange(a.length, fromIndex, toIndex);
+        if (fromIndex < toIndex) {
+            a[fromIndex] = val;
+            fillRange(a, fromIndex, toIndex);
         }
     }
 
@@ -389,11 +402,10 @@ public class TArrays extends TObject {
     }
 
     public static void fill(boolean[] a, int fromIndex, int toIndex, boolean val) {
-        if (fromIndex > toIndex) {
-            throw new TIllegalArgumentException();
-        }
-        while (fromIndex < toIndex) {
-            a[fromIndex++] = val;
+        checkFillRange(a.length, fromIndex, toIndex);
+        if (fromIndex < toIndex) {
+            a[fromIndex] = val;
+            fillRange(a, fromIndex, toIndex);
         }
     }
 
@@ -402,11 +414,10 @@ public class TArrays extends TObject {
     }
 
     public static void fill(float[] a, int fromIndex, int toIndex, float val) {
-        if (fromIndex > toIndex) {
-            throw new TIllegalArgumentException();
-        }
-        while (fromIndex < toIndex) {
-            a[fromIndex++] = val;
+        checkFillRange(a.length, fromIndex, toIndex);
+        if (fromIndex < toIndex) {
+            a[fromIndex] = val;
+            fillRange(a, fromIndex, toIndex);
         }
     }
 
@@ -415,11 +426,10 @@ public class TArrays extends TObject {
     }
 
     public static void fill(double[] a, int fromIndex, int toIndex, double val) {
-        if (fromIndex > toIndex) {
-            throw new TIllegalArgumentException();
-        }
-        while (fromIndex < toIndex) {
-            a[fromIndex++] = val;
+        checkFillRange(a.length, fromIndex, toIndex);
+        if (fromIndex < toIndex) {
+            a[fromIndex] = val;
+            fillRange(a, fromIndex, toIndex);
         }
     }
 
@@ -428,9 +438,7 @@ public class TArrays extends TObject {
     }
 
     public static void fill(TObject[] a, int fromIndex, int toIndex, TObject val) {
-        if (fromIndex > toIndex) {
-            throw new TIllegalArgumentException();
-        }
+        checkFillRange(a.length, fromIndex, toIndex);
         while (fromIndex < toIndex) {
             a[fromIndex++] = val;
         }
@@ -440,437 +448,1049 @@ public class TArrays extends TObject {
         fill(a, 0, a.length, val);
     }
 
-    public static void sort(int[] a, int fromIndex, int toIndex) {
-        int[] subarray = new int[toIndex - fromIndex];
-        for (int i = fromIndex; i < toIndex; ++i) {
-            subarray[i - fromIndex] = a[i];
+    private static void checkFillRange(int length, int fromIndex, int toIndex) {
+        if (fromIndex > toIndex) {
+            throw new TIllegalArgumentException();
         }
-        sort(subarray);
-        for (int i = fromIndex; i < toIndex; ++i) {
-            a[i] = subarray[i - fromIndex];
+        if (fromIndex < 0 || toIndex > length) {
+            throw new TArrayIndexOutOfBoundsException();
         }
     }
 
-    public static void sort(int[] a) {
-        if (a.length == 0) {
-            return;
-        }
-        int[] first = a;
-        int[] second = new int[a.length];
-        int chunkSize = 1;
-        while (chunkSize < a.length) {
-            for (int i = 0; i < first.length; i += chunkSize * 2) {
-                merge(first, second, i, Math.min(first.length, i + chunkSize),
-                        Math.min(first.length, i + 2 * chunkSize));
-            }
-            int[] tmp = first;
-            first = second;
-            second = tmp;
-            chunkSize *= 2;
+    /**
+     * Copies the element at <code>fromIndex</code> of a primitive array to the rest of the range.
+     */
+    @GeneratedBy(ArraysNativeGenerator.class)
+    @DelegateTo("fillRangeLowLevel")
+    private static native void fillRange(Object array, int fromIndex, int toIndex);
+
+    @Unmanaged
+    static void fillRangeLowLevel(RuntimeArray array, int fromIndex, int toIndex) {
+        int itemSize = RuntimeClass.getClass(array).itemType.size;
+        Address start = Address.align(array.toAddress().add(RuntimeArray.class, 1), itemSize);
+        start = start.add(itemSize * fromIndex);
+
+        int count = toIndex - fromIndex;
+        int filled = 1;
+        while (filled < count) {
+            int chunk = filled < count - filled ? filled : count - filled;
+            Allocator.moveMemoryBlock(start, start.add(itemSize * filled), chunk * itemSize);
+            filled += chunk;
         }
-        if (first != a) {
-            for (int i = 0; i < first.length; ++i) {
-                second[i] = first[i];
-            }
+    }
+
+    public static void sort(int[] a, int fromIndex, int toIndex) {
+        if (fromIndex > toIndex) {
+            throw new TIllegalArgumentException();
         }
+        quickSort(a, fromIndex, toIndex - 1);
     }
 
-    private static void merge(int[] a, int[] b, int from, int split, int to) {
-        int index = from;
-        int from2 = split;
-        while (true) {
-            if (from == split) {
-                while (from2 < to) {
-                    b[index++] = a[from2++];
+    public static void sort(int[] a) {
+        quickSort(a, 0, a.length - 1);
+    }
+
+    // Dual-pivot quicksort. Pivots are taken as second and fourth of five evenly spaced elements.
+    // Sorts the smaller partitions recursively and continues with the largest one, so that recursion
+    // depth is logarithmic.
+    private static void quickSort(int[] a, int left, int right) {
+        while (right - left >= INSERTION_SORT_THRESHOLD) {
+            int sixth = (right - left + 1) / 6;
+            int e3 = (left + right) >>> 1;
+            int e2 = e3 - sixth;
+            int e1 = e2 - sixth;
+            int e4 = e3 + sixth;
+            int e5 = e4 + sixth;
+            compareExchange(a, e1, e2);
+            compareExchange(a, e4, e5);
+            compareExchange(a, e3, e5);
+            compareExchange(a, e3, e4);
+            compareExchange(a, e1, e4);
+            compareExchange(a, e1, e3);
+            compareExchange(a, e2, e5);
+            compareExchange(a, e2, e4);
+            compareExchange(a, e2, e3);
+
+            int pivot1 = a[e2];
+            int pivot2 = a[e4];
+            a[e2] = a[left];
+            a[e4] = a[right];
+            int less = left + 1;
+            int great = right - 1;
+            boolean distinctPivots = pivot1 != pivot2;
+            for (int k = less; k <= great; ++k) {
+                int value = a[k];
+                if (value < pivot1) {
+                    a[k] = a[less];
+                    a[less++] = value;
+                } else if (value > pivot2) {
+                    while (a[great] > pivot2 && k < great) {
+                        --great;
+                    }
+                    a[k] = a[great];
+                    a[great--] = value;
+                    value = a[k];
+                    if (value < pivot1) {
+                        a[k] = a[less];
+                        a[less++] = value;
+                    }
+                }
+            }
+            a[left] = a[less - 1];
+            a[less - 1] = pivot1;
+            a[right] = a[great + 1];
+            a[great + 1] = pivot2;
+
+            int leftEnd = less - 2;
+            int rightStart = great + 2;
+            if (distinctPivots && less < e1 && e5 < great) {
+                // Middle part is too large, probably due to many elements equal to pivots. Move them to the
+                // ends of the middle part, where they are already in their final positions. Without this
+                // input of few distinct values is sorted in quadratic time.
+                while (a[less] == pivot1) {
+                    ++less;
+                }
+                while (a[great] == pivot2) {
+                    --great;
                 }
-                break;
-            } else if (from2 == to) {
-                while (from < split) {
-                    b[index++] = a[from++];
+                for (int k = less; k <= great; ++k) {
+                    int value = a[k];
+                    if (value == pivot1) {
+                        a[k] = a[less];
+                        a[less++] = value;
+                    } else if (value == pivot2) {
+                        while (a[great] == pivot2 && k < great) {
+                            --great;
+                        }
+                        a[k] = a[great];
+                        a[great--] = value;
+                        value = a[k];
+                        if (value == pivot1) {
+                            a[k] = a[less];
+                            a[less++] = value;
+                        }
+                    }
                 }
-                break;
             }
-            int p = a[from];
-            int q = a[from2];
-            if (p <= q) {
-                b[index++] = p;
-                ++from;
+
+            int leftSize = leftEnd - left + 1;
+            int middleSize = distinctPivots ? great - less + 1 : 0;
+            int rightSize = right - rightStart + 1;
+            if (leftSize >= middleSize && leftSize >= rightSize) {
+                if (distinctPivots) {
+                    quickSort(a, less, great);
+                }
+                quickSort(a, rightStart, right);
+                right = leftEnd;
+            } else if (rightSize >= middleSize) {
+                quickSort(a, left, leftEnd);
+                if (distinctPivots) {
+                    quickSort(a, less, great);
+                }
+                left = rightStart;
             } else {
-                b[index++] = q;
-                ++from2;
+                quickSort(a, left, leftEnd);
+                quickSort(a, rightStart, right);
+                left = less;
+                right = great;
+            }
+        }
+
+        for (int i = left + 1; i <= right; ++i) {
+            int value = a[i];
+            int j = i - 1;
+            while (j >= left && a[j] > value) {
+                a[j + 1] = a[j];
+                --j;
             }
+            a[j + 1] = value;
         }
     }
 
-    public static void sort(long[] a, int fromIndex, int toIndex) {
-        long[] subarray = new long[toIndex - fromIndex];
-        for (int i = fromIndex; i < toIndex; ++i) {
-            subarray[i - fromIndex] = a[i];
+    private static void compareExchange(int[] a, int i, int j) {
+        int first = a[i];
+        int second = a[j];
+        if (first > second) {
+            a[i] = second;
+            a[j] = first;
         }
-        sort(subarray);
-        for (int i = fromIndex; i < toIndex; ++i) {
-            a[i] = subarray[i - fromIndex];
+    }
+
+    public static void sort(long[] a, int fromIndex, int toIndex) {
+        if (fromIndex > toIndex) {
+            throw new TIllegalArgumentException();
         }
+        quickSort(a, fromIndex, toIndex - 1);
     }
 
     public static void sort(long[] a) {
-        if (a.length == 0) {
-            return;
-        }
-        long[] first = a;
-        long[] second = new long[a.length];
-        int chunkSize = 1;
-        while (chunkSize < a.length) {
-            for (int i = 0; i < first.length; i += chunkSize * 2) {
-                merge(first, second, i, Math.min(first.length, i + chunkSize),
-                        Math.min(first.length, i + 2 * chunkSize));
+        quickSort(a, 0, a.length - 1);
+    }
+
+    private static void quickSort(long[] a, int left, int right) {
+        while (right - left >= INSERTION_SORT_THRESHOLD) {
+            int sixth = (right - left + 1) / 6;
+            int e3 = (left + right) >>> 1;
+            int e2 = e3 - sixth;
+            int e1 = e2 - sixth;
+            int e4 = e3 + sixth;
+            int e5 = e4 + sixth;
+            compareExchange(a, e1, e2);
+            compareExchange(a, e4, e5);
+            compareExchange(a, e3, e5);
+            compareExchange(a, e3, e4);
+            compareExchange(a, e1, e4);
+            compareExchange(a, e1, e3);
+            compareExchange(a, e2, e5);
+            compareExchange(a, e2, e4);
+            compareExchange(a, e2, e3);
+
+            long pivot1 = a[e2];
+            long pivot2 = a[e4];
+            a[e2] = a[left];
+            a[e4] = a[right];
+            int less = left + 1;
+            int great = right - 1;
+            boolean distinctPivots = pivot1 != pivot2;
+            for (int k = less; k <= great; ++k) {
+                long value = a[k];
+                if (value < pivot1) {
+                    a[k] = a[less];
+                    a[less++] = value;
+                } else if (value > pivot2) {
+                    while (a[great] > pivot2 && k < great) {
+                        --great;
+                    }
+                    a[k] = a[great];
+                    a[great--] = value;
+                    value = a[k];
+                    if (value < pivot1) {
+                        a[k] = a[less];
+                        a[less++] = value;
+                    }
+                }
             }
-            long[] tmp = first;
-            first = second;
-            second = tmp;
-            chunkSize *= 2;
-        }
-        if (first != a) {
-            for (int i = 0; i < first.length; ++i) {
-                second[i] = first[i];
+            a[left] = a[less - 1];
+            a[less - 1] = pivot1;
+            a[right] = a[great + 1];
+            a[great + 1] = pivot2;
+
+            int leftEnd = less - 2;
+            int rightStart = great + 2;
+            if (distinctPivots && less < e1 && e5 < great) {
+                // Middle part is too large, probably due to many elements equal to pivots. Move them to the
+                // ends of the middle part, where they are already in their final positions. Without this
+                // input of few distinct values is sorted in quadratic time.
+                while (a[less] == pivot1) {
+                    ++less;
+                }
+                while (a[great] == pivot2) {
+                    --great;
+                }
+                for (int k = less; k <= great; ++k) {
+                    long value = a[k];
+                    if (value == pivot1) {
+                        a[k] = a[less];
+                        a[less++] = value;
+                    } else if (value == pivot2) {
+                        while (a[great] == pivot2 && k < great) {
+                            --great;
+                        }
+                        a[k] = a[great];
+                        a[great--] = value;
+                        value = a[k];
+                        if (value == pivot1) {
+                            a[k] = a[less];
+                            a[less++] = value;
+                        }
+                    }
+                }
             }
-        }
-    }
 
-    private static void merge(long[] a, long[] b, int from, int split, int to) {
-        int index = from;
-        int from2 = split;
-        while (true) {
-            if (from == split) {
-                while (from2 < to) {
-                    b[index++] = a[from2++];
+            int leftSize = leftEnd - left + 1;
+            int middleSize = distinctPivots ? great - less + 1 : 0;
+            int rightSize = right - rightStart + 1;
+            if (leftSize >= middleSize && leftSize >= rightSize) {
+                if (distinctPivots) {
+                    quickSort(a, less, great);
                 }
-                break;
-            } else if (from2 == to) {
-                while (from < split) {
-                    b[index++] = a[from++];
+                quickSort(a, rightStart, right);
+                right = leftEnd;
+            } else if (rightSize >= middleSize) {
+                quickSort(a, left, leftEnd);
+                if (distinctPivots) {
+                    quickSort(a, less, great);
                 }
-                break;
-            }
-            long p = a[from];
-            long q = a[from2];
-            if (p <= q) {
-                b[index++] = p;
-                ++from;
+                left = rightStart;
             } else {
-                b[index++] = q;
-                ++from2;
+                quickSort(a, left, leftEnd);
+                quickSort(a, rightStart, right);
+                left = less;
+                right = great;
             }
         }
+
+        for (int i = left + 1; i <= right; ++i) {
+            long value = a[i];
+            int j = i - 1;
+            while (j >= left && a[j] > value) {
+                a[j + 1] = a[j];
+                --j;
+            }
+            a[j + 1] = value;
+        }
     }
 
-    public static void sort(short[] a, int fromIndex, int toIndex) {
-        short[] subarray = new short[toIndex - fromIndex];
-        for (int i = fromIndex; i < toIndex; ++i) {
-            subarray[i - fromIndex] = a[i];
+    private static void compareExchange(long[] a, int i, int j) {
+        long first = a[i];
+        long second = a[j];
+        if (first > second) {
+            a[i] = second;
+            a[j] = first;
         }
-        sort(subarray);
-        for (int i = fromIndex; i < toIndex; ++i) {
-            a[i] = subarray[i - fromIndex];
+    }
+
+    public static void sort(short[] a, int fromIndex, int toIndex) {
+        if (fromIndex > toIndex) {
+            throw new TIllegalArgumentException();
         }
+        quickSort(a, fromIndex, toIndex - 1);
     }
 
     public static void sort(short[] a) {
-        if (a.length == 0) {
-            return;
-        }
-        short[] first = a;
-        short[] second = new short[a.length];
-        int chunkSize = 1;
-        while (chunkSize < a.length) {
-            for (int i = 0; i < first.length; i += chunkSize * 2) {
-                merge(first, second, i, Math.min(first.length, i + chunkSize),
-                        Math.min(first.length, i + 2 * chunkSize));
+        quickSort(a, 0, a.length - 1);
+    }
+
+    private static void quickSort(short[] a, int left, int right) {
+        while (right - left >= INSERTION_SORT_THRESHOLD) {
+            int sixth = (right - left + 1) / 6;
+            int e3 = (left + right) >>> 1;
+            int e2 = e3 - sixth;
+            int e1 = e2 - sixth;
+            int e4 = e3 + sixth;
+            int e5 = e4 + sixth;
+            compareExchange(a, e1, e2);
+            compareExchange(a, e4, e5);
+            compareExchange(a, e3, e5);
+            compareExchange(a, e3, e4);
+            compareExchange(a, e1, e4);
+            compareExchange(a, e1, e3);
+            compareExchange(a, e2, e5);
+            compareExchange(a, e2, e4);
+            compareExchange(a, e2, e3);
+
+            short pivot1 = a[e2];
+            short pivot2 = a[e4];
+            a[e2] = a[left];
+            a[e4] = a[right];
+            int less = left + 1;
+            int great = right - 1;
+            boolean distinctPivots = pivot1 != pivot2;
+            for (int k = less; k <= great; ++k) {
+                short value = a[k];
+                if (value < pivot1) {
+                    a[k] = a[less];
+                    a[less++] = value;
+                } else if (value > pivot2) {
+                    while (a[great] > pivot2 && k < great) {
+                        --great;
+                    }
+                    a[k] = a[great];
+                    a[great--] = value;
+                    value = a[k];
+                    if (value < pivot1) {
+                        a[k] = a[less];
+                        a[less++] = value;
+                    }
+                }
             }
-            short[] tmp = first;
-            first = second;
-            second = tmp;
-            chunkSize *= 2;
-        }
-        if (first != a) {
-            for (int i = 0; i < first.length; ++i) {
-                second[i] = first[i];
+            a[left] = a[less - 1];
+            a[less - 1] = pivot1;
+            a[right] = a[great + 1];
+            a[great + 1] = pivot2;
+
+            int leftEnd = less - 2;
+            int rightStart = great + 2;
+            if (distinctPivots && less < e1 && e5 < great) {
+                // Middle part is too large, probably due to many elements equal to pivots. Move them to the
+                // ends of the middle part, where they are already in their final positions. Without this
+                // input of few distinct values is sorted in quadratic time.
+                while (a[less] == pivot1) {
+                    ++less;
+                }
+                while (a[great] == pivot2) {
+                    --great;
+                }
+                for (int k = less; k <= great; ++k) {
+                    short value = a[k];
+                    if (value == pivot1) {
+                        a[k] = a[less];
+                        a[less++] = value;
+                    } else if (value == pivot2) {
+                        while (a[great] == pivot2 && k < great) {
+                            --great;
+                        }
+                        a[k] = a[great];
+                        a[great--] = value;
+                        value = a[k];
+                        if (value == pivot1) {
+                            a[k] = a[less];
+                            a[less++] = value;
+                        }
+                    }
+                }
             }
-        }
-    }
 
-    private static void merge(short[] a, short[] b, int from, int split, int to) {
-        int index = from;
-        int from2 = split;
-        while (true) {
-            if (from == split) {
-                while (from2 < to) {
-                    b[index++] = a[from2++];
+            int leftSize = leftEnd - left + 1;
+            int middleSize = distinctPivots ? great - less + 1 : 0;
+            int rightSize = right - rightStart + 1;
+            if (leftSize >= middleSize && leftSize >= rightSize) {
+                if (distinctPivots) {
+                    quickSort(a, less, great);
                 }
-                break;
-            } else if (from2 == to) {
-                while (from < split) {
-                    b[index++] = a[from++];
+                quickSort(a, rightStart, right);
+                right = leftEnd;
+            } else if (rightSize >= middleSize) {
+                quickSort(a, left, leftEnd);
+                if (distinctPivots) {
+                    quickSort(a, less, great);
                 }
-                break;
-            }
-            short p = a[from];
-            short q = a[from2];
-            if (p <= q) {
-                b[index++] = p;
-                ++from;
+                left = rightStart;
             } else {
-                b[index++] = q;
-                ++from2;
+                quickSort(a, left, leftEnd);
+                quickSort(a, rightStart, right);
+                left = less;
+                right = great;
+            }
+        }
+
+        for (int i = left + 1; i <= right; ++i) {
+            short value = a[i];
+            int j = i - 1;
+            while (j >= left && a[j] > value) {
+                a[j + 1] = a[j];
+                --j;
             }
+            a[j + 1] = value;
         }
     }
 
-    public static void sort(char[] a, int fromIndex, int toIndex) {
-        char[] subarray = new char[toIndex - fromIndex];
-        for (int i = fromIndex; i < toIndex; ++i) {
-            subarray[i - fromIndex] = a[i];
+    private static void compareExchange(short[] a, int i, int j) {
+        short first = a[i];
+        short second = a[j];
+        if (first > second) {
+            a[i] = second;
+            a[j] = first;
         }
-        sort(subarray);
-        for (int i = fromIndex; i < toIndex; ++i) {
-            a[i] = subarray[i - fromIndex];
+    }
+
+    public static void sort(char[] a, int fromIndex, int toIndex) {
+        if (fromIndex > toIndex) {
+            throw new TIllegalArgumentException();
         }
+        quickSort(a, fromIndex, toIndex - 1);
     }
 
     public static void sort(char[] a) {
-        if (a.length == 0) {
-            return;
-        }
-        char[] first = a;
-        char[] second = new char[a.length];
-        int chunkSize = 1;
-        while (chunkSize < a.length) {
-            for (int i = 0; i < first.length; i += chunkSize * 2) {
-                merge(first, second, i, Math.min(first.length, i + chunkSize),
-                        Math.min(first.length, i + 2 * chunkSize));
+        quickSort(a, 0, a.length - 1);
+    }
+
+    private static void quickSort(char[] a, int left, int right) {
+        while (right - left >= INSERTION_SORT_THRESHOLD) {
+            int sixth = (right - left + 1) / 6;
+            int e3 = (left + right) >>> 1;
+            int e2 = e3 - sixth;
+            int e1 = e2 - sixth;
+            int e4 = e3 + sixth;
+            int e5 = e4 + sixth;
+            compareExchange(a, e1, e2);
+            compareExchange(a, e4, e5);
+            compareExchange(a, e3, e5);
+            compareExchange(a, e3, e4);
+            compareExchange(a, e1, e4);
+            compareExchange(a, e1, e3);
+            compareExchange(a, e2, e5);
+            compareExchange(a, e2, e4);
+            compareExchange(a, e2, e3);
+
+            char pivot1 = a[e2];
+            char pivot2 = a[e4];
+            a[e2] = a[left];
+            a[e4] = a[right];
+            int less = left + 1;
+            int great = right - 1;
+            boolean distinctPivots = pivot1 != pivot2;
+            for (int k = less; k <= great; ++k) {
+                char value = a[k];
+                if (value < pivot1) {
+                    a[k] = a[less];
+                    a[less++] = value;
+                } else if (value > pivot2) {
+                    while (a[great] > pivot2 && k < great) {
+                        --great;
+                    }
+                    a[k] = a[great];
+                    a[great--] = value;
+                    value = a[k];
+                    if (value < pivot1) {
+                        a[k] = a[less];
+                        a[less++] = value;
+                    }
+                }
             }
-            char[] tmp = first;
-            first = second;
-            second = tmp;
-            chunkSize *= 2;
-        }
-        if (first != a) {
-            for (int i = 0; i < first.length; ++i) {
-                second[i] = first[i];
+            a[left] = a[less - 1];
+            a[less - 1] = pivot1;
+            a[right] = a[great + 1];
+            a[great + 1] = pivot2;
+
+            int leftEnd = less - 2;
+            int rightStart = great + 2;
+            if (distinctPivots && less < e1 && e5 < great) {
+                // Middle part is too large, probably due to many elements equal to pivots. Move them to the
+                // ends of the middle part, where they are already in their final positions. Without this
+                // input of few distinct values is sorted in quadratic time.
+                while (a[less] == pivot1) {
+                    ++less;
+                }
+                while (a[great] == pivot2) {
+                    --great;
+                }
+                for (int k = less; k <= great; ++k) {
+                    char value = a[k];
+                    if (value == pivot1) {
+                        a[k] = a[less];
+                        a[less++] = value;
+                    } else if (value == pivot2) {
+                        while (a[great] == pivot2 && k < great) {
+                            --great;
+                        }
+                        a[k] = a[great];
+                        a[great--] = value;
+                        value = a[k];
+                        if (value == pivot1) {
+                            a[k] = a[less];
+                            a[less++] = value;
+                        }
+                    }
+                }
             }
-        }
-    }
 
-    private static void merge(char[] a, char[] b, int from, int split, int to) {
-        int index = from;
-        int from2 = split;
-        while (true) {
-            if (from == split) {
-                while (from2 < to) {
-                    b[index++] = a[from2++];
+            int leftSize = leftEnd - left + 1;
+            int middleSize = distinctPivots ? great - less + 1 : 0;
+            int rightSize = right - rightStart + 1;
+            if (leftSize >= middleSize && leftSize >= rightSize) {
+                if (distinctPivots) {
+                    quickSort(a, less, great);
                 }
-                break;
-            } else if (from2 == to) {
-                while (from < split) {
-                    b[index++] = a[from++];
+                quickSort(a, rightStart, right);
+                right = leftEnd;
+            } else if (rightSize >= middleSize) {
+                quickSort(a, left, leftEnd);
+                if (distinctPivots) {
+                    quickSort(a, less, great);
                 }
-                break;
-            }
-            char p = a[from];
-            char q = a[from2];
-            if (p <= q) {
-                b[index++] = p;
-                ++from;
+                left = rightStart;
             } else {
-                b[index++] = q;
-                ++from2;
+                quickSort(a, left, leftEnd);
+                quickSort(a, rightStart, right);
+                left = less;
+                right = great;
+            }
+        }
+
+        for (int i = left + 1; i <= right; ++i) {
+            char value = a[i];
+            int j = i - 1;
+            while (j >= left && a[j] > value) {
+                a[j + 1] = a[j];
+                --j;
             }
+            a[j + 1] = value;
         }
     }
 
-    public static void sort(byte[] a, int fromIndex, int toIndex) {
-        byte[] subarray = new byte[toIndex - fromIndex];
-        for (int i = fromIndex; i < toIndex; ++i) {
-            subarray[i - fromIndex] = a[i];
+    private static void compareExchange(char[] a, int i, int j) {
+        char first = a[i];
+        char second = a[j];
+        if (first > second) {
+            a[i] = second;
+            a[j] = first;
         }
-        sort(subarray);
-        for (int i = fromIndex; i < toIndex; ++i) {
-            a[i] = subarray[i - fromIndex];
+    }
+
+    public static void sort(byte[] a, int fromIndex, int toIndex) {
+        if (fromIndex > toIndex) {
+            throw new TIllegalArgumentException();
         }
+        quickSort(a, fromIndex, toIndex - 1);
     }
 
     public static void sort(byte[] a) {
-        if (a.length == 0) {
-            return;
-        }
-        byte[] first = a;
-        byte[] second = new byte[a.length];
-        int chunkSize = 1;
-        while (chunkSize < a.length) {
-            for (int i = 0; i < first.length; i += chunkSize * 2) {
-                merge(first, second, i, Math.min(first.length, i + chunkSize),
-                        Math.min(first.length, i + 2 * chunkSize));
+        quickSort(a, 0, a.length - 1);
+    }
+
+    private static void quickSort(byte[] a, int left, int right) {
+        while (right - left >= INSERTION_SORT_THRESHOLD) {
+            int sixth = (right - left + 1) / 6;
+            int e3 = (left + right) >>> 1;
+            int e2 = e3 - sixth;
+            int e1 = e2 - sixth;
+            int e4 = e3 + sixth;
+            int e5 = e4 + sixth;
+            compareExchange(a, e1, e2);
+            compareExchange(a, e4, e5);
+            compareExchange(a, e3, e5);
+            compareExchange(a, e3, e4);
+            compareExchange(a, e1, e4);
+            compareExchange(a, e1, e3);
+            compareExchange(a, e2, e5);
+            compareExchange(a, e2, e4);
+            compareExchange(a, e2, e3);
+
+            byte pivot1 = a[e2];
+            byte pivot2 = a[e4];
+            a[e2] = a[left];
+            a[e4] = a[right];
+            int less = left + 1;
+            int great = right - 1;
+            boolean distinctPivots = pivot1 != pivot2;
+            for (int k = less; k <= great; ++k) {
+                byte value = a[k];
+                if (value < pivot1) {
+                    a[k] = a[less];
+                    a[less++] = value;
+                } else if (value > pivot2) {
+                    while (a[great] > pivot2 && k < great) {
+                        --great;
+                    }
+                    a[k] = a[great];
+                    a[great--] = value;
+                    value = a[k];
+                    if (value < pivot1) {
+                        a[k] = a[less];
+                        a[less++] = value;
+                    }
+                }
             }
-            byte[] tmp = first;
-            first = second;
-            second = tmp;
-            chunkSize *= 2;
-        }
-        if (first != a) {
-            for (int i = 0; i < first.length; ++i) {
-                second[i] = first[i];
+            a[left] = a[less - 1];
+            a[less - 1] = pivot1;
+            a[right] = a[great + 1];
+            a[great + 1] = pivot2;
+
+            int leftEnd = less - 2;
+            int rightStart = great + 2;
+            if (distinctPivots && less < e1 && e5 < great) {
+                // Middle part is too large, probably due to many elements equal to pivots. Move them to the
+                // ends of the middle part, where they are already in their final positions. Without this
+                // input of few distinct values is sorted in quadratic time.
+                while (a[less] == pivot1) {
+                    ++less;
+                }
+                while (a[great] == pivot2) {
+                    --great;
+                }
+                for (int k = less; k <= great; ++k) {
+                    byte value = a[k];
+                    if (value == pivot1) {
+                        a[k] = a[less];
+                        a[less++] = value;
+                    } else if (value == pivot2) {
+                        while (a[great] == pivot2 && k < great) {
+                            --great;
+                        }
+                        a[k] = a[great];
+                        a[great--] = value;
+                        value = a[k];
+                        if (value == pivot1) {
+                            a[k] = a[less];
+                            a[less++] = value;
+                        }
+                    }
+                }
             }
-        }
-    }
 
-    private static void merge(byte[] a, byte[] b, int from, int split, int to) {
-        int index = from;
-        int from2 = split;
-        while (true) {
-            if (from == split) {
-                while (from2 < to) {
-                    b[index++] = a[from2++];
+            int leftSize = leftEnd - left + 1;
+            int middleSize = distinctPivots ? great - less + 1 : 0;
+            int rightSize = right - rightStart + 1;
+            if (leftSize >= middleSize && leftSize >= rightSize) {
+                if (distinctPivots) {
+                    quickSort(a, less, great);
                 }
-                break;
-            } else if (from2 == to) {
-                while (from < split) {
-                    b[index++] = a[from++];
+                quickSort(a, rightStart, right);
+                right = leftEnd;
+            } else if (rightSize >= middleSize) {
+                quickSort(a, left, leftEnd);
+                if (distinctPivots) {
+                    quickSort(a, less, great);
                 }
-                break;
-            }
-            byte p = a[from];
-            byte q = a[from2];
-            if (p <= q) {
-                b[index++] = p;
-                ++from;
+                left = rightStart;
             } else {
-                b[index++] = q;
-                ++from2;
+                quickSort(a, left, leftEnd);
+                quickSort(a, rightStart, right);
+                left = less;
+                right = great;
             }
         }
+
+        for (int i = left + 1; i <= right; ++i) {
+            byte value = a[i];
+            int j = i - 1;
+            while (j >= left && a[j] > value) {
+                a[j + 1] = a[j];
+                --j;
+            }
+            a[j + 1] = value;
+        }
     }
 
-    public static void sort(float[] a, int fromIndex, int toIndex) {
-        float[] subarray = new float[toIndex - fromIndex];
-        for (int i = fromIndex; i < toIndex; ++i) {
-            subarray[i - fromIndex] = a[i];
+    private static void compareExchange(byte[] a, int i, int j) {
+        byte first = a[i];
+        byte second = a[j];
+        if (first > second) {
+            a[i] = second;
+            a[j] = first;
         }
-        sort(subarray);
-        for (int i = fromIndex; i < toIndex; ++i) {
-            a[i] = subarray[i - fromIndex];
+    }
+
+    public static void sort(float[] a, int fromIndex, int toIndex) {
+        if (fromIndex > toIndex) {
+            throw new TIllegalArgumentException();
         }
+        sortFloats(a, fromIndex, toIndex);
     }
 
     public static void sort(float[] a) {
-        if (a.length == 0) {
-            return;
-        }
-        float[] first = a;
-        float[] second = new float[a.length];
-        int chunkSize = 1;
-        while (chunkSize < a.length) {
-            for (int i = 0; i < first.length; i += chunkSize * 2) {
-                merge(first, second, i, Math.min(first.length, i + chunkSize),
-                        Math.min(first.length, i + 2 * chunkSize));
+        sortFloats(a, 0, a.length);
+    }
+
+    // NaNs are moved to the end and negative zeros are replaced by positive ones, so that the rest can be
+    // sorted with primitive comparison. Negative zeros are restored before positive zeros afterwards.
+    private static void sortFloats(float[] a, int fromIndex, int toIndex) {
+        int end = toIndex;
+        int negativeZeroCount = 0;
+        int i = fromIndex;
+        while (i < end) {
+            float value = a[i];
+            if (value != value) {
+                a[i] = a[--end];
+                a[end] = value;
+            } else {
+                if (value == 0 && 1 / value < 0) {
+                    a[i] = 0;
+                    ++negativeZeroCount;
+                }
+                ++i;
+            }
+        }
+        quickSort(a, fromIndex, end - 1);
+        if (negativeZeroCount > 0) {
+            int low = fromIndex;
+            int high = end - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (a[mid] < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
             }
-            float[] tmp = first;
-            first = second;
-            second = tmp;
-            chunkSize *= 2;
-        }
-        if (first != a) {
-            for (int i = 0; i < first.length; ++i) {
-                second[i] = first[i];
+            while (negativeZeroCount-- > 0) {
+                a[low++] = -0.0f;
+            }
+        }
+    }
+
+    private static void quickSort(float[] a, int left, int right) {
+        while (right - left >= INSERTION_SORT_THRESHOLD) {
+            int sixth = (right - left + 1) / 6;
+            int e3 = (left + right) >>> 1;
+            int e2 = e3 - sixth;
+            int e1 = e2 - sixth;
+            int e4 = e3 + sixth;
+            int e5 = e4 + sixth;
+            compareExchange(a, e1, e2);
+            compareExchange(a, e4, e5);
+            compareExchange(a, e3, e5);
+            compareExchange(a, e3, e4);
+            compareExchange(a, e1, e4);
+            compareExchange(a, e1, e3);
+            compareExchange(a, e2, e5);
+            compareExchange(a, e2, e4);
+            compareExchange(a, e2, e3);
+
+            float pivot1 = a[e2];
+            float pivot2 = a[e4];
+            a[e2] = a[left];
+            a[e4] = a[right];
+            int less = left + 1;
+            int great = right - 1;
+            boolean distinctPivots = pivot1 != pivot2;
+            for (int k = less; k <= great; ++k) {
+                float value = a[k];
+                if (value < pivot1) {
+                    a[k] = a[less];
+                    a[less++] = value;
+                } else if (value > pivot2) {
+                    while (a[great] > pivot2 && k < great) {
+                        --great;
+                    }
+                    a[k] = a[great];
+                    a[great--] = value;
+                    value = a[k];
+                    if (value < pivot1) {
+                        a[k] = a[less];
+                        a[less++] = value;
+                    }
+                }
             }
-        }
-    }
-
-    private static void merge(float[] a, float[] b, int from, int split, int to) {
-        int index = from;
-        int from2 = split;
-        while (true) {
-            if (from == split) {
-                while (from2 < to) {
-                    b[index++] = a[from2++];
+            a[left] = a[less - 1];
+            a[less - 1] = pivot1;
+            a[right] = a[great + 1];
+            a[great + 1] = pivot2;
+
+            int leftEnd = less - 2;
+            int rightStart = great + 2;
+            if (distinctPivots && less < e1 && e5 < great) {
+                // Middle part is too large, probably due to many elements equal to pivots. Move them to the
+                // ends of the middle part, where they are already in their final positions. Without this
+                // input of few distinct values is sorted in quadratic time.
+                while (a[less] == pivot1) {
+                    ++less;
                 }
-                break;
-            } else if (from2 == to) {
-                while (from < split) {
-                    b[index++] = a[from++];
+                while (a[great] == pivot2) {
+                    --great;
+                }
+                for (int k = less; k <= great; ++k) {
+                    float value = a[k];
+                    if (value == pivot1) {
+                        a[k] = a[less];
+                        a[less++] = value;
+                    } else if (value == pivot2) {
+                        while (a[great] == pivot2 && k < great) {
+                            --great;
+                        }
+                        a[k] = a[great];
+                        a[great--] = value;
+                        value = a[k];
+                        if (value == pivot1) {
+                            a[k] = a[less];
+                            a[less++] = value;
+                        }
+                    }
                 }
-                break;
             }
-            float p = a[from];
-            float q = a[from2];
-            if (p <= q) {
-                b[index++] = p;
-                ++from;
+
+            int leftSize = leftEnd - left + 1;
+            int middleSize = distinctPivots ? great - less + 1 : 0;
+            int rightSize = right - rightStart + 1;
+            if (leftSize >= middleSize && leftSize >= rightSize) {
+                if (distinctPivots) {
+                    quickSort(a, less, great);
+                }
+                quickSort(a, rightStart, right);
+                right = leftEnd;
+            } else if (rightSize >= middleSize) {
+                quickSort(a, left, leftEnd);
+                if (distinctPivots) {
+                    quickSort(a, less, great);
+                }
+                left = rightStart;
             } else {
-                b[index++] = q;
-                ++from2;
+                quickSort(a, left, leftEnd);
+                quickSort(a, rightStart, right);
+                left = less;
+                right = great;
+            }
+        }
+
+        for (int i = left + 1; i <= right; ++i) {
+            float value = a[i];
+            int j = i - 1;
+            while (j >= left && a[j] > value) {
+                a[j + 1] = a[j];
+                --j;
             }
+            a[j + 1] = value;
         }
     }
 
-    public static void sort(double[] a, int fromIndex, int toIndex) {
-        double[] subarray = new double[toIndex - fromIndex];
-        for (int i = fromIndex; i < toIndex; ++i) {
-            subarray[i - fromIndex] = a[i];
+    private static void compareExchange(float[] a, int i, int j) {
+        float first = a[i];
+        float second = a[j];
+        if (first > second) {
+            a[i] = second;
+            a[j] = first;
         }
-        sort(subarray);
-        for (int i = fromIndex; i < toIndex; ++i) {
-            a[i] = subarray[i - fromIndex];
+    }
+
+    public static void sort(double[] a, int fromIndex, int toIndex) {
+        if (fromIndex > toIndex) {
+            throw new TIllegalArgumentException();
         }
+        sortDoubles(a, fromIndex, toIndex);
     }
 
     public static void sort(double[] a) {
-        if (a.length == 0) {
-            return;
-        }
-        double[] first = a;
-        double[] second = new double[a.length];
-        int chunkSize = 1;
-        while (chunkSize < a.length) {
-            for (int i = 0; i < first.length; i += chunkSize * 2) {
-                merge(first, second, i, Math.min(first.length, i + chunkSize),
-                        Math.min(first.length, i + 2 * chunkSize));
+        sortDoubles(a, 0, a.length);
+    }
+
+    // NaNs are moved to the end and negative zeros are replaced by positive ones, so that the rest can be
+    // sorted with primitive comparison. Negative zeros are restored before positive zeros afterwards.
+    private static void sortDoubles(double[] a, int fromIndex, int toIndex) {
+        int end = toIndex;
+        int negativeZeroCount = 0;
+        int i = fromIndex;
+        while (i < end) {
+            double value = a[i];
+            if (value != value) {
+                a[i] = a[--end];
+                a[end] = value;
+            } else {
+                if (value == 0 && 1 / value < 0) {
+                    a[i] = 0;
+                    ++negativeZeroCount;
+                }
+                ++i;
+            }
+        }
+        quickSort(a, fromIndex, end - 1);
+        if (negativeZeroCount > 0) {
+            int low = fromIndex;
+            int high = end - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (a[mid] < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
             }
-            double[] tmp = first;
-            first = second;
-            second = tmp;
-            chunkSize *= 2;
-        }
-        if (first != a) {
-            for (int i = 0; i < first.length; ++i) {
-                second[i] = first[i];
+            while (negativeZeroCount-- > 0) {
+                a[low++] = -0.0;
+            }
+        }
+    }
+
+    private static void quickSort(double[] a, int left, int right) {
+        while (right - left >= INSERTION_SORT_THRESHOLD) {
+            int sixth = (right - left + 1) / 6;
+            int e3 = (left + right) >>> 1;
+            int e2 = e3 - sixth;
+            int e1 = e2 - sixth;
+            int e4 = e3 + sixth;
+            int e5 = e4 + sixth;
+            compareExchange(a, e1, e2);
+            compareExchange(a, e4, e5);
+            compareExchange(a, e3, e5);
+            compareExchange(a, e3, e4);
+            compareExchange(a, e1, e4);
+            compareExchange(a, e1, e3);
+            compareExchange(a, e2, e5);
+            compareExchange(a, e2, e4);
+            compareExchange(a, e2, e3);
+
+            double pivot1 = a[e2];
+            double pivot2 = a[e4];
+            a[e2] = a[left];
+            a[e4] = a[right];
+            int less = left + 1;
+            int great = right - 1;
+            boolean distinctPivots = pivot1 != pivot2;
+            for (int k = less; k <= great; ++k) {
+                double value = a[k];
+                if (value < pivot1) {
+                    a[k] = a[less];
+                    a[less++] = value;
+                } else if (value > pivot2) {
+                    while (a[great] > pivot2 && k < great) {
+                        --great;
+                    }
+                    a[k] = a[great];
+                    a[great--] = value;
+                    value = a[k];
+                    if (value < pivot1) {
+                        a[k] = a[less];
+                        a[less++] = value;
+                    }
+                }
             }
-        }
-    }
-
-    private static void merge(double[] a, double[] b, int from, int split, int to) {
-        int index = from;
-        int from2 = split;
-        while (true) {
-            if (from == split) {
-                while (from2 < to) {
-                    b[index++] = a[from2++];
+            a[left] = a[less - 1];
+            a[less - 1] = pivot1;
+            a[right] = a[great + 1];
+            a[great + 1] = pivot2;
+
+            int leftEnd = less - 2;
+            int rightStart = great + 2;
+            if (distinctPivots && less < e1 && e5 < great) {
+                // Middle part is too large, probably due to many elements equal to pivots. Move them to the
+                // ends of the middle part, where they are already in their final positions. Without this
+                // input of few distinct values is sorted in quadratic time.
+                while (a[less] == pivot1) {
+                    ++less;
+                }
+                while (a[great] == pivot2) {
+                    --great;
                 }
-                break;
-            } else if (from2 == to) {
-                while (from < split) {
-                    b[index++] = a[from++];
+                for (int k = less; k <= great; ++k) {
+                    double value = a[k];
+                    if (value == pivot1) {
+                        a[k] = a[less];
+                        a[less++] = value;
+                    } else if (value == pivot2) {
+                        while (a[great] == pivot2 && k < great) {
+                            --great;
+                        }
+                        a[k] = a[great];
+                        a[great--] = value;
+                        value = a[k];
+                        if (value == pivot1) {
+                            a[k] = a[less];
+                            a[less++] = value;
+                        }
+                    }
                 }
-                break;
             }
-            double p = a[from];
-            double q = a[from2];
-            if (p <= q) {
-                b[index++] = p;
-                ++from;
+
+            int leftSize = leftEnd - left + 1;
+            int middleSize = distinctPivots ? great - less + 1 : 0;
+            int rightSize = right - rightStart + 1;
+            if (leftSize >= middleSize && leftSize >= rightSize) {
+                if (distinctPivots) {
+                    quickSort(a, less, great);
+                }
+                quickSort(a, rightStart, right);
+                right = leftEnd;
+            } else if (rightSize >= middleSize) {
+                quickSort(a, left, leftEnd);
+                if (distinctPivots) {
+                    quickSort(a, less, great);
+                }
+                left = rightStart;
             } else {
-                b[index++] = q;
-                ++from2;
+                quickSort(a, left, leftEnd);
+                quickSort(a, rightStart, right);
+                left = less;
+                right = great;
+            }
+        }
+
+        for (int i = left + 1; i <= right; ++i) {
+            double value = a[i];
+            int j = i - 1;
+            while (j >= left && a[j] > value) {
+                a[j + 1] = a[j];
+                --j;
             }
+            a[j + 1] = value;
+        }
+    }
+
+    private static void compareExchange(double[] a, int i, int j) {
+        double first = a[i];
+        double second = a[j];
+        if (first > second) {
+            a[i] = second;
+            a[j] = first;
         }
     }
 
@@ -895,68 +1515,16 @@ public class TArrays extends TObject {
         }
     }
 
+    @SuppressWarnings("unchecked")
     public static <T> void sort(T[] a, int fromIndex, int toIndex, TComparator<? super T> c) {
-        @SuppressWarnings("unchecked")
-        T[] subarray = (T[]) new Object[toIndex - fromIndex];
-        for (int i = fromIndex; i < toIndex; ++i) {
-            subarray[i - fromIndex] = a[i];
-        }
-        sort(subarray, c);
-        for (int i = fromIndex; i < toIndex; ++i) {
-            a[i] = subarray[i - fromIndex];
+        if (fromIndex > toIndex) {
+            throw new TIllegalArgumentException();
         }
+        TTimSort.sort(a, fromIndex, toIndex, c != null ? (TComparator<Object>) c : new NaturalOrder());
     }
 
-    @SuppressWarnings("unchecked")
     public static <T> void sort(T[] a, TComparator<? super T> c) {
-        if (a.length == 0) {
-            return;
-        }
-        Object[] first = a;
-        Object[] second = new Object[a.length];
-        int chunkSize = 1;
-        while (chunkSize < a.length) {
-            for (int i = 0; i < first.length; i += chunkSize * 2) {
-                merge(first, second, i, Math.min(first.length, i + chunkSize),
-                        Math.min(first.length, i + 2 * chunkSize), (TComparator<Object>) c);
-            }
-            Object[] tmp = first;
-            first = second;
-            second = tmp;
-            chunkSize *= 2;
-        }
-        if (first != a) {
-            for (int i = 0; i < first.length; ++i) {
-                second[i] = first[i];
-            }
-        }
-    }
-
-    private static void merge(Object[] a, Object[] b, int from, int split, int to, TComparator<Object> comp) {
-        int index = from;
-        int from2 = split;
-        while (true) {
-            if (from == split) {
-                while (from2 < to) {
-                    b[index++] = a[from2++];
-                }
-                break;
-            } else if (from2 == to) {
-                while (from < split) {
-                    b[index++] = a[from++];
-                }
-                break;
-            }
-            Object p = a[from];
-            Object q = a[from2];
-            if (comp.compare(p, q) <= 0) {
-                b[index++] = p;
-                ++from;
-            } else {
-                b[index++] = q;
-                ++from2;
-            }
-        }
+        sort(a, 0, a.length, c);
     }
 
     public static int binarySearch(int[] a, int key) {
@@ -1505,9 +2073,68 @@ public class TArrays extends TObject {
             @Override public int size() {
                 return a.length;
             }
+            @Override public TStream<T> stream() {
+                return TArrays.stream(a);
+            }
         };
     }
 
+    public static <T> TStream<T> stream(T[] array) {
+        return new TArrayStreamImpl<>(array, 0, array.length);
+    }
+
+    public static <T> TStream<T> stream(T[] array, int startInclusive, int endExclusive) {
+        if (startInclusive > endExclusive) {
+            throw new TIllegalArgumentException();
+        }
+        if (startInclusive < 0 || endExclusive > array.length) {
+            throw new TArrayIndexOutOfBoundsException();
+        }
+        return new TArrayStreamImpl<>(array, startInclusive, endExclusive);
+    }
+
+    public static TIntStream stream(int[] array) {
+        return new TArrayIntStreamImpl(array, 0, array.length);
+    }
+
+    public static TIntStream stream(int[] array, int startInclusive, int endExclusive) {
+        if (startInclusive > endExclusive) {
+            throw new TIllegalArgumentException();
+        }
+        if (startInclusive < 0 || endExclusive > array.length) {
+            throw new TArrayIndexOutOfBoundsException();
+        }
+        return new TArrayIntStreamImpl(array, startInclusive, endExclusive);
+    }
+
+    public static TLongStream stream(long[] array) {
+        return new TArrayLongStreamImpl(array, 0, array.length);
+    }
+
+    public static TLongStream stream(long[] array, int startInclusive, int endExclusive) {
+        if (startInclusive > endExclusive) {
+            throw new TIllegalArgumentException();
+        }
+        if (startInclusive < 0 || endExclusive > array.length) {
+            throw new TArrayIndexOutOfBoundsException();
+        }
+        return new TArrayLongStreamImpl(array, startInclusive, endExclusive);
+    }
+
+    public static TDoubleStream stream(double[] array) {
+        return new TArrayDoubleStreamImpl(array, 0, array.length);
+    }
+
+    public static TDoubleStream stream(double[] array, int startInclusive, int endExclusive) {
+        if (startInclusive > endExclusive) {
+            throw new TIllegalArgumentException();
+        }
+        if (startInclusive < 0 || endExclusive > array.length) {
+            throw new TArrayIndexOutOfBoundsException();
+        }
+        return new TArrayDoubleStreamImpl(array, startInclusive, endExclusive);
+    }
+
     public static TString deepToString(Object[] a) {
         TStringBuilder sb = new TStringBuilder();
         deepToString(a, sb, new TArrayList<Object[]>());
@@ -209,13 +209,7 @@ public class TCollections extends TObject {
         if (c == null) {
             c = naturalOrder;
         }
-        @SuppressWarnings("unchecked")
-        T[] array = (T[]) new Object[list.size()];
-        list.toArray(array);
-        TArrays.sort(array, c);
-        for (int i = 0; i < array.length; ++i) {
-            list.set(i, array[i]);
-        }
+        list.sort(c);
     }
 
     public static <T extends TComparable<? super T>> void sort(TList<T> list) {
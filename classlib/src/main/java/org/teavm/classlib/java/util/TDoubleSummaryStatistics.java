@@ -0,0 +1,84 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util;
+
+import org.teavm.classlib.java.util.function.TDoubleConsumer;
+
+public class TDoubleSummaryStatistics implements TDoubleConsumer {
+    private long count;
+    private double sum;
+    private double compensation;
+    private double simpleSum;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    @Override
+    public void accept(double value) {
+        ++count;
+        simpleSum += value;
+        add(value);
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    public void combine(TDoubleSummaryStatistics other) {
+        count += other.count;
+        simpleSum += other.simpleSum;
+        add(other.sum);
+        add(-other.compensation);
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    // Kahan summation, keeps error of the sum independent of the number of values
+    private void add(double value) {
+        double y = value - compensation;
+        double t = sum + y;
+        compensation = (t - sum) - y;
+        sum = t;
+    }
+
+    public final long getCount() {
+        return count;
+    }
+
+    public final double getSum() {
+        double result = sum - compensation;
+        // Compensated sum of infinities produces NaN, while the plain sum is correct
+        if (Double.isNaN(result) && Double.isInfinite(simpleSum)) {
+            return simpleSum;
+        }
+        return result;
+    }
+
+    public final double getMin() {
+        return min;
+    }
+
+    public final double getMax() {
+        return max;
+    }
+
+    public final double getAverage() {
+        return count > 0 ? getSum() / count : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "DoubleSummaryStatistics{count=" + count + ", sum=" + getSum() + ", min=" + min + ", average="
+                + getAverage() + ", max=" + max + "}";
+    }
+}
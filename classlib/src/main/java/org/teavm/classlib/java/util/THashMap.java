@@ -38,67 +38,128 @@ import org.teavm.classlib.java.io.TSerializable;
 import org.teavm.classlib.java.lang.*;
 import org.teavm.interop.Rename;
 
+/**
+ * <p>Hash map that keeps its mappings in parallel arrays of keys, values and cached hash codes, ordered by
+ * insertion. Lookup goes through an open addressing table with linear probing that stores indexes into these
+ * arrays, so there are no per-mapping objects. Removed mappings leave holes in the arrays that are squeezed
+ * out when the arrays are reallocated.</p>
+ */
 public class THashMap<K, V> extends TAbstractMap<K, V> implements TCloneable, TSerializable {
+    private static final int DEFAULT_SIZE = 16;
+    private static final int MIN_SIZE = 4;
+    private static final Object REMOVED = new Object();
+
     transient int elementCount;
-    transient HashEntry<K, V>[] elementData;
     transient int modCount;
-    private static final int DEFAULT_SIZE = 16;
     final float loadFactor;
     int threshold;
 
-    static class HashEntry<K, V> extends TMapEntry<K, V> {
-        final int origKeyHash;
+    /*
+     * Open addressing table, holds index of entry plus one, zero marks free slot.
+     */
+    private transient int[] table;
+    private transient int shift;
+
+    /*
+     * Entries in order of insertion. Keys of removed entries are replaced by REMOVED. Only entries in
+     * [firstEntry, entryCount) can be alive.
+     */
+    transient Object[] keys;
+    transient Object[] values;
+    private transient int[] hashes;
+    transient int entryCount;
+    transient int firstEntry;
+
+    /**
+     * Entry of a hash map, reads and writes its value through to the map while the mapping stays
+     * where it was when the entry was created.
+     */
+    static final class HashEntry<K, V> implements TMap.Entry<K, V> {
+        private final THashMap<K, V> map;
+        private final int index;
+        private final K key;
+        private V value;
 
-        HashEntry<K, V> next;
+        @SuppressWarnings("unchecked")
+        HashEntry(THashMap<K, V> map, int index) {
+            this.map = map;
+            this.index = index;
+            key = (K) map.keys[index];
+            value = (V) map.values[index];
+        }
 
-        HashEntry(K theKey, int hash) {
-            super(theKey, null);
-            this.origKeyHash = hash;
+        private boolean isAttached() {
+            return index < map.entryCount && map.keys[index] == key;
         }
 
-        HashEntry(K theKey, V theValue) {
-            super(theKey, theValue);
-            origKeyHash = theKey == null ? 0 : computeHashCode(theKey);
+        @Override
+        public K getKey() {
+            return key;
         }
 
         @Override
         @SuppressWarnings("unchecked")
-        public Object clone() {
-            HashEntry<K, V> entry = (HashEntry<K, V>) super.clone();
-            if (next != null) {
-                entry.next = (HashEntry<K, V>) next.clone();
+        public V getValue() {
+            if (isAttached()) {
+                value = (V) map.values[index];
             }
-            return entry;
+            return value;
+        }
+
+        @Override
+        public V setValue(V object) {
+            V result = getValue();
+            if (isAttached()) {
+                map.values[index] = object;
+            }
+            value = object;
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (this == object) {
+                return true;
+            }
+            if (!(object instanceof TMap.Entry)) {
+                return false;
+            }
+            TMap.Entry<?, ?> entry = (TMap.Entry<?, ?>) object;
+            V value = getValue();
+            return (key == null ? entry.getKey() == null : key.equals(entry.getKey()))
+                    && (value == null ? entry.getValue() == null : value.equals(entry.getValue()));
+        }
+
+        @Override
+        public int hashCode() {
+            V value = getValue();
+            return (key == null ? 0 : key.hashCode()) ^ (value == null ? 0 : value.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + getValue();
         }
     }
 
     private static class AbstractMapIterator<K, V>  {
         private int position;
+        int current = -1;
         int expectedModCount;
-        HashEntry<K, V> futureEntry;
-        HashEntry<K, V> currentEntry;
-        HashEntry<K, V> prevEntry;
 
         final THashMap<K, V> associatedMap;
 
         AbstractMapIterator(THashMap<K, V> hm) {
             associatedMap = hm;
             expectedModCount = hm.modCount;
-            futureEntry = null;
+            position = hm.firstEntry;
         }
 
         public boolean hasNext() {
-            if (futureEntry != null) {
-                return true;
+            while (position < associatedMap.entryCount && associatedMap.keys[position] == REMOVED) {
+                position++;
             }
-            while (position < associatedMap.elementData.length) {
-                if (associatedMap.elementData[position] == null) {
-                    position++;
-                } else {
-                    return true;
-                }
-            }
-            return false;
+            return position < associatedMap.entryCount;
         }
 
         final void checkConcurrentMod() throws ConcurrentModificationException {
@@ -112,39 +173,20 @@ public class THashMap<K, V> extends TAbstractMap<K, V> implements TCloneable, TS
             if (!hasNext()) {
                 throw new TNoSuchElementException();
             }
-            if (futureEntry == null) {
-                currentEntry = associatedMap.elementData[position++];
-                futureEntry = currentEntry.next;
-                prevEntry = null;
-            } else {
-                if (currentEntry != null) {
-                    prevEntry = currentEntry;
-                }
-                currentEntry = futureEntry;
-                futureEntry = futureEntry.next;
-            }
+            current = position++;
         }
 
         public final void remove() {
             checkConcurrentMod();
-            if (currentEntry == null) {
+            if (current < 0) {
                 throw new TIllegalStateException();
             }
-            if (prevEntry == null) {
-                int index = currentEntry.origKeyHash & (associatedMap.elementData.length - 1);
-                associatedMap.elementData[index] = associatedMap.elementData[index].next;
-            } else {
-                prevEntry.next = currentEntry.next;
-            }
-            currentEntry = null;
-            expectedModCount++;
-            associatedMap.modCount++;
-            associatedMap.elementCount--;
-
+            associatedMap.removeAt(current);
+            current = -1;
+            expectedModCount = associatedMap.modCount;
         }
     }
 
-
     private static class EntryIterator<K, V> extends AbstractMapIterator<K, V>
             implements TIterator<TMap.Entry<K, V>> {
         EntryIterator(THashMap<K, V> map) {
@@ -154,7 +196,7 @@ public class THashMap<K, V> extends TAbstractMap<K, V> implements TCloneable, TS
         @Override
         public TMap.Entry<K, V> next() {
             makeNext();
-            return currentEntry;
+            return new HashEntry<>(associatedMap, current);
         }
     }
 
@@ -164,9 +206,10 @@ public class THashMap<K, V> extends TAbstractMap<K, V> implements TCloneable, TS
         }
 
         @Override
+        @SuppressWarnings("unchecked")
         public K next() {
             makeNext();
-            return currentEntry.key;
+            return (K) associatedMap.keys[current];
         }
     }
 
@@ -176,9 +219,10 @@ public class THashMap<K, V> extends TAbstractMap<K, V> implements TCloneable, TS
         }
 
         @Override
+        @SuppressWarnings("unchecked")
         public V next() {
             makeNext();
-            return currentEntry.value;
+            return (V) associatedMap.values[current];
         }
     }
 
@@ -207,9 +251,9 @@ public class THashMap<K, V> extends TAbstractMap<K, V> implements TCloneable, TS
         public boolean remove(Object object) {
             if (object instanceof TMap.Entry) {
                 TMap.Entry<?, ?> oEntry = (TMap.Entry<?, ?>) object;
-                TMap.Entry<K, V> entry = associatedMap.getEntry(oEntry.getKey());
-                if (valuesEq(entry, oEntry)) {
-                    associatedMap.removeEntry(entry);
+                int index = associatedMap.findIndex(oEntry.getKey());
+                if (index >= 0 && valuesEq(associatedMap.values[index], oEntry)) {
+                    associatedMap.removeAt(index);
                     return true;
                 }
             }
@@ -220,17 +264,14 @@ public class THashMap<K, V> extends TAbstractMap<K, V> implements TCloneable, TS
         public boolean contains(Object object) {
             if (object instanceof TMap.Entry) {
                 TMap.Entry<?, ?> oEntry = (TMap.Entry<?, ?>) object;
-                TMap.Entry<K, V> entry = associatedMap.getEntry(oEntry.getKey());
-                return valuesEq(entry, oEntry);
+                int index = associatedMap.findIndex(oEntry.getKey());
+                return index >= 0 && valuesEq(associatedMap.values[index], oEntry);
             }
             return false;
         }
 
-        private static boolean valuesEq(TMap.Entry<?, ?> entry, TMap.Entry<?, ?> oEntry) {
-            return entry != null
-                    && (entry.getValue() == null
-                    ? oEntry.getValue() == null
-                    : areEqualValues(entry.getValue(), oEntry.getValue()));
+        private static boolean valuesEq(Object value, TMap.Entry<?, ?> oEntry) {
+            return value == null ? oEntry.getValue() == null : areEqualValues(value, oEntry.getValue());
         }
 
         @Override
@@ -239,11 +280,6 @@ public class THashMap<K, V> extends TAbstractMap<K, V> implements TCloneable, TS
         }
     }
 
-    @SuppressWarnings("unchecked")
-    HashEntry<K, V>[] newElementArray(int s) {
-        return new HashEntry[s];
-    }
-
     public THashMap() {
         this(DEFAULT_SIZE);
     }
@@ -282,11 +318,8 @@ public class THashMap<K, V> extends TAbstractMap<K, V> implements TCloneable, TS
      */
     public THashMap(int capacity, float loadFactor) {
         if (capacity >= 0 && loadFactor > 0) {
-            capacity = calculateCapacity(capacity);
-            elementCount = 0;
-            elementData = newElementArray(capacity);
             this.loadFactor = loadFactor;
-            computeThreshold();
+            allocate(Math.max(MIN_SIZE, calculateCapacity(capacity)));
         } else {
             throw new TIllegalArgumentException();
         }
@@ -297,11 +330,30 @@ public class THashMap<K, V> extends TAbstractMap<K, V> implements TCloneable, TS
         putAllImpl(map);
     }
 
+    private void allocate(int length) {
+        table = new int[length];
+        shift = 32 - Integer.numberOfTrailingZeros(length);
+        threshold = computeThreshold(length);
+        keys = new Object[threshold];
+        values = new Object[threshold];
+        hashes = new int[threshold];
+    }
+
+    private int computeThreshold(int length) {
+        // Linear probing needs free slots to terminate and degrades quickly when the table is almost full
+        int limit = length - 1 - (length >> 3);
+        return Math.max(1, Math.min((int) (length * loadFactor), limit));
+    }
+
     @Override
     public void clear() {
         if (elementCount > 0) {
             elementCount = 0;
-            Arrays.fill(elementData, null);
+            Arrays.fill(table, 0);
+            Arrays.fill(keys, 0, entryCount, null);
+            Arrays.fill(values, 0, entryCount, null);
+            entryCount = 0;
+            firstEntry = 0;
             modCount++;
         }
     }
@@ -311,47 +363,30 @@ public class THashMap<K, V> extends TAbstractMap<K, V> implements TCloneable, TS
     public TObject clone0() {
         try {
             THashMap<K, V> map = (THashMap<K, V>) super.clone();
-            map.elementCount = 0;
-            map.elementData = newElementArray(elementData.length);
-            map.putAll(this);
-
+            map.table = Arrays.copyOf(table, table.length);
+            map.keys = Arrays.copyOf(keys, keys.length);
+            map.values = Arrays.copyOf(values, values.length);
+            map.hashes = Arrays.copyOf(hashes, hashes.length);
             return map;
         } catch (TCloneNotSupportedException e) {
             return null;
         }
     }
 
-    private void computeThreshold() {
-        threshold = (int) (elementData.length * loadFactor);
-    }
-
     @Override
     public boolean containsKey(Object key) {
-        HashEntry<K, V> m = getEntry(key);
-        return m != null;
+        return findIndex(key) >= 0;
     }
 
     @Override
     public boolean containsValue(Object value) {
-        if (value != null) {
-            for (int i = 0; i < elementData.length; i++) {
-                HashEntry<K, V> entry = elementData[i];
-                while (entry != null) {
-                    if (areEqualValues(value, entry.value)) {
-                        return true;
-                    }
-                    entry = entry.next;
-                }
+        for (int i = firstEntry; i < entryCount; i++) {
+            if (keys[i] == REMOVED) {
+                continue;
             }
-        } else {
-            for (int i = 0; i < elementData.length; i++) {
-                HashEntry<K, V> entry = elementData[i];
-                while (entry != null) {
-                    if (entry.value == null) {
-                        return true;
-                    }
-                    entry = entry.next;
-                }
+            Object entryValue = values[i];
+            if (value == null ? entryValue == null : areEqualValues(value, entryValue)) {
+                return true;
             }
         }
         return false;
@@ -363,41 +398,28 @@ public class THashMap<K, V> extends TAbstractMap<K, V> implements TCloneable, TS
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public V get(Object key) {
-        HashEntry<K, V> m = getEntry(key);
-        if (m != null) {
-            return m.value;
-        }
-        return null;
+        int index = findIndex(key);
+        return index >= 0 ? (V) values[index] : null;
     }
 
-    final HashEntry<K, V> getEntry(Object key) {
-        HashEntry<K, V> m;
-        if (key == null) {
-            m = findNullKeyEntry();
-        } else {
-            int hash = computeHashCode(key);
-            int index = hash & (elementData.length - 1);
-            m = findNonNullKeyEntry(key, index, hash);
-        }
-        return m;
+    private int slotOf(int hash) {
+        return (hash * 0x9E3779B9) >>> shift;
     }
 
-    final HashEntry<K, V> findNonNullKeyEntry(Object key, int index, int keyHash) {
-        HashEntry<K, V> m = elementData[index];
-        while (m != null
-                && (m.origKeyHash != keyHash || !areEqualKeys(key, m.key))) {
-            m = m.next;
-        }
-        return m;
-    }
-
-    final HashEntry<K, V> findNullKeyEntry() {
-        HashEntry<K, V> m = elementData[0];
-        while (m != null && m.key != null) {
-            m = m.next;
+    final int findIndex(Object key) {
+        int hash = computeHashCode(key);
+        int mask = table.length - 1;
+        for (int slot = slotOf(hash);; slot = (slot + 1) & mask) {
+            int index = table[slot] - 1;
+            if (index < 0) {
+                return -1;
+            }
+            if (hashes[index] == hash && areEqualKeys(key, keys[index])) {
+                return index;
+            }
         }
-        return m;
     }
 
     @Override
@@ -419,8 +441,12 @@ public class THashMap<K, V> extends TAbstractMap<K, V> implements TCloneable, TS
                     THashMap.this.clear();
                 }
                 @Override public boolean remove(Object key) {
-                    HashEntry<K, V> entry = THashMap.this.removeEntry(key);
-                    return entry != null;
+                    int index = findIndex(key);
+                    if (index < 0) {
+                        return false;
+                    }
+                    removeAt(index);
+                    return true;
                 }
                 @Override public TIterator<K> iterator() {
                     return new KeyIterator<>(THashMap.this);
@@ -435,47 +461,48 @@ public class THashMap<K, V> extends TAbstractMap<K, V> implements TCloneable, TS
         return putImpl(key, value);
     }
 
+    @SuppressWarnings("unchecked")
     V putImpl(K key, V value) {
-        HashEntry<K, V> entry;
-        if (key == null) {
-            entry = findNullKeyEntry();
-            if (entry == null) {
-                modCount++;
-                entry = createHashedEntry(null, 0, 0);
-                if (++elementCount > threshold) {
-                    rehash();
-                }
-            }
-        } else {
-            int hash = computeHashCode(key);
-            int index = hash & (elementData.length - 1);
-            entry = findNonNullKeyEntry(key, index, hash);
-            if (entry == null) {
-                modCount++;
-                entry = createHashedEntry(key, index, hash);
-                if (++elementCount > threshold) {
-                    rehash();
-                }
-            }
+        int index = findIndex(key);
+        if (index < 0) {
+            addEntry(key, value, computeHashCode(key));
+            return null;
         }
-
-        V result = entry.value;
-        entry.value = value;
+        index = accessEntry(index);
+        V result = (V) values[index];
+        values[index] = value;
         return result;
     }
 
-    HashEntry<K, V> createEntry(K key, int index, V value) {
-        HashEntry<K, V> entry = new HashEntry<>(key, value);
-        entry.next = elementData[index];
-        elementData[index] = entry;
-        return entry;
+    /**
+     * Called when value of existing entry is queried or replaced, returns new index of the entry.
+     */
+    int accessEntry(int index) {
+        return index;
     }
 
-    HashEntry<K, V> createHashedEntry(K key, int index, int hash) {
-        HashEntry<K, V> entry = new HashEntry<>(key, hash);
-        entry.next = elementData[index];
-        elementData[index] = entry;
-        return entry;
+    private int addEntry(Object key, Object value, int hash) {
+        if (entryCount == keys.length) {
+            // Squeeze out removed entries unless it would leave too little room for new ones
+            resize(elementCount >= threshold / 2 ? table.length * 2 : table.length);
+        }
+        int index = entryCount++;
+        keys[index] = key;
+        values[index] = value;
+        hashes[index] = hash;
+        insertSlot(hash, index);
+        elementCount++;
+        modCount++;
+        return index;
+    }
+
+    private void insertSlot(int hash, int index) {
+        int mask = table.length - 1;
+        int slot = slotOf(hash);
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = index + 1;
     }
 
     @Override
@@ -498,83 +525,100 @@ public class THashMap<K, V> extends TAbstractMap<K, V> implements TCloneable, TS
     }
 
     void rehash(int capacity) {
-        int length = calculateCapacity(capacity == 0 ? 1 : capacity << 1);
-
-        HashEntry<K, V>[] newData = newElementArray(length);
-        for (int i = 0; i < elementData.length; i++) {
-            HashEntry<K, V> entry = elementData[i];
-            elementData[i] = null;
-            while (entry != null) {
-                int index = entry.origKeyHash & (length - 1);
-                HashEntry<K, V> next = entry.next;
-                entry.next = newData[index];
-                newData[index] = entry;
-                entry = next;
-            }
+        int length = table.length;
+        while (computeThreshold(length) < capacity && length < 1 << 30) {
+            length <<= 1;
         }
-        elementData = newData;
-        computeThreshold();
+        resize(length);
     }
 
     void rehash() {
-        rehash(elementData.length);
+        rehash(elementCount + 1);
+    }
+
+    private void resize(int length) {
+        Object[] oldKeys = keys;
+        Object[] oldValues = values;
+        int[] oldHashes = hashes;
+        int oldCount = entryCount;
+        allocate(length);
+        int count = 0;
+        for (int i = firstEntry; i < oldCount; ++i) {
+            if (oldKeys[i] != REMOVED) {
+                keys[count] = oldKeys[i];
+                values[count] = oldValues[i];
+                hashes[count] = oldHashes[i];
+                insertSlot(oldHashes[i], count);
+                count++;
+            }
+        }
+        entryCount = count;
+        firstEntry = 0;
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public V remove(Object key) {
-        HashEntry<K, V> entry = removeEntry(key);
-        if (entry != null) {
-            return entry.value;
+        int index = findIndex(key);
+        if (index < 0) {
+            return null;
         }
-        return null;
+        V result = (V) values[index];
+        removeAt(index);
+        return result;
     }
 
-    final void removeEntry(HashEntry<K, V> entry) {
-        int index = entry.origKeyHash & (elementData.length - 1);
-        HashEntry<K, V> m = elementData[index];
-        if (m == entry) {
-            elementData[index] = entry.next;
-        } else {
-            while (m.next != entry) {
-                m = m.next;
-            }
-            m.next = entry.next;
-
+    final void removeAt(int index) {
+        int mask = table.length - 1;
+        int slot = slotOf(hashes[index]);
+        while (table[slot] != index + 1) {
+            slot = (slot + 1) & mask;
         }
+        deleteSlot(slot);
+
+        keys[index] = REMOVED;
+        values[index] = null;
         modCount++;
-        elementCount--;
-    }
-
-    final HashEntry<K, V> removeEntry(Object key) {
-        int index = 0;
-        HashEntry<K, V> entry;
-        HashEntry<K, V> last = null;
-        if (key != null) {
-            int hash = computeHashCode(key);
-            index = hash & (elementData.length - 1);
-            entry = elementData[index];
-            while (entry != null && !(entry.origKeyHash == hash && areEqualKeys(key, entry.key))) {
-                last = entry;
-                entry = entry.next;
-            }
-        } else {
-            entry = elementData[0];
-            while (entry != null && entry.key != null) {
-                last = entry;
-                entry = entry.next;
+        if (--elementCount == 0) {
+            Arrays.fill(keys, firstEntry, entryCount, null);
+            entryCount = 0;
+            firstEntry = 0;
+        } else if (index == entryCount - 1) {
+            keys[index] = null;
+            entryCount--;
+        } else if (index == firstEntry) {
+            while (keys[firstEntry] == REMOVED) {
+                firstEntry++;
             }
         }
-        if (entry == null) {
-            return null;
+    }
+
+    private void deleteSlot(int slot) {
+        // Move following entries of the cluster back, so that lookups don't need tombstones
+        int mask = table.length - 1;
+        int hole = slot;
+        for (int next = (slot + 1) & mask; table[next] != 0; next = (next + 1) & mask) {
+            int home = slotOf(hashes[table[next] - 1]);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                table[hole] = table[next];
+                hole = next;
+            }
         }
-        if (last == null) {
-            elementData[index] = entry.next;
-        } else {
-            last.next = entry.next;
+        table[hole] = 0;
+    }
+
+    /**
+     * Moves existing entry after all other entries, returns its new index.
+     */
+    final int moveToEnd(int index) {
+        if (index == entryCount - 1) {
+            return index;
         }
-        modCount++;
-        elementCount--;
-        return entry;
+        Object key = keys[index];
+        Object value = values[index];
+        int hash = hashes[index];
+        removeAt(index);
+        return addEntry(key, value, hash);
     }
 
     @Override
@@ -604,11 +648,11 @@ public class THashMap<K, V> extends TAbstractMap<K, V> implements TCloneable, TS
     }
 
     static int computeHashCode(Object key) {
-        return key.hashCode();
+        return key != null ? key.hashCode() : 0;
     }
 
     static boolean areEqualKeys(Object key1, Object key2) {
-        return (key1 == key2) || key1.equals(key2);
+        return (key1 == key2) || (key1 != null && key1.equals(key2));
     }
 
     static boolean areEqualValues(Object value1, Object value2) {
@@ -40,4 +40,15 @@ public interface TList<E> extends TCollection<E> {
     TListIterator<E> listIterator(int index);
 
     TList<E> subList(int fromIndex, int toIndex);
+
+    @SuppressWarnings("unchecked")
+    default void sort(TComparator<? super E> c) {
+        Object[] elements = toArray();
+        TArrays.sort(elements, (TComparator<Object>) c);
+        TListIterator<E> iter = listIterator();
+        for (Object element : elements) {
+            iter.next();
+            iter.set((E) element);
+        }
+    }
 }
@@ -0,0 +1,94 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util;
+
+import org.teavm.classlib.java.util.function.TLongConsumer;
+import org.teavm.classlib.java.util.function.TLongSupplier;
+import org.teavm.classlib.java.util.function.TSupplier;
+
+public final class TOptionalLong {
+    private static final TOptionalLong EMPTY = new TOptionalLong(false, 0);
+
+    private final boolean present;
+    private final long value;
+
+    private TOptionalLong(boolean present, long value) {
+        this.present = present;
+        this.value = value;
+    }
+
+    public static TOptionalLong empty() {
+        return EMPTY;
+    }
+
+    public static TOptionalLong of(long value) {
+        return new TOptionalLong(true, value);
+    }
+
+    public long getAsLong() {
+        if (!present) {
+            throw new TNoSuchElementException();
+        }
+        return value;
+    }
+
+    public boolean isPresent() {
+        return present;
+    }
+
+    public void ifPresent(TLongConsumer consumer) {
+        if (present) {
+            consumer.accept(value);
+        }
+    }
+
+    public long orElse(long other) {
+        return present ? value : other;
+    }
+
+    public long orElseGet(TLongSupplier other) {
+        return present ? value : other.getAsLong();
+    }
+
+    public <X extends Throwable> long orElseThrow(TSupplier<? extends X> exceptionSupplier) throws X {
+        if (!present) {
+            throw exceptionSupplier.get();
+        }
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof TOptionalLong)) {
+            return false;
+        }
+        TOptionalLong other = (TOptionalLong) obj;
+        return present ? other.present && value == other.value : !other.present;
+    }
+
+    @Override
+    public int hashCode() {
+        return present ? (int) (value ^ (value >>> 32)) : 0;
+    }
+
+    @Override
+    public String toString() {
+        return present ? "OptionalLong[" + value + "]" : "OptionalLong.empty";
+    }
+}
@@ -0,0 +1,476 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util;
+
+import org.teavm.classlib.java.lang.TIllegalArgumentException;
+import org.teavm.classlib.java.lang.TString;
+
+/**
+ * <p>Stable adaptive merge sort. Splits array into ascending runs (reversing strictly descending ones),
+ * extends short runs by binary insertion sort and merges runs kept on a stack so that run lengths
+ * grow at least as fast as Fibonacci numbers. Merging switches to galloping (exponential search)
+ * when one run wins many times in a row, so that already sorted or nearly sorted arrays take linear time.</p>
+ *
+ * <p>Temporary buffer only holds the smaller of two runs being merged and is allocated lazily.</p>
+ */
+final class TTimSort {
+    private static final int MIN_MERGE = 32;
+    private static final int MIN_GALLOP = 7;
+    private static final int INITIAL_BUFFER_SIZE = 256;
+    private static final int MAX_STACK_SIZE = 49;
+
+    private Object[] a;
+    private TComparator<Object> comparator;
+    private int length;
+    private int minGallop = MIN_GALLOP;
+    private Object[] buffer;
+    private int[] runBase = new int[MAX_STACK_SIZE];
+    private int[] runLength = new int[MAX_STACK_SIZE];
+    private int stackSize;
+
+    private TTimSort(Object[] a, TComparator<Object> comparator, int length) {
+        this.a = a;
+        this.comparator = comparator;
+        this.length = length;
+        buffer = new Object[length < 2 * INITIAL_BUFFER_SIZE ? length >>> 1 : INITIAL_BUFFER_SIZE];
+    }
+
+    static void sort(Object[] a, int from, int to, TComparator<Object> c) {
+        int remaining = to - from;
+        if (remaining < 2) {
+            return;
+        }
+        if (remaining < MIN_MERGE) {
+            int initialRunLength = countRunAndMakeAscending(a, from, to, c);
+            binarySort(a, from, to, from + initialRunLength, c);
+            return;
+        }
+
+        TTimSort sorter = new TTimSort(a, c, remaining);
+        int minRun = minRunLength(remaining);
+        do {
+            int runLength = countRunAndMakeAscending(a, from, to, c);
+            if (runLength < minRun) {
+                int forcedLength = Math.min(remaining, minRun);
+                binarySort(a, from, from + forcedLength, from + runLength, c);
+                runLength = forcedLength;
+            }
+            sorter.pushRun(from, runLength);
+            sorter.mergeCollapse();
+            from += runLength;
+            remaining -= runLength;
+        } while (remaining != 0);
+        sorter.mergeForceCollapse();
+    }
+
+    // Elements in range [from, start) are already sorted
+    private static void binarySort(Object[] a, int from, int to, int start, TComparator<Object> c) {
+        for (; start < to; ++start) {
+            Object pivot = a[start];
+            int left = from;
+            int right = start;
+            while (left < right) {
+                int mid = (left + right) >>> 1;
+                if (c.compare(pivot, a[mid]) < 0) {
+                    right = mid;
+                } else {
+                    left = mid + 1;
+                }
+            }
+            System.arraycopy(a, left, a, left + 1, start - left);
+            a[left] = pivot;
+        }
+    }
+
+    private static int countRunAndMakeAscending(Object[] a, int from, int to, TComparator<Object> c) {
+        int end = from + 1;
+        if (end == to) {
+            return 1;
+        }
+        if (c.compare(a[end++], a[from]) < 0) {
+            // Only strictly descending runs can be reversed without breaking stability
+            while (end < to && c.compare(a[end], a[end - 1]) < 0) {
+                end++;
+            }
+            for (int i = from, j = end - 1; i < j; ++i, --j) {
+                Object tmp = a[i];
+                a[i] = a[j];
+                a[j] = tmp;
+            }
+        } else {
+            while (end < to && c.compare(a[end], a[end - 1]) >= 0) {
+                end++;
+            }
+        }
+        return end - from;
+    }
+
+    // Chooses length in range [MIN_MERGE / 2, MIN_MERGE], such that n / minRun is equal to or slightly less
+    // than a power of two, which keeps merges balanced
+    private static int minRunLength(int n) {
+        int lowBits = 0;
+        while (n >= MIN_MERGE) {
+            lowBits |= n & 1;
+            n >>= 1;
+        }
+        return n + lowBits;
+    }
+
+    private void pushRun(int base, int length) {
+        runBase[stackSize] = base;
+        runLength[stackSize] = length;
+        stackSize++;
+    }
+
+    // Maintains invariants runLength[i - 2] > runLength[i - 1] + runLength[i] and
+    // runLength[i - 1] > runLength[i] for the whole stack, not only for its top
+    private void mergeCollapse() {
+        while (stackSize > 1) {
+            int n = stackSize - 2;
+            if (n > 0 && runLength[n - 1] <= runLength[n] + runLength[n + 1]
+                    || n > 1 && runLength[n - 2] <= runLength[n] + runLength[n - 1]) {
+                if (runLength[n - 1] < runLength[n + 1]) {
+                    n--;
+                }
+            } else if (runLength[n] > runLength[n + 1]) {
+                break;
+            }
+            mergeAt(n);
+        }
+    }
+
+    private void mergeForceCollapse() {
+        while (stackSize > 1) {
+            int n = stackSize - 2;
+            if (n > 0 && runLength[n - 1] < runLength[n + 1]) {
+                n--;
+            }
+            mergeAt(n);
+        }
+    }
+
+    private void mergeAt(int i) {
+        int base1 = runBase[i];
+        int length1 = runLength[i];
+        int base2 = runBase[i + 1];
+        int length2 = runLength[i + 1];
+
+        runLength[i] = length1 + length2;
+        if (i == stackSize - 3) {
+            runBase[i + 1] = runBase[i + 2];
+            runLength[i + 1] = runLength[i + 2];
+        }
+        stackSize--;
+
+        // Elements of the first run that are not greater than the first element of the second run,
+        // and elements of the second run that are not less than the last element of the first run
+        // are already in place
+        int skip = gallopRight(a[base2], a, base1, length1, 0, comparator);
+        base1 += skip;
+        length1 -= skip;
+        if (length1 == 0) {
+            return;
+        }
+        length2 = gallopLeft(a[base1 + length1 - 1], a, base2, length2, length2 - 1, comparator);
+        if (length2 == 0) {
+            return;
+        }
+
+        if (length1 <= length2) {
+            mergeLow(base1, length1, base2, length2);
+        } else {
+            mergeHigh(base1, length1, base2, length2);
+        }
+    }
+
+    // Returns position of the leftmost element that is not less than key
+    private static int gallopLeft(Object key, Object[] a, int base, int length, int hint, TComparator<Object> c) {
+        int lastOffset = 0;
+        int offset = 1;
+        if (c.compare(key, a[base + hint]) > 0) {
+            int maxOffset = length - hint;
+            while (offset < maxOffset && c.compare(key, a[base + hint + offset]) > 0) {
+                lastOffset = offset;
+                offset = (offset << 1) + 1;
+                if (offset <= 0) {
+                    offset = maxOffset;
+                }
+            }
+            offset = Math.min(offset, maxOffset);
+            lastOffset += hint;
+            offset += hint;
+        } else {
+            int maxOffset = hint + 1;
+            while (offset < maxOffset && c.compare(key, a[base + hint - offset]) <= 0) {
+                lastOffset = offset;
+                offset = (offset << 1) + 1;
+                if (offset <= 0) {
+                    offset = maxOffset;
+                }
+            }
+            offset = Math.min(offset, maxOffset);
+            int tmp = lastOffset;
+            lastOffset = hint - offset;
+            offset = hint - tmp;
+        }
+
+        lastOffset++;
+        while (lastOffset < offset) {
+            int mid = lastOffset + ((offset - lastOffset) >>> 1);
+            if (c.compare(key, a[base + mid]) > 0) {
+                lastOffset = mid + 1;
+            } else {
+                offset = mid;
+            }
+        }
+        return offset;
+    }
+
+    // Returns position of the leftmost element that is greater than key
+    private static int gallopRight(Object key, Object[] a, int base, int length, int hint, TComparator<Object> c) {
+        int lastOffset = 0;
+        int offset = 1;
+        if (c.compare(key, a[base + hint]) < 0) {
+            int maxOffset = hint + 1;
+            while (offset < maxOffset && c.compare(key, a[base + hint - offset]) < 0) {
+                lastOffset = offset;
+                offset = (offset << 1) + 1;
+                if (offset <= 0) {
+                    offset = maxOffset;
+                }
+            }
+            offset = Math.min(offset, maxOffset);
+            int tmp = lastOffset;
+            lastOffset = hint - offset;
+            offset = hint - tmp;
+        } else {
+            int maxOffset = length - hint;
+            while (offset < maxOffset && c.compare(key, a[base + hint + offset]) >= 0) {
+                lastOffset = offset;
+                offset = (offset << 1) + 1;
+                if (offset <= 0) {
+                    offset = maxOffset;
+                }
+            }
+            offset = Math.min(offset, maxOffset);
+            lastOffset += hint;
+            offset += hint;
+        }
+
+        lastOffset++;
+        while (lastOffset < offset) {
+            int mid = lastOffset + ((offset - lastOffset) >>> 1);
+            if (c.compare(key, a[base + mid]) < 0) {
+                offset = mid;
+            } else {
+                lastOffset = mid + 1;
+            }
+        }
+        return offset;
+    }
+
+    // Merges runs left to right, first run is the shorter one and goes to buffer.
+    // First element of the second run and last element of the first run are known to be merged last.
+    private void mergeLow(int base1, int length1, int base2, int length2) {
+        Object[] a = this.a;
+        Object[] buffer = ensureBufferCapacity(length1);
+        System.arraycopy(a, base1, buffer, 0, length1);
+        int cursor1 = 0;
+        int cursor2 = base2;
+        int dest = base1;
+
+        a[dest++] = a[cursor2++];
+        if (--length2 == 0) {
+            System.arraycopy(buffer, cursor1, a, dest, length1);
+            return;
+        }
+        if (length1 == 1) {
+            System.arraycopy(a, cursor2, a, dest, length2);
+            a[dest + length2] = buffer[cursor1];
+            return;
+        }
+
+        TComparator<Object> c = comparator;
+        int minGallop = this.minGallop;
+        merge:
+        while (true) {
+            int count1 = 0;
+            int count2 = 0;
+            do {
+                if (c.compare(a[cursor2], buffer[cursor1]) < 0) {
+                    a[dest++] = a[cursor2++];
+                    count2++;
+                    count1 = 0;
+                    if (--length2 == 0) {
+                        break merge;
+                    }
+                } else {
+                    a[dest++] = buffer[cursor1++];
+                    count1++;
+                    count2 = 0;
+                    if (--length1 == 1) {
+                        break merge;
+                    }
+                }
+            } while ((count1 | count2) < minGallop);
+
+            do {
+                count1 = gallopRight(a[cursor2], buffer, cursor1, length1, 0, c);
+                if (count1 != 0) {
+                    System.arraycopy(buffer, cursor1, a, dest, count1);
+                    dest += count1;
+                    cursor1 += count1;
+                    length1 -= count1;
+                    if (length1 <= 1) {
+                        break merge;
+                    }
+                }
+                a[dest++] = a[cursor2++];
+                if (--length2 == 0) {
+                    break merge;
+                }
+
+                count2 = gallopLeft(buffer[cursor1], a, cursor2, length2, 0, c);
+                if (count2 != 0) {
+                    System.arraycopy(a, cursor2, a, dest, count2);
+                    dest += count2;
+                    cursor2 += count2;
+                    length2 -= count2;
+                    if (length2 == 0) {
+                        break merge;
+                    }
+                }
+                a[dest++] = buffer[cursor1++];
+                if (--length1 == 1) {
+                    break merge;
+                }
+                minGallop--;
+            } while (count1 >= MIN_GALLOP || count2 >= MIN_GALLOP);
+            minGallop = Math.max(minGallop, 0) + 2;
+        }
+        this.minGallop = Math.max(minGallop, 1);
+
+        if (length1 == 1) {
+            System.arraycopy(a, cursor2, a, dest, length2);
+            a[dest + length2] = buffer[cursor1];
+        } else if (length1 == 0) {
+            throw new TIllegalArgumentException(TString.wrap("Comparison method violates its general contract"));
+        } else {
+            System.arraycopy(buffer, cursor1, a, dest, length1);
+        }
+    }
+
+    // Merges runs right to left, second run is the shorter one and goes to buffer
+    private void mergeHigh(int base1, int length1, int base2, int length2) {
+        Object[] a = this.a;
+        Object[] buffer = ensureBufferCapacity(length2);
+        System.arraycopy(a, base2, buffer, 0, length2);
+        int cursor1 = base1 + length1 - 1;
+        int cursor2 = length2 - 1;
+        int dest = base2 + length2 - 1;
+
+        a[dest--] = a[cursor1--];
+        if (--length1 == 0) {
+            System.arraycopy(buffer, 0, a, dest - (length2 - 1), length2);
+            return;
+        }
+        if (length2 == 1) {
+            dest -= length1;
+            cursor1 -= length1;
+            System.arraycopy(a, cursor1 + 1, a, dest + 1, length1);
+            a[dest] = buffer[cursor2];
+            return;
+        }
+
+        TComparator<Object> c = comparator;
+        int minGallop = this.minGallop;
+        merge:
+        while (true) {
+            int count1 = 0;
+            int count2 = 0;
+            do {
+                if (c.compare(buffer[cursor2], a[cursor1]) < 0) {
+                    a[dest--] = a[cursor1--];
+                    count1++;
+                    count2 = 0;
+                    if (--length1 == 0) {
+                        break merge;
+                    }
+                } else {
+                    a[dest--] = buffer[cursor2--];
+                    count2++;
+                    count1 = 0;
+                    if (--length2 == 1) {
+                        break merge;
+                    }
+                }
+            } while ((count1 | count2) < minGallop);
+
+            do {
+                count1 = length1 - gallopRight(buffer[cursor2], a, base1, length1, length1 - 1, c);
+                if (count1 != 0) {
+                    dest -= count1;
+                    cursor1 -= count1;
+                    length1 -= count1;
+                    System.arraycopy(a, cursor1 + 1, a, dest + 1, count1);
+                    if (length1 == 0) {
+                        break merge;
+                    }
+                }
+                a[dest--] = buffer[cursor2--];
+                if (--length2 == 1) {
+                    break merge;
+                }
+
+                count2 = length2 - gallopLeft(a[cursor1], buffer, 0, length2, length2 - 1, c);
+                if (count2 != 0) {
+                    dest -= count2;
+                    cursor2 -= count2;
+                    length2 -= count2;
+                    System.arraycopy(buffer, cursor2 + 1, a, dest + 1, count2);
+                    if (length2 <= 1) {
+                        break merge;
+                    }
+                }
+                a[dest--] = a[cursor1--];
+                if (--length1 == 0) {
+                    break merge;
+                }
+                minGallop--;
+            } while (count1 >= MIN_GALLOP || count2 >= MIN_GALLOP);
+            minGallop = Math.max(minGallop, 0) + 2;
+        }
+        this.minGallop = Math.max(minGallop, 1);
+
+        if (length2 == 1) {
+            dest -= length1;
+            cursor1 -= length1;
+            System.arraycopy(a, cursor1 + 1, a, dest + 1, length1);
+            a[dest] = buffer[cursor2];
+        } else if (length2 == 0) {
+            throw new TIllegalArgumentException(TString.wrap("Comparison method violates its general contract"));
+        } else {
+            System.arraycopy(buffer, 0, a, dest - (length2 - 1), length2);
+        }
+    }
+
+    private Object[] ensureBufferCapacity(int capacity) {
+        if (buffer.length < capacity) {
+            buffer = new Object[Math.max(capacity, Math.min(buffer.length * 2, length >>> 1))];
+        }
+        return buffer;
+    }
+}
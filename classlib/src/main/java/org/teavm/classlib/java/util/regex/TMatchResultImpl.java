@@ -74,6 +74,15 @@ class TMatchResultImpl implements TMatchResult {
         reset(string, leftBound, rightBound);
     }
 
+    /*
+     * Called when the backtracking matcher of a precompiled pattern is built after the matcher was created
+     */
+    void initCounters(int compQuantCount, int consumersCount) {
+        this.consumers = new int[consumersCount];
+        Arrays.fill(consumers, -1);
+        this.compQuantCounters = compQuantCount > 0 ? new int[compQuantCount] : null;
+    }
+
     TMatchResult cloneImpl() {
         TMatchResultImpl res = new TMatchResultImpl(this.string, this.leftBound, this.rightBound, this.groupCount - 1, 0,
                 0);
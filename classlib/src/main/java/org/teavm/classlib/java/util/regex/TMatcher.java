@@ -74,6 +74,11 @@ public final class TMatcher implements TMatchResult {
 
     private ArrayList<Object> replacementParts = null;
 
+    /*
+     * Whether the input contains surrogate characters: -1 when not known yet, 0 or 1 otherwise
+     */
+    private int surrogates = -1;
+
     /**
      * Appends a literal part of the input plus a replacement for the current
      * match to a given {@link StringBuffer}. The literal part is exactly the
@@ -210,6 +215,7 @@ public final class TMatcher implements TMatchResult {
         this.leftBound = 0;
         this.rightBound = string.length();
         matchResult.reset(string, leftBound, rightBound);
+        surrogates = -1;
         appendPos = 0;
         replacement = null;
         matchResult.previousMatch = -1;
@@ -362,7 +368,8 @@ public final class TMatcher implements TMatchResult {
         matchResult.reset();
         matchResult.setMode(TMatcher.MODE_FIND);
         matchResult.setStartIndex(startIndex);
-        int foundIndex = start.find(startIndex, string, matchResult);
+        int foundIndex = useAutomaton() ? pat.getAutomaton().find(string, startIndex, matchResult)
+                : backtracker().find(startIndex, string, matchResult);
         if (foundIndex == -1) {
             matchResult.hitEnd = true;
         }
@@ -502,7 +509,44 @@ public final class TMatcher implements TMatchResult {
         matchResult.reset();
         matchResult.setMode(mode);
         matchResult.setStartIndex(startIndex);
-        return runMatch(start, startIndex, matchResult);
+        if (useAutomaton()) {
+            boolean matched = mode == TMatcher.MODE_MATCH
+                    ? pat.getAutomaton().matches(string, startIndex, matchResult)
+                    : pat.getAutomaton().lookingAt(string, startIndex, matchResult);
+            if (matched) {
+                matchResult.finalizeMatch();
+            }
+            return matched;
+        }
+        return runMatch(backtracker(), startIndex, matchResult);
+    }
+
+    /*
+     * Automaton evaluates assertions as if region was the whole input and does not know about
+     * supplementary characters
+     */
+    private boolean useAutomaton() {
+        if (leftBound != 0 || rightBound != string.length() || pat.getAutomaton() == null) {
+            return false;
+        }
+        if (surrogates < 0) {
+            surrogates = 0;
+            for (int i = 0; i < rightBound; ++i) {
+                if (Character.isSurrogate(string.charAt(i))) {
+                    surrogates = 1;
+                    break;
+                }
+            }
+        }
+        return surrogates == 0;
+    }
+
+    private TAbstractSet backtracker() {
+        if (start == null) {
+            start = pat.getStart();
+            matchResult.initCounters(pat.compCount(), pat.consCount());
+        }
+        return start;
     }
 
     /**
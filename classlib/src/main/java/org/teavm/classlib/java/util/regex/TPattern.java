@@ -126,6 +126,8 @@ public final class TPattern implements Serializable {
      */
     private transient TLexer lexemes = null;
 
+    private String source;
+
     /**
      * Pattern compile flags;
      */
@@ -149,6 +151,13 @@ public final class TPattern implements Serializable {
 
     transient TAbstractSet start = null;
 
+    /*
+     * Linear time matcher, used instead of start when the expression allows it
+     */
+    transient private TRegexAutomaton automaton;
+
+    transient private boolean automatonBuilt;
+
     /**
      * Returns a {@link TMatcher} for the {@code Pattern} and a given input. The
      * {@code Matcher} can be used to match the {@code Pattern} against the
@@ -242,7 +251,7 @@ public final class TPattern implements Serializable {
      * @return the regular expression.
      */
     public String pattern() {
-        return lexemes.toString();
+        return source;
     }
 
     @Override
@@ -305,6 +314,41 @@ public final class TPattern implements Serializable {
         return new TPattern().compileImpl(pattern, flags);
     }
 
+    static TPattern precompiled(String pattern, int flags, TRegexAutomaton automaton) {
+        TPattern result = new TPattern();
+        result.source = pattern;
+        result.flags = flags;
+        result.automaton = automaton;
+        result.automatonBuilt = true;
+        result.globalGroupIndex = automaton.groupCount();
+        return result;
+    }
+
+    /**
+     * Returns the linear time matcher, building it on first use, or <code>null</code> if the expression
+     * is not supported by {@link TRegexAutomaton}. Patterns that are compiled but never matched don't pay for it.
+     */
+    TRegexAutomaton getAutomaton() {
+        if (!automatonBuilt) {
+            automatonBuilt = true;
+            automaton = TRegexAutomaton.create(TRegexProgramBuilder.build(source, flags, true));
+        }
+        return automaton;
+    }
+
+    /**
+     * Returns the first node of the backtracking matcher, building it first for patterns that were
+     * precompiled to {@link TRegexAutomaton}.
+     */
+    TAbstractSet getStart() {
+        if (start == null) {
+            TAbstractSet.counter = 1;
+            globalGroupIndex = -1;
+            compileImpl(source, flags);
+        }
+        return start;
+    }
+
     /**
      *
      * @param pattern
@@ -317,6 +361,7 @@ public final class TPattern implements Serializable {
      */
     private TPattern compileImpl(String pattern, int flags) throws TPatternSyntaxException {
         this.lexemes = new TLexer(pattern, flags);
+        this.source = pattern;
         this.flags = flags;
 
         start = processExpression(-1, this.flags, null);
@@ -987,7 +1032,7 @@ public final class TPattern implements Serializable {
     }
 
     private TAbstractSet processRange(boolean negative, TAbstractSet last) {
-        TAbstractCharClass res = processRangeExpression(negative);
+        TAbstractCharClass res = processRangeExpression(lexemes, flags, negative);
         TAbstractSet rangeSet = processRangeSet(res);
         rangeSet.setNext(last);
 
@@ -997,8 +1042,9 @@ public final class TPattern implements Serializable {
     /**
      * process [...] ranges
      */
-    private TCharClass processRangeExpression(boolean alt) {
-        TCharClass res = new TCharClass(alt, hasFlag(TPattern.CASE_INSENSITIVE), hasFlag(TPattern.UNICODE_CASE));
+    static TCharClass processRangeExpression(TLexer lexemes, int flags, boolean alt) {
+        TCharClass res = new TCharClass(alt, (flags & TPattern.CASE_INSENSITIVE) != 0,
+                (flags & TPattern.UNICODE_CASE) != 0);
         int buffer = -1;
         boolean intersection = false;
         boolean notClosed = false;
@@ -1027,9 +1073,9 @@ public final class TPattern implements Serializable {
                     }
 
                     if (intersection)
-                        res.intersection(processRangeExpression(negative));
+                        res.intersection(processRangeExpression(lexemes, flags, negative));
                     else
-                        res.union(processRangeExpression(negative));
+                        res.union(processRangeExpression(lexemes, flags, negative));
                     intersection = false;
                     lexemes.next();
                     break;
@@ -1054,13 +1100,13 @@ public final class TPattern implements Serializable {
                             if (firstInClass) {
 
                                 // skip "&&" at "[&&...]" or "[^&&...]"
-                                res = processRangeExpression(false);
+                                res = processRangeExpression(lexemes, flags, false);
                             } else {
 
                                 // ignore "&&" at "[X&&]" ending where X !=
                                 // empty string
                                 if (!(lexemes.peek() == TLexer.CHAR_RIGHT_SQUARE_BRACKET)) {
-                                    res.intersection(processRangeExpression(false));
+                                    res.intersection(processRangeExpression(lexemes, flags, false));
                                 }
                             }
 
@@ -1097,12 +1143,12 @@ public final class TPattern implements Serializable {
                                 }
                                 res.add(buffer, cur);
                             } catch (Exception e) {
-                                throw new TPatternSyntaxException("", pattern(), lexemes.getIndex());
+                                throw new TPatternSyntaxException("", lexemes.toString(), lexemes.getIndex());
                             }
                             lexemes.next();
                             buffer = -1;
                         } else {
-                            throw new TPatternSyntaxException("", pattern(), lexemes.getIndex());
+                            throw new TPatternSyntaxException("", lexemes.toString(), lexemes.getIndex());
                         }
                     }
 
@@ -1143,7 +1189,7 @@ public final class TPattern implements Serializable {
             firstInClass = false;
         }
         if (notClosed) {
-            throw new TPatternSyntaxException("", pattern(), lexemes.getIndex() - 1);
+            throw new TPatternSyntaxException("", lexemes.toString(), lexemes.getIndex() - 1);
         }
         if (buffer >= 0)
             res.add(buffer);
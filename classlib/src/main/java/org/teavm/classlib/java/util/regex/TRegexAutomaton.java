@@ -0,0 +1,261 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.regex;
+
+import java.util.Arrays;
+import org.teavm.classlib.impl.CharFlow;
+
+/**
+ * <p>Matches a {@link TRegexProgram} in time linear to the length of input. {@link TRegexDfa} decides whether
+ * there is a match and where it ends, captures are then recovered by a Pike VM that runs only up to the end
+ * of the match.</p>
+ *
+ * <p>{@link TPattern#compile(String, int)} creates automaton for every expression without backreferences,
+ * lookaround and other constructs that can't be expressed by a finite automaton. {@link TMatcher} uses it
+ * unless a region is set or input contains surrogate characters.</p>
+ *
+ * <p>{@link #precompile(String, int)} is called by the class library at build time for every
+ * <code>Pattern.compile</code> with constant arguments, generated code passes its result to
+ * {@link #pattern(String, int, String)}, so that the expression is not parsed at run time.</p>
+ */
+public final class TRegexAutomaton {
+    private static final int FIND = 0;
+    private static final int PREFIX = 1;
+    private static final int MATCH = 2;
+
+    final TRegexProgram program;
+    private TRegexDfa findDfa;
+    private TRegexDfa matchDfa;
+    private int[] marks;
+    private int generation;
+    private int[] stack;
+    private int[] currentPcs;
+    private int[][] currentCaps;
+    private int currentCount;
+    private int[] nextPcs;
+    private int[][] nextCaps;
+    private int nextCount;
+
+    private TRegexAutomaton(TRegexProgram program, TRegexDfa findDfa, TRegexDfa matchDfa) {
+        this.program = program;
+        this.findDfa = findDfa;
+        this.matchDfa = matchDfa;
+        int size = program.instructionCount();
+        marks = new int[size];
+        stack = new int[size * 4 + 2];
+        currentPcs = new int[size];
+        currentCaps = new int[size][];
+        nextPcs = new int[size];
+        nextCaps = new int[size][];
+    }
+
+    static TRegexAutomaton create(TRegexProgram program) {
+        if (program == null) {
+            return null;
+        }
+        TRegexDfa findDfa = TRegexDfa.build(program, true);
+        if (findDfa == null) {
+            return null;
+        }
+        TRegexDfa matchDfa = TRegexDfa.build(program, false);
+        if (matchDfa == null) {
+            return null;
+        }
+        return new TRegexAutomaton(program, findDfa, matchDfa);
+    }
+
+    /**
+     * Compiles regular expression into serialized form of {@link TRegexProgram}.
+     *
+     * @return serialized program or <code>null</code> if the expression can't be matched by automaton.
+     * @throws TPatternSyntaxException if the regular expression is syntactically incorrect.
+     */
+    public static String precompile(String pattern, int flags) {
+        TPattern.compile(pattern, flags);
+        TRegexProgram program = TRegexProgramBuilder.build(pattern, flags, false);
+        if (create(program) == null) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        program.write(sb);
+        return sb.toString();
+    }
+
+    /**
+     * Creates pattern from the result of {@link #precompile(String, int)}.
+     */
+    public static TPattern pattern(String pattern, int flags, String data) {
+        TRegexAutomaton automaton = create(TRegexProgram.read(new CharFlow(data.toCharArray())));
+        return automaton != null ? TPattern.precompiled(pattern, flags, automaton) : TPattern.compile(pattern, flags);
+    }
+
+    int groupCount() {
+        return program.groupCount;
+    }
+
+    /**
+     * Finds the leftmost match at or after <code>from</code>.
+     *
+     * @return start of the match or <code>-1</code>.
+     */
+    int find(CharSequence s, int from, TMatchResultImpl result) {
+        int end = findDfa.run(s, from, result);
+        if (end < 0) {
+            return -1;
+        }
+        int[] caps = execute(s, findDfa.idlePosition, end, FIND, null);
+        fill(caps, result);
+        return caps[0];
+    }
+
+    boolean matches(CharSequence s, int from, TMatchResultImpl result) {
+        if (matchDfa.run(s, from, result) < 0) {
+            return false;
+        }
+        if (program.groupCount == 0) {
+            result.setStart(0, from);
+            result.setEnd(0, s.length());
+            result.setValid();
+            return true;
+        }
+        fill(execute(s, from, s.length(), MATCH, null), result);
+        return true;
+    }
+
+    boolean lookingAt(CharSequence s, int from, TMatchResultImpl result) {
+        int[] caps = execute(s, from, s.length(), PREFIX, result);
+        if (caps == null) {
+            return false;
+        }
+        fill(caps, result);
+        return true;
+    }
+
+    private void fill(int[] caps, TMatchResultImpl result) {
+        for (int i = 0; i <= program.groupCount; ++i) {
+            result.setStart(i, caps[i * 2]);
+            result.setEnd(i, caps[i * 2 + 1]);
+        }
+        result.setValid();
+    }
+
+    private int[] execute(CharSequence s, int from, int stop, int mode, TMatchResultImpl result) {
+        int end = s.length();
+        int[] initialCaps = new int[(program.groupCount + 1) * 2];
+        Arrays.fill(initialCaps, -1);
+        int[] matched = null;
+
+        ++generation;
+        nextCount = 0;
+        addThread(program.start, initialCaps, s, from, result);
+        swap();
+        for (int pos = from;; ++pos) {
+            ++generation;
+            nextCount = 0;
+            for (int i = 0; i < currentCount; ++i) {
+                int pc = currentPcs[i];
+                if (program.op(pc) == TRegexProgram.MATCH) {
+                    if (mode != MATCH || pos == end) {
+                        matched = currentCaps[i];
+                        break;
+                    }
+                } else if (pos == end) {
+                    if (result != null) {
+                        result.hitEnd = true;
+                    }
+                } else if (pos < stop && TRegexProgram.contains(program.sets[program.arg(pc)], s.charAt(pos))) {
+                    addThread(pc + 1, currentCaps[i], s, pos + 1, result);
+                }
+            }
+            if (pos >= stop) {
+                break;
+            }
+            if (matched == null && mode == FIND) {
+                addThread(program.start, initialCaps, s, pos + 1, result);
+            }
+            swap();
+            if (currentCount == 0 && (matched != null || mode != FIND)) {
+                break;
+            }
+        }
+        return matched;
+    }
+
+    private void swap() {
+        int[] pcs = currentPcs;
+        currentPcs = nextPcs;
+        nextPcs = pcs;
+        int[][] caps = currentCaps;
+        currentCaps = nextCaps;
+        nextCaps = caps;
+        currentCount = nextCount;
+    }
+
+    private void addThread(int startPc, int[] caps, CharSequence s, int pos, TMatchResultImpl result) {
+        int end = s.length();
+        int sp = 0;
+        stack[sp++] = startPc;
+        stack[sp++] = 0;
+        while (sp > 0) {
+            int value = stack[--sp];
+            int pc = stack[--sp];
+            if (pc < 0) {
+                caps[-pc - 1] = value;
+                continue;
+            }
+            if (marks[pc] == generation) {
+                continue;
+            }
+            marks[pc] = generation;
+            switch (program.op(pc)) {
+                case TRegexProgram.SET:
+                case TRegexProgram.MATCH:
+                    nextPcs[nextCount] = pc;
+                    nextCaps[nextCount++] = Arrays.copyOf(caps, caps.length);
+                    break;
+                case TRegexProgram.SPLIT:
+                    stack[sp++] = program.arg2(pc);
+                    stack[sp++] = 0;
+                    stack[sp++] = program.arg(pc);
+                    stack[sp++] = 0;
+                    break;
+                case TRegexProgram.JUMP:
+                    stack[sp++] = program.arg(pc);
+                    stack[sp++] = 0;
+                    break;
+                case TRegexProgram.SAVE: {
+                    int slot = program.arg(pc);
+                    stack[sp++] = -slot - 1;
+                    stack[sp++] = caps[slot];
+                    caps[slot] = pos;
+                    stack[sp++] = pc + 1;
+                    stack[sp++] = 0;
+                    break;
+                }
+                case TRegexProgram.ASSERT:
+                    if (TRegexProgram.test(program.arg(pc), s, pos, end)) {
+                        if (result != null && program.arg(pc) == TRegexProgram.END_INPUT) {
+                            result.hitEnd = true;
+                            result.requireEnd = true;
+                        }
+                        stack[sp++] = pc + 1;
+                        stack[sp++] = 0;
+                    }
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,480 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.regex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Deterministic automaton obtained from {@link TRegexProgram} by subset construction. A state is an ordered
+ * list of NFA threads together with a context that holds whatever assertions need to know about the previous
+ * character. Characters are partitioned into classes that no character set of the program distinguishes.</p>
+ *
+ * <p>States and transitions are built lazily, when input first reaches them. At most {@link #MAX_STATES} states
+ * are cached, when the cache is full it is discarded and construction continues from the current state. So
+ * memory is bounded and every character costs at most one step of NFA simulation.</p>
+ *
+ * <p>In find mode lower priority threads are dropped as soon as a higher priority thread matches, so
+ * the automaton reports the end of the same match the backtracking engine would find. In match mode only
+ * matches at the end of input are reported.</p>
+ */
+final class TRegexDfa {
+    static final int MAX_STATES = 1024;
+    static final int MAX_TABLE_SIZE = 1 << 18;
+    private static final int EOF_MATCH = 1;
+    private static final int EOF_HIT_END = 2;
+    private static final int EOF_REQUIRE_END = 4;
+    private static final int IDLE = 8;
+    private static final int UNKNOWN = -1;
+    private static final int MIN_STATES = 16;
+    private static final int CONTEXT_COUNT = 24;
+    private static final int WORD_NONE = 0;
+    private static final int WORD_LETTER_OR_DIGIT = 1;
+    private static final int WORD_UNDERSCORE = 2;
+    private static final int CATEGORY_LETTER_OR_DIGIT = 1;
+    private static final int CATEGORY_MARK = 2;
+
+    private TRegexProgram program;
+    private boolean find;
+    private boolean usesStart;
+    private boolean usesLines;
+    private boolean usesWords;
+    private boolean usesFinal;
+    private int[] classStarts;
+    private int[] asciiClasses = new int[128];
+    private int[] lineKinds;
+    private int underscoreClass = -1;
+    private int categoryCount;
+    private int finalCount;
+    private int symbolCount;
+    private int capacity;
+    private int[] startStates = new int[CONTEXT_COUNT];
+    private int[] table;
+    private byte[] stateFlags;
+
+    /*
+     * Position where the last find run saw no threads except for the one that restarts search. The match
+     * can't start before this position.
+     */
+    int idlePosition;
+
+    private List<int[]> kernels = new ArrayList<>();
+    private List<Integer> contexts = new ArrayList<>();
+    private Map<String, Integer> stateIndexes = new HashMap<>();
+    private int[] marks;
+    private int generation;
+    private int[] stack;
+    private int[] threads;
+    private int threadCount;
+
+    private TRegexDfa(TRegexProgram program, boolean find) {
+        this.program = program;
+        this.find = find;
+        usesStart = program.usesAssertion(TRegexProgram.BEGIN_INPUT)
+                || program.usesAssertion(TRegexProgram.BEGIN_LINE)
+                || program.usesAssertion(TRegexProgram.BEGIN_UNIX_LINE);
+        usesLines = program.usesAssertion(TRegexProgram.BEGIN_LINE)
+                || program.usesAssertion(TRegexProgram.BEGIN_UNIX_LINE);
+        usesWords = program.usesAssertion(TRegexProgram.WORD_BOUNDARY)
+                || program.usesAssertion(TRegexProgram.NON_WORD_BOUNDARY);
+        usesFinal = program.usesAssertion(TRegexProgram.END);
+        categoryCount = usesWords ? 3 : 1;
+        finalCount = usesFinal ? 2 : 1;
+        buildClasses(usesLines || program.usesAssertion(TRegexProgram.END_LINE));
+        symbolCount = classStarts.length * categoryCount * finalCount;
+        capacity = Math.min(MAX_STATES, MAX_TABLE_SIZE / symbolCount);
+
+        int size = program.instructionCount();
+        marks = new int[size];
+        stack = new int[size * 3];
+        threads = new int[size];
+        table = new int[symbolCount * MIN_STATES];
+        stateFlags = new byte[MIN_STATES];
+        reset();
+    }
+
+    /**
+     * Creates automaton for the given program, returns <code>null</code> when there are so many character
+     * classes that the transition table can't hold even a few states within {@link #MAX_TABLE_SIZE}.
+     */
+    static TRegexDfa build(TRegexProgram program, boolean find) {
+        TRegexDfa dfa = new TRegexDfa(program, find);
+        return dfa.capacity >= MIN_STATES ? dfa : null;
+    }
+
+    private void buildClasses(boolean splitTerminators) {
+        int[] bounds = new int[16];
+        int count = 0;
+        bounds[count++] = 0;
+        for (int[] set : program.sets) {
+            for (int i = 0; i < set.length; i += 2) {
+                if (count + 2 > bounds.length) {
+                    bounds = Arrays.copyOf(bounds, bounds.length * 2);
+                }
+                bounds[count++] = set[i];
+                bounds[count++] = set[i + 1] + 1;
+            }
+        }
+        if (count + 12 > bounds.length) {
+            bounds = Arrays.copyOf(bounds, count + 12);
+        }
+        if (splitTerminators) {
+            for (char terminator : new char[] { '\n', '\r', '\u0085', '\u2028', '\u2029' }) {
+                bounds[count++] = terminator;
+                bounds[count++] = terminator + 1;
+            }
+        }
+        if (usesWords) {
+            bounds[count++] = '_';
+            bounds[count++] = '_' + 1;
+        }
+        Arrays.sort(bounds, 0, count);
+        int unique = 0;
+        for (int i = 0; i < count; ++i) {
+            if (bounds[i] <= 0xFFFF && (unique == 0 || bounds[unique - 1] != bounds[i])) {
+                bounds[unique++] = bounds[i];
+            }
+        }
+        classStarts = Arrays.copyOf(bounds, unique);
+
+        lineKinds = new int[unique];
+        for (int i = 0; i < unique; ++i) {
+            lineKinds[i] = lineKind((char) classStarts[i]);
+        }
+        if (usesWords) {
+            underscoreClass = classOf('_');
+        }
+        for (int i = 0; i < asciiClasses.length; ++i) {
+            asciiClasses[i] = classOf((char) i);
+        }
+    }
+
+    private int classOf(char ch) {
+        int l = 0;
+        int u = classStarts.length - 1;
+        while (l < u) {
+            int i = (l + u + 1) >>> 1;
+            if (classStarts[i] <= ch) {
+                l = i;
+            } else {
+                u = i - 1;
+            }
+        }
+        return l;
+    }
+
+    private static int lineKind(char ch) {
+        switch (ch) {
+            case '\n':
+                return 1;
+            case '\r':
+                return 3;
+            case '\u0085':
+            case '\u2028':
+            case '\u2029':
+                return 2;
+            default:
+                return 0;
+        }
+    }
+
+    private void reset() {
+        kernels.clear();
+        contexts.clear();
+        stateIndexes.clear();
+        kernels.add(new int[0]);
+        contexts.add(0);
+        stateFlags[0] = 0;
+        Arrays.fill(startStates, UNKNOWN);
+    }
+
+    private int startState(int context) {
+        int state = startStates[context];
+        if (state == UNKNOWN) {
+            if (kernels.size() >= capacity) {
+                reset();
+            }
+            state = stateIndex(new int[] { find ? program.searchStart : program.start }, 1, context);
+            startStates[context] = state;
+        }
+        return state;
+    }
+
+    private int computeTransition(int state, int symbol) {
+        int[] kernel = kernels.get(state);
+        int context = contexts.get(state);
+        if (kernels.size() >= capacity) {
+            reset();
+            state = stateIndex(kernel, kernel.length, context);
+        }
+        int transition = transition(kernel, context, symbol);
+        table[state * symbolCount + symbol] = transition;
+        return transition;
+    }
+
+    private int transition(int[] kernel, int context, int symbol) {
+        int cls = symbol / (categoryCount * finalCount);
+        int category = (symbol / finalCount) % categoryCount;
+        boolean isFinal = symbol % finalCount != 0;
+        int flags = closure(kernel, context, cls, category, isFinal);
+
+        int representative = classStarts[cls];
+        int[] next = new int[threadCount];
+        int nextCount = 0;
+        ++generation;
+        for (int i = 0; i < threadCount; ++i) {
+            int pc = threads[i];
+            if (TRegexProgram.contains(program.sets[program.arg(pc)], representative) && marks[pc + 1] != generation) {
+                marks[pc + 1] = generation;
+                next[nextCount++] = pc + 1;
+            }
+        }
+        int nextContext = 0;
+        if (usesLines) {
+            nextContext |= lineKinds[cls] << 1;
+        }
+        if (usesWords) {
+            nextContext |= nextWordContext(context >> 3, cls, category) << 3;
+        }
+        int nextState = stateIndex(next, nextCount, nextContext);
+        return (nextState << 1) | (find && (flags & EOF_MATCH) != 0 ? 1 : 0);
+    }
+
+    private int nextWordContext(int word, int cls, int category) {
+        if (category == CATEGORY_LETTER_OR_DIGIT) {
+            return WORD_LETTER_OR_DIGIT;
+        } else if (cls == underscoreClass) {
+            return WORD_UNDERSCORE;
+        } else if (category == CATEGORY_MARK && word == WORD_LETTER_OR_DIGIT) {
+            return WORD_LETTER_OR_DIGIT;
+        } else {
+            return WORD_NONE;
+        }
+    }
+
+    private int eofFlags(int[] kernel, int context) {
+        int flags = closure(kernel, context, -1, 0, false);
+        if (threadCount > 0) {
+            flags |= EOF_HIT_END;
+        }
+        return flags;
+    }
+
+    private int stateIndex(int[] kernel, int size, int context) {
+        if (size == 0) {
+            return 0;
+        }
+        char[] key = new char[size + 1];
+        key[0] = (char) context;
+        for (int i = 0; i < size; ++i) {
+            key[i + 1] = (char) kernel[i];
+        }
+        String keyString = new String(key);
+        Integer index = stateIndexes.get(keyString);
+        if (index == null) {
+            index = kernels.size();
+            kernel = size == kernel.length ? kernel : Arrays.copyOf(kernel, size);
+            kernels.add(kernel);
+            contexts.add(context);
+            stateIndexes.put(keyString, index);
+            if ((index + 1) * symbolCount > table.length) {
+                table = Arrays.copyOf(table, Math.min(table.length * 2, capacity * symbolCount));
+                stateFlags = Arrays.copyOf(stateFlags, table.length / symbolCount);
+            }
+            Arrays.fill(table, index * symbolCount, (index + 1) * symbolCount, UNKNOWN);
+            int flags = eofFlags(kernel, context);
+            if (find && size == 1 && (kernel[0] == program.searchStart || kernel[0] == program.searchStart + 2)) {
+                flags |= IDLE;
+            }
+            stateFlags[index] = (byte) flags;
+        }
+        return index;
+    }
+
+    /**
+     * Follows non-consuming instructions from the given threads, collects reached {@link TRegexProgram#SET}
+     * instructions into {@link #threads} in priority order. <code>cls</code> is <code>-1</code> at the end of
+     * input.
+     */
+    private int closure(int[] kernel, int context, int cls, int category, boolean isFinal) {
+        ++generation;
+        threadCount = 0;
+        int flags = 0;
+        int sp = 0;
+        for (int i = kernel.length - 1; i >= 0; --i) {
+            stack[sp++] = kernel[i];
+        }
+        while (sp > 0) {
+            int pc = stack[--sp];
+            if (marks[pc] == generation) {
+                continue;
+            }
+            marks[pc] = generation;
+            switch (program.op(pc)) {
+                case TRegexProgram.SET:
+                    threads[threadCount++] = pc;
+                    break;
+                case TRegexProgram.SPLIT:
+                    stack[sp++] = program.arg2(pc);
+                    stack[sp++] = program.arg(pc);
+                    break;
+                case TRegexProgram.JUMP:
+                    stack[sp++] = program.arg(pc);
+                    break;
+                case TRegexProgram.SAVE:
+                    stack[sp++] = pc + 1;
+                    break;
+                case TRegexProgram.ASSERT:
+                    if (test(program.arg(pc), context, cls, category, isFinal)) {
+                        if (program.arg(pc) == TRegexProgram.END_INPUT) {
+                            flags |= EOF_HIT_END | EOF_REQUIRE_END;
+                        }
+                        stack[sp++] = pc + 1;
+                    }
+                    break;
+                case TRegexProgram.MATCH:
+                    if (find || cls < 0) {
+                        return flags | EOF_MATCH;
+                    }
+                    break;
+            }
+        }
+        return flags;
+    }
+
+    private boolean test(int kind, int context, int cls, int category, boolean isFinal) {
+        boolean eof = cls < 0;
+        boolean start = (context & 1) != 0;
+        int line = (context >> 1) & 3;
+        int word = context >> 3;
+        switch (kind) {
+            case TRegexProgram.BEGIN_INPUT:
+                return start;
+            case TRegexProgram.BEGIN_LINE:
+                return !eof && (start || line == 1 || line == 2 || (line == 3 && lineKinds[cls] != 1));
+            case TRegexProgram.BEGIN_UNIX_LINE:
+                return !eof && (start || line == 1);
+            case TRegexProgram.END_INPUT:
+                return eof;
+            case TRegexProgram.END:
+                return eof || isFinal;
+            case TRegexProgram.END_LINE:
+                return eof || lineKinds[cls] != 0;
+            case TRegexProgram.WORD_BOUNDARY:
+            case TRegexProgram.NON_WORD_BOUNDARY: {
+                boolean before = word != WORD_NONE;
+                boolean after = !eof && (category == CATEGORY_LETTER_OR_DIGIT || cls == underscoreClass
+                        || (category == CATEGORY_MARK && word == WORD_LETTER_OR_DIGIT));
+                return (before != after) == (kind == TRegexProgram.WORD_BOUNDARY);
+            }
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Runs automaton from <code>from</code> to the end of <code>s</code>, returns the end of the match or
+     * <code>-1</code>. Sets {@link TMatchResultImpl#hitEnd} and {@link TMatchResultImpl#requireEnd}
+     * the way the backtracking engine does.
+     */
+    int run(CharSequence s, int from, TMatchResultImpl result) {
+        int end = s.length();
+        int state = startState(initialContext(s, from));
+        int matchEnd = -1;
+        int pos = from;
+        idlePosition = from;
+        while (state != 0) {
+            int flags = stateFlags[state];
+            if ((flags & IDLE) != 0) {
+                idlePosition = pos;
+            }
+            if (pos == end) {
+                if ((flags & EOF_MATCH) != 0) {
+                    matchEnd = end;
+                }
+                if ((flags & EOF_HIT_END) != 0) {
+                    result.hitEnd = true;
+                }
+                if ((flags & EOF_REQUIRE_END) != 0) {
+                    result.requireEnd = true;
+                }
+                break;
+            }
+            int symbol = symbol(s, pos, end);
+            int transition = table[state * symbolCount + symbol];
+            if (transition == UNKNOWN) {
+                transition = computeTransition(state, symbol);
+            }
+            if ((transition & 1) != 0) {
+                matchEnd = pos;
+            }
+            state = transition >>> 1;
+            ++pos;
+        }
+        return matchEnd;
+    }
+
+    private int symbol(CharSequence s, int pos, int end) {
+        char ch = s.charAt(pos);
+        int symbol = ch < 128 ? asciiClasses[ch] : classOf(ch);
+        if (usesWords) {
+            symbol = symbol * categoryCount + category(ch);
+        }
+        if (usesFinal) {
+            boolean isFinal = (end - pos == 1 && TRegexProgram.isLineTerminator(ch))
+                    || (end - pos == 2 && ch == '\r' && s.charAt(pos + 1) == '\n');
+            symbol = symbol * 2 + (isFinal ? 1 : 0);
+        }
+        return symbol;
+    }
+
+    private static int category(char ch) {
+        if (Character.isLetterOrDigit(ch)) {
+            return CATEGORY_LETTER_OR_DIGIT;
+        }
+        return Character.getType(ch) == Character.NON_SPACING_MARK ? CATEGORY_MARK : 0;
+    }
+
+    private int initialContext(CharSequence s, int from) {
+        if (from == 0) {
+            return usesStart ? 1 : 0;
+        }
+        int context = 0;
+        char ch = s.charAt(from - 1);
+        if (usesLines) {
+            context |= lineKind(ch) << 1;
+        }
+        if (usesWords) {
+            int word = WORD_NONE;
+            if (ch == '_') {
+                word = WORD_UNDERSCORE;
+            } else {
+                for (int i = from - 1; i >= 0; --i) {
+                    int category = category(s.charAt(i));
+                    if (category != CATEGORY_MARK) {
+                        word = category == CATEGORY_LETTER_OR_DIGIT ? WORD_LETTER_OR_DIGIT : WORD_NONE;
+                        break;
+                    }
+                }
+            }
+            context |= word << 3;
+        }
+        return context;
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.regex;
+
+import org.teavm.classlib.impl.Base46;
+import org.teavm.classlib.impl.CharFlow;
+
+/**
+ * <p>Thompson NFA for a regular expression without backreferences and lookaround. Each instruction
+ * takes three slots of {@link #code}: an opcode and two operands. {@link #SPLIT} prefers its first
+ * target, so thread priorities reproduce the leftmost-first semantics of the backtracking engine.</p>
+ *
+ * <p>Assertions are evaluated exactly as {@link TSOLSet}, {@link TMultiLineSOLSet}, {@link TEOLSet},
+ * {@link TMultiLineEOLSet}, {@link TEOISet} and {@link TWordBoundary} do for a matcher whose region is
+ * the whole input.</p>
+ */
+final class TRegexProgram {
+    static final int SET = 0;
+    static final int SPLIT = 1;
+    static final int JUMP = 2;
+    static final int SAVE = 3;
+    static final int ASSERT = 4;
+    static final int MATCH = 5;
+
+    static final int BEGIN_INPUT = 0;
+    static final int BEGIN_LINE = 1;
+    static final int BEGIN_UNIX_LINE = 2;
+    static final int END_INPUT = 3;
+    static final int END = 4;
+    static final int END_LINE = 5;
+    static final int WORD_BOUNDARY = 6;
+    static final int NON_WORD_BOUNDARY = 7;
+
+    int[] code;
+    int[][] sets;
+    int groupCount;
+    int start;
+    int searchStart;
+
+    int instructionCount() {
+        return code.length / 3;
+    }
+
+    int op(int pc) {
+        return code[pc * 3];
+    }
+
+    int arg(int pc) {
+        return code[pc * 3 + 1];
+    }
+
+    int arg2(int pc) {
+        return code[pc * 3 + 2];
+    }
+
+    boolean usesAssertion(int kind) {
+        for (int pc = 0; pc < instructionCount(); ++pc) {
+            if (op(pc) == ASSERT && arg(pc) == kind) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean contains(int[] ranges, int ch) {
+        int l = 0;
+        int u = ranges.length / 2 - 1;
+        while (l <= u) {
+            int i = (l + u) >>> 1;
+            if (ch < ranges[i * 2]) {
+                u = i - 1;
+            } else if (ch > ranges[i * 2 + 1]) {
+                l = i + 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean test(int kind, CharSequence s, int pos, int end) {
+        switch (kind) {
+            case BEGIN_INPUT:
+                return pos == 0;
+            case BEGIN_LINE:
+                if (pos == end) {
+                    return false;
+                }
+                return pos == 0 || isAfterLineTerminator(s.charAt(pos - 1), s.charAt(pos));
+            case BEGIN_UNIX_LINE:
+                return pos != end && (pos == 0 || s.charAt(pos - 1) == '\n');
+            case END_INPUT:
+                return pos >= end;
+            case END:
+                if (pos >= end) {
+                    return true;
+                }
+                if (end - pos == 2) {
+                    return s.charAt(pos) == '\r' && s.charAt(pos + 1) == '\n';
+                }
+                return end - pos == 1 && isLineTerminator(s.charAt(pos));
+            case END_LINE:
+                return pos >= end || isLineTerminator(s.charAt(pos));
+            case WORD_BOUNDARY:
+                return isWord(s, pos, end) != isWord(s, pos - 1, end);
+            case NON_WORD_BOUNDARY:
+                return isWord(s, pos, end) == isWord(s, pos - 1, end);
+            default:
+                return false;
+        }
+    }
+
+    static boolean isLineTerminator(char ch) {
+        return ch == '\n' || ch == '\r' || ch == '\u0085' || (ch | 1) == '\u2029';
+    }
+
+    static boolean isAfterLineTerminator(char ch, char next) {
+        return ch == '\n' || ch == '\u0085' || (ch | 1) == '\u2029' || (ch == '\r' && next != '\n');
+    }
+
+    private static boolean isWord(CharSequence s, int index, int end) {
+        if (index < 0 || index >= end) {
+            return false;
+        }
+        char ch = s.charAt(index);
+        if (Character.isLetterOrDigit(ch) || ch == '_') {
+            return true;
+        }
+        if (Character.getType(ch) == Character.NON_SPACING_MARK) {
+            while (--index >= 0) {
+                ch = s.charAt(index);
+                if (Character.isLetterOrDigit(ch)) {
+                    return true;
+                }
+                if (Character.getType(ch) != Character.NON_SPACING_MARK) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    void write(StringBuilder sb) {
+        Base46.encodeUnsigned(sb, groupCount);
+        Base46.encodeUnsigned(sb, start);
+        Base46.encodeUnsigned(sb, searchStart);
+        Base46.encodeUnsigned(sb, code.length);
+        for (int value : code) {
+            Base46.encodeUnsigned(sb, value);
+        }
+        Base46.encodeUnsigned(sb, sets.length);
+        for (int[] set : sets) {
+            Base46.encodeUnsigned(sb, set.length);
+            int last = 0;
+            for (int value : set) {
+                Base46.encodeUnsigned(sb, value - last);
+                last = value;
+            }
+        }
+    }
+
+    static TRegexProgram read(CharFlow flow) {
+        TRegexProgram program = new TRegexProgram();
+        program.groupCount = Base46.decodeUnsigned(flow);
+        program.start = Base46.decodeUnsigned(flow);
+        program.searchStart = Base46.decodeUnsigned(flow);
+        program.code = new int[Base46.decodeUnsigned(flow)];
+        for (int i = 0; i < program.code.length; ++i) {
+            program.code[i] = Base46.decodeUnsigned(flow);
+        }
+        program.sets = new int[Base46.decodeUnsigned(flow)][];
+        for (int i = 0; i < program.sets.length; ++i) {
+            int[] set = new int[Base46.decodeUnsigned(flow)];
+            int last = 0;
+            for (int j = 0; j < set.length; ++j) {
+                last += Base46.decodeUnsigned(flow);
+                set[j] = last;
+            }
+            program.sets[i] = set;
+        }
+        return program;
+    }
+}
@@ -0,0 +1,512 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.regex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * <p>Translates a regular expression into a {@link TRegexProgram}. The expression is tokenized by {@link TLexer}
+ * and character classes are built by {@link TPattern#processRangeExpression(TLexer, int, boolean)}, so both
+ * engines agree on the syntax.</p>
+ *
+ * <p>Only expressions whose backtracking semantics can be reproduced by a prioritized NFA are accepted:
+ * no backreferences, lookaround, atomic groups, possessive quantifiers, <code>\G</code>, embedded flags,
+ * supplementary characters or quantified subexpressions that can match empty string.
+ * {@link #build(String, int, boolean)} returns <code>null</code> for everything else.</p>
+ */
+final class TRegexProgramBuilder {
+    static final int MAX_INSTRUCTIONS = 4096;
+    private static final int CHARS = 0;
+    private static final int CONCAT = 1;
+    private static final int ALTERNATION = 2;
+    private static final int GROUP = 3;
+    private static final int REPEAT = 4;
+    private static final int ASSERTION = 5;
+    private static final int EMPTY = 6;
+    private static final int[] ANY = { 0, 0xFFFF };
+
+    private TLexer lexemes;
+    private int flags;
+    private boolean allowPredicates;
+    private int groupCount;
+    private int[] code = new int[48];
+    private int size;
+    private List<int[]> sets = new ArrayList<>();
+
+    private TRegexProgramBuilder(String pattern, int flags, boolean allowPredicates) {
+        this.lexemes = new TLexer(pattern, flags);
+        this.flags = flags;
+        this.allowPredicates = allowPredicates;
+    }
+
+    /**
+     * @param allowPredicates whether character classes that are not backed by a bit set (i.e. Unicode
+     *                        categories) are allowed. Their contents depend on Unicode tables of the
+     *                        environment that runs this method, so they are rejected at build time.
+     */
+    static TRegexProgram build(String pattern, int flags, boolean allowPredicates) {
+        if ((flags & TPattern.CANON_EQ) != 0 || (flags & (TPattern.CASE_INSENSITIVE | TPattern.UNICODE_CASE))
+                == (TPattern.CASE_INSENSITIVE | TPattern.UNICODE_CASE)) {
+            return null;
+        }
+        try {
+            return new TRegexProgramBuilder(pattern, flags, allowPredicates).build();
+        } catch (UnsupportedExpressionException | TPatternSyntaxException e) {
+            return null;
+        }
+    }
+
+    private TRegexProgram build() {
+        Node root = parseAlternation();
+        if (!lexemes.isEmpty()) {
+            throw new UnsupportedExpressionException();
+        }
+
+        TRegexProgram program = new TRegexProgram();
+        program.start = size;
+        emit(TRegexProgram.SAVE, 0, 0);
+        emit(root);
+        emit(TRegexProgram.SAVE, 1, 0);
+        emit(TRegexProgram.MATCH, 0, 0);
+
+        program.searchStart = size;
+        emit(TRegexProgram.SPLIT, program.start, size + 1);
+        emit(TRegexProgram.SET, setIndex(ANY), 0);
+        emit(TRegexProgram.JUMP, program.searchStart, 0);
+
+        program.code = Arrays.copyOf(code, size * 3);
+        program.sets = sets.toArray(new int[sets.size()][]);
+        program.groupCount = groupCount;
+        return program;
+    }
+
+    private Node parseAlternation() {
+        List<Node> alternatives = new ArrayList<>();
+        while (true) {
+            alternatives.add(parseConcatenation());
+            if (lexemes.peek() != TLexer.CHAR_VERTICAL_BAR) {
+                break;
+            }
+            lexemes.next();
+        }
+        return alternatives.size() == 1 ? alternatives.get(0) : new Node(ALTERNATION, alternatives);
+    }
+
+    private Node parseConcatenation() {
+        List<Node> items = new ArrayList<>();
+        while (!lexemes.isEmpty() && lexemes.peek() != TLexer.CHAR_VERTICAL_BAR
+                && lexemes.peek() != TLexer.CHAR_RIGHT_PARENTHESIS) {
+            items.add(parseQuantifier(parseTerm()));
+        }
+        switch (items.size()) {
+            case 0:
+                return new Node(EMPTY);
+            case 1:
+                return items.get(0);
+            default:
+                return new Node(CONCAT, items);
+        }
+    }
+
+    private Node parseQuantifier(Node term) {
+        int min;
+        int max;
+        boolean greedy;
+        switch (lexemes.peek()) {
+            case TLexer.QUANT_STAR:
+            case TLexer.QUANT_STAR_R:
+                min = 0;
+                max = Integer.MAX_VALUE;
+                greedy = lexemes.next() == TLexer.QUANT_STAR;
+                break;
+            case TLexer.QUANT_PLUS:
+            case TLexer.QUANT_PLUS_R:
+                min = 1;
+                max = Integer.MAX_VALUE;
+                greedy = lexemes.next() == TLexer.QUANT_PLUS;
+                break;
+            case TLexer.QUANT_ALT:
+            case TLexer.QUANT_ALT_R:
+                min = 0;
+                max = 1;
+                greedy = lexemes.next() == TLexer.QUANT_ALT;
+                break;
+            case TLexer.QUANT_COMP:
+            case TLexer.QUANT_COMP_R: {
+                greedy = lexemes.peek() == TLexer.QUANT_COMP;
+                TQuantifier quantifier = (TQuantifier) lexemes.nextSpecial();
+                min = quantifier.min();
+                max = quantifier.max();
+                break;
+            }
+            case TLexer.QUANT_STAR_P:
+            case TLexer.QUANT_PLUS_P:
+            case TLexer.QUANT_ALT_P:
+            case TLexer.QUANT_COMP_P:
+                throw new UnsupportedExpressionException();
+            default:
+                return term;
+        }
+        if (isQuantifier(lexemes.peek()) || term.nullable()) {
+            throw new UnsupportedExpressionException();
+        }
+        Node node = new Node(REPEAT, Arrays.asList(term));
+        node.min = min;
+        node.max = max;
+        node.greedy = greedy;
+        return node;
+    }
+
+    private static boolean isQuantifier(int ch) {
+        switch (ch) {
+            case TLexer.QUANT_STAR:
+            case TLexer.QUANT_STAR_R:
+            case TLexer.QUANT_STAR_P:
+            case TLexer.QUANT_PLUS:
+            case TLexer.QUANT_PLUS_R:
+            case TLexer.QUANT_PLUS_P:
+            case TLexer.QUANT_ALT:
+            case TLexer.QUANT_ALT_R:
+            case TLexer.QUANT_ALT_P:
+            case TLexer.QUANT_COMP:
+            case TLexer.QUANT_COMP_R:
+            case TLexer.QUANT_COMP_P:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private Node parseTerm() {
+        int ch = lexemes.peek();
+        if ((ch & 0x8000ffff) == TLexer.CHAR_LEFT_PARENTHESIS) {
+            int newFlags = (ch & 0x00ff0000) >> 16;
+            int kind = ch & 0xff00ffff;
+            lexemes.next();
+            Node node;
+            if (kind == TLexer.CHAR_LEFT_PARENTHESIS) {
+                int group = ++groupCount;
+                Node child = parseAlternation();
+                if (child.kind == EMPTY) {
+                    throw new UnsupportedExpressionException();
+                }
+                node = new Node(GROUP, Arrays.asList(child));
+                node.value = group;
+            } else if (kind == TLexer.CHAR_NONCAP_GROUP && newFlags == flags) {
+                node = parseAlternation();
+            } else {
+                throw new UnsupportedExpressionException();
+            }
+            if (lexemes.peek() != TLexer.CHAR_RIGHT_PARENTHESIS) {
+                throw new UnsupportedExpressionException();
+            }
+            lexemes.next();
+            return node;
+        }
+
+        switch (ch) {
+            case TLexer.CHAR_LEFT_SQUARE_BRACKET: {
+                lexemes.next();
+                boolean negative = false;
+                if (lexemes.peek() == TLexer.CHAR_CARET) {
+                    negative = true;
+                    lexemes.next();
+                }
+                TCharClass cc = TPattern.processRangeExpression(lexemes, flags, negative);
+                if (lexemes.peek() != TLexer.CHAR_RIGHT_SQUARE_BRACKET) {
+                    throw new UnsupportedExpressionException();
+                }
+                lexemes.setMode(TLexer.MODE_PATTERN);
+                lexemes.next();
+                return chars(ranges(cc));
+            }
+            case TLexer.CHAR_DOT:
+                lexemes.next();
+                if (hasFlag(TPattern.DOTALL)) {
+                    return chars(ANY);
+                } else if (hasFlag(TPattern.UNIX_LINES)) {
+                    return chars(new int[] { 0, '\n' - 1, '\n' + 1, 0xFFFF });
+                } else {
+                    return chars(new int[] { 0, '\n' - 1, '\r' + 1, 0x84, 0x86, 0x2027, 0x202A, 0xFFFF });
+                }
+            case TLexer.CHAR_CARET:
+                lexemes.next();
+                if (!hasFlag(TPattern.MULTILINE)) {
+                    return assertion(TRegexProgram.BEGIN_INPUT);
+                }
+                return assertion(hasFlag(TPattern.UNIX_LINES) ? TRegexProgram.BEGIN_UNIX_LINE
+                        : TRegexProgram.BEGIN_LINE);
+            case TLexer.CHAR_DOLLAR:
+                lexemes.next();
+                if (hasFlag(TPattern.UNIX_LINES)) {
+                    throw new UnsupportedExpressionException();
+                }
+                return assertion(hasFlag(TPattern.MULTILINE) ? TRegexProgram.END_LINE : TRegexProgram.END);
+            case TLexer.CHAR_WORD_BOUND:
+                lexemes.next();
+                return assertion(TRegexProgram.WORD_BOUNDARY);
+            case TLexer.CHAR_NONWORD_BOUND:
+                lexemes.next();
+                return assertion(TRegexProgram.NON_WORD_BOUNDARY);
+            case TLexer.CHAR_END_OF_INPUT:
+                lexemes.next();
+                return assertion(TRegexProgram.END_INPUT);
+            case TLexer.CHAR_END_OF_LINE:
+                lexemes.next();
+                return assertion(TRegexProgram.END);
+            case TLexer.CHAR_START_OF_INPUT:
+                lexemes.next();
+                return assertion(TRegexProgram.BEGIN_INPUT);
+            case 0: {
+                TAbstractCharClass cc = (TAbstractCharClass) lexemes.peekSpecial();
+                lexemes.next();
+                return cc != null ? chars(ranges(cc)) : character(0);
+            }
+            default:
+                if (ch >= 0 && !lexemes.isSpecial()) {
+                    lexemes.next();
+                    return character(ch);
+                }
+                throw new UnsupportedExpressionException();
+        }
+    }
+
+    private Node character(int ch) {
+        if (ch > 0xFFFF || (ch >= Character.MIN_SURROGATE && ch <= Character.MAX_SURROGATE)) {
+            throw new UnsupportedExpressionException();
+        }
+        if (hasFlag(TPattern.CASE_INSENSITIVE) && ((ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z'))) {
+            int upper = ch & ~32;
+            return chars(new int[] { upper, upper, upper | 32, upper | 32 });
+        }
+        return chars(new int[] { ch, ch });
+    }
+
+    private int[] ranges(TAbstractCharClass cc) {
+        if (cc.hasUCI()) {
+            throw new UnsupportedExpressionException();
+        }
+        int[] result = new int[16];
+        int count = 0;
+        BitSet bits = cc.getBits();
+        if (bits != null) {
+            boolean negative = cc.isNegative();
+            int last = 0;
+            int i = bits.nextSetBit(0);
+            while (true) {
+                int end = i >= 0 && i <= 0xFFFF ? i : 0x10000;
+                if (negative && end > last) {
+                    result = add(result, count, last, end - 1);
+                    count += 2;
+                }
+                if (end > 0xFFFF) {
+                    break;
+                }
+                int next = Math.min(bits.nextClearBit(i), 0x10000);
+                if (!negative) {
+                    result = add(result, count, i, next - 1);
+                    count += 2;
+                }
+                last = next;
+                i = next <= 0xFFFF ? bits.nextSetBit(next) : -1;
+            }
+        } else if (allowPredicates) {
+            int rangeStart = -1;
+            for (int ch = 0; ch <= 0x10000; ++ch) {
+                boolean member = ch <= 0xFFFF && cc.contains(ch);
+                if (member && rangeStart < 0) {
+                    rangeStart = ch;
+                } else if (!member && rangeStart >= 0) {
+                    result = add(result, count, rangeStart, ch - 1);
+                    count += 2;
+                    rangeStart = -1;
+                }
+            }
+        } else {
+            throw new UnsupportedExpressionException();
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private static int[] add(int[] ranges, int count, int from, int to) {
+        if (count + 2 > ranges.length) {
+            ranges = Arrays.copyOf(ranges, ranges.length * 2);
+        }
+        ranges[count] = from;
+        ranges[count + 1] = to;
+        return ranges;
+    }
+
+    private boolean hasFlag(int flag) {
+        return (flags & flag) != 0;
+    }
+
+    private static Node chars(int[] ranges) {
+        Node node = new Node(CHARS);
+        node.set = ranges;
+        return node;
+    }
+
+    private static Node assertion(int kind) {
+        Node node = new Node(ASSERTION);
+        node.value = kind;
+        return node;
+    }
+
+    private void emit(Node node) {
+        switch (node.kind) {
+            case CHARS:
+                emit(TRegexProgram.SET, setIndex(node.set), 0);
+                break;
+            case CONCAT:
+                for (Node child : node.children) {
+                    emit(child);
+                }
+                break;
+            case ALTERNATION: {
+                int[] jumps = new int[node.children.size() - 1];
+                for (int i = 0; i < jumps.length; ++i) {
+                    int split = emit(TRegexProgram.SPLIT, size + 1, 0);
+                    emit(node.children.get(i));
+                    jumps[i] = emit(TRegexProgram.JUMP, 0, 0);
+                    code[split * 3 + 2] = size;
+                }
+                emit(node.children.get(jumps.length));
+                for (int jump : jumps) {
+                    code[jump * 3 + 1] = size;
+                }
+                break;
+            }
+            case GROUP:
+                emit(TRegexProgram.SAVE, node.value * 2, 0);
+                emit(node.children.get(0));
+                emit(TRegexProgram.SAVE, node.value * 2 + 1, 0);
+                break;
+            case REPEAT:
+                emitRepeat(node);
+                break;
+            case ASSERTION:
+                emit(TRegexProgram.ASSERT, node.value, 0);
+                break;
+            case EMPTY:
+                break;
+        }
+    }
+
+    private void emitRepeat(Node node) {
+        Node child = node.children.get(0);
+        for (int i = 0; i < node.min; ++i) {
+            emit(child);
+        }
+        if (node.max == Integer.MAX_VALUE) {
+            int split = emit(TRegexProgram.SPLIT, 0, 0);
+            emit(child);
+            emit(TRegexProgram.JUMP, split, 0);
+            patchSplit(split, split + 1, size, node.greedy);
+        } else {
+            int optional = node.max - node.min;
+            int[] splits = new int[optional];
+            for (int i = 0; i < optional; ++i) {
+                splits[i] = emit(TRegexProgram.SPLIT, 0, 0);
+                emit(child);
+            }
+            for (int split : splits) {
+                patchSplit(split, split + 1, size, node.greedy);
+            }
+        }
+    }
+
+    private void patchSplit(int split, int body, int exit, boolean greedy) {
+        code[split * 3 + 1] = greedy ? body : exit;
+        code[split * 3 + 2] = greedy ? exit : body;
+    }
+
+    private int emit(int op, int arg, int arg2) {
+        if (size == MAX_INSTRUCTIONS) {
+            throw new UnsupportedExpressionException();
+        }
+        if (size * 3 == code.length) {
+            code = Arrays.copyOf(code, code.length * 2);
+        }
+        code[size * 3] = op;
+        code[size * 3 + 1] = arg;
+        code[size * 3 + 2] = arg2;
+        return size++;
+    }
+
+    private int setIndex(int[] ranges) {
+        for (int i = 0; i < sets.size(); ++i) {
+            if (Arrays.equals(sets.get(i), ranges)) {
+                return i;
+            }
+        }
+        sets.add(ranges);
+        return sets.size() - 1;
+    }
+
+    static class Node {
+        int kind;
+        List<Node> children;
+        int[] set;
+        int value;
+        int min;
+        int max;
+        boolean greedy;
+
+        Node(int kind) {
+            this.kind = kind;
+        }
+
+        Node(int kind, List<Node> children) {
+            this.kind = kind;
+            this.children = children;
+        }
+
+        boolean nullable() {
+            switch (kind) {
+                case CHARS:
+                    return false;
+                case CONCAT:
+                    for (Node child : children) {
+                        if (!child.nullable()) {
+                            return false;
+                        }
+                    }
+                    return true;
+                case ALTERNATION:
+                    for (Node child : children) {
+                        if (child.nullable()) {
+                            return true;
+                        }
+                    }
+                    return false;
+                case GROUP:
+                    return children.get(0).nullable();
+                case REPEAT:
+                    return min == 0 || children.get(0).nullable();
+                default:
+                    return true;
+            }
+        }
+    }
+
+    static class UnsupportedExpressionException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
+}
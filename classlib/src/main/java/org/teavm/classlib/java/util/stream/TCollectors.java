@@ -0,0 +1,328 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.stream;
+
+import org.teavm.classlib.java.lang.TIllegalStateException;
+import org.teavm.classlib.java.lang.TString;
+import org.teavm.classlib.java.util.TArrayList;
+import org.teavm.classlib.java.util.TCollection;
+import org.teavm.classlib.java.util.TComparator;
+import org.teavm.classlib.java.util.TDoubleSummaryStatistics;
+import org.teavm.classlib.java.util.THashMap;
+import org.teavm.classlib.java.util.THashSet;
+import org.teavm.classlib.java.util.TIntSummaryStatistics;
+import org.teavm.classlib.java.util.TIterator;
+import org.teavm.classlib.java.util.TList;
+import org.teavm.classlib.java.util.TLongSummaryStatistics;
+import org.teavm.classlib.java.util.TMap;
+import org.teavm.classlib.java.util.TObjects;
+import org.teavm.classlib.java.util.TOptional;
+import org.teavm.classlib.java.util.TSet;
+import org.teavm.classlib.java.util.function.TBiConsumer;
+import org.teavm.classlib.java.util.function.TBinaryOperator;
+import org.teavm.classlib.java.util.function.TFunction;
+import org.teavm.classlib.java.util.function.TPredicate;
+import org.teavm.classlib.java.util.function.TSupplier;
+import org.teavm.classlib.java.util.function.TToDoubleFunction;
+import org.teavm.classlib.java.util.function.TToIntFunction;
+import org.teavm.classlib.java.util.function.TToLongFunction;
+import org.teavm.classlib.java.util.stream.impl.TCollectorImpl;
+
+public final class TCollectors {
+    private TCollectors() {
+    }
+
+    public static <T, C extends TCollection<T>> TCollector<T, ?, C> toCollection(TSupplier<C> collectionFactory) {
+        return TCollector.of(collectionFactory, TCollection::add, (a, b) -> {
+            a.addAll(b);
+            return a;
+        });
+    }
+
+    public static <T> TCollector<T, ?, TList<T>> toList() {
+        return toCollection(TArrayList::new);
+    }
+
+    public static <T> TCollector<T, ?, TSet<T>> toSet() {
+        return TCollector.of(THashSet::new, TSet::add, (a, b) -> {
+            a.addAll(b);
+            return a;
+        }, TCollector.Characteristics.UNORDERED);
+    }
+
+    public static TCollector<CharSequence, ?, String> joining() {
+        return TCollector.of(StringBuilder::new, StringBuilder::append, StringBuilder::append,
+                StringBuilder::toString);
+    }
+
+    public static TCollector<CharSequence, ?, String> joining(CharSequence delimiter) {
+        return joining(delimiter, "", "");
+    }
+
+    public static TCollector<CharSequence, ?, String> joining(CharSequence delimiter, CharSequence prefix,
+            CharSequence suffix) {
+        // Delimiter is prepended to every element, so that no state is needed besides the builder itself;
+        // the first one is dropped by finisher
+        return TCollector.of(StringBuilder::new, (sb, e) -> sb.append(delimiter).append(e), StringBuilder::append,
+                sb -> {
+                    StringBuilder result = new StringBuilder().append(prefix);
+                    if (sb.length() > 0) {
+                        result.append(sb, delimiter.length(), sb.length());
+                    }
+                    return result.append(suffix).toString();
+                });
+    }
+
+    public static <T, U, A, R> TCollector<T, ?, R> mapping(TFunction<? super T, ? extends U> mapper,
+            TCollector<? super U, A, R> downstream) {
+        TBiConsumer<A, ? super U> downstreamAccumulator = downstream.accumulator();
+        return new TCollectorImpl<>(downstream.supplier(), (a, t) -> downstreamAccumulator.accept(a, mapper.apply(t)),
+                downstream.combiner(), downstream.finisher(), downstream.characteristics());
+    }
+
+    public static <T, A, R, RR> TCollector<T, A, RR> collectingAndThen(TCollector<T, A, R> downstream,
+            TFunction<R, RR> finisher) {
+        TFunction<A, R> downstreamFinisher = downstream.finisher();
+        TSet<TCollector.Characteristics> characteristics = downstream.characteristics();
+        if (characteristics.contains(TCollector.Characteristics.IDENTITY_FINISH)) {
+            TSet<TCollector.Characteristics> newCharacteristics = new THashSet<>(characteristics);
+            newCharacteristics.remove(TCollector.Characteristics.IDENTITY_FINISH);
+            characteristics = newCharacteristics;
+        }
+        return new TCollectorImpl<>(downstream.supplier(), downstream.accumulator(), downstream.combiner(),
+                a -> finisher.apply(downstreamFinisher.apply(a)), characteristics);
+    }
+
+    public static <T> TCollector<T, ?, Long> counting() {
+        return TCollector.of(() -> new long[1], (a, t) -> a[0]++, (a, b) -> {
+            a[0] += b[0];
+            return a;
+        }, a -> a[0]);
+    }
+
+    public static <T> TCollector<T, ?, TOptional<T>> minBy(TComparator<? super T> comparator) {
+        return reducing(TBinaryOperator.minBy(comparator));
+    }
+
+    public static <T> TCollector<T, ?, TOptional<T>> maxBy(TComparator<? super T> comparator) {
+        return reducing(TBinaryOperator.maxBy(comparator));
+    }
+
+    public static <T> TCollector<T, ?, Integer> summingInt(TToIntFunction<? super T> mapper) {
+        return TCollector.of(() -> new int[1], (a, t) -> a[0] += mapper.applyAsInt(t), (a, b) -> {
+            a[0] += b[0];
+            return a;
+        }, a -> a[0]);
+    }
+
+    public static <T> TCollector<T, ?, Long> summingLong(TToLongFunction<? super T> mapper) {
+        return TCollector.of(() -> new long[1], (a, t) -> a[0] += mapper.applyAsLong(t), (a, b) -> {
+            a[0] += b[0];
+            return a;
+        }, a -> a[0]);
+    }
+
+    public static <T> TCollector<T, ?, Double> summingDouble(TToDoubleFunction<? super T> mapper) {
+        return TCollector.of(TDoubleSummaryStatistics::new, (a, t) -> a.accept(mapper.applyAsDouble(t)), (a, b) -> {
+            a.combine(b);
+            return a;
+        }, TDoubleSummaryStatistics::getSum);
+    }
+
+    public static <T> TCollector<T, ?, Double> averagingInt(TToIntFunction<? super T> mapper) {
+        return collectingAndThen(summarizingInt(mapper), TIntSummaryStatistics::getAverage);
+    }
+
+    public static <T> TCollector<T, ?, Double> averagingLong(TToLongFunction<? super T> mapper) {
+        return collectingAndThen(summarizingLong(mapper), TLongSummaryStatistics::getAverage);
+    }
+
+    public static <T> TCollector<T, ?, Double> averagingDouble(TToDoubleFunction<? super T> mapper) {
+        return collectingAndThen(summarizingDouble(mapper), TDoubleSummaryStatistics::getAverage);
+    }
+
+    public static <T> TCollector<T, ?, TIntSummaryStatistics> summarizingInt(TToIntFunction<? super T> mapper) {
+        return TCollector.of(TIntSummaryStatistics::new, (a, t) -> a.accept(mapper.applyAsInt(t)), (a, b) -> {
+            a.combine(b);
+            return a;
+        });
+    }
+
+    public static <T> TCollector<T, ?, TLongSummaryStatistics> summarizingLong(TToLongFunction<? super T> mapper) {
+        return TCollector.of(TLongSummaryStatistics::new, (a, t) -> a.accept(mapper.applyAsLong(t)), (a, b) -> {
+            a.combine(b);
+            return a;
+        });
+    }
+
+    public static <T> TCollector<T, ?, TDoubleSummaryStatistics> summarizingDouble(
+            TToDoubleFunction<? super T> mapper) {
+        return TCollector.of(TDoubleSummaryStatistics::new, (a, t) -> a.accept(mapper.applyAsDouble(t)), (a, b) -> {
+            a.combine(b);
+            return a;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> TCollector<T, ?, T> reducing(T identity, TBinaryOperator<T> op) {
+        return TCollector.<T, Object[], T>of(() -> new Object[] { identity }, (a, t) -> a[0] = op.apply((T) a[0], t),
+                (a, b) -> {
+                    a[0] = op.apply((T) a[0], (T) b[0]);
+                    return a;
+                }, a -> (T) a[0]);
+    }
+
+    public static <T, U> TCollector<T, ?, U> reducing(U identity, TFunction<? super T, ? extends U> mapper,
+            TBinaryOperator<U> op) {
+        return mapping(mapper, reducing(identity, op));
+    }
+
+    public static <T> TCollector<T, ?, TOptional<T>> reducing(TBinaryOperator<T> op) {
+        return TCollector.of(() -> new OptionalBox<T>(), (a, t) -> a.add(t, op), (a, b) -> {
+            if (b.present) {
+                a.add(b.value, op);
+            }
+            return a;
+        }, a -> a.present ? TOptional.of(a.value) : TOptional.empty());
+    }
+
+    public static <T, K> TCollector<T, ?, TMap<K, TList<T>>> groupingBy(TFunction<? super T, ? extends K> classifier) {
+        return groupingBy(classifier, toList());
+    }
+
+    public static <T, K, A, D> TCollector<T, ?, TMap<K, D>> groupingBy(TFunction<? super T, ? extends K> classifier,
+            TCollector<? super T, A, D> downstream) {
+        return groupingBy(classifier, THashMap::new, downstream);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T, K, D, A, M extends TMap<K, D>> TCollector<T, ?, M> groupingBy(
+            TFunction<? super T, ? extends K> classifier, TSupplier<M> mapFactory,
+            TCollector<? super T, A, D> downstream) {
+        TSupplier<A> downstreamSupplier = downstream.supplier();
+        TBiConsumer<A, ? super T> downstreamAccumulator = downstream.accumulator();
+        TBinaryOperator<A> downstreamCombiner = downstream.combiner();
+        TFunction<A, D> downstreamFinisher = downstream.finisher();
+        TBiConsumer<TMap<K, A>, T> accumulator = (map, t) -> {
+            K key = TObjects.requireNonNull(classifier.apply(t), "element cannot be mapped to a null key");
+            A container = map.get(key);
+            if (container == null) {
+                container = downstreamSupplier.get();
+                map.put(key, container);
+            }
+            downstreamAccumulator.accept(container, t);
+        };
+        TBinaryOperator<TMap<K, A>> combiner = (a, b) -> {
+            for (TIterator<TMap.Entry<K, A>> iter = b.entrySet().iterator(); iter.hasNext();) {
+                TMap.Entry<K, A> entry = iter.next();
+                A container = a.get(entry.getKey());
+                a.put(entry.getKey(), container != null
+                        ? downstreamCombiner.apply(container, entry.getValue())
+                        : entry.getValue());
+            }
+            return a;
+        };
+        TSupplier<TMap<K, A>> supplier = (TSupplier<TMap<K, A>>) mapFactory;
+        if (downstream.characteristics().contains(TCollector.Characteristics.IDENTITY_FINISH)) {
+            return TCollector.of(supplier, accumulator, combiner, map -> (M) map,
+                    TCollector.Characteristics.IDENTITY_FINISH);
+        }
+        return TCollector.of(supplier, accumulator, combiner, map -> {
+            for (TIterator<TMap.Entry<K, A>> iter = map.entrySet().iterator(); iter.hasNext();) {
+                TMap.Entry<K, A> entry = iter.next();
+                entry.setValue((A) downstreamFinisher.apply(entry.getValue()));
+            }
+            return (M) map;
+        });
+    }
+
+    public static <T> TCollector<T, ?, TMap<Boolean, TList<T>>> partitioningBy(TPredicate<? super T> predicate) {
+        return partitioningBy(predicate, toList());
+    }
+
+    public static <T, D, A> TCollector<T, ?, TMap<Boolean, D>> partitioningBy(TPredicate<? super T> predicate,
+            TCollector<? super T, A, D> downstream) {
+        TSupplier<A> downstreamSupplier = downstream.supplier();
+        TBiConsumer<A, ? super T> downstreamAccumulator = downstream.accumulator();
+        TBinaryOperator<A> downstreamCombiner = downstream.combiner();
+        TFunction<A, D> downstreamFinisher = downstream.finisher();
+        return TCollector.<T, Partition<A>, TMap<Boolean, D>>of(
+                () -> new Partition<>(downstreamSupplier.get(), downstreamSupplier.get()),
+                (a, t) -> downstreamAccumulator.accept(predicate.test(t) ? a.forTrue : a.forFalse, t),
+                (a, b) -> new Partition<>(downstreamCombiner.apply(a.forTrue, b.forTrue),
+                        downstreamCombiner.apply(a.forFalse, b.forFalse)),
+                a -> {
+                    TMap<Boolean, D> result = new THashMap<>();
+                    result.put(false, downstreamFinisher.apply(a.forFalse));
+                    result.put(true, downstreamFinisher.apply(a.forTrue));
+                    return result;
+                });
+    }
+
+    public static <T, K, U> TCollector<T, ?, TMap<K, U>> toMap(TFunction<? super T, ? extends K> keyMapper,
+            TFunction<? super T, ? extends U> valueMapper) {
+        return toMap(keyMapper, valueMapper, (a, b) -> {
+            throw new TIllegalStateException(TString.wrap("Duplicate key " + a));
+        });
+    }
+
+    public static <T, K, U> TCollector<T, ?, TMap<K, U>> toMap(TFunction<? super T, ? extends K> keyMapper,
+            TFunction<? super T, ? extends U> valueMapper, TBinaryOperator<U> mergeFunction) {
+        return toMap(keyMapper, valueMapper, mergeFunction, THashMap::new);
+    }
+
+    public static <T, K, U, M extends TMap<K, U>> TCollector<T, ?, M> toMap(TFunction<? super T, ? extends K> keyMapper,
+            TFunction<? super T, ? extends U> valueMapper, TBinaryOperator<U> mergeFunction, TSupplier<M> mapSupplier) {
+        TBiConsumer<M, T> accumulator = (map, t) -> merge(map, keyMapper.apply(t),
+                TObjects.requireNonNull(valueMapper.apply(t)), mergeFunction);
+        return TCollector.of(mapSupplier, accumulator, (a, b) -> {
+            for (TIterator<TMap.Entry<K, U>> iter = b.entrySet().iterator(); iter.hasNext();) {
+                TMap.Entry<K, U> entry = iter.next();
+                merge(a, entry.getKey(), entry.getValue(), mergeFunction);
+            }
+            return a;
+        });
+    }
+
+    private static <K, U> void merge(TMap<K, U> map, K key, U value, TBinaryOperator<U> mergeFunction) {
+        U oldValue = map.get(key);
+        map.put(key, oldValue != null ? mergeFunction.apply(oldValue, value) : value);
+    }
+
+    static class OptionalBox<T> {
+        T value;
+        boolean present;
+
+        void add(T t, TBinaryOperator<T> op) {
+            if (present) {
+                value = op.apply(value, t);
+            } else {
+                value = t;
+                present = true;
+            }
+        }
+    }
+
+    static class Partition<A> {
+        A forTrue;
+        A forFalse;
+
+        Partition(A forTrue, A forFalse) {
+            this.forTrue = forTrue;
+            this.forFalse = forFalse;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.stream;
+
+import org.teavm.classlib.java.util.TIntSummaryStatistics;
+import org.teavm.classlib.java.util.TOptionalDouble;
+import org.teavm.classlib.java.util.TOptionalInt;
+import org.teavm.classlib.java.util.TPrimitiveIterator;
+import org.teavm.classlib.java.util.function.TBiConsumer;
+import org.teavm.classlib.java.util.function.TIntBinaryOperator;
+import org.teavm.classlib.java.util.function.TIntConsumer;
+import org.teavm.classlib.java.util.function.TIntFunction;
+import org.teavm.classlib.java.util.function.TIntPredicate;
+import org.teavm.classlib.java.util.function.TIntSupplier;
+import org.teavm.classlib.java.util.function.TIntToDoubleFunction;
+import org.teavm.classlib.java.util.function.TIntToLongFunction;
+import org.teavm.classlib.java.util.function.TIntUnaryOperator;
+import org.teavm.classlib.java.util.function.TObjIntConsumer;
+import org.teavm.classlib.java.util.function.TSupplier;
+import org.teavm.classlib.java.util.stream.impl.TArrayIntStreamImpl;
+import org.teavm.classlib.java.util.stream.impl.TConcatIntStreamImpl;
+import org.teavm.classlib.java.util.stream.impl.TGeneratingIntStreamImpl;
+import org.teavm.classlib.java.util.stream.impl.TIteratingIntStreamImpl;
+import org.teavm.classlib.java.util.stream.impl.TRangeIntStreamImpl;
+import org.teavm.classlib.java.util.stream.impl.TSimpleIntStreamImpl;
+
+public interface TIntStream extends TBaseStream<Integer, TIntStream> {
+    TIntStream filter(TIntPredicate predicate);
+
+    TIntStream map(TIntUnaryOperator mapper);
+
+    <U> TStream<U> mapToObj(TIntFunction<? extends U> mapper);
+
+    TLongStream mapToLong(TIntToLongFunction mapper);
+
+    TDoubleStream mapToDouble(TIntToDoubleFunction mapper);
+
+    TIntStream flatMap(TIntFunction<? extends TIntStream> mapper);
+
+    TIntStream distinct();
+
+    TIntStream sorted();
+
+    TIntStream peek(TIntConsumer action);
+
+    TIntStream limit(long maxSize);
+
+    TIntStream skip(long n);
+
+    void forEach(TIntConsumer action);
+
+    void forEachOrdered(TIntConsumer action);
+
+    int[] toArray();
+
+    int reduce(int identity, TIntBinaryOperator op);
+
+    TOptionalInt reduce(TIntBinaryOperator op);
+
+    <R> R collect(TSupplier<R> supplier, TObjIntConsumer<R> accumulator, TBiConsumer<R, R> combiner);
+
+    int sum();
+
+    TOptionalInt min();
+
+    TOptionalInt max();
+
+    long count();
+
+    TOptionalDouble average();
+
+    TIntSummaryStatistics summaryStatistics();
+
+    boolean anyMatch(TIntPredicate predicate);
+
+    boolean allMatch(TIntPredicate predicate);
+
+    boolean noneMatch(TIntPredicate predicate);
+
+    TOptionalInt findFirst();
+
+    TOptionalInt findAny();
+
+    TLongStream asLongStream();
+
+    TDoubleStream asDoubleStream();
+
+    TStream<Integer> boxed();
+
+    @Override
+    TPrimitiveIterator.OfInt iterator();
+
+    static TIntStream empty() {
+        return new TArrayIntStreamImpl(new int[0], 0, 0);
+    }
+
+    static TIntStream of(int t) {
+        return new TArrayIntStreamImpl(new int[] { t }, 0, 1);
+    }
+
+    static TIntStream of(int... values) {
+        return new TArrayIntStreamImpl(values, 0, values.length);
+    }
+
+    static TIntStream iterate(int seed, TIntUnaryOperator f) {
+        return new TIteratingIntStreamImpl(seed, f);
+    }
+
+    static TIntStream generate(TIntSupplier s) {
+        return new TGeneratingIntStreamImpl(s);
+    }
+
+    static TIntStream range(int startInclusive, int endExclusive) {
+        return new TRangeIntStreamImpl(startInclusive, endExclusive);
+    }
+
+    static TIntStream rangeClosed(int startInclusive, int endInclusive) {
+        if (endInclusive < Integer.MAX_VALUE) {
+            return new TRangeIntStreamImpl(startInclusive, endInclusive + 1);
+        }
+        return concat(range(startInclusive, endInclusive), of(endInclusive));
+    }
+
+    static TIntStream concat(TIntStream a, TIntStream b) {
+        return new TConcatIntStreamImpl(TSimpleIntStreamImpl.wrap(a), TSimpleIntStreamImpl.wrap(b));
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.stream.impl;
+
+import org.teavm.classlib.java.util.TCollections;
+import org.teavm.classlib.java.util.THashSet;
+import org.teavm.classlib.java.util.TSet;
+import org.teavm.classlib.java.util.function.TBiConsumer;
+import org.teavm.classlib.java.util.function.TBinaryOperator;
+import org.teavm.classlib.java.util.function.TFunction;
+import org.teavm.classlib.java.util.function.TSupplier;
+import org.teavm.classlib.java.util.stream.TCollector;
+
+public class TCollectorImpl<T, A, R> implements TCollector<T, A, R> {
+    private TSupplier<A> supplier;
+    private TBiConsumer<A, T> accumulator;
+    private TBinaryOperator<A> combiner;
+    private TFunction<A, R> finisher;
+    private TSet<Characteristics> characteristics;
+
+    public TCollectorImpl(TSupplier<A> supplier, TBiConsumer<A, T> accumulator, TBinaryOperator<A> combiner,
+            TFunction<A, R> finisher, TSet<Characteristics> characteristics) {
+        this.supplier = supplier;
+        this.accumulator = accumulator;
+        this.combiner = combiner;
+        this.finisher = finisher;
+        this.characteristics = characteristics;
+    }
+
+    public static TSet<Characteristics> characteristics(Characteristics extra, Characteristics... characteristics) {
+        TSet<Characteristics> result = new THashSet<>();
+        if (extra != null) {
+            result.add(extra);
+        }
+        for (Characteristics characteristic : characteristics) {
+            result.add(characteristic);
+        }
+        return TCollections.unmodifiableSet(result);
+    }
+
+    @Override
+    public TSupplier<A> supplier() {
+        return supplier;
+    }
+
+    @Override
+    public TBiConsumer<A, T> accumulator() {
+        return accumulator;
+    }
+
+    @Override
+    public TBinaryOperator<A> combiner() {
+        return combiner;
+    }
+
+    @Override
+    public TFunction<A, R> finisher() {
+        return finisher;
+    }
+
+    @Override
+    public TSet<Characteristics> characteristics() {
+        return characteristics;
+    }
+}
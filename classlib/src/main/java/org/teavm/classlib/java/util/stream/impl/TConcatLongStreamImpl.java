@@ -0,0 +1,57 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.stream.impl;
+
+import org.teavm.classlib.java.util.function.TLongPredicate;
+
+public class TConcatLongStreamImpl extends TSimpleLongStreamImpl {
+    private TSimpleLongStreamImpl first;
+    private TSimpleLongStreamImpl second;
+    private boolean firstDone;
+
+    public TConcatLongStreamImpl(TSimpleLongStreamImpl first, TSimpleLongStreamImpl second) {
+        this.first = first;
+        this.second = second;
+    }
+
+    @Override
+    public boolean next(TLongPredicate consumer) {
+        if (!firstDone) {
+            if (first.next(consumer)) {
+                return true;
+            }
+            firstDone = true;
+        }
+        return second.next(consumer);
+    }
+
+    @Override
+    protected int estimateSize() {
+        int firstSize = firstDone ? 0 : first.estimateSize();
+        int secondSize = second.estimateSize();
+        return firstSize >= 0 && secondSize >= 0 ? firstSize + secondSize : -1;
+    }
+
+    @Override
+    public void close() {
+        try {
+            first.close();
+            second.close();
+        } finally {
+            super.close();
+        }
+    }
+}
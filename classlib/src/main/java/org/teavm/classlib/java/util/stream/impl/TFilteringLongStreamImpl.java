@@ -0,0 +1,34 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.stream.impl;
+
+import org.teavm.classlib.java.util.function.TLongPredicate;
+
+public class TFilteringLongStreamImpl extends TSimpleLongStreamImpl {
+    private TSimpleLongStreamImpl sourceStream;
+    private TLongPredicate filter;
+
+    public TFilteringLongStreamImpl(TSimpleLongStreamImpl sourceStream, TLongPredicate filter) {
+        super(sourceStream);
+        this.sourceStream = sourceStream;
+        this.filter = filter;
+    }
+
+    @Override
+    public boolean next(TLongPredicate consumer) {
+        return sourceStream.next(e -> !filter.test(e) || consumer.test(e));
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.stream.impl;
+
+import org.teavm.classlib.java.util.function.TLongFunction;
+import org.teavm.classlib.java.util.function.TLongPredicate;
+import org.teavm.classlib.java.util.stream.TLongStream;
+
+public class TFlatMappingLongStreamImpl extends TSimpleLongStreamImpl {
+    private TSimpleLongStreamImpl sourceStream;
+    private TLongFunction<? extends TLongStream> mapper;
+    private TSimpleLongStreamImpl current;
+
+    public TFlatMappingLongStreamImpl(TSimpleLongStreamImpl sourceStream, TLongFunction<? extends TLongStream> mapper) {
+        super(sourceStream);
+        this.sourceStream = sourceStream;
+        this.mapper = mapper;
+    }
+
+    @Override
+    public boolean next(TLongPredicate consumer) {
+        while (true) {
+            if (current != null) {
+                if (current.next(consumer)) {
+                    return true;
+                }
+                current.close();
+                current = null;
+            }
+            if (!sourceStream.next(e -> {
+                TLongStream mapped = mapper.apply(e);
+                if (mapped == null) {
+                    return true;
+                }
+                current = wrap(mapped);
+                return false;
+            })) {
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.stream.impl;
+
+import org.teavm.classlib.java.util.function.TFunction;
+import org.teavm.classlib.java.util.function.TPredicate;
+import org.teavm.classlib.java.util.stream.TStream;
+
+public class TFlatMappingStreamImpl<T, S> extends TSimpleStreamImpl<T> {
+    private TSimpleStreamImpl<S> sourceStream;
+    private TFunction<? super S, ? extends TStream<? extends T>> mapper;
+    private TSimpleStreamImpl<? extends T> current;
+
+    public TFlatMappingStreamImpl(TSimpleStreamImpl<S> sourceStream,
+            TFunction<? super S, ? extends TStream<? extends T>> mapper) {
+        super(sourceStream);
+        this.sourceStream = sourceStream;
+        this.mapper = mapper;
+    }
+
+    @Override
+    public boolean next(TPredicate<? super T> consumer) {
+        while (true) {
+            if (current != null) {
+                if (current.next(consumer)) {
+                    return true;
+                }
+                current.close();
+                current = null;
+            }
+            if (!sourceStream.next(e -> {
+                TStream<? extends T> mapped = mapper.apply(e);
+                if (mapped == null) {
+                    return true;
+                }
+                current = wrap(mapped);
+                return false;
+            })) {
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.stream.impl;
+
+import org.teavm.classlib.java.util.function.TPredicate;
+import org.teavm.classlib.java.util.function.TUnaryOperator;
+
+public class TIteratingStreamImpl<T> extends TSimpleStreamImpl<T> {
+    private T value;
+    private TUnaryOperator<T> f;
+    private boolean started;
+
+    public TIteratingStreamImpl(T seed, TUnaryOperator<T> f) {
+        this.value = seed;
+        this.f = f;
+    }
+
+    @Override
+    public boolean next(TPredicate<? super T> consumer) {
+        while (true) {
+            if (started) {
+                value = f.apply(value);
+            } else {
+                started = true;
+            }
+            if (!consumer.test(value)) {
+                return true;
+            }
+        }
+    }
+}
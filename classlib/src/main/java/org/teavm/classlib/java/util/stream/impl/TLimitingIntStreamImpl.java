@@ -0,0 +1,53 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.stream.impl;
+
+import org.teavm.classlib.java.util.function.TIntPredicate;
+
+public class TLimitingIntStreamImpl extends TSimpleIntStreamImpl {
+    private TSimpleIntStreamImpl sourceStream;
+    private long remaining;
+    private boolean stopped;
+
+    public TLimitingIntStreamImpl(TSimpleIntStreamImpl sourceStream, long limit) {
+        super(sourceStream);
+        this.sourceStream = sourceStream;
+        this.remaining = limit;
+    }
+
+    @Override
+    public boolean next(TIntPredicate consumer) {
+        if (remaining == 0) {
+            return false;
+        }
+        stopped = false;
+        sourceStream.next(e -> {
+            --remaining;
+            if (!consumer.test(e)) {
+                stopped = true;
+                return false;
+            }
+            return remaining > 0;
+        });
+        return stopped;
+    }
+
+    @Override
+    protected int estimateSize() {
+        int sourceSize = sourceStream.estimateSize();
+        return sourceSize >= 0 ? (int) Math.min(sourceSize, remaining) : -1;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.stream.impl;
+
+import org.teavm.classlib.java.util.function.TLongPredicate;
+
+public class TRangeLongStreamImpl extends TSimpleLongStreamImpl {
+    private long current;
+    private long end;
+
+    public TRangeLongStreamImpl(long start, long end) {
+        this.current = start;
+        this.end = end;
+    }
+
+    @Override
+    public boolean next(TLongPredicate consumer) {
+        while (current < end) {
+            if (!consumer.test(current++)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected int estimateSize() {
+        if (current >= end) {
+            return 0;
+        }
+        long size = (long) end - current;
+        return size > 0 && size <= Integer.MAX_VALUE ? (int) size : -1;
+    }
+
+    @Override
+    public long count() {
+        if (current >= end) {
+            return 0;
+        }
+        long result = (long) end - current;
+        current = end;
+        return result;
+    }
+}
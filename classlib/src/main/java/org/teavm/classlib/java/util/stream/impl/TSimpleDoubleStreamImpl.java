@@ -0,0 +1,374 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.stream.impl;
+
+import org.teavm.classlib.java.lang.TIllegalArgumentException;
+import org.teavm.classlib.java.lang.TRunnable;
+import org.teavm.classlib.java.util.TArrays;
+import org.teavm.classlib.java.util.TDoubleSummaryStatistics;
+import org.teavm.classlib.java.util.TOptionalDouble;
+import org.teavm.classlib.java.util.TPrimitiveIterator;
+import org.teavm.classlib.java.util.function.TBiConsumer;
+import org.teavm.classlib.java.util.function.TDoubleBinaryOperator;
+import org.teavm.classlib.java.util.function.TDoubleConsumer;
+import org.teavm.classlib.java.util.function.TDoubleFunction;
+import org.teavm.classlib.java.util.function.TDoublePredicate;
+import org.teavm.classlib.java.util.function.TDoubleToIntFunction;
+import org.teavm.classlib.java.util.function.TDoubleToLongFunction;
+import org.teavm.classlib.java.util.function.TDoubleUnaryOperator;
+import org.teavm.classlib.java.util.function.TObjDoubleConsumer;
+import org.teavm.classlib.java.util.function.TSupplier;
+import org.teavm.classlib.java.util.stream.TBaseStream;
+import org.teavm.classlib.java.util.stream.TDoubleStream;
+import org.teavm.classlib.java.util.stream.TIntStream;
+import org.teavm.classlib.java.util.stream.TLongStream;
+import org.teavm.classlib.java.util.stream.TStream;
+
+/**
+ * <p>Base class of stages of double streams. Works exactly like {@link TSimpleStreamImpl}, but pushes
+ * unboxed values.</p>
+ */
+public abstract class TSimpleDoubleStreamImpl implements TDoubleStream {
+    private TBaseStream<?, ?> upstream;
+    private TRunnable closeHandler;
+
+    protected TSimpleDoubleStreamImpl() {
+    }
+
+    protected TSimpleDoubleStreamImpl(TBaseStream<?, ?> upstream) {
+        this.upstream = upstream;
+    }
+
+    /**
+     * Pushes elements of this stream to the consumer, until the consumer returns <code>false</code>
+     * or this stream runs out of elements.
+     *
+     * @return <code>true</code> if the consumer stopped iteration, in which case the method can be called again
+     * to push remaining elements; <code>false</code> if all elements were pushed and accepted.
+     */
+    public abstract boolean next(TDoublePredicate consumer);
+
+    /**
+     * Returns exact number of elements this stream is going to push, or <code>-1</code> if it's unknown.
+     */
+    protected int estimateSize() {
+        return -1;
+    }
+
+    public static TSimpleDoubleStreamImpl wrap(TDoubleStream stream) {
+        if (stream instanceof TSimpleDoubleStreamImpl) {
+            return (TSimpleDoubleStreamImpl) stream;
+        }
+        return new TObjToDoubleMappingStreamImpl<Double>(new TIteratorStreamImpl<>(stream.iterator()), e -> e);
+    }
+
+    @Override
+    public TDoubleStream filter(TDoublePredicate predicate) {
+        return new TFilteringDoubleStreamImpl(this, predicate);
+    }
+
+    @Override
+    public TDoubleStream map(TDoubleUnaryOperator mapper) {
+        return new TMappingDoubleStreamImpl(this, mapper);
+    }
+
+    @Override
+    public <U> TStream<U> mapToObj(TDoubleFunction<? extends U> mapper) {
+        return new TDoubleToObjMappingStreamImpl<>(this, mapper);
+    }
+
+    @Override
+    public TIntStream mapToInt(TDoubleToIntFunction mapper) {
+        return new TDoubleToIntMappingStreamImpl(this, mapper);
+    }
+
+    @Override
+    public TLongStream mapToLong(TDoubleToLongFunction mapper) {
+        return new TDoubleToLongMappingStreamImpl(this, mapper);
+    }
+
+    @Override
+    public TDoubleStream flatMap(TDoubleFunction<? extends TDoubleStream> mapper) {
+        return new TFlatMappingDoubleStreamImpl(this, mapper);
+    }
+
+    @Override
+    public TDoubleStream distinct() {
+        return new TDistinctDoubleStreamImpl(this);
+    }
+
+    @Override
+    public TDoubleStream sorted() {
+        return new TSortedDoubleStreamImpl(this);
+    }
+
+    @Override
+    public TDoubleStream peek(TDoubleConsumer action) {
+        return new TPeekingDoubleStreamImpl(this, action);
+    }
+
+    @Override
+    public TDoubleStream limit(long maxSize) {
+        if (maxSize < 0) {
+            throw new TIllegalArgumentException();
+        }
+        return new TLimitingDoubleStreamImpl(this, maxSize);
+    }
+
+    @Override
+    public TDoubleStream skip(long n) {
+        if (n < 0) {
+            throw new TIllegalArgumentException();
+        }
+        return new TSkippingDoubleStreamImpl(this, n);
+    }
+
+    @Override
+    public void forEach(TDoubleConsumer action) {
+        next(e -> {
+            action.accept(e);
+            return true;
+        });
+    }
+
+    @Override
+    public void forEachOrdered(TDoubleConsumer action) {
+        forEach(action);
+    }
+
+    @Override
+    public double[] toArray() {
+        int size = estimateSize();
+        ArrayFillingConsumer consumer = new ArrayFillingConsumer(new double[size >= 0 ? size : 16]);
+        next(consumer);
+        return consumer.size == consumer.array.length ? consumer.array : TArrays.copyOf(consumer.array, consumer.size);
+    }
+
+    @Override
+    public double reduce(double identity, TDoubleBinaryOperator op) {
+        ReducingConsumer consumer = new ReducingConsumer(op, identity);
+        next(consumer);
+        return consumer.result;
+    }
+
+    @Override
+    public TOptionalDouble reduce(TDoubleBinaryOperator op) {
+        OptionalReducingConsumer consumer = new OptionalReducingConsumer(op);
+        next(consumer);
+        return consumer.present ? TOptionalDouble.of(consumer.result) : TOptionalDouble.empty();
+    }
+
+    @Override
+    public <R> R collect(TSupplier<R> supplier, TObjDoubleConsumer<R> accumulator, TBiConsumer<R, R> combiner) {
+        R container = supplier.get();
+        next(e -> {
+            accumulator.accept(container, e);
+            return true;
+        });
+        return container;
+    }
+
+    @Override
+    public double sum() {
+        return summaryStatistics().getSum();
+    }
+
+    @Override
+    public TOptionalDouble min() {
+        return reduce(Math::min);
+    }
+
+    @Override
+    public TOptionalDouble max() {
+        return reduce(Math::max);
+    }
+
+    @Override
+    public long count() {
+        CountingConsumer consumer = new CountingConsumer();
+        next(consumer);
+        return consumer.count;
+    }
+
+    @Override
+    public TOptionalDouble average() {
+        TDoubleSummaryStatistics statistics = summaryStatistics();
+        return statistics.getCount() > 0 ? TOptionalDouble.of(statistics.getAverage()) : TOptionalDouble.empty();
+    }
+
+    @Override
+    public TDoubleSummaryStatistics summaryStatistics() {
+        TDoubleSummaryStatistics statistics = new TDoubleSummaryStatistics();
+        forEach(statistics);
+        return statistics;
+    }
+
+    @Override
+    public boolean anyMatch(TDoublePredicate predicate) {
+        return next(e -> !predicate.test(e));
+    }
+
+    @Override
+    public boolean allMatch(TDoublePredicate predicate) {
+        return !next(predicate);
+    }
+
+    @Override
+    public boolean noneMatch(TDoublePredicate predicate) {
+        return !anyMatch(predicate);
+    }
+
+    @Override
+    public TOptionalDouble findFirst() {
+        FindFirstConsumer consumer = new FindFirstConsumer();
+        next(consumer);
+        return consumer.found ? TOptionalDouble.of(consumer.result) : TOptionalDouble.empty();
+    }
+
+    @Override
+    public TOptionalDouble findAny() {
+        return findFirst();
+    }
+
+    @Override
+    public TStream<Double> boxed() {
+        return mapToObj(Double::valueOf);
+    }
+
+    @Override
+    public TPrimitiveIterator.OfDouble iterator() {
+        return new TSimpleDoubleStreamIterator(this);
+    }
+
+    @Override
+    public boolean isParallel() {
+        return false;
+    }
+
+    @Override
+    public TDoubleStream sequential() {
+        return this;
+    }
+
+    @Override
+    public TDoubleStream parallel() {
+        return this;
+    }
+
+    @Override
+    public TDoubleStream unordered() {
+        return this;
+    }
+
+    @Override
+    public TDoubleStream onClose(TRunnable handler) {
+        TRunnable previous = closeHandler;
+        closeHandler = previous == null ? handler : () -> {
+            previous.run();
+            handler.run();
+        };
+        return this;
+    }
+
+    @Override
+    public void close() {
+        if (upstream != null) {
+            upstream.close();
+        }
+        TRunnable handler = closeHandler;
+        closeHandler = null;
+        if (handler != null) {
+            handler.run();
+        }
+    }
+
+    static class ArrayFillingConsumer implements TDoublePredicate {
+        double[] array;
+        int size;
+
+        ArrayFillingConsumer(double[] array) {
+            this.array = array;
+        }
+
+        @Override
+        public boolean test(double t) {
+            if (size == array.length) {
+                array = TArrays.copyOf(array, Math.max(16, array.length * 2));
+            }
+            array[size++] = t;
+            return true;
+        }
+    }
+
+    static class ReducingConsumer implements TDoublePredicate {
+        private TDoubleBinaryOperator accumulator;
+        double result;
+
+        ReducingConsumer(TDoubleBinaryOperator accumulator, double identity) {
+            this.accumulator = accumulator;
+            this.result = identity;
+        }
+
+        @Override
+        public boolean test(double t) {
+            result = accumulator.applyAsDouble(result, t);
+            return true;
+        }
+    }
+
+    static class OptionalReducingConsumer implements TDoublePredicate {
+        private TDoubleBinaryOperator accumulator;
+        double result;
+        boolean present;
+
+        OptionalReducingConsumer(TDoubleBinaryOperator accumulator) {
+            this.accumulator = accumulator;
+        }
+
+        @Override
+        public boolean test(double t) {
+            if (present) {
+                result = accumulator.applyAsDouble(result, t);
+            } else {
+                result = t;
+                present = true;
+            }
+            return true;
+        }
+    }
+
+    static class CountingConsumer implements TDoublePredicate {
+        long count;
+
+        @Override
+        public boolean test(double t) {
+            ++count;
+            return true;
+        }
+    }
+
+    static class FindFirstConsumer implements TDoublePredicate {
+        double result;
+        boolean found;
+
+        @Override
+        public boolean test(double t) {
+            result = t;
+            found = true;
+            return false;
+        }
+    }
+}
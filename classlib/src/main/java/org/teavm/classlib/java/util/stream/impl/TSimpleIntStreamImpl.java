@@ -0,0 +1,385 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.stream.impl;
+
+import org.teavm.classlib.java.lang.TIllegalArgumentException;
+import org.teavm.classlib.java.lang.TRunnable;
+import org.teavm.classlib.java.util.TArrays;
+import org.teavm.classlib.java.util.TIntSummaryStatistics;
+import org.teavm.classlib.java.util.TOptionalDouble;
+import org.teavm.classlib.java.util.TOptionalInt;
+import org.teavm.classlib.java.util.TPrimitiveIterator;
+import org.teavm.classlib.java.util.function.TBiConsumer;
+import org.teavm.classlib.java.util.function.TIntBinaryOperator;
+import org.teavm.classlib.java.util.function.TIntConsumer;
+import org.teavm.classlib.java.util.function.TIntFunction;
+import org.teavm.classlib.java.util.function.TIntPredicate;
+import org.teavm.classlib.java.util.function.TIntToDoubleFunction;
+import org.teavm.classlib.java.util.function.TIntToLongFunction;
+import org.teavm.classlib.java.util.function.TIntUnaryOperator;
+import org.teavm.classlib.java.util.function.TObjIntConsumer;
+import org.teavm.classlib.java.util.function.TSupplier;
+import org.teavm.classlib.java.util.stream.TBaseStream;
+import org.teavm.classlib.java.util.stream.TDoubleStream;
+import org.teavm.classlib.java.util.stream.TIntStream;
+import org.teavm.classlib.java.util.stream.TLongStream;
+import org.teavm.classlib.java.util.stream.TStream;
+
+/**
+ * <p>Base class of stages of int streams. Works exactly like {@link TSimpleStreamImpl}, but pushes
+ * unboxed values.</p>
+ */
+public abstract class TSimpleIntStreamImpl implements TIntStream {
+    private TBaseStream<?, ?> upstream;
+    private TRunnable closeHandler;
+
+    protected TSimpleIntStreamImpl() {
+    }
+
+    protected TSimpleIntStreamImpl(TBaseStream<?, ?> upstream) {
+        this.upstream = upstream;
+    }
+
+    /**
+     * Pushes elements of this stream to the consumer, until the consumer returns <code>false</code>
+     * or this stream runs out of elements.
+     *
+     * @return <code>true</code> if the consumer stopped iteration, in which case the method can be called again
+     * to push remaining elements; <code>false</code> if all elements were pushed and accepted.
+     */
+    public abstract boolean next(TIntPredicate consumer);
+
+    /**
+     * Returns exact number of elements this stream is going to push, or <code>-1</code> if it's unknown.
+     */
+    protected int estimateSize() {
+        return -1;
+    }
+
+    public static TSimpleIntStreamImpl wrap(TIntStream stream) {
+        if (stream instanceof TSimpleIntStreamImpl) {
+            return (TSimpleIntStreamImpl) stream;
+        }
+        return new TObjToIntMappingStreamImpl<Integer>(new TIteratorStreamImpl<>(stream.iterator()), e -> e);
+    }
+
+    @Override
+    public TIntStream filter(TIntPredicate predicate) {
+        return new TFilteringIntStreamImpl(this, predicate);
+    }
+
+    @Override
+    public TIntStream map(TIntUnaryOperator mapper) {
+        return new TMappingIntStreamImpl(this, mapper);
+    }
+
+    @Override
+    public <U> TStream<U> mapToObj(TIntFunction<? extends U> mapper) {
+        return new TIntToObjMappingStreamImpl<>(this, mapper);
+    }
+
+    @Override
+    public TLongStream mapToLong(TIntToLongFunction mapper) {
+        return new TIntToLongMappingStreamImpl(this, mapper);
+    }
+
+    @Override
+    public TDoubleStream mapToDouble(TIntToDoubleFunction mapper) {
+        return new TIntToDoubleMappingStreamImpl(this, mapper);
+    }
+
+    @Override
+    public TIntStream flatMap(TIntFunction<? extends TIntStream> mapper) {
+        return new TFlatMappingIntStreamImpl(this, mapper);
+    }
+
+    @Override
+    public TIntStream distinct() {
+        return new TDistinctIntStreamImpl(this);
+    }
+
+    @Override
+    public TIntStream sorted() {
+        return new TSortedIntStreamImpl(this);
+    }
+
+    @Override
+    public TIntStream peek(TIntConsumer action) {
+        return new TPeekingIntStreamImpl(this, action);
+    }
+
+    @Override
+    public TIntStream limit(long maxSize) {
+        if (maxSize < 0) {
+            throw new TIllegalArgumentException();
+        }
+        return new TLimitingIntStreamImpl(this, maxSize);
+    }
+
+    @Override
+    public TIntStream skip(long n) {
+        if (n < 0) {
+            throw new TIllegalArgumentException();
+        }
+        return new TSkippingIntStreamImpl(this, n);
+    }
+
+    @Override
+    public void forEach(TIntConsumer action) {
+        next(e -> {
+            action.accept(e);
+            return true;
+        });
+    }
+
+    @Override
+    public void forEachOrdered(TIntConsumer action) {
+        forEach(action);
+    }
+
+    @Override
+    public int[] toArray() {
+        int size = estimateSize();
+        ArrayFillingConsumer consumer = new ArrayFillingConsumer(new int[size >= 0 ? size : 16]);
+        next(consumer);
+        return consumer.size == consumer.array.length ? consumer.array : TArrays.copyOf(consumer.array, consumer.size);
+    }
+
+    @Override
+    public int reduce(int identity, TIntBinaryOperator op) {
+        ReducingConsumer consumer = new ReducingConsumer(op, identity);
+        next(consumer);
+        return consumer.result;
+    }
+
+    @Override
+    public TOptionalInt reduce(TIntBinaryOperator op) {
+        OptionalReducingConsumer consumer = new OptionalReducingConsumer(op);
+        next(consumer);
+        return consumer.present ? TOptionalInt.of(consumer.result) : TOptionalInt.empty();
+    }
+
+    @Override
+    public <R> R collect(TSupplier<R> supplier, TObjIntConsumer<R> accumulator, TBiConsumer<R, R> combiner) {
+        R container = supplier.get();
+        next(e -> {
+            accumulator.accept(container, e);
+            return true;
+        });
+        return container;
+    }
+
+    @Override
+    public int sum() {
+        return reduce(0, (a, b) -> a + b);
+    }
+
+    @Override
+    public TOptionalInt min() {
+        return reduce(Math::min);
+    }
+
+    @Override
+    public TOptionalInt max() {
+        return reduce(Math::max);
+    }
+
+    @Override
+    public long count() {
+        CountingConsumer consumer = new CountingConsumer();
+        next(consumer);
+        return consumer.count;
+    }
+
+    @Override
+    public TOptionalDouble average() {
+        TIntSummaryStatistics statistics = summaryStatistics();
+        return statistics.getCount() > 0 ? TOptionalDouble.of(statistics.getAverage()) : TOptionalDouble.empty();
+    }
+
+    @Override
+    public TIntSummaryStatistics summaryStatistics() {
+        TIntSummaryStatistics statistics = new TIntSummaryStatistics();
+        forEach(statistics);
+        return statistics;
+    }
+
+    @Override
+    public boolean anyMatch(TIntPredicate predicate) {
+        return next(e -> !predicate.test(e));
+    }
+
+    @Override
+    public boolean allMatch(TIntPredicate predicate) {
+        return !next(predicate);
+    }
+
+    @Override
+    public boolean noneMatch(TIntPredicate predicate) {
+        return !anyMatch(predicate);
+    }
+
+    @Override
+    public TOptionalInt findFirst() {
+        FindFirstConsumer consumer = new FindFirstConsumer();
+        next(consumer);
+        return consumer.found ? TOptionalInt.of(consumer.result) : TOptionalInt.empty();
+    }
+
+    @Override
+    public TOptionalInt findAny() {
+        return findFirst();
+    }
+
+    @Override
+    public TLongStream asLongStream() {
+        return new TIntToLongMappingStreamImpl(this, e -> e);
+    }
+
+    @Override
+    public TDoubleStream asDoubleStream() {
+        return new TIntToDoubleMappingStreamImpl(this, e -> e);
+    }
+
+    @Override
+    public TStream<Integer> boxed() {
+        return mapToObj(Integer::valueOf);
+    }
+
+    @Override
+    public TPrimitiveIterator.OfInt iterator() {
+        return new TSimpleIntStreamIterator(this);
+    }
+
+    @Override
+    public boolean isParallel() {
+        return false;
+    }
+
+    @Override
+    public TIntStream sequential() {
+        return this;
+    }
+
+    @Override
+    public TIntStream parallel() {
+        return this;
+    }
+
+    @Override
+    public TIntStream unordered() {
+        return this;
+    }
+
+    @Override
+    public TIntStream onClose(TRunnable handler) {
+        TRunnable previous = closeHandler;
+        closeHandler = previous == null ? handler : () -> {
+            previous.run();
+            handler.run();
+        };
+        return this;
+    }
+
+    @Override
+    public void close() {
+        if (upstream != null) {
+            upstream.close();
+        }
+        TRunnable handler = closeHandler;
+        closeHandler = null;
+        if (handler != null) {
+            handler.run();
+        }
+    }
+
+    static class ArrayFillingConsumer implements TIntPredicate {
+        int[] array;
+        int size;
+
+        ArrayFillingConsumer(int[] array) {
+            this.array = array;
+        }
+
+        @Override
+        public boolean test(int t) {
+            if (size == array.length) {
+                array = TArrays.copyOf(array, Math.max(16, array.length * 2));
+            }
+            array[size++] = t;
+            return true;
+        }
+    }
+
+    static class ReducingConsumer implements TIntPredicate {
+        private TIntBinaryOperator accumulator;
+        int result;
+
+        ReducingConsumer(TIntBinaryOperator accumulator, int identity) {
+            this.accumulator = accumulator;
+            this.result = identity;
+        }
+
+        @Override
+        public boolean test(int t) {
+            result = accumulator.applyAsInt(result, t);
+            return true;
+        }
+    }
+
+    static class OptionalReducingConsumer implements TIntPredicate {
+        private TIntBinaryOperator accumulator;
+        int result;
+        boolean present;
+
+        OptionalReducingConsumer(TIntBinaryOperator accumulator) {
+            this.accumulator = accumulator;
+        }
+
+        @Override
+        public boolean test(int t) {
+            if (present) {
+                result = accumulator.applyAsInt(result, t);
+            } else {
+                result = t;
+                present = true;
+            }
+            return true;
+        }
+    }
+
+    static class CountingConsumer implements TIntPredicate {
+        long count;
+
+        @Override
+        public boolean test(int t) {
+            ++count;
+            return true;
+        }
+    }
+
+    static class FindFirstConsumer implements TIntPredicate {
+        int result;
+        boolean found;
+
+        @Override
+        public boolean test(int t) {
+            result = t;
+            found = true;
+            return false;
+        }
+    }
+}
@@ -0,0 +1,380 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.stream.impl;
+
+import org.teavm.classlib.java.lang.TIllegalArgumentException;
+import org.teavm.classlib.java.lang.TRunnable;
+import org.teavm.classlib.java.util.TArrays;
+import org.teavm.classlib.java.util.TLongSummaryStatistics;
+import org.teavm.classlib.java.util.TOptionalDouble;
+import org.teavm.classlib.java.util.TOptionalLong;
+import org.teavm.classlib.java.util.TPrimitiveIterator;
+import org.teavm.classlib.java.util.function.TBiConsumer;
+import org.teavm.classlib.java.util.function.TLongBinaryOperator;
+import org.teavm.classlib.java.util.function.TLongConsumer;
+import org.teavm.classlib.java.util.function.TLongFunction;
+import org.teavm.classlib.java.util.function.TLongPredicate;
+import org.teavm.classlib.java.util.function.TLongToDoubleFunction;
+import org.teavm.classlib.java.util.function.TLongToIntFunction;
+import org.teavm.classlib.java.util.function.TLongUnaryOperator;
+import org.teavm.classlib.java.util.function.TObjLongConsumer;
+import org.teavm.classlib.java.util.function.TSupplier;
+import org.teavm.classlib.java.util.stream.TBaseStream;
+import org.teavm.classlib.java.util.stream.TDoubleStream;
+import org.teavm.classlib.java.util.stream.TIntStream;
+import org.teavm.classlib.java.util.stream.TLongStream;
+import org.teavm.classlib.java.util.stream.TStream;
+
+/**
+ * <p>Base class of stages of long streams. Works exactly like {@link TSimpleStreamImpl}, but pushes
+ * unboxed values.</p>
+ */
+public abstract class TSimpleLongStreamImpl implements TLongStream {
+    private TBaseStream<?, ?> upstream;
+    private TRunnable closeHandler;
+
+    protected TSimpleLongStreamImpl() {
+    }
+
+    protected TSimpleLongStreamImpl(TBaseStream<?, ?> upstream) {
+        this.upstream = upstream;
+    }
+
+    /**
+     * Pushes elements of this stream to the consumer, until the consumer returns <code>false</code>
+     * or this stream runs out of elements.
+     *
+     * @return <code>true</code> if the consumer stopped iteration, in which case the method can be called again
+     * to push remaining elements; <code>false</code> if all elements were pushed and accepted.
+     */
+    public abstract boolean next(TLongPredicate consumer);
+
+    /**
+     * Returns exact number of elements this stream is going to push, or <code>-1</code> if it's unknown.
+     */
+    protected int estimateSize() {
+        return -1;
+    }
+
+    public static TSimpleLongStreamImpl wrap(TLongStream stream) {
+        if (stream instanceof TSimpleLongStreamImpl) {
+            return (TSimpleLongStreamImpl) stream;
+        }
+        return new TObjToLongMappingStreamImpl<Long>(new TIteratorStreamImpl<>(stream.iterator()), e -> e);
+    }
+
+    @Override
+    public TLongStream filter(TLongPredicate predicate) {
+        return new TFilteringLongStreamImpl(this, predicate);
+    }
+
+    @Override
+    public TLongStream map(TLongUnaryOperator mapper) {
+        return new TMappingLongStreamImpl(this, mapper);
+    }
+
+    @Override
+    public <U> TStream<U> mapToObj(TLongFunction<? extends U> mapper) {
+        return new TLongToObjMappingStreamImpl<>(this, mapper);
+    }
+
+    @Override
+    public TIntStream mapToInt(TLongToIntFunction mapper) {
+        return new TLongToIntMappingStreamImpl(this, mapper);
+    }
+
+    @Override
+    public TDoubleStream mapToDouble(TLongToDoubleFunction mapper) {
+        return new TLongToDoubleMappingStreamImpl(this, mapper);
+    }
+
+    @Override
+    public TLongStream flatMap(TLongFunction<? extends TLongStream> mapper) {
+        return new TFlatMappingLongStreamImpl(this, mapper);
+    }
+
+    @Override
+    public TLongStream distinct() {
+        return new TDistinctLongStreamImpl(this);
+    }
+
+    @Override
+    public TLongStream sorted() {
+        return new TSortedLongStreamImpl(this);
+    }
+
+    @Override
+    public TLongStream peek(TLongConsumer action) {
+        return new TPeekingLongStreamImpl(this, action);
+    }
+
+    @Override
+    public TLongStream limit(long maxSize) {
+        if (maxSize < 0) {
+            throw new TIllegalArgumentException();
+        }
+        return new TLimitingLongStreamImpl(this, maxSize);
+    }
+
+    @Override
+    public TLongStream skip(long n) {
+        if (n < 0) {
+            throw new TIllegalArgumentException();
+        }
+        return new TSkippingLongStreamImpl(this, n);
+    }
+
+    @Override
+    public void forEach(TLongConsumer action) {
+        next(e -> {
+            action.accept(e);
+            return true;
+        });
+    }
+
+    @Override
+    public void forEachOrdered(TLongConsumer action) {
+        forEach(action);
+    }
+
+    @Override
+    public long[] toArray() {
+        int size = estimateSize();
+        ArrayFillingConsumer consumer = new ArrayFillingConsumer(new long[size >= 0 ? size : 16]);
+        next(consumer);
+        return consumer.size == consumer.array.length ? consumer.array : TArrays.copyOf(consumer.array, consumer.size);
+    }
+
+    @Override
+    public long reduce(long identity, TLongBinaryOperator op) {
+        ReducingConsumer consumer = new ReducingConsumer(op, identity);
+        next(consumer);
+        return consumer.result;
+    }
+
+    @Override
+    public TOptionalLong reduce(TLongBinaryOperator op) {
+        OptionalReducingConsumer consumer = new OptionalReducingConsumer(op);
+        next(consumer);
+        return consumer.present ? TOptionalLong.of(consumer.result) : TOptionalLong.empty();
+    }
+
+    @Override
+    public <R> R collect(TSupplier<R> supplier, TObjLongConsumer<R> accumulator, TBiConsumer<R, R> combiner) {
+        R container = supplier.get();
+        next(e -> {
+            accumulator.accept(container, e);
+            return true;
+        });
+        return container;
+    }
+
+    @Override
+    public long sum() {
+        return reduce(0, (a, b) -> a + b);
+    }
+
+    @Override
+    public TOptionalLong min() {
+        return reduce(Math::min);
+    }
+
+    @Override
+    public TOptionalLong max() {
+        return reduce(Math::max);
+    }
+
+    @Override
+    public long count() {
+        CountingConsumer consumer = new CountingConsumer();
+        next(consumer);
+        return consumer.count;
+    }
+
+    @Override
+    public TOptionalDouble average() {
+        TLongSummaryStatistics statistics = summaryStatistics();
+        return statistics.getCount() > 0 ? TOptionalDouble.of(statistics.getAverage()) : TOptionalDouble.empty();
+    }
+
+    @Override
+    public TLongSummaryStatistics summaryStatistics() {
+        TLongSummaryStatistics statistics = new TLongSummaryStatistics();
+        forEach(statistics);
+        return statistics;
+    }
+
+    @Override
+    public boolean anyMatch(TLongPredicate predicate) {
+        return next(e -> !predicate.test(e));
+    }
+
+    @Override
+    public boolean allMatch(TLongPredicate predicate) {
+        return !next(predicate);
+    }
+
+    @Override
+    public boolean noneMatch(TLongPredicate predicate) {
+        return !anyMatch(predicate);
+    }
+
+    @Override
+    public TOptionalLong findFirst() {
+        FindFirstConsumer consumer = new FindFirstConsumer();
+        next(consumer);
+        return consumer.found ? TOptionalLong.of(consumer.result) : TOptionalLong.empty();
+    }
+
+    @Override
+    public TOptionalLong findAny() {
+        return findFirst();
+    }
+
+    @Override
+    public TDoubleStream asDoubleStream() {
+        return new TLongToDoubleMappingStreamImpl(this, e -> e);
+    }
+
+    @Override
+    public TStream<Long> boxed() {
+        return mapToObj(Long::valueOf);
+    }
+
+    @Override
+    public TPrimitiveIterator.OfLong iterator() {
+        return new TSimpleLongStreamIterator(this);
+    }
+
+    @Override
+    public boolean isParallel() {
+        return false;
+    }
+
+    @Override
+    public TLongStream sequential() {
+        return this;
+    }
+
+    @Override
+    public TLongStream parallel() {
+        return this;
+    }
+
+    @Override
+    public TLongStream unordered() {
+        return this;
+    }
+
+    @Override
+    public TLongStream onClose(TRunnable handler) {
+        TRunnable previous = closeHandler;
+        closeHandler = previous == null ? handler : () -> {
+            previous.run();
+            handler.run();
+        };
+        return this;
+    }
+
+    @Override
+    public void close() {
+        if (upstream != null) {
+            upstream.close();
+        }
+        TRunnable handler = closeHandler;
+        closeHandler = null;
+        if (handler != null) {
+            handler.run();
+        }
+    }
+
+    static class ArrayFillingConsumer implements TLongPredicate {
+        long[] array;
+        int size;
+
+        ArrayFillingConsumer(long[] array) {
+            this.array = array;
+        }
+
+        @Override
+        public boolean test(long t) {
+            if (size == array.length) {
+                array = TArrays.copyOf(array, Math.max(16, array.length * 2));
+            }
+            array[size++] = t;
+            return true;
+        }
+    }
+
+    static class ReducingConsumer implements TLongPredicate {
+        private TLongBinaryOperator accumulator;
+        long result;
+
+        ReducingConsumer(TLongBinaryOperator accumulator, long identity) {
+            this.accumulator = accumulator;
+            this.result = identity;
+        }
+
+        @Override
+        public boolean test(long t) {
+            result = accumulator.applyAsLong(result, t);
+            return true;
+        }
+    }
+
+    static class OptionalReducingConsumer implements TLongPredicate {
+        private TLongBinaryOperator accumulator;
+        long result;
+        boolean present;
+
+        OptionalReducingConsumer(TLongBinaryOperator accumulator) {
+            this.accumulator = accumulator;
+        }
+
+        @Override
+        public boolean test(long t) {
+            if (present) {
+                result = accumulator.applyAsLong(result, t);
+            } else {
+                result = t;
+                present = true;
+            }
+            return true;
+        }
+    }
+
+    static class CountingConsumer implements TLongPredicate {
+        long count;
+
+        @Override
+        public boolean test(long t) {
+            ++count;
+            return true;
+        }
+    }
+
+    static class FindFirstConsumer implements TLongPredicate {
+        long result;
+        boolean found;
+
+        @Override
+        public boolean test(long t) {
+            result = t;
+            found = true;
+            return false;
+        }
+    }
+}
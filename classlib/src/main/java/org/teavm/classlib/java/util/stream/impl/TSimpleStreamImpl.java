@@ -0,0 +1,394 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.stream.impl;
+
+import org.teavm.classlib.java.lang.TIllegalArgumentException;
+import org.teavm.classlib.java.lang.TRunnable;
+import org.teavm.classlib.java.util.TArrays;
+import org.teavm.classlib.java.util.TComparator;
+import org.teavm.classlib.java.util.TIterator;
+import org.teavm.classlib.java.util.TOptional;
+import org.teavm.classlib.java.util.function.TBiConsumer;
+import org.teavm.classlib.java.util.function.TBiFunction;
+import org.teavm.classlib.java.util.function.TBinaryOperator;
+import org.teavm.classlib.java.util.function.TConsumer;
+import org.teavm.classlib.java.util.function.TFunction;
+import org.teavm.classlib.java.util.function.TIntFunction;
+import org.teavm.classlib.java.util.function.TPredicate;
+import org.teavm.classlib.java.util.function.TSupplier;
+import org.teavm.classlib.java.util.function.TToDoubleFunction;
+import org.teavm.classlib.java.util.function.TToIntFunction;
+import org.teavm.classlib.java.util.function.TToLongFunction;
+import org.teavm.classlib.java.util.stream.TBaseStream;
+import org.teavm.classlib.java.util.stream.TCollector;
+import org.teavm.classlib.java.util.stream.TDoubleStream;
+import org.teavm.classlib.java.util.stream.TIntStream;
+import org.teavm.classlib.java.util.stream.TLongStream;
+import org.teavm.classlib.java.util.stream.TStream;
+
+/**
+ * <p>Base class of all stream stages. Instead of pulling elements through spliterators, a stage pushes elements
+ * of its source to a consumer, wrapping it into a consumer of its own, so that a whole pipeline runs
+ * as a single loop in the source stage. Since every consumer is a lambda created right in the stage that
+ * calls it, inlining and devirtualization can flatten a pipeline into a loop without virtual calls.</p>
+ *
+ * <p>Consumer returns <code>false</code> to stop iteration. This is how short-circuiting operations
+ * are implemented, and also how an iterator pulls elements one by one.</p>
+ */
+public abstract class TSimpleStreamImpl<T> implements TStream<T> {
+    private TBaseStream<?, ?> upstream;
+    private TRunnable closeHandler;
+
+    protected TSimpleStreamImpl() {
+    }
+
+    protected TSimpleStreamImpl(TBaseStream<?, ?> upstream) {
+        this.upstream = upstream;
+    }
+
+    /**
+     * Pushes elements of this stream to the consumer, until the consumer returns <code>false</code>
+     * or this stream runs out of elements.
+     *
+     * @return <code>true</code> if the consumer stopped iteration, in which case the method can be called again
+     * to push remaining elements; <code>false</code> if all elements were pushed and accepted.
+     */
+    public abstract boolean next(TPredicate<? super T> consumer);
+
+    /**
+     * Returns exact number of elements this stream is going to push, or <code>-1</code> if it's unknown.
+     */
+    protected int estimateSize() {
+        return -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> TSimpleStreamImpl<T> wrap(TStream<? extends T> stream) {
+        if (stream instanceof TSimpleStreamImpl<?>) {
+            return (TSimpleStreamImpl<T>) stream;
+        }
+        return new TIteratorStreamImpl<>(stream.iterator());
+    }
+
+    @Override
+    public TStream<T> filter(TPredicate<? super T> predicate) {
+        return new TFilteringStreamImpl<>(this, predicate);
+    }
+
+    @Override
+    public <R> TStream<R> map(TFunction<? super T, ? extends R> mapper) {
+        return new TMappingStreamImpl<>(this, mapper);
+    }
+
+    @Override
+    public TIntStream mapToInt(TToIntFunction<? super T> mapper) {
+        return new TObjToIntMappingStreamImpl<>(this, mapper);
+    }
+
+    @Override
+    public TLongStream mapToLong(TToLongFunction<? super T> mapper) {
+        return new TObjToLongMappingStreamImpl<>(this, mapper);
+    }
+
+    @Override
+    public TDoubleStream mapToDouble(TToDoubleFunction<? super T> mapper) {
+        return new TObjToDoubleMappingStreamImpl<>(this, mapper);
+    }
+
+    @Override
+    public <R> TStream<R> flatMap(TFunction<? super T, ? extends TStream<? extends R>> mapper) {
+        return new TFlatMappingStreamImpl<>(this, mapper);
+    }
+
+    @Override
+    public TStream<T> distinct() {
+        return new TDistinctStreamImpl<>(this);
+    }
+
+    @Override
+    public TStream<T> sorted() {
+        return new TSortedStreamImpl<>(this, null);
+    }
+
+    @Override
+    public TStream<T> sorted(TComparator<? super T> comparator) {
+        return new TSortedStreamImpl<>(this, comparator);
+    }
+
+    @Override
+    public TStream<T> peek(TConsumer<? super T> action) {
+        return new TPeekingStreamImpl<>(this, action);
+    }
+
+    @Override
+    public TStream<T> limit(long maxSize) {
+        if (maxSize < 0) {
+            throw new TIllegalArgumentException();
+        }
+        return new TLimitingStreamImpl<>(this, maxSize);
+    }
+
+    @Override
+    public TStream<T> skip(long n) {
+        if (n < 0) {
+            throw new TIllegalArgumentException();
+        }
+        return new TSkippingStreamImpl<>(this, n);
+    }
+
+    @Override
+    public void forEach(TConsumer<? super T> action) {
+        next(e -> {
+            action.accept(e);
+            return true;
+        });
+    }
+
+    @Override
+    public void forEachOrdered(TConsumer<? super T> action) {
+        forEach(action);
+    }
+
+    @Override
+    public Object[] toArray() {
+        return toArray(Object[]::new);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <A> A[] toArray(TIntFunction<A[]> generator) {
+        int size = estimateSize();
+        if (size >= 0) {
+            A[] result = generator.apply(size);
+            ArrayFillingConsumer<T> consumer = new ArrayFillingConsumer<>(result);
+            next(consumer);
+            return result;
+        }
+        ArrayFillingConsumer<T> consumer = new ArrayFillingConsumer<>(new Object[16]);
+        next(consumer);
+        A[] result = generator.apply(consumer.size);
+        System.arraycopy(consumer.array, 0, result, 0, consumer.size);
+        return result;
+    }
+
+    @Override
+    public T reduce(T identity, TBinaryOperator<T> accumulator) {
+        return reduce(identity, accumulator, accumulator);
+    }
+
+    @Override
+    public TOptional<T> reduce(TBinaryOperator<T> accumulator) {
+        OptionalReducingConsumer<T> consumer = new OptionalReducingConsumer<>(accumulator);
+        next(consumer);
+        return consumer.present ? TOptional.of(consumer.result) : TOptional.empty();
+    }
+
+    @Override
+    public <U> U reduce(U identity, TBiFunction<U, ? super T, U> accumulator, TBinaryOperator<U> combiner) {
+        ReducingConsumer<T, U> consumer = new ReducingConsumer<>(accumulator, identity);
+        next(consumer);
+        return consumer.result;
+    }
+
+    @Override
+    public <R> R collect(TSupplier<R> supplier, TBiConsumer<R, ? super T> accumulator, TBiConsumer<R, R> combiner) {
+        R container = supplier.get();
+        next(e -> {
+            accumulator.accept(container, e);
+            return true;
+        });
+        return container;
+    }
+
+    @Override
+    public <R, A> R collect(TCollector<? super T, A, R> collector) {
+        A container = collector.supplier().get();
+        TBiConsumer<A, ? super T> accumulator = collector.accumulator();
+        next(e -> {
+            accumulator.accept(container, e);
+            return true;
+        });
+        return collector.finisher().apply(container);
+    }
+
+    @Override
+    public TOptional<T> min(TComparator<? super T> comparator) {
+        return reduce(TBinaryOperator.minBy(comparator));
+    }
+
+    @Override
+    public TOptional<T> max(TComparator<? super T> comparator) {
+        return reduce(TBinaryOperator.maxBy(comparator));
+    }
+
+    @Override
+    public long count() {
+        CountingConsumer<T> consumer = new CountingConsumer<>();
+        next(consumer);
+        return consumer.count;
+    }
+
+    @Override
+    public boolean anyMatch(TPredicate<? super T> predicate) {
+        return next(e -> !predicate.test(e));
+    }
+
+    @Override
+    public boolean allMatch(TPredicate<? super T> predicate) {
+        return !next(predicate);
+    }
+
+    @Override
+    public boolean noneMatch(TPredicate<? super T> predicate) {
+        return !anyMatch(predicate);
+    }
+
+    @Override
+    public TOptional<T> findFirst() {
+        FindFirstConsumer<T> consumer = new FindFirstConsumer<>();
+        next(consumer);
+        return consumer.found ? TOptional.of(consumer.result) : TOptional.empty();
+    }
+
+    @Override
+    public TOptional<T> findAny() {
+        return findFirst();
+    }
+
+    @Override
+    public TIterator<T> iterator() {
+        return new TSimpleStreamIterator<>(this);
+    }
+
+    @Override
+    public boolean isParallel() {
+        return false;
+    }
+
+    @Override
+    public TStream<T> sequential() {
+        return this;
+    }
+
+    @Override
+    public TStream<T> parallel() {
+        return this;
+    }
+
+    @Override
+    public TStream<T> unordered() {
+        return this;
+    }
+
+    @Override
+    public TStream<T> onClose(TRunnable handler) {
+        TRunnable previous = closeHandler;
+        closeHandler = previous == null ? handler : () -> {
+            previous.run();
+            handler.run();
+        };
+        return this;
+    }
+
+    @Override
+    public void close() {
+        if (upstream != null) {
+            upstream.close();
+        }
+        TRunnable handler = closeHandler;
+        closeHandler = null;
+        if (handler != null) {
+            handler.run();
+        }
+    }
+
+    static class ArrayFillingConsumer<T> implements TPredicate<T> {
+        Object[] array;
+        int size;
+
+        ArrayFillingConsumer(Object[] array) {
+            this.array = array;
+        }
+
+        @Override
+        public boolean test(T t) {
+            if (size == array.length) {
+                array = TArrays.copyOf(array, array.length * 2);
+            }
+            array[size++] = t;
+            return true;
+        }
+    }
+
+    static class ReducingConsumer<T, U> implements TPredicate<T> {
+        private TBiFunction<U, ? super T, U> accumulator;
+        U result;
+
+        ReducingConsumer(TBiFunction<U, ? super T, U> accumulator, U identity) {
+            this.accumulator = accumulator;
+            this.result = identity;
+        }
+
+        @Override
+        public boolean test(T t) {
+            result = accumulator.apply(result, t);
+            return true;
+        }
+    }
+
+    static class OptionalReducingConsumer<T> implements TPredicate<T> {
+        private TBinaryOperator<T> accumulator;
+        T result;
+        boolean present;
+
+        OptionalReducingConsumer(TBinaryOperator<T> accumulator) {
+            this.accumulator = accumulator;
+        }
+
+        @Override
+        public boolean test(T t) {
+            if (present) {
+                result = accumulator.apply(result, t);
+            } else {
+                result = t;
+                present = true;
+            }
+            return true;
+        }
+    }
+
+    static class CountingConsumer<T> implements TPredicate<T> {
+        long count;
+
+        @Override
+        public boolean test(T t) {
+            ++count;
+            return true;
+        }
+    }
+
+    static class FindFirstConsumer<T> implements TPredicate<T> {
+        T result;
+        boolean found;
+
+        @Override
+        public boolean test(T t) {
+            result = t;
+            found = true;
+            return false;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.stream.impl;
+
+import org.teavm.classlib.java.lang.TUnsupportedOperationException;
+import org.teavm.classlib.java.util.TIterator;
+import org.teavm.classlib.java.util.TNoSuchElementException;
+
+public class TSimpleStreamIterator<T> implements TIterator<T> {
+    private static final byte NEEDS_ELEMENT = 0;
+    private static final byte HAS_ELEMENT = 1;
+    private static final byte DONE = 2;
+
+    private TSimpleStreamImpl<T> stream;
+    private T lastElement;
+    private byte state;
+
+    public TSimpleStreamIterator(TSimpleStreamImpl<T> stream) {
+        this.stream = stream;
+    }
+
+    @Override
+    public boolean hasNext() {
+        fetchIfNeeded();
+        return state == HAS_ELEMENT;
+    }
+
+    @Override
+    public T next() {
+        fetchIfNeeded();
+        if (state != HAS_ELEMENT) {
+            throw new TNoSuchElementException();
+        }
+        T result = lastElement;
+        lastElement = null;
+        state = NEEDS_ELEMENT;
+        return result;
+    }
+
+    @Override
+    public void remove() {
+        throw new TUnsupportedOperationException();
+    }
+
+    private void fetchIfNeeded() {
+        if (state != NEEDS_ELEMENT) {
+            return;
+        }
+        state = DONE;
+        stream.next(e -> {
+            lastElement = e;
+            state = HAS_ELEMENT;
+            return false;
+        });
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.stream.impl;
+
+import org.teavm.classlib.java.util.TArrays;
+import org.teavm.classlib.java.util.function.TDoublePredicate;
+
+public class TSortedDoubleStreamImpl extends TSimpleDoubleStreamImpl {
+    private TSimpleDoubleStreamImpl sourceStream;
+    private double[] array;
+    private int index;
+
+    public TSortedDoubleStreamImpl(TSimpleDoubleStreamImpl sourceStream) {
+        super(sourceStream);
+        this.sourceStream = sourceStream;
+    }
+
+    @Override
+    public boolean next(TDoublePredicate consumer) {
+        if (array == null) {
+            array = sourceStream.toArray();
+            TArrays.sort(array);
+        }
+        while (index < array.length) {
+            if (!consumer.test(array[index++])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected int estimateSize() {
+        return array == null ? sourceStream.estimateSize() : array.length - index;
+    }
+}
@@ -88,6 +88,7 @@ public class Decompiler {
     private MethodNodeCache regularMethodCache;
     private Set<MethodReference> asyncMethods;
     private Set<MethodReference> splitMethods = new HashSet<>();
+    private boolean splittingAsyncMethods = true;
     private List<TryCatchBookmark> tryCatchBookmarks = new ArrayList<>();
     private Deque<Block> stack;
     private Program program;
@@ -109,6 +110,20 @@ public class Decompiler {
         this.regularMethodCache = regularMethodCache;
     }
 
+    public boolean isSplittingAsyncMethods() {
+        return splittingAsyncMethods;
+    }
+
+    /**
+     * Specifies whether asynchronous methods are split into parts at calls that may suspend, producing
+     * {@link AsyncMethodNode}. When they are not split, they are decompiled as regular methods.
+     *
+     * @param splittingAsyncMethods whether to split asynchronous methods, <code>true</code> by default.
+     */
+    public void setSplittingAsyncMethods(boolean splittingAsyncMethods) {
+        this.splittingAsyncMethods = splittingAsyncMethods;
+    }
+
     public int getGraphSize() {
         return this.graph.size();
     }
@@ -212,7 +227,8 @@ public class Decompiler {
 
     public MethodNode decompile(MethodHolder method) {
         return method.getModifiers().contains(ElementModifier.NATIVE) ? decompileNative(method)
-                : !asyncMethods.contains(method.getReference()) ? decompileRegular(method) : decompileAsync(method);
+                : !splittingAsyncMethods || !asyncMethods.contains(method.getReference()) ? decompileRegular(method)
+                : decompileAsync(method);
     }
 
     public NativeMethodNode decompileNative(MethodHolder method) {
@@ -0,0 +1,55 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.backend.javascript;
+
+/**
+ * Specifies how methods that may suspend execution of a thread are represented in JavaScript.
+ *
+ * @see JavaScriptTarget#setAsyncMode(AsyncMode)
+ */
+public enum AsyncMode {
+    /**
+     * <p>Every asynchronous method is split into parts at calls that may suspend, and parts are executed by
+     * a <code>switch</code> statement. When suspending, method saves its local variables and number of the part
+     * into stack of the thread and returns, and when resuming, it restores them and continues.</p>
+     *
+     * <p>Works in every JavaScript engine. All methods can be called from JavaScript, and they run
+     * synchronously until something suspends.</p>
+     */
+    STATE_MACHINE,
+
+    /**
+     * <p>Every method that may suspend, as well as every method that overrides one or is overridden by one,
+     * is rendered as ES2015 generator function, and calls to these methods are delegated by
+     * <code>yield*</code>. When suspending, the innermost asynchronous native method yields, and the thread
+     * resumes the outermost generator later. Local variables are kept by the JavaScript engine, so method bodies
+     * are not split, which makes code smaller. However, every call of such method creates generator object,
+     * so calls are several times slower than in {@link #STATE_MACHINE} mode.</p>
+     *
+     * <p>Requires ES2015 generators. Methods rendered as generators return generator object instead of their
+     * result, therefore:</p>
+     *
+     * <ul>
+     *   <li>when such method is an entry point, it must be started by <code>$rt_startThread</code>,
+     *   like <code>main</code> method is;</li>
+     *   <li>JavaScript code, including JSO functors, aliases and <code>@JSBody</code> scripts, must not
+     *   call such methods directly;</li>
+     *   <li>generators of native asynchronous methods must support this mode,
+     *   see {@link org.teavm.backend.javascript.spi.GeneratorContext#getAsyncMode()}.</li>
+     * </ul>
+     */
+    GENERATORS
+}
@@ -15,6 +15,7 @@
  */
 package org.teavm.backend.javascript;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
@@ -26,9 +27,14 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.teavm.ast.ClassNode;
 import org.teavm.ast.cache.EmptyRegularMethodNodeCache;
 import org.teavm.ast.cache.MethodNodeCache;
+import org.teavm.ast.decompilation.DecompilationException;
 import org.teavm.ast.decompilation.Decompiler;
 import org.teavm.backend.javascript.codegen.AliasProvider;
 import org.teavm.backend.javascript.codegen.DefaultAliasProvider;
@@ -87,6 +93,8 @@ public class JavaScriptTarget implements TeaVMTarget, TeaVMJavaScriptHost {
     private MethodNodeCache astCache = new EmptyRegularMethodNodeCache();
     private final Set<MethodReference> asyncMethods = new HashSet<>();
     private final Set<MethodReference> asyncFamilyMethods = new HashSet<>();
+    private int renderingThreadCount = 1;
+    private AsyncMode asyncMode = AsyncMode.STATE_MACHINE;
 
     @Override
     public List<ClassHolderTransformer> getTransformers() {
@@ -146,6 +154,39 @@ public class JavaScriptTarget implements TeaVMTarget, TeaVMJavaScriptHost {
         this.astCache = methodAstCache;
     }
 
+    public int getRenderingThreadCount() {
+        return renderingThreadCount;
+    }
+
+    /**
+     * <p>Specifies how many threads decompile classes and render them into JavaScript. When more than one thread
+     * is used, classes are rendered into separate buffers, which are written out in the same order as in
+     * single-threaded mode, as soon as all preceding classes are written. Names and string constants are
+     * collected in advance, so the output is exactly the same as in single-threaded mode.</p>
+     *
+     * <p>Debug information is bound to absolute positions in generated file, so when debug emitter is set,
+     * classes are rendered in one thread. Incremental builds decompile classes in one thread as well.</p>
+     *
+     * @param renderingThreadCount number of threads, 1 by default.
+     */
+    public void setRenderingThreadCount(int renderingThreadCount) {
+        this.renderingThreadCount = renderingThreadCount;
+    }
+
+    public AsyncMode getAsyncMode() {
+        return asyncMode;
+    }
+
+    /**
+     * Specifies how methods that may suspend execution of a thread are represented in JavaScript.
+     * See {@link AsyncMode} for restrictions of each mode.
+     *
+     * @param asyncMode representation of asynchronous methods, {@link AsyncMode#STATE_MACHINE} by default.
+     */
+    public void setAsyncMode(AsyncMode asyncMode) {
+        this.asyncMode = asyncMode;
+    }
+
     public DebugInformationEmitter getDebugEmitter() {
         return debugEmitter;
     }
@@ -204,7 +245,7 @@ public class JavaScriptTarget implements TeaVMTarget, TeaVMJavaScriptHost {
     @Override
     public void emit(ListableClassHolderSource classes, BuildTarget target, String outputName) {
         try (OutputStream output = target.createResource(outputName);
-                Writer writer = new OutputStreamWriter(output, "UTF-8")) {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(output, "UTF-8"), 65536)) {
             emit(classes, writer, target);
         } catch (IOException e) {
             throw new RenderingException(e);
@@ -216,7 +257,21 @@ public class JavaScriptTarget implements TeaVMTarget, TeaVMJavaScriptHost {
     }
 
     private void emit(ListableClassHolderSource classes, Writer writer, BuildTarget target) {
-        List<ClassNode> clsNodes = modelToAst(classes);
+        ExecutorService executor = renderingThreadCount > 1 && debugEmitter == null
+                ? Executors.newFixedThreadPool(renderingThreadCount)
+                : null;
+        try {
+            emit(classes, writer, target, executor);
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    private void emit(ListableClassHolderSource classes, Writer writer, BuildTarget target,
+            ExecutorService executor) {
+        List<ClassNode> clsNodes = modelToAst(classes, executor);
         if (controller.wasCancelled()) {
             return;
         }
@@ -234,10 +289,18 @@ public class JavaScriptTarget implements TeaVMTarget, TeaVMJavaScriptHost {
         RenderingContext renderingContext = new RenderingContext(debugEmitterToUse, classes,
                 controller.getClassLoader(), controller.getServices(), controller.getProperties(), naming);
         renderingContext.setMinifying(minifying);
+        if (asyncMode == AsyncMode.GENERATORS) {
+            Set<MethodReference> generatorMethods = new HashSet<>(asyncMethods);
+            generatorMethods.addAll(asyncFamilyMethods);
+            renderingContext.setGeneratorMethods(generatorMethods);
+        }
         Renderer renderer = new Renderer(sourceWriter, asyncMethods, asyncFamilyMethods,
                 controller.getDiagnostics(), renderingContext);
         renderer.setProperties(controller.getProperties());
         renderer.setMinifying(minifying);
+        renderer.setAsyncMode(asyncMode);
+        renderer.setExecutor(executor);
+        renderer.setRenderingWindow(renderingThreadCount * 4);
         if (debugEmitter != null) {
             for (String className : classes.getClassNames()) {
                 ClassHolder cls = classes.get(className);
@@ -283,23 +346,20 @@ public class JavaScriptTarget implements TeaVMTarget, TeaVMJavaScriptHost {
         }
     }
 
-    private List<ClassNode> modelToAst(ListableClassHolderSource classes) {
+    private List<ClassNode> modelToAst(ListableClassHolderSource classes, ExecutorService executor) {
         AsyncMethodFinder asyncFinder = new AsyncMethodFinder(controller.getDependencyInfo().getCallGraph(),
                 controller.getDiagnostics());
         asyncFinder.find(classes);
         asyncMethods.addAll(asyncFinder.getAsyncMethods());
         asyncFamilyMethods.addAll(asyncFinder.getAsyncFamilyMethods());
 
-        Decompiler decompiler = new Decompiler(classes, controller.getClassLoader(), asyncMethods, asyncFamilyMethods);
+        Decompiler decompiler = createDecompiler(classes);
         decompiler.setRegularMethodCache(controller.isIncremental() ? astCache : null);
 
-        for (Map.Entry<MethodReference, Generator> entry : methodGenerators.entrySet()) {
-            decompiler.addGenerator(entry.getKey(), entry.getValue());
-        }
-        for (MethodReference injectedMethod : methodInjectors.keySet()) {
-            decompiler.addMethodToSkip(injectedMethod);
-        }
         List<String> classOrder = decompiler.getClassOrdering(classes.getClassNames());
+        if (executor != null && !controller.isIncremental()) {
+            return modelToAstConcurrently(classes, classOrder, executor);
+        }
         List<ClassNode> classNodes = new ArrayList<>();
         for (String className : classOrder) {
             ClassHolder cls = classes.get(className);
@@ -314,6 +374,57 @@ public class JavaScriptTarget implements TeaVMTarget, TeaVMJavaScriptHost {
         return classNodes;
     }
 
+    private List<ClassNode> modelToAstConcurrently(ListableClassHolderSource classes, List<String> classOrder,
+            ExecutorService executor) {
+        for (String className : classOrder) {
+            for (MethodHolder method : classes.get(className).getMethods()) {
+                preprocessNativeMethod(method);
+            }
+            if (controller.wasCancelled()) {
+                return Collections.emptyList();
+            }
+        }
+
+        // Decompiler keeps state of the method being decompiled, so every thread needs its own instance
+        ThreadLocal<Decompiler> decompilers = ThreadLocal.withInitial(() -> createDecompiler(classes));
+        List<Future<ClassNode>> futures = new ArrayList<>();
+        for (String className : classOrder) {
+            ClassHolder cls = classes.get(className);
+            futures.add(executor.submit(() -> decompilers.get().decompile(cls)));
+        }
+        List<ClassNode> classNodes = new ArrayList<>();
+        try {
+            for (Future<ClassNode> future : futures) {
+                classNodes.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RenderingException("Decompilation was interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new DecompilationException(e.getCause());
+        } finally {
+            for (Future<ClassNode> future : futures) {
+                future.cancel(false);
+            }
+        }
+        return classNodes;
+    }
+
+    private Decompiler createDecompiler(ListableClassHolderSource classes) {
+        Decompiler decompiler = new Decompiler(classes, controller.getClassLoader(), asyncMethods, asyncFamilyMethods);
+        decompiler.setSplittingAsyncMethods(asyncMode == AsyncMode.STATE_MACHINE);
+        for (Map.Entry<MethodReference, Generator> entry : methodGenerators.entrySet()) {
+            decompiler.addGenerator(entry.getKey(), entry.getValue());
+        }
+        for (MethodReference injectedMethod : methodInjectors.keySet()) {
+            decompiler.addMethodToSkip(injectedMethod);
+        }
+        return decompiler;
+    }
+
     private void preprocessNativeMethod(MethodHolder method) {
         if (!method.getModifiers().contains(ElementModifier.NATIVE)
                 || methodGenerators.get(method.getReference()) != null
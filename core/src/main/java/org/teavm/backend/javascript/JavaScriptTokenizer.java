@@ -0,0 +1,281 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.backend.javascript;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * <p>Splits JavaScript source into tokens, so that contents of string literals, regular expression literals
+ * and comments are never mistaken for code. Tracks nesting of brackets, so that a token can tell whether
+ * it belongs to a top-level statement.</p>
+ *
+ * <p>Whether a slash starts a regular expression or means division depends on the previous token,
+ * as in JavaScript grammar. Template literals are read as plain strings, substitutions are not tokenized.</p>
+ */
+class JavaScriptTokenizer {
+    private static final Set<String> KEYWORDS_BEFORE_EXPRESSION = new HashSet<>(Arrays.asList("return", "typeof",
+            "instanceof", "in", "of", "new", "delete", "void", "throw", "case", "do", "else", "yield"));
+    private CharSequence text;
+    private int position;
+    private int depth;
+    private TokenType previousType;
+    private String previousText;
+
+    private TokenType type;
+    private int start;
+    private int end;
+    private int tokenDepth;
+
+    JavaScriptTokenizer(CharSequence text) {
+        this.text = text;
+    }
+
+    /**
+     * Reads next token.
+     *
+     * @return <code>false</code> when end of text is reached.
+     */
+    boolean next() {
+        if (type != null && type != TokenType.COMMENT) {
+            previousType = type;
+            previousText = type == TokenType.IDENTIFIER || type == TokenType.PUNCTUATOR ? getText() : null;
+        }
+        while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+            ++position;
+        }
+        if (position >= text.length()) {
+            type = null;
+            return false;
+        }
+
+        start = position;
+        tokenDepth = depth;
+        char c = text.charAt(position);
+        char next = position + 1 < text.length() ? text.charAt(position + 1) : '\0';
+        if (c == '/' && next == '/') {
+            type = TokenType.COMMENT;
+            while (position < text.length() && text.charAt(position) != '\n') {
+                ++position;
+            }
+        } else if (c == '/' && next == '*') {
+            type = TokenType.COMMENT;
+            position += 2;
+            while (position < text.length() && !(text.charAt(position - 1) == '*' && text.charAt(position) == '/'
+                    && position - 1 > start + 1)) {
+                ++position;
+            }
+            position = Math.min(position + 1, text.length());
+        } else if (c == '/' && isRegexAllowed()) {
+            type = TokenType.REGEX;
+            readRegex();
+        } else if (c == '"' || c == '\'' || c == '`') {
+            type = TokenType.STRING;
+            readString(c);
+        } else if (isIdentifierStart(c)) {
+            type = TokenType.IDENTIFIER;
+            while (position < text.length() && isIdentifierPart(text.charAt(position))) {
+                ++position;
+            }
+        } else if (isDigit(c) || (c == '.' && isDigit(next))) {
+            type = TokenType.NUMBER;
+            readNumber();
+        } else {
+            type = TokenType.PUNCTUATOR;
+            readPunctuator(c);
+        }
+        end = position;
+        return true;
+    }
+
+    TokenType getType() {
+        return type;
+    }
+
+    int getStart() {
+        return start;
+    }
+
+    int getEnd() {
+        return end;
+    }
+
+    /**
+     * Gets nesting depth of the token. Opening and closing brackets have the depth of the enclosing code.
+     */
+    int getDepth() {
+        return tokenDepth;
+    }
+
+    /**
+     * Tells whether token starts at the beginning of a line, without any indentation.
+     */
+    boolean isAtLineStart() {
+        return start == 0 || text.charAt(start - 1) == '\n';
+    }
+
+    String getText() {
+        return text.subSequence(start, end).toString();
+    }
+
+    /**
+     * Tells whether the token follows a dot, i.e. whether an identifier is a name of property.
+     */
+    boolean isAfterDot() {
+        return previousType == TokenType.PUNCTUATOR && previousText.equals(".");
+    }
+
+    private boolean isRegexAllowed() {
+        if (previousType == null) {
+            return true;
+        }
+        switch (previousType) {
+            case PUNCTUATOR:
+                return !previousText.equals(")") && !previousText.equals("]") && !previousText.equals("}");
+            case IDENTIFIER:
+                return KEYWORDS_BEFORE_EXPRESSION.contains(previousText);
+            default:
+                return false;
+        }
+    }
+
+    private void readRegex() {
+        ++position;
+        boolean inClass = false;
+        while (position < text.length()) {
+            char c = text.charAt(position++);
+            if (c == '\\') {
+                ++position;
+            } else if (c == '[') {
+                inClass = true;
+            } else if (c == ']') {
+                inClass = false;
+            } else if (c == '\n' || (c == '/' && !inClass)) {
+                break;
+            }
+        }
+        while (position < text.length() && isIdentifierPart(text.charAt(position))) {
+            ++position;
+        }
+        position = Math.min(position, text.length());
+    }
+
+    private void readString(char quote) {
+        ++position;
+        while (position < text.length()) {
+            char c = text.charAt(position++);
+            if (c == '\\') {
+                ++position;
+            } else if (c == quote || (c == '\n' && quote != '`')) {
+                break;
+            }
+        }
+        position = Math.min(position, text.length());
+    }
+
+    private void readNumber() {
+        while (position < text.length()) {
+            char c = text.charAt(position);
+            if (isIdentifierPart(c) || c == '.') {
+                ++position;
+            } else if ((c == '+' || c == '-') && (text.charAt(position - 1) == 'e' || text.charAt(position - 1) == 'E')
+                    && !isHex(start)) {
+                ++position;
+            } else {
+                break;
+            }
+        }
+    }
+
+    private boolean isHex(int numberStart) {
+        return numberStart + 1 < text.length() && text.charAt(numberStart) == '0'
+                && (text.charAt(numberStart + 1) == 'x' || text.charAt(numberStart + 1) == 'X');
+    }
+
+    private void readPunctuator(char c) {
+        ++position;
+        switch (c) {
+            case '{':
+            case '(':
+            case '[':
+                ++depth;
+                break;
+            case '}':
+            case ')':
+            case ']':
+                // Unbalanced code must not make following tokens look nested forever
+                depth = Math.max(0, depth - 1);
+                tokenDepth = depth;
+                break;
+            case '=':
+            case '!':
+                skip('=', 2);
+                break;
+            case '<':
+            case '>':
+                skip(c, c == '>' ? 2 : 1);
+                skip('=', 1);
+                break;
+            case '+':
+            case '-':
+            case '&':
+            case '|':
+                if (!skip(c, 1)) {
+                    skip('=', 1);
+                }
+                break;
+            case '*':
+            case '/':
+            case '%':
+            case '^':
+                skip('=', 1);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private boolean skip(char c, int maxCount) {
+        int count = 0;
+        while (count < maxCount && position < text.length() && text.charAt(position) == c) {
+            ++position;
+            ++count;
+        }
+        return count > 0;
+    }
+
+    private static boolean isIdentifierStart(char c) {
+        return c == '$' || c == '_' || Character.isLetter(c);
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return isIdentifierStart(c) || Character.isDigit(c);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    enum TokenType {
+        IDENTIFIER,
+        NUMBER,
+        STRING,
+        REGEX,
+        PUNCTUATOR,
+        COMMENT
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.backend.javascript;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import org.teavm.backend.javascript.JavaScriptTokenizer.TokenType;
+
+/**
+ * <p>Splits runtime.js into top-level fragments (functions, variables, prototype assignments and
+ * feature-detection blocks) and emits only those fragments that are reachable from identifiers
+ * used by generated code.</p>
+ *
+ * <p>A fragment depends on every other fragment that defines an identifier it mentions. A block that assigns
+ * variables declared elsewhere depends on declarations of all of them, even if only one is used.
+ * The license header and <code>"use strict"</code> directive are always kept.</p>
+ *
+ * <p>Source is split into tokens rather than lines, so that string literals and comments never affect
+ * fragment boundaries or dependencies.</p>
+ */
+public class RuntimeTrimmer {
+    private String header;
+    private List<Fragment> fragments = new ArrayList<>();
+    private Map<String, List<Fragment>> definitions = new HashMap<>();
+
+    public RuntimeTrimmer(String runtime) {
+        parse(runtime);
+        for (Fragment fragment : fragments) {
+            for (String name : fragment.definedNames) {
+                definitions.computeIfAbsent(name, k -> new ArrayList<>()).add(fragment);
+            }
+        }
+        for (Fragment fragment : fragments) {
+            for (String name : fragment.assignedNames) {
+                if (definitions.containsKey(name)) {
+                    // Variable must be declared wherever its value is, otherwise assignment fails in strict mode
+                    fragment.dependencies.add(name);
+                    fragment.definedNames.add(name);
+                    definitions.get(name).add(fragment);
+                }
+            }
+        }
+        for (Fragment fragment : fragments) {
+            for (String identifier : extractIdentifiers(fragment.text, false)) {
+                if (definitions.containsKey(identifier) && !fragment.definedNames.contains(identifier)) {
+                    fragment.dependencies.add(identifier);
+                }
+            }
+        }
+    }
+
+    /**
+     * Produces the part of the runtime required by the given code.
+     *
+     * @param code generated JavaScript that is going to run along with the runtime.
+     * @param additionalRoots identifiers used outside of generated code, for example by a host page.
+     * @return trimmed runtime source.
+     */
+    public String trim(CharSequence code, Collection<String> additionalRoots) {
+        Set<Fragment> reached = new HashSet<>();
+        Queue<String> queue = new ArrayDeque<>(additionalRoots);
+        // Runtime functions are properties of the global object, and generated code may call them as members,
+        // for example through JSO
+        for (String identifier : extractIdentifiers(code, true)) {
+            if (definitions.containsKey(identifier)) {
+                queue.add(identifier);
+            }
+        }
+        for (Fragment fragment : fragments) {
+            if (fragment.definedNames.isEmpty() && fragment.assignedNames.isEmpty()) {
+                reached.add(fragment);
+                queue.addAll(fragment.dependencies);
+            }
+        }
+
+        Set<String> visitedNames = new HashSet<>();
+        while (!queue.isEmpty()) {
+            String name = queue.remove();
+            if (!visitedNames.add(name)) {
+                continue;
+            }
+            for (Fragment fragment : definitions.getOrDefault(name, new ArrayList<>())) {
+                if (reached.add(fragment)) {
+                    queue.addAll(fragment.dependencies);
+                }
+            }
+        }
+
+        StringBuilder sb = new StringBuilder(header);
+        for (Fragment fragment : fragments) {
+            if (reached.contains(fragment)) {
+                sb.append(fragment.text);
+            }
+        }
+        return sb.toString();
+    }
+
+    private void parse(String runtime) {
+        JavaScriptTokenizer tokenizer = new JavaScriptTokenizer(runtime);
+        boolean hasToken = tokenizer.next();
+        while (hasToken && isHeaderToken(tokenizer)) {
+            hasToken = tokenizer.next();
+        }
+        int fragmentStart = hasToken ? tokenizer.getStart() : runtime.length();
+        header = runtime.substring(0, fragmentStart);
+
+        boolean commentOnly = hasToken && tokenizer.getType() == TokenType.COMMENT;
+        while (hasToken) {
+            hasToken = tokenizer.next();
+            if (!hasToken) {
+                break;
+            }
+            boolean comment = tokenizer.getType() == TokenType.COMMENT;
+            if (isFragmentStart(tokenizer) && !commentOnly) {
+                addFragment(runtime.substring(fragmentStart, tokenizer.getStart()));
+                fragmentStart = tokenizer.getStart();
+                commentOnly = comment;
+            } else if (!comment) {
+                commentOnly = false;
+            }
+        }
+        if (fragmentStart < runtime.length()) {
+            addFragment(runtime.substring(fragmentStart));
+        }
+    }
+
+    private static boolean isHeaderToken(JavaScriptTokenizer tokenizer) {
+        switch (tokenizer.getType()) {
+            case COMMENT:
+                return tokenizer.getText().startsWith("/*");
+            case STRING:
+                return tokenizer.getText().equals("\"use strict\"");
+            case PUNCTUATOR:
+                return tokenizer.getText().equals(";");
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isFragmentStart(JavaScriptTokenizer tokenizer) {
+        if (!tokenizer.isAtLineStart() || tokenizer.getDepth() > 0) {
+            return false;
+        }
+        if (tokenizer.getType() != TokenType.PUNCTUATOR) {
+            return true;
+        }
+        String text = tokenizer.getText();
+        return !text.equals("}") && !text.equals(")") && !text.equals("]");
+    }
+
+    private void addFragment(String text) {
+        Fragment fragment = new Fragment(text);
+        List<Token> tokens = new ArrayList<>();
+        JavaScriptTokenizer tokenizer = new JavaScriptTokenizer(text);
+        while (tokenizer.next()) {
+            if (tokenizer.getType() != TokenType.COMMENT) {
+                tokens.add(new Token(tokenizer));
+            }
+        }
+        fragments.add(fragment);
+        if (tokens.isEmpty()) {
+            return;
+        }
+
+        Token first = tokens.get(0);
+        Token second = tokens.size() > 1 ? tokens.get(1) : null;
+        if (first.is(TokenType.IDENTIFIER, "function")) {
+            if (second != null && second.type == TokenType.IDENTIFIER) {
+                fragment.definedNames.add(second.text);
+            }
+        } else if (first.is(TokenType.IDENTIFIER, "var")) {
+            for (int i = 1; i < tokens.size(); ++i) {
+                Token token = tokens.get(i);
+                if (token.depth > 0) {
+                    continue;
+                }
+                if (token.is(TokenType.PUNCTUATOR, ";")) {
+                    break;
+                }
+                Token previous = tokens.get(i - 1);
+                if (token.type == TokenType.IDENTIFIER && (i == 1 || previous.is(TokenType.PUNCTUATOR, ","))) {
+                    fragment.definedNames.add(token.text);
+                }
+            }
+        } else if (first.is(TokenType.IDENTIFIER, "if") || first.is(TokenType.IDENTIFIER, "for")
+                || first.is(TokenType.IDENTIFIER, "while")) {
+            for (int i = 1; i < tokens.size() - 1; ++i) {
+                Token token = tokens.get(i);
+                if (token.type == TokenType.IDENTIFIER && !token.afterDot
+                        && tokens.get(i + 1).is(TokenType.PUNCTUATOR, "=")) {
+                    fragment.assignedNames.add(token.text);
+                }
+            }
+        } else if (first.type == TokenType.IDENTIFIER && second != null
+                && (second.is(TokenType.PUNCTUATOR, ".") || second.is(TokenType.PUNCTUATOR, "="))) {
+            fragment.definedNames.add(first.text);
+        }
+    }
+
+    static Set<String> extractIdentifiers(CharSequence text, boolean includeMembers) {
+        Set<String> result = new LinkedHashSet<>();
+        JavaScriptTokenizer tokenizer = new JavaScriptTokenizer(text);
+        while (tokenizer.next()) {
+            if (tokenizer.getType() == TokenType.IDENTIFIER && (includeMembers || !tokenizer.isAfterDot())) {
+                result.add(tokenizer.getText());
+            }
+        }
+        return result;
+    }
+
+    static class Token {
+        final TokenType type;
+        final String text;
+        final int depth;
+        final boolean afterDot;
+
+        Token(JavaScriptTokenizer tokenizer) {
+            type = tokenizer.getType();
+            text = tokenizer.getText();
+            depth = tokenizer.getDepth();
+            afterDot = tokenizer.isAfterDot();
+        }
+
+        boolean is(TokenType type, String text) {
+            return this.type == type && this.text.equals(text);
+        }
+    }
+
+    static class Fragment {
+        final String text;
+        final Set<String> definedNames = new HashSet<>();
+        final Set<String> assignedNames = new HashSet<>();
+        final Set<String> dependencies = new HashSet<>();
+
+        Fragment(String text) {
+            this.text = text;
+        }
+    }
+}
@@ -17,17 +17,23 @@ package org.teavm.backend.javascript.codegen;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.teavm.model.*;
 
+/**
+ * <p>Names that were already assigned are looked up without locking, so that several threads can render code
+ * at once. New aliases are only created under lock, since {@link AliasProvider} tracks names that are taken.</p>
+ */
 public class DefaultNamingStrategy implements NamingStrategy {
     private final AliasProvider aliasProvider;
     private final ClassReaderSource classSource;
-    private final Map<String, String> aliases = new HashMap<>();
+    private final Map<String, String> aliases = new ConcurrentHashMap<>();
     private final Map<String, String> privateAliases = new HashMap<>();
-    private final Map<String, String> classAliases = new HashMap<>();
-    private final Map<String, String> fieldAliases = new HashMap<>();
-    private final Map<String, String> staticFieldAliases = new HashMap<>();
-    private final Map<String, String> functionAliases = new HashMap<>();
+    private final Map<String, String> methodAliases = new ConcurrentHashMap<>();
+    private final Map<String, String> classAliases = new ConcurrentHashMap<>();
+    private final Map<String, String> fieldAliases = new ConcurrentHashMap<>();
+    private final Map<String, String> staticFieldAliases = new ConcurrentHashMap<>();
+    private final Map<String, String> functionAliases = new ConcurrentHashMap<>();
 
     public DefaultNamingStrategy(AliasProvider aliasProvider, ClassReaderSource classSource) {
         this.aliasProvider = aliasProvider;
@@ -36,7 +42,13 @@ public class DefaultNamingStrategy implements NamingStrategy {
 
     @Override
     public String getNameFor(String cls) {
-        return classAliases.computeIfAbsent(cls, key -> aliasProvider.getClassAlias(cls));
+        String alias = classAliases.get(cls);
+        if (alias == null) {
+            synchronized (this) {
+                alias = classAliases.computeIfAbsent(cls, key -> aliasProvider.getClassAlias(cls));
+            }
+        }
+        return alias;
     }
 
     @Override
@@ -44,8 +56,9 @@ public class DefaultNamingStrategy implements NamingStrategy {
         String key = method.toString();
         String alias = aliases.get(key);
         if (alias == null) {
-            alias = aliasProvider.getMethodAlias(method);
-            aliases.put(key, alias);
+            synchronized (this) {
+                alias = aliases.computeIfAbsent(key, k -> aliasProvider.getMethodAlias(method));
+            }
         }
         return alias;
     }
@@ -61,6 +74,18 @@ public class DefaultNamingStrategy implements NamingStrategy {
     }
 
     private String getFullNameFor(MethodReference method, char classifier) throws NamingException {
+        String key = classifier + method.toString();
+        String alias = methodAliases.get(key);
+        if (alias == null) {
+            synchronized (this) {
+                alias = createFullNameFor(method, classifier);
+                methodAliases.put(key, alias);
+            }
+        }
+        return alias;
+    }
+
+    private String createFullNameFor(MethodReference method, char classifier) throws NamingException {
         MethodReference originalMethod = method;
         method = getRealMethod(method);
         if (method == null) {
@@ -74,32 +99,51 @@ public class DefaultNamingStrategy implements NamingStrategy {
 
     @Override
     public String getNameFor(FieldReference field) {
-        String realCls = getRealFieldOwner(field.getClassName(), field.getFieldName());
-        if (!realCls.equals(field.getClassName())) {
-            String alias = getNameFor(new FieldReference(realCls, field.getFieldName()));
-            fieldAliases.put(field.getClassName() + "#" + field, alias);
+        String alias = fieldAliases.get(field.getClassName() + "#" + field);
+        if (alias != null) {
             return alias;
-        } else {
-            return fieldAliases.computeIfAbsent(realCls + "#" + field, key -> aliasProvider.getFieldAlias(field));
+        }
+        synchronized (this) {
+            String realCls = getRealFieldOwner(field.getClassName(), field.getFieldName());
+            if (!realCls.equals(field.getClassName())) {
+                alias = getNameFor(new FieldReference(realCls, field.getFieldName()));
+                fieldAliases.put(field.getClassName() + "#" + field, alias);
+                return alias;
+            } else {
+                return fieldAliases.computeIfAbsent(realCls + "#" + field,
+                        key -> aliasProvider.getFieldAlias(field));
+            }
         }
     }
 
     @Override
     public String getFullNameFor(FieldReference field) throws NamingException {
-        String realCls = getRealFieldOwner(field.getClassName(), field.getFieldName());
-        if (!realCls.equals(field.getClassName())) {
-            String alias = getNameFor(new FieldReference(realCls, field.getFieldName()));
-            staticFieldAliases.put(field.getClassName() + "#" + field, alias);
+        String alias = staticFieldAliases.get(field.getClassName() + "#" + field);
+        if (alias != null) {
             return alias;
-        } else {
-            return staticFieldAliases.computeIfAbsent(realCls + "#" + field,
-                    key -> aliasProvider.getStaticFieldAlias(field));
+        }
+        synchronized (this) {
+            String realCls = getRealFieldOwner(field.getClassName(), field.getFieldName());
+            if (!realCls.equals(field.getClassName())) {
+                alias = getNameFor(new FieldReference(realCls, field.getFieldName()));
+                staticFieldAliases.put(field.getClassName() + "#" + field, alias);
+                return alias;
+            } else {
+                return staticFieldAliases.computeIfAbsent(realCls + "#" + field,
+                        key -> aliasProvider.getStaticFieldAlias(field));
+            }
         }
     }
 
     @Override
     public String getNameForFunction(String name) throws NamingException {
-        return functionAliases.computeIfAbsent(name, key -> aliasProvider.getFunctionAlias(name));
+        String alias = functionAliases.get(name);
+        if (alias == null) {
+            synchronized (this) {
+                alias = functionAliases.computeIfAbsent(name, key -> aliasProvider.getFunctionAlias(name));
+            }
+        }
+        return alias;
     }
 
     private MethodReference getRealMethod(MethodReference methodRef) {
@@ -15,6 +15,10 @@
  */
 package org.teavm.backend.javascript.rendering;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import org.teavm.ast.AssignmentStatement;
 import org.teavm.ast.AsyncMethodNode;
@@ -54,27 +58,39 @@ class NameFrequencyEstimator extends RecursiveVisitor implements MethodNodeVisit
     private final NameFrequencyConsumer consumer;
     private final ClassReaderSource classSource;
     private boolean async;
-    private final Set<MethodReference> injectedMethods;
+    private boolean generator;
+    private final RenderingContext context;
+    private final Set<MethodReference> asyncMethods;
     private final Set<MethodReference> asyncFamilyMethods;
+    private final Map<String, Integer> stringFrequencies = new LinkedHashMap<>();
+    private boolean generatedCodeFound;
 
     NameFrequencyEstimator(NameFrequencyConsumer consumer, ClassReaderSource classSource,
-            Set<MethodReference> injectedMethods, Set<MethodReference> asyncFamilyMethods) {
+            RenderingContext context, Set<MethodReference> asyncMethods, Set<MethodReference> asyncFamilyMethods) {
         this.consumer = consumer;
         this.classSource = classSource;
-        this.injectedMethods = injectedMethods;
+        this.context = context;
+        this.asyncMethods = asyncMethods;
         this.asyncFamilyMethods = asyncFamilyMethods;
     }
 
     public void estimate(ClassNode cls) {
+        generatedCodeFound = false;
+
         // Declaration
         consumer.consume(cls.getName());
         if (cls.getParentName() != null) {
             consumer.consume(cls.getParentName());
         }
         for (FieldNode field : cls.getFields()) {
-            consumer.consume(new FieldReference(cls.getName(), field.getName()));
+            FieldReference fieldRef = new FieldReference(cls.getName(), field.getName());
             if (field.getModifiers().contains(ElementModifier.STATIC)) {
-                consumer.consume(cls.getName());
+                consumer.consumeStatic(fieldRef);
+                if (field.getInitialValue() instanceof String) {
+                    consumeString((String) field.getInitialValue());
+                }
+            } else {
+                consumer.consume(fieldRef);
             }
         }
 
@@ -93,6 +109,10 @@ class NameFrequencyEstimator extends RecursiveVisitor implements MethodNodeVisit
             if (!method.getModifiers().contains(ElementModifier.STATIC)) {
                 consumer.consume(method.getReference().getDescriptor());
                 consumer.consume(method.getReference());
+                if (method.getReference().getName().equals("<init>")
+                        && !cls.getModifiers().contains(ElementModifier.INTERFACE)) {
+                    consumer.consumeInit(method.getReference());
+                }
             }
             if (method.isAsync()) {
                 consumer.consumeFunction("$rt_nativeThread");
@@ -100,6 +120,7 @@ class NameFrequencyEstimator extends RecursiveVisitor implements MethodNodeVisit
                 consumer.consumeFunction("$rt_resuming");
                 consumer.consumeFunction("$rt_invalidPointer");
             }
+            method.acceptVisitor(this);
         }
 
         // Metadata
@@ -115,13 +136,23 @@ class NameFrequencyEstimator extends RecursiveVisitor implements MethodNodeVisit
 
     @Override
     public void visit(RegularMethodNode methodNode) {
-        async = false;
+        async = asyncMethods.contains(methodNode.getReference());
+        generator = context.isGenerator(methodNode.getReference());
+        if (async && methodNode.getModifiers().contains(ElementModifier.SYNCHRONIZED)) {
+            consumer.consume(new MethodReference(Object.class, "monitorEnter", Object.class, void.class));
+            consumer.consume(new MethodReference(Object.class, "monitorExit", Object.class, void.class));
+            if (methodNode.getModifiers().contains(ElementModifier.STATIC)) {
+                consumer.consume(methodNode.getReference().getClassName());
+                consumer.consumeFunction("$rt_cls");
+            }
+        }
         methodNode.getBody().acceptVisitor(this);
     }
 
     @Override
     public void visit(AsyncMethodNode methodNode) {
         async = true;
+        generator = false;
         for (AsyncMethodPart part : methodNode.getBody()) {
             part.getStatement().acceptVisitor(this);
         }
@@ -129,6 +160,7 @@ class NameFrequencyEstimator extends RecursiveVisitor implements MethodNodeVisit
 
     @Override
     public void visit(NativeMethodNode methodNode) {
+        generatedCodeFound = true;
     }
 
     @Override
@@ -165,7 +197,9 @@ class NameFrequencyEstimator extends RecursiveVisitor implements MethodNodeVisit
             MethodReference monitorEnterRef = new MethodReference(
                     Object.class, "monitorEnter", Object.class, void.class);
             consumer.consume(monitorEnterRef);
-            consumer.consumeFunction("$rt_suspending");
+            if (!generator) {
+                consumer.consumeFunction("$rt_suspending");
+            }
         } else {
             MethodReference monitorEnterRef = new MethodReference(
                     Object.class, "monitorEnterSync", Object.class, void.class);
@@ -215,9 +249,30 @@ class NameFrequencyEstimator extends RecursiveVisitor implements MethodNodeVisit
     public void visit(ConstantExpr expr) {
         if (expr.getValue() instanceof ValueType) {
             visitType((ValueType) expr.getValue());
+        } else if (expr.getValue() instanceof String) {
+            consumeString((String) expr.getValue());
         }
     }
 
+    private void consumeString(String string) {
+        consumer.consumeFunction("$rt_s");
+        stringFrequencies.merge(string, 1, Integer::sum);
+    }
+
+    /**
+     * Tells whether the last estimated class has methods implemented by generators or calls methods
+     * implemented by injectors.
+     */
+    public boolean isGeneratedCodeFound() {
+        return generatedCodeFound;
+    }
+
+    public List<String> getStringsByFrequency() {
+        List<String> strings = new ArrayList<>(stringFrequencies.keySet());
+        strings.sort((a, b) -> Integer.compare(stringFrequencies.get(b), stringFrequencies.get(a)));
+        return strings;
+    }
+
     private void visitType(ValueType type) {
         while (type instanceof ValueType.Array) {
             type = ((ValueType.Array) type).getItemType();
@@ -231,9 +286,13 @@ class NameFrequencyEstimator extends RecursiveVisitor implements MethodNodeVisit
     @Override
     public void visit(InvocationExpr expr) {
         super.visit(expr);
-        if (injectedMethods.contains(expr.getMethod())) {
+        if (context.getInjector(expr.getMethod()) != null) {
+            generatedCodeFound = true;
             return;
         }
+        if (!generator && context.isGenerator(expr.getMethod())) {
+            consumer.consumeFunction("$rt_runSync");
+        }
         switch (expr.getType()) {
             case SPECIAL:
             case STATIC:
@@ -251,7 +310,11 @@ class NameFrequencyEstimator extends RecursiveVisitor implements MethodNodeVisit
     @Override
     public void visit(QualificationExpr expr) {
         super.visit(expr);
-        consumer.consume(expr.getField());
+        if (expr.getQualified() != null) {
+            consumer.consume(expr.getField());
+        } else {
+            consumer.consumeStatic(expr.getField());
+        }
     }
 
     @Override
@@ -17,10 +17,14 @@ package org.teavm.backend.javascript.rendering;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import org.teavm.ast.AsyncMethodNode;
 import org.teavm.ast.AsyncMethodPart;
 import org.teavm.ast.ClassNode;
@@ -30,10 +34,12 @@ import org.teavm.ast.MethodNodeVisitor;
 import org.teavm.ast.NativeMethodNode;
 import org.teavm.ast.RegularMethodNode;
 import org.teavm.ast.VariableNode;
+import org.teavm.backend.javascript.AsyncMode;
 import org.teavm.backend.javascript.codegen.NamingException;
 import org.teavm.backend.javascript.codegen.NamingOrderer;
 import org.teavm.backend.javascript.codegen.NamingStrategy;
 import org.teavm.backend.javascript.codegen.SourceWriter;
+import org.teavm.backend.javascript.codegen.SourceWriterBuilder;
 import org.teavm.backend.javascript.spi.GeneratorContext;
 import org.teavm.common.ServiceRepository;
 import org.teavm.debugging.information.DebugInformationEmitter;
@@ -62,6 +68,9 @@ public class Renderer implements RenderingManager {
     private final Diagnostics diagnostics;
     private RenderingContext context;
     private List<PostponedFieldInitializer> postponedFieldInitializers = new ArrayList<>();
+    private ExecutorService executor;
+    private int renderingWindow = 16;
+    private AsyncMode asyncMode = AsyncMode.STATE_MACHINE;
 
     public Renderer(SourceWriter writer, Set<MethodReference> asyncMethods, Set<MethodReference> asyncFamilyMethods,
             Diagnostics diagnostics, RenderingContext context) {
@@ -76,6 +85,22 @@ public class Renderer implements RenderingManager {
         this.context = context;
     }
 
+    private Renderer(Renderer parent, SourceWriter writer) {
+        naming = parent.naming;
+        this.writer = writer;
+        classSource = parent.classSource;
+        classLoader = parent.classLoader;
+        minifying = parent.minifying;
+        properties.putAll(parent.properties);
+        services = parent.services;
+        debugEmitter = parent.debugEmitter;
+        asyncMethods = parent.asyncMethods;
+        asyncFamilyMethods = parent.asyncFamilyMethods;
+        diagnostics = parent.diagnostics;
+        context = parent.context.fork();
+        asyncMode = parent.asyncMode;
+    }
+
     @Override
     public SourceWriter getWriter() {
         return writer;
@@ -125,6 +150,48 @@ public class Renderer implements RenderingManager {
         this.properties.putAll(properties);
     }
 
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * <p>Specifies executor that renders method bodies of classes concurrently, each class into its own buffer.
+     * Buffers are written out in the order of classes, so the output does not depend on scheduling.
+     * By default, or if executor is <code>null</code>, classes are rendered one by one.</p>
+     *
+     * <p>Absolute positions of generated code are only known after buffers are concatenated, so executor
+     * must not be used together with debug information emitter.</p>
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    public int getRenderingWindow() {
+        return renderingWindow;
+    }
+
+    /**
+     * Specifies how many classes may be submitted to executor ahead of the class that is being written out.
+     * This bounds memory taken by rendered buffers waiting for a slow class that precedes them.
+     *
+     * @param renderingWindow number of classes, 16 by default.
+     */
+    public void setRenderingWindow(int renderingWindow) {
+        this.renderingWindow = Math.max(1, renderingWindow);
+    }
+
+    public AsyncMode getAsyncMode() {
+        return asyncMode;
+    }
+
+    /**
+     * Specifies how asynchronous methods are rendered. In {@link AsyncMode#GENERATORS} mode asynchronous methods
+     * are expected to be decompiled without splitting, as {@link RegularMethodNode}.
+     */
+    public void setAsyncMode(AsyncMode asyncMode) {
+        this.asyncMode = asyncMode;
+    }
+
     public void renderStringPool() throws RenderingException {
         if (context.getStringPool().isEmpty()) {
             return;
@@ -244,8 +311,12 @@ public class Renderer implements RenderingManager {
     }
 
     private void renderRuntimeAliases() throws IOException {
-        String[] names = { "$rt_throw", "$rt_compare", "$rt_nullCheck", "$rt_cls", "$rt_createArray",
-                "$rt_isInstance", "$rt_nativeThread", "$rt_suspending", "$rt_resuming", "$rt_invalidPointer" };
+        String[] names = asyncMode == AsyncMode.GENERATORS
+                ? new String[] { "$rt_throw", "$rt_compare", "$rt_nullCheck", "$rt_cls", "$rt_createArray",
+                        "$rt_isInstance", "$rt_runSync", "$rt_s" }
+                : new String[] { "$rt_throw", "$rt_compare", "$rt_nullCheck", "$rt_cls", "$rt_createArray",
+                        "$rt_isInstance", "$rt_nativeThread", "$rt_suspending", "$rt_resuming",
+                        "$rt_invalidPointer", "$rt_s" };
         boolean first = true;
         for (String name : names) {
             if (!first) {
@@ -258,14 +329,22 @@ public class Renderer implements RenderingManager {
     }
 
     public void render(List<ClassNode> classes) throws RenderingException {
-        if (minifying) {
-            NamingOrderer orderer = new NamingOrderer();
-            NameFrequencyEstimator estimator = new NameFrequencyEstimator(orderer, classSource, asyncMethods,
-                    asyncFamilyMethods);
-            for (ClassNode cls : classes) {
-                estimator.estimate(cls);
+        Set<String> classesWithGeneratedCode = new HashSet<>();
+        // Concurrent rendering needs all names and strings to be known in advance, otherwise their order
+        // would depend on scheduling. Single-threaded rendering collects them the same way, so that
+        // both produce exactly the same output.
+        NamingOrderer orderer = new NamingOrderer();
+        NameFrequencyEstimator estimator = new NameFrequencyEstimator(orderer, classSource, context,
+                asyncMethods, asyncFamilyMethods);
+        for (ClassNode cls : classes) {
+            estimator.estimate(cls);
+            if (estimator.isGeneratedCodeFound()) {
+                classesWithGeneratedCode.add(cls.getName());
             }
-            orderer.apply(naming);
+        }
+        orderer.apply(naming);
+        for (String string : estimator.getStringsByFrequency()) {
+            context.lookupString(string);
         }
 
         if (minifying) {
@@ -278,12 +357,74 @@ public class Renderer implements RenderingManager {
         for (ClassNode cls : classes) {
             renderDeclaration(cls);
         }
-        for (ClassNode cls : classes) {
-            renderMethodBodies(cls);
+        if (executor != null) {
+            renderMethodBodiesConcurrently(classes, classesWithGeneratedCode);
+        } else {
+            for (ClassNode cls : classes) {
+                renderMethodBodies(cls);
+            }
         }
         renderClassMetadata(classes);
     }
 
+    private void renderMethodBodiesConcurrently(List<ClassNode> classes, Set<String> classesWithGeneratedCode) {
+        SourceWriterBuilder builder = new SourceWriterBuilder(naming);
+        builder.setMinified(minifying);
+        CharSequence[] buffers = new CharSequence[classes.size()];
+
+        // Generators and injectors are not required to be thread-safe, and they may introduce names
+        // the estimator does not know about. Classes that use them are rendered in this thread, beforehand.
+        for (int i = 0; i < classes.size(); ++i) {
+            ClassNode cls = classes.get(i);
+            if (classesWithGeneratedCode.contains(cls.getName())) {
+                buffers[i] = renderMethodBodiesToBuffer(cls, builder);
+            }
+        }
+
+        // Classes are written out in order as soon as they are ready, while at most renderingWindow classes
+        // that follow are being rendered
+        List<Future<CharSequence>> futures = new ArrayList<>(Collections.nCopies(classes.size(), null));
+        int submitted = 0;
+        try {
+            for (int i = 0; i < classes.size(); ++i) {
+                for (; submitted < classes.size() && submitted <= i + renderingWindow; ++submitted) {
+                    if (buffers[submitted] == null) {
+                        ClassNode cls = classes.get(submitted);
+                        futures.set(submitted, executor.submit(() -> renderMethodBodiesToBuffer(cls, builder)));
+                    }
+                }
+                if (futures.get(i) != null) {
+                    buffers[i] = futures.get(i).get();
+                    futures.set(i, null);
+                }
+                writer.append(buffers[i]);
+                buffers[i] = null;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RenderingException("Rendering was interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RenderingException("Error rendering class", e.getCause());
+        } catch (IOException e) {
+            throw new RenderingException("IO error occurred", e);
+        } finally {
+            for (Future<CharSequence> future : futures) {
+                if (future != null) {
+                    future.cancel(false);
+                }
+            }
+        }
+    }
+
+    private CharSequence renderMethodBodiesToBuffer(ClassNode cls, SourceWriterBuilder builder) {
+        StringBuilder buffer = new StringBuilder();
+        new Renderer(this, builder.build(buffer)).renderMethodBodies(cls);
+        return buffer;
+    }
+
     private void renderDeclaration(ClassNode cls) throws RenderingException {
         debugEmitter.addClass(cls.getName(), cls.getParentName());
         try {
@@ -499,7 +640,8 @@ public class Renderer implements RenderingManager {
     private void renderInitializer(MethodNode method) throws IOException {
         MethodReference ref = method.getReference();
         debugEmitter.emitMethod(ref.getDescriptor());
-        writer.append("function ").append(naming.getNameForInit(ref)).append("(");
+        boolean generator = context.isGenerator(ref);
+        writer.append(generator ? "function* " : "function ").append(naming.getNameForInit(ref)).append("(");
         for (int i = 1; i <= ref.parameterCount(); ++i) {
             if (i > 1) {
                 writer.append(",").ws();
@@ -509,6 +651,9 @@ public class Renderer implements RenderingManager {
         writer.append(")").ws().append("{").softNewLine().indent();
         writer.append("var $r").ws().append("=").ws().append("new ").appendClass(
                 ref.getClassName()).append("();").softNewLine();
+        if (generator) {
+            writer.append("yield* ");
+        }
         writer.append(naming.getFullNameFor(ref)).append("($r");
         for (int i = 1; i <= ref.parameterCount(); ++i) {
             writer.append(",").ws();
@@ -555,7 +700,7 @@ public class Renderer implements RenderingManager {
             writer.append(args.get(i));
         }
         writer.append(")").ws().append("{").ws();
-        if (ref.getDescriptor().getResultType() != ValueType.VOID) {
+        if (ref.getDescriptor().getResultType() != ValueType.VOID || context.isGenerator(ref)) {
             writer.append("return ");
         }
         writer.appendMethodBody(ref).append("(");
@@ -573,10 +718,11 @@ public class Renderer implements RenderingManager {
         MethodReference ref = method.getReference();
         debugEmitter.emitMethod(ref.getDescriptor());
         String name = naming.getFullNameFor(ref);
+        String function = context.isGenerator(ref) ? "function*" : "function";
         if (inner) {
-            writer.append(name).ws().append("=").ws().append("function(");
+            writer.append(name).ws().append("=").ws().append(function).append("(");
         } else {
-            writer.append("function ").append(name).append("(");
+            writer.append(function).append(" ").append(name).append("(");
         }
         int startParam = 0;
         if (method.getModifiers().contains(ElementModifier.STATIC)) {
@@ -620,9 +766,10 @@ public class Renderer implements RenderingManager {
         @Override
         public void visit(RegularMethodNode method) {
             try {
-                statementRenderer.setAsync(false);
-                this.async = false;
                 MethodReference ref = method.getReference();
+                statementRenderer.setAsync(asyncMethods.contains(ref));
+                statementRenderer.setGenerator(context.isGenerator(ref));
+                this.async = false;
                 for (int i = 0; i < method.getVariables().size(); ++i) {
                     debugEmitter.emitVariable(new String[] { method.getVariables().get(i).getName() },
                             statementRenderer.variableName(i));
@@ -653,9 +800,20 @@ public class Renderer implements RenderingManager {
                     writer.append(";").softNewLine();
                 }
 
+                boolean monitorRequired = statementRenderer.isAsync()
+                        && method.getModifiers().contains(ElementModifier.SYNCHRONIZED);
+                if (monitorRequired) {
+                    appendMonitorCall(statementRenderer, method, "monitorEnter");
+                    writer.append("try").ws().append('{').indent().softNewLine();
+                }
                 statementRenderer.setEnd(true);
                 statementRenderer.setCurrentPart(0);
                 method.getBody().acceptVisitor(statementRenderer);
+                if (monitorRequired) {
+                    writer.outdent().append("}").ws().append("finally").ws().append('{').indent().softNewLine();
+                    appendMonitorCall(statementRenderer, method, "monitorExit");
+                    writer.outdent().append('}').softNewLine();
+                }
             } catch (IOException e) {
                 throw new RenderingException("IO error occurred", e);
             }
@@ -813,6 +971,11 @@ public class Renderer implements RenderingManager {
             return asyncFamilyMethods.contains(method);
         }
 
+        @Override
+        public AsyncMode getAsyncMode() {
+            return asyncMode;
+        }
+
         @Override
         public Diagnostics getDiagnostics() {
             return diagnostics;
@@ -824,6 +987,17 @@ public class Renderer implements RenderingManager {
         }
     }
 
+    private void appendMonitorCall(StatementRenderer statementRenderer, MethodNode methodNode, String name)
+            throws IOException {
+        MethodReference monitorRef = new MethodReference(Object.class, name, Object.class, void.class);
+        if (context.isGenerator(monitorRef)) {
+            writer.append("yield* ");
+        }
+        writer.appendMethodBody(monitorRef).append("(");
+        appendMonitor(statementRenderer, methodNode);
+        writer.append(");").softNewLine();
+    }
+
     private void appendMonitor(StatementRenderer statementRenderer, MethodNode methodNode) throws IOException {
         if (methodNode.getModifiers().contains(ElementModifier.STATIC)) {
             writer.appendFunction("$rt_cls").append("(")
@@ -25,6 +25,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import org.teavm.backend.javascript.codegen.NamingStrategy;
 import org.teavm.backend.javascript.spi.InjectedBy;
 import org.teavm.backend.javascript.spi.Injector;
@@ -46,11 +48,12 @@ public class RenderingContext {
     private Properties properties;
     private NamingStrategy naming;
     private final Deque<LocationStackEntry> locationStack = new ArrayDeque<>();
-    private final Map<String, Integer> stringPoolMap = new HashMap<>();
-    private final List<String> stringPool = new ArrayList<>();
-    private final List<String> readonlyStringPool = Collections.unmodifiableList(stringPool);
-    private final Map<MethodReference, InjectorHolder> injectorMap = new HashMap<>();
+    private final Map<String, Integer> stringPoolMap;
+    private final List<String> stringPool;
+    private final List<String> readonlyStringPool;
+    private final Map<MethodReference, InjectorHolder> injectorMap;
     private boolean minifying;
+    private Set<MethodReference> generatorMethods = Collections.emptySet();
 
     public RenderingContext(DebugInformationEmitter debugEmitter, ListableClassReaderSource classSource,
             ClassLoader classLoader, ServiceRepository services, Properties properties,
@@ -61,6 +64,33 @@ public class RenderingContext {
         this.services = services;
         this.properties = properties;
         this.naming = naming;
+        stringPoolMap = new HashMap<>();
+        stringPool = new ArrayList<>();
+        readonlyStringPool = Collections.unmodifiableList(stringPool);
+        injectorMap = new ConcurrentHashMap<>();
+    }
+
+    private RenderingContext(RenderingContext parent) {
+        debugEmitter = parent.debugEmitter;
+        classSource = parent.classSource;
+        classLoader = parent.classLoader;
+        services = parent.services;
+        properties = parent.properties;
+        naming = parent.naming;
+        stringPoolMap = parent.stringPoolMap;
+        stringPool = parent.stringPool;
+        readonlyStringPool = parent.readonlyStringPool;
+        injectorMap = parent.injectorMap;
+        minifying = parent.minifying;
+        generatorMethods = parent.generatorMethods;
+    }
+
+    /**
+     * Creates context that shares names, string pool and injectors with this one, but can be used by another
+     * thread to render code into a separate buffer.
+     */
+    RenderingContext fork() {
+        return new RenderingContext(this);
     }
 
     public ListableClassReaderSource getClassSource() {
@@ -121,11 +151,30 @@ public class RenderingContext {
         return minifying;
     }
 
+    /**
+     * Specifies methods rendered as generator functions, so that calls to them are delegated with
+     * <code>yield*</code>. Empty unless asynchronous methods are rendered in
+     * {@link org.teavm.backend.javascript.AsyncMode#GENERATORS} mode.
+     */
+    public void setGeneratorMethods(Set<MethodReference> generatorMethods) {
+        this.generatorMethods = generatorMethods;
+    }
+
+    public boolean isGenerator(MethodReference method) {
+        if (generatorMethods.isEmpty()) {
+            return false;
+        }
+        MethodReader methodReader = classSource.resolve(method);
+        return generatorMethods.contains(methodReader != null ? methodReader.getReference() : method);
+    }
+
     public int lookupString(String string) {
-        return stringPoolMap.computeIfAbsent(string, key -> {
-            stringPool.add(key);
-            return stringPool.size() - 1;
-        });
+        synchronized (stringPool) {
+            return stringPoolMap.computeIfAbsent(string, key -> {
+                stringPool.add(key);
+                return stringPool.size() - 1;
+            });
+        }
     }
 
     public List<String> getStringPool() {
@@ -142,7 +191,7 @@ public class RenderingContext {
         } else if (cst instanceof String) {
             String string = (String) cst;
             int index = lookupString(string);
-            return "$rt_s(" + index + ")";
+            return naming.getNameForFunction("$rt_s") + "(" + index + ")";
         } else if (cst instanceof Long) {
             long value = (Long) cst;
             if (value == 0) {
@@ -154,6 +203,10 @@ public class RenderingContext {
             }
         } else if (cst instanceof Character) {
             return Integer.toString((Character) cst);
+        } else if (cst instanceof Float) {
+            // JavaScript reads number literals as doubles, and the shortest representation of a float
+            // generally denotes a different double
+            return Double.toString((Float) cst);
         } else {
             return cst.toString();
         }
@@ -240,9 +293,7 @@ public class RenderingContext {
     }
 
     public Injector getInjector(MethodReference ref) {
-        InjectorHolder holder = injectorMap.get(ref);
-        if (holder == null) {
-            holder = new InjectorHolder(null);
+        return injectorMap.computeIfAbsent(ref, key -> {
             ClassReader cls = classSource.get(ref.getClassName());
             if (cls != null) {
                 MethodReader method = cls.getMethod(ref.getDescriptor());
@@ -250,13 +301,12 @@ public class RenderingContext {
                     AnnotationReader injectedByAnnot = method.getAnnotations().get(InjectedBy.class.getName());
                     if (injectedByAnnot != null) {
                         ValueType type = injectedByAnnot.getValue("value").getJavaClass();
-                        holder = new InjectorHolder(instantiateInjector(((ValueType.Object) type).getClassName()));
+                        return new InjectorHolder(instantiateInjector(((ValueType.Object) type).getClassName()));
                     }
                 }
             }
-            injectorMap.put(ref, holder);
-        }
-        return holder.injector;
+            return new InjectorHolder(null);
+        }).injector;
     }
 
     private Injector instantiateInjector(String type) {
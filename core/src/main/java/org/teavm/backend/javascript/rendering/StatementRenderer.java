@@ -91,6 +91,7 @@ public class StatementRenderer implements ExprVisitor, StatementVisitor {
     private SourceWriter writer;
     private ClassReaderSource classSource;
     private boolean async;
+    private boolean generator;
     private boolean minifying;
     private Precedence precedence;
     private DebugInformationEmitter debugEmitter;
@@ -121,6 +122,19 @@ public class StatementRenderer implements ExprVisitor, StatementVisitor {
         this.async = async;
     }
 
+    public boolean isGenerator() {
+        return generator;
+    }
+
+    /**
+     * Specifies whether the method is rendered as generator function. Generator function delegates calls to
+     * other generator functions with <code>yield*</code>, while ordinary function runs them with
+     * <code>$rt_runSync</code>, which fails if they try to suspend.
+     */
+    public void setGenerator(boolean generator) {
+        this.generator = generator;
+    }
+
     public MethodNode getCurrentMethod() {
         return currentMethod;
     }
@@ -1033,12 +1047,20 @@ public class StatementRenderer implements ExprVisitor, StatementVisitor {
             if (injector != null) {
                 injector.generate(new InjectorContextImpl(expr.getArguments()), expr.getMethod());
             } else {
+                boolean generatorCall = context.isGenerator(expr.getMethod());
+                boolean delegating = generatorCall && generator;
+                boolean wrapped = delegating && (precedence == null
+                        || precedence.ordinal() > Precedence.ASSIGNMENT.ordinal());
+                if (delegating) {
+                    writer.append(wrapped ? "(yield* " : "yield* ");
+                } else if (generatorCall) {
+                    writer.appendFunction("$rt_runSync").append("(");
+                }
                 if (expr.getType() == InvocationType.DYNAMIC) {
                     precedence = Precedence.MEMBER_ACCESS;
                     expr.getArguments().get(0).acceptVisitor(this);
                 }
                 MethodReference method = expr.getMethod();
-                String name = naming.getNameFor(method.getDescriptor());
                 DeferredCallSite callSite = prevCallSite;
                 boolean shouldEraseCallSite = lastCallSite == null;
                 if (lastCallSite == null) {
@@ -1069,7 +1091,7 @@ public class StatementRenderer implements ExprVisitor, StatementVisitor {
                         }
                         break;
                     case DYNAMIC:
-                        writer.append(".").append(name).append("(");
+                        writer.append(".").append(naming.getNameFor(method.getDescriptor())).append("(");
                         prevCallSite = debugEmitter.emitCallSite();
                         for (int i = 1; i < expr.getArguments().size(); ++i) {
                             if (i > 1) {
@@ -1093,6 +1115,9 @@ public class StatementRenderer implements ExprVisitor, StatementVisitor {
                         break;
                 }
                 writer.append(')');
+                if (wrapped || (generatorCall && !delegating)) {
+                    writer.append(')');
+                }
                 if (lastCallSite != null) {
                     if (virtual) {
                         lastCallSite.setVirtualMethod(expr.getMethod());
@@ -1396,11 +1421,16 @@ public class StatementRenderer implements ExprVisitor, StatementVisitor {
             if (async) {
                 MethodReference monitorEnterRef = new MethodReference(
                         Object.class, "monitorEnter", Object.class, void.class);
+                if (context.isGenerator(monitorEnterRef)) {
+                    writer.append("yield* ");
+                }
                 writer.appendMethodBody(monitorEnterRef).append("(");
                 precedence = Precedence.min();
                 statement.getObjectRef().acceptVisitor(this);
                 writer.append(");").softNewLine();
-                emitSuspendChecker();
+                if (!generator) {
+                    emitSuspendChecker();
+                }
             } else {
                 MethodReference monitorEnterRef = new MethodReference(
                         Object.class, "monitorEnterSync", Object.class, void.class);
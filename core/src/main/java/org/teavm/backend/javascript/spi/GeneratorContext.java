@@ -16,6 +16,7 @@
 package org.teavm.backend.javascript.spi;
 
 import java.util.Properties;
+import org.teavm.backend.javascript.AsyncMode;
 import org.teavm.common.ServiceRepository;
 import org.teavm.diagnostics.Diagnostics;
 import org.teavm.model.ListableClassReaderSource;
@@ -37,6 +38,14 @@ public interface GeneratorContext extends ServiceRepository {
 
     boolean isAsyncFamily(MethodReference method);
 
+    /**
+     * Tells how asynchronous methods are rendered. In {@link AsyncMode#GENERATORS} mode a native method that
+     * belongs to {@link #isAsyncFamily(MethodReference) async family} is declared as generator function,
+     * so generator should suspend by yielding a function, which is called with no arguments once the thread
+     * is suspended, and should delegate to other methods of the family with <code>yield*</code>.
+     */
+    AsyncMode getAsyncMode();
+
     Diagnostics getDiagnostics();
 
     String typeToClassString(ValueType type);
@@ -523,30 +523,33 @@ class WasmGenerationVisitor implements StatementVisitor, ExprVisitor {
         WasmExpression ptr = getArrayElementPointer(leftValue);
         accept(rightValue);
 
+        WasmMemoryAccess resultExpr = null;
         switch (leftValue.getType()) {
             case BYTE:
-                result = new WasmStoreInt32(1, ptr, result, WasmInt32Subtype.INT8);
+                resultExpr = new WasmStoreInt32(1, ptr, result, WasmInt32Subtype.INT8);
                 break;
             case SHORT:
-                result = new WasmStoreInt32(2, ptr, result, WasmInt32Subtype.INT16);
+                resultExpr = new WasmStoreInt32(2, ptr, result, WasmInt32Subtype.INT16);
                 break;
             case CHAR:
-                result = new WasmStoreInt32(2, ptr, result, WasmInt32Subtype.UINT16);
+                resultExpr = new WasmStoreInt32(2, ptr, result, WasmInt32Subtype.UINT16);
                 break;
             case INT:
             case OBJECT:
-                result = new WasmStoreInt32(4, ptr, result, WasmInt32Subtype.INT32);
+                resultExpr = new WasmStoreInt32(4, ptr, result, WasmInt32Subtype.INT32);
                 break;
             case LONG:
-                result = new WasmStoreInt64(8, ptr, result, WasmInt64Subtype.INT64);
+                resultExpr = new WasmStoreInt64(8, ptr, result, WasmInt64Subtype.INT64);
                 break;
             case FLOAT:
-                result = new WasmStoreFloat32(4, ptr, result);
+                resultExpr = new WasmStoreFloat32(4, ptr, result);
                 break;
             case DOUBLE:
-                result = new WasmStoreFloat64(8, ptr, result);
+                resultExpr = new WasmStoreFloat64(8, ptr, result);
                 break;
         }
+        resultExpr.setOffset(getArrayElementOffset());
+        result = (WasmExpression) resultExpr;
     }
 
     @Override
@@ -633,30 +636,33 @@ class WasmGenerationVisitor implements StatementVisitor, ExprVisitor {
     @Override
     public void visit(SubscriptExpr expr) {
         WasmExpression ptr = getArrayElementPointer(expr);
+        WasmMemoryAccess resultExpr = null;
         switch (expr.getType()) {
             case BYTE:
-                result = new WasmLoadInt32(1, ptr, WasmInt32Subtype.INT8);
+                resultExpr = new WasmLoadInt32(1, ptr, WasmInt32Subtype.INT8);
                 break;
             case SHORT:
-                result = new WasmLoadInt32(2, ptr, WasmInt32Subtype.INT16);
+                resultExpr = new WasmLoadInt32(2, ptr, WasmInt32Subtype.INT16);
                 break;
             case CHAR:
-                result = new WasmLoadInt32(2, ptr, WasmInt32Subtype.UINT16);
+                resultExpr = new WasmLoadInt32(2, ptr, WasmInt32Subtype.UINT16);
                 break;
             case INT:
             case OBJECT:
-                result = new WasmLoadInt32(4, ptr, WasmInt32Subtype.INT32);
+                resultExpr = new WasmLoadInt32(4, ptr, WasmInt32Subtype.INT32);
                 break;
             case LONG:
-                result = new WasmLoadInt64(8, ptr, WasmInt64Subtype.INT64);
+                resultExpr = new WasmLoadInt64(8, ptr, WasmInt64Subtype.INT64);
                 break;
             case FLOAT:
-                result = new WasmLoadFloat32(4, ptr);
+                resultExpr = new WasmLoadFloat32(4, ptr);
                 break;
             case DOUBLE:
-                result = new WasmLoadFloat64(8, ptr);
+                resultExpr = new WasmLoadFloat64(8, ptr);
                 break;
         }
+        resultExpr.setOffset(getArrayElementOffset());
+        result = (WasmExpression) resultExpr;
     }
 
     private WasmExpression getArrayElementPointer(SubscriptExpr expr) {
@@ -686,8 +692,6 @@ class WasmGenerationVisitor implements StatementVisitor, ExprVisitor {
                 break;
         }
 
-        int base = classGenerator.getClassSize(RuntimeArray.class.getName());
-        array = new WasmIntBinary(WasmIntType.INT32, WasmIntBinaryOperation.ADD, array, new WasmInt32Constant(base));
         if (size != 0) {
             index = new WasmIntBinary(WasmIntType.INT32, WasmIntBinaryOperation.SHL, index,
                     new WasmInt32Constant(size));
@@ -696,6 +700,12 @@ class WasmGenerationVisitor implements StatementVisitor, ExprVisitor {
         return new WasmIntBinary(WasmIntType.INT32, WasmIntBinaryOperation.ADD, array, index);
     }
 
+    // Array header size goes to offset immediate of load or store instruction, which saves
+    // an addition per element access
+    private int getArrayElementOffset() {
+        return classGenerator.getClassSize(RuntimeArray.class.getName());
+    }
+
     @Override
     public void visit(SwitchStatement statement) {
         WasmBlock defaultBlock = new WasmBlock(false);
@@ -559,6 +559,14 @@ public class DependencyChecker implements DependencyInfo {
         return callGraph;
     }
 
+    public boolean isReachedFromRoot(MethodReference method) {
+        return methodsAddedByRoot.contains(method);
+    }
+
+    public boolean isReachedFromRoot(FieldReference field) {
+        return fieldsAddedByRoot.contains(field);
+    }
+
     public void addBootstrapMethodSubstitutor(MethodReference method, BootstrapMethodSubstitutor substitutor) {
         bootstrapMethodSubstitutors.put(method, substitutor);
     }
@@ -69,13 +69,15 @@ public class Interpreter {
         try {
             while (true) {
                 int instructionIndex = 0;
+                // Jump replaces current block, so the executed one is remembered
+                BasicBlockReader block = currentBlock;
                 try {
-                    while (instructionIndex < currentBlock.instructionCount()) {
-                        currentBlock.readInstruction(instructionIndex++, reader);
+                    while (instructionIndex < block.instructionCount()) {
+                        block.readInstruction(instructionIndex++, reader);
                     }
                 } catch (RuntimeException e) {
                     if (!pickExceptionHandler(e)) {
-                        throw new InterpretException(currentBlock, instructionIndex, e);
+                        throw new InterpretException(block, instructionIndex, e);
                     }
                 }
                 switch (state) {
@@ -745,7 +747,8 @@ public class Interpreter {
             }
             Class<?> jvmReturnType = asJvmClass(method.getReturnType());
             for (Method jvmMethod : cls.getDeclaredMethods()) {
-                if (Arrays.equals(jvmMethod.getParameterTypes(), jvmParameters)
+                if (jvmMethod.getName().equals(method.getName())
+                        && Arrays.equals(jvmMethod.getParameterTypes(), jvmParameters)
                         && jvmReturnType.equals(jvmMethod.getReturnType())) {
                     return jvmMethod;
                 }
@@ -0,0 +1,470 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.model.optimization;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.teavm.common.Graph;
+import org.teavm.model.BasicBlock;
+import org.teavm.model.Incoming;
+import org.teavm.model.Instruction;
+import org.teavm.model.MethodDescriptor;
+import org.teavm.model.MethodReader;
+import org.teavm.model.Phi;
+import org.teavm.model.Program;
+import org.teavm.model.ValueType;
+import org.teavm.model.Variable;
+import org.teavm.model.instructions.AssignInstruction;
+import org.teavm.model.instructions.BinaryBranchingInstruction;
+import org.teavm.model.instructions.CastInstruction;
+import org.teavm.model.instructions.IntegerConstantInstruction;
+import org.teavm.model.instructions.InvocationType;
+import org.teavm.model.instructions.InvokeInstruction;
+import org.teavm.model.instructions.JumpInstruction;
+import org.teavm.model.instructions.NullCheckInstruction;
+import org.teavm.model.util.DefinitionExtractor;
+
+/**
+ * <p>Removes boxing of primitive values when boxed value is only used to get primitive value back.
+ * Recognizes <code>valueOf</code>/<code>xxxValue</code> pairs, possibly separated by copies, casts to wrapper
+ * type and phis whose all incoming values are boxes. Boxes that become unused are removed.</p>
+ *
+ * <p>Also folds reference comparison of two boxes. Boxes that are taken from cache of wrapper class
+ * are identical when boxed values are equal, other boxes are distinct from any other object. Cache ranges
+ * follow the ones of class library.</p>
+ */
+public class BoxingElimination implements MethodOptimization {
+    private static final Map<String, Wrapper> wrappers = new HashMap<>();
+    private Program program;
+    private Instruction[] definitions;
+    private Phi[] phiDefinitions;
+    private Map<Phi, Wrapper> boxPhis = new LinkedHashMap<>();
+    private Map<Phi, Phi> unboxedPhis = new HashMap<>();
+
+    static {
+        addWrapper(Integer.class, int.class, "intValue", -128, 127);
+        addWrapper(Character.class, char.class, "charValue", 0, 127);
+        addWrapper(Boolean.class, boolean.class, "booleanValue", 0, 1);
+        addWrapper(Byte.class, byte.class, "byteValue", 1, 0);
+        addWrapper(Short.class, short.class, "shortValue", 1, 0);
+        addWrapper(Long.class, long.class, "longValue", 1, 0);
+        addWrapper(Float.class, float.class, "floatValue", 1, 0);
+        addWrapper(Double.class, double.class, "doubleValue", 1, 0);
+    }
+
+    private static void addWrapper(Class<?> wrapperClass, Class<?> primitiveClass, String unboxMethod,
+            int cacheMin, int cacheMax) {
+        Wrapper wrapper = new Wrapper();
+        wrapper.className = wrapperClass.getName();
+        wrapper.boxMethod = new MethodDescriptor("valueOf", primitiveClass, wrapperClass);
+        wrapper.unboxMethod = new MethodDescriptor(unboxMethod, primitiveClass);
+        wrapper.cacheMin = cacheMin;
+        wrapper.cacheMax = cacheMax;
+        wrappers.put(wrapper.className, wrapper);
+    }
+
+    @Override
+    public boolean optimize(MethodReader method, Program program) {
+        this.program = program;
+        findDefinitions();
+        findBoxPhis();
+
+        boolean changed = false;
+        List<InvokeInstruction> unboxings = new ArrayList<>();
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            BasicBlock block = program.basicBlockAt(i);
+            for (Instruction insn : block.getInstructions()) {
+                if (insn instanceof InvokeInstruction) {
+                    InvokeInstruction invoke = (InvokeInstruction) insn;
+                    if (invoke.getReceiver() != null && getUnboxedValue(invoke) != null) {
+                        unboxings.add(invoke);
+                    }
+                }
+            }
+            if (block.getLastInstruction() instanceof BinaryBranchingInstruction) {
+                changed |= foldComparison((BinaryBranchingInstruction) block.getLastInstruction());
+            }
+        }
+
+        for (InvokeInstruction invoke : unboxings) {
+            AssignInstruction assign = new AssignInstruction();
+            assign.setAssignee(getUnboxedValue(invoke));
+            assign.setReceiver(invoke.getReceiver());
+            assign.setLocation(invoke.getLocation());
+            List<Instruction> instructions = invoke.getBasicBlock().getInstructions();
+            instructions.set(instructions.indexOf(invoke), assign);
+            changed = true;
+        }
+
+        if (changed) {
+            findDefinitions();
+        }
+        changed |= removeUnusedBoxes();
+
+        boxPhis.clear();
+        unboxedPhis.clear();
+        definitions = null;
+        phiDefinitions = null;
+        this.program = null;
+        return changed;
+    }
+
+    private void findDefinitions() {
+        definitions = new Instruction[program.variableCount()];
+        phiDefinitions = new Phi[program.variableCount()];
+        DefinitionExtractor definitionExtractor = new DefinitionExtractor();
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            BasicBlock block = program.basicBlockAt(i);
+            for (Phi phi : block.getPhis()) {
+                phiDefinitions[phi.getReceiver().getIndex()] = phi;
+            }
+            for (Instruction insn : block.getInstructions()) {
+                insn.acceptVisitor(definitionExtractor);
+                for (Variable var : definitionExtractor.getDefinedVariables()) {
+                    definitions[var.getIndex()] = insn;
+                }
+            }
+        }
+    }
+
+    /*
+     * Optimistically assumes that all phis hold boxes, then rejects phis that have incoming values
+     * other than boxes of a single wrapper type, until nothing changes.
+     */
+    private void findBoxPhis() {
+        for (Phi phi : phiDefinitions) {
+            if (phi != null) {
+                boxPhis.put(phi, null);
+            }
+        }
+
+        boolean changed;
+        do {
+            changed = false;
+            for (Phi phi : new ArrayList<>(boxPhis.keySet())) {
+                Wrapper wrapper = boxPhis.get(phi);
+                boolean valid = true;
+                for (Incoming incoming : phi.getIncomings()) {
+                    Variable value = resolveCopies(incoming.getValue());
+                    Wrapper incomingWrapper;
+                    InvokeInstruction boxing = getBoxing(value);
+                    Phi incomingPhi = phiDefinitions[value.getIndex()];
+                    if (boxing != null) {
+                        incomingWrapper = wrappers.get(boxing.getMethod().getClassName());
+                    } else if (incomingPhi != null && boxPhis.containsKey(incomingPhi)) {
+                        incomingWrapper = boxPhis.get(incomingPhi);
+                    } else {
+                        valid = false;
+                        break;
+                    }
+                    if (incomingWrapper != null) {
+                        if (wrapper == null) {
+                            wrapper = incomingWrapper;
+                        } else if (wrapper != incomingWrapper) {
+                            valid = false;
+                            break;
+                        }
+                    }
+                }
+                if (valid && wrapper != null) {
+                    for (Incoming incoming : phi.getIncomings()) {
+                        if (!castsMatch(incoming.getValue(), wrapper)) {
+                            valid = false;
+                            break;
+                        }
+                    }
+                }
+                if (!valid) {
+                    boxPhis.remove(phi);
+                    changed = true;
+                } else if (wrapper != boxPhis.get(phi)) {
+                    boxPhis.put(phi, wrapper);
+                    changed = true;
+                }
+            }
+        } while (changed);
+
+        boxPhis.values().removeIf(wrapper -> wrapper == null);
+    }
+
+    private Variable resolveCopies(Variable var) {
+        while (true) {
+            Instruction insn = definitions[var.getIndex()];
+            if (insn instanceof AssignInstruction) {
+                var = ((AssignInstruction) insn).getAssignee();
+            } else if (insn instanceof NullCheckInstruction) {
+                var = ((NullCheckInstruction) insn).getValue();
+            } else if (insn instanceof CastInstruction && getCastWrapper((CastInstruction) insn) != null) {
+                var = ((CastInstruction) insn).getValue();
+            } else {
+                return var;
+            }
+        }
+    }
+
+    // Cast of a box to another wrapper type fails, so such boxes are not considered copies
+    private boolean castsMatch(Variable var, Wrapper wrapper) {
+        while (true) {
+            Instruction insn = definitions[var.getIndex()];
+            if (insn instanceof AssignInstruction) {
+                var = ((AssignInstruction) insn).getAssignee();
+            } else if (insn instanceof NullCheckInstruction) {
+                var = ((NullCheckInstruction) insn).getValue();
+            } else if (insn instanceof CastInstruction && getCastWrapper((CastInstruction) insn) != null) {
+                if (getCastWrapper((CastInstruction) insn) != wrapper) {
+                    return false;
+                }
+                var = ((CastInstruction) insn).getValue();
+            } else {
+                return true;
+            }
+        }
+    }
+
+    private Wrapper getCastWrapper(CastInstruction cast) {
+        if (!(cast.getTargetType() instanceof ValueType.Object)) {
+            return null;
+        }
+        return wrappers.get(((ValueType.Object) cast.getTargetType()).getClassName());
+    }
+
+    private InvokeInstruction getBoxing(Variable var) {
+        Instruction insn = definitions[var.getIndex()];
+        if (!(insn instanceof InvokeInstruction)) {
+            return null;
+        }
+        InvokeInstruction invoke = (InvokeInstruction) insn;
+        if (invoke.getInstance() != null) {
+            return null;
+        }
+        Wrapper wrapper = wrappers.get(invoke.getMethod().getClassName());
+        return wrapper != null && wrapper.boxMethod.equals(invoke.getMethod().getDescriptor()) ? invoke : null;
+    }
+
+    private Variable getUnboxedValue(InvokeInstruction invoke) {
+        String className = invoke.getMethod().getClassName();
+        if (invoke.getInstance() == null
+                || !wrappers.containsKey(className) && !className.equals(Number.class.getName())) {
+            return null;
+        }
+        Variable value = resolveCopies(invoke.getInstance());
+        InvokeInstruction boxing = getBoxing(value);
+        Phi phi = phiDefinitions[value.getIndex()];
+        Wrapper wrapper;
+        if (boxing != null) {
+            wrapper = wrappers.get(boxing.getMethod().getClassName());
+        } else if (phi != null) {
+            wrapper = boxPhis.get(phi);
+        } else {
+            return null;
+        }
+        if (wrapper == null || !wrapper.unboxMethod.equals(invoke.getMethod().getDescriptor())
+                || !castsMatch(invoke.getInstance(), wrapper)) {
+            return null;
+        }
+        if (!className.equals(wrapper.className) && invoke.getType() != InvocationType.VIRTUAL) {
+            return null;
+        }
+        return boxing != null ? boxing.getArguments().get(0) : getUnboxedPhi(phi).getReceiver();
+    }
+
+    private Phi getUnboxedPhi(Phi phi) {
+        Phi unboxedPhi = unboxedPhis.get(phi);
+        if (unboxedPhi != null) {
+            return unboxedPhi;
+        }
+        unboxedPhi = new Phi();
+        unboxedPhi.setReceiver(program.createVariable());
+        unboxedPhis.put(phi, unboxedPhi);
+        for (Incoming incoming : phi.getIncomings()) {
+            Variable value = resolveCopies(incoming.getValue());
+            InvokeInstruction boxing = getBoxing(value);
+            Incoming unboxedIncoming = new Incoming();
+            unboxedIncoming.setSource(incoming.getSource());
+            unboxedIncoming.setValue(boxing != null
+                    ? boxing.getArguments().get(0)
+                    : getUnboxedPhi(phiDefinitions[value.getIndex()]).getReceiver());
+            unboxedPhi.getIncomings().add(unboxedIncoming);
+        }
+        phi.getBasicBlock().getPhis().add(unboxedPhi);
+        return unboxedPhi;
+    }
+
+    private boolean foldComparison(BinaryBranchingInstruction insn) {
+        boolean equal;
+        switch (insn.getCondition()) {
+            case REFERENCE_EQUAL:
+                equal = true;
+                break;
+            case REFERENCE_NOT_EQUAL:
+                equal = false;
+                break;
+            default:
+                return false;
+        }
+
+        Variable first = resolveCopies(insn.getFirstOperand());
+        Variable second = resolveCopies(insn.getSecondOperand());
+        InvokeInstruction firstBoxing = getBoxing(first);
+        InvokeInstruction secondBoxing = getBoxing(second);
+        if (firstBoxing == null || secondBoxing == null || firstBoxing == secondBoxing
+                || !castsMatch(insn.getFirstOperand(), wrappers.get(firstBoxing.getMethod().getClassName()))
+                || !castsMatch(insn.getSecondOperand(), wrappers.get(secondBoxing.getMethod().getClassName()))) {
+            return false;
+        }
+        Integer firstValue = getCachedValue(firstBoxing);
+        Integer secondValue = getCachedValue(secondBoxing);
+        boolean identical;
+        if (isFresh(firstBoxing) || isFresh(secondBoxing)) {
+            identical = false;
+        } else if (firstValue != null && secondValue != null) {
+            identical = firstValue.equals(secondValue)
+                    && firstBoxing.getMethod().getClassName().equals(secondBoxing.getMethod().getClassName());
+        } else {
+            return false;
+        }
+
+        JumpInstruction jump = new JumpInstruction();
+        jump.setTarget(identical == equal ? insn.getConsequent() : insn.getAlternative());
+        jump.setLocation(insn.getLocation());
+        List<Instruction> instructions = insn.getBasicBlock().getInstructions();
+        instructions.set(instructions.size() - 1, jump);
+        return true;
+    }
+
+    private Integer getCachedValue(InvokeInstruction boxing) {
+        Instruction insn = definitions[resolveCopies(boxing.getArguments().get(0)).getIndex()];
+        if (!(insn instanceof IntegerConstantInstruction)) {
+            return null;
+        }
+        int value = ((IntegerConstantInstruction) insn).getConstant();
+        Wrapper wrapper = wrappers.get(boxing.getMethod().getClassName());
+        return value >= wrapper.cacheMin && value <= wrapper.cacheMax ? value : null;
+    }
+
+    private boolean isFresh(InvokeInstruction boxing) {
+        Wrapper wrapper = wrappers.get(boxing.getMethod().getClassName());
+        if (wrapper.cacheMin > wrapper.cacheMax) {
+            return true;
+        }
+        Instruction insn = definitions[resolveCopies(boxing.getArguments().get(0)).getIndex()];
+        if (!(insn instanceof IntegerConstantInstruction)) {
+            return false;
+        }
+        int value = ((IntegerConstantInstruction) insn).getConstant();
+        return value < wrapper.cacheMin || value > wrapper.cacheMax;
+    }
+
+    /*
+     * Boxing methods update caches, so they are not considered removable by method effect analysis.
+     * However, it's safe to remove them, as well as phis that only hold removed boxes and copies, casts
+     * and null checks of removed boxes, since none of them can throw. Everything else is kept along
+     * with variables it reads.
+     */
+    private boolean removeUnusedBoxes() {
+        Graph graph = VariableUsageGraphBuilder.build(program);
+        boolean[] escaping = VariableEscapeAnalyzer.findEscapingVariables(program);
+        boolean[] used = new boolean[escaping.length];
+        int[] stack = new int[graph.size() * 2];
+        int top = 0;
+        for (int i = 0; i < used.length; ++i) {
+            if (escaping[i] || isKept(i)) {
+                stack[top++] = i;
+            }
+        }
+        while (top > 0) {
+            int var = stack[--top];
+            if (used[var]) {
+                continue;
+            }
+            used[var] = true;
+            for (int arg : graph.incomingEdges(var)) {
+                if (!used[arg]) {
+                    if (top == stack.length) {
+                        stack = Arrays.copyOf(stack, stack.length * 2);
+                    }
+                    stack[top++] = arg;
+                }
+            }
+        }
+
+        boolean changed = false;
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            BasicBlock block = program.basicBlockAt(i);
+            List<Instruction> instructions = block.getInstructions();
+            for (int j = 0; j < instructions.size(); ++j) {
+                Instruction insn = instructions.get(j);
+                Variable receiver = getBoxChainReceiver(insn);
+                if (receiver != null && !used[receiver.getIndex()]) {
+                    instructions.remove(j--);
+                    changed = true;
+                }
+            }
+            changed |= block.getPhis().removeIf(phi -> boxPhis.containsKey(phi)
+                    && !used[phi.getReceiver().getIndex()]);
+        }
+        return changed;
+    }
+
+    private boolean isKept(int var) {
+        Phi phi = phiDefinitions[var];
+        if (phi != null) {
+            return !boxPhis.containsKey(phi);
+        }
+        Instruction insn = definitions[var];
+        return insn != null && getBoxChainReceiver(insn) == null;
+    }
+
+    private Variable getBoxChainReceiver(Instruction insn) {
+        Variable receiver;
+        if (insn instanceof InvokeInstruction) {
+            receiver = ((InvokeInstruction) insn).getReceiver();
+            return receiver != null && getBoxing(receiver) != null ? receiver : null;
+        } else if (insn instanceof AssignInstruction) {
+            receiver = ((AssignInstruction) insn).getReceiver();
+        } else if (insn instanceof NullCheckInstruction) {
+            receiver = ((NullCheckInstruction) insn).getReceiver();
+        } else if (insn instanceof CastInstruction && getCastWrapper((CastInstruction) insn) != null) {
+            receiver = ((CastInstruction) insn).getReceiver();
+        } else {
+            return null;
+        }
+
+        Variable value = resolveCopies(receiver);
+        InvokeInstruction boxing = getBoxing(value);
+        Wrapper wrapper;
+        if (boxing != null) {
+            wrapper = wrappers.get(boxing.getMethod().getClassName());
+        } else if (phiDefinitions[value.getIndex()] != null) {
+            wrapper = boxPhis.get(phiDefinitions[value.getIndex()]);
+        } else {
+            return null;
+        }
+        return wrapper != null && castsMatch(receiver, wrapper) ? receiver : null;
+    }
+
+    static class Wrapper {
+        String className;
+        MethodDescriptor boxMethod;
+        MethodDescriptor unboxMethod;
+        int cacheMin;
+        int cacheMax;
+    }
+}
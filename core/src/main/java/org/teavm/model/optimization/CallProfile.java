@@ -0,0 +1,176 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.model.optimization;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import org.teavm.model.MethodReference;
+import org.teavm.model.TextLocation;
+
+/**
+ * <p>Execution counts of call sites, recorded by running a previous build of an application.
+ * Call site is identified by calling method, line of the call in source code of calling method and called method.
+ * Calls to the same method at the same line share their count.</p>
+ *
+ * <p>Profile is stored as a text file, each line of which has the following form:</p>
+ *
+ * <pre>count caller line callee</pre>
+ *
+ * <p>where <code>caller</code> and <code>callee</code> are written in the form produced by
+ * {@link MethodReference#toString()}, e.g. <code>java.util.ArrayList.get(I)Ljava/lang/Object;</code>,
+ * and <code>line</code> is <code>-1</code> for calls without line number information.
+ * Empty lines and lines starting with <code>#</code> are ignored.</p>
+ *
+ * <p>Profile only describes sites it contains. A site with zero count was observed to never execute,
+ * while nothing is known about a site which is missing from profile.</p>
+ */
+public class CallProfile {
+    private Map<MethodReference, Map<CallSite, Long>> counts = new LinkedHashMap<>();
+    private long totalCount;
+
+    public void add(MethodReference caller, int line, MethodReference callee, long count) {
+        counts.computeIfAbsent(caller, k -> new LinkedHashMap<>()).merge(new CallSite(line, callee), count,
+                Long::sum);
+        totalCount += count;
+    }
+
+    public boolean contains(MethodReference caller, int line, MethodReference callee) {
+        Map<CallSite, Long> siteCounts = counts.get(caller);
+        return siteCounts != null && siteCounts.containsKey(new CallSite(line, callee));
+    }
+
+    public long getCount(MethodReference caller, int line, MethodReference callee) {
+        Map<CallSite, Long> siteCounts = counts.get(caller);
+        if (siteCounts == null) {
+            return 0;
+        }
+        return siteCounts.getOrDefault(new CallSite(line, callee), 0L);
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * Finds how many times a call site should execute to be considered hot. The most executed sites are taken
+     * until they make up the given share of all recorded calls, and the count of the last taken site is returned.
+     *
+     * @param coverage share of all calls, from 0 to 1, made by hot call sites.
+     * @return minimum count of a hot site, which is always positive.
+     */
+    public long getHotCount(double coverage) {
+        long[] sortedCounts = counts.values().stream()
+                .flatMap(siteCounts -> siteCounts.values().stream())
+                .mapToLong(Long::longValue)
+                .sorted()
+                .toArray();
+        long covered = 0;
+        for (int i = sortedCounts.length - 1; i >= 0; --i) {
+            covered += sortedCounts[i];
+            if (covered >= totalCount * coverage) {
+                return Math.max(1, sortedCounts[i]);
+            }
+        }
+        return 1;
+    }
+
+    public static int lineOf(TextLocation location) {
+        return location != null ? location.getLine() : -1;
+    }
+
+    public static CallProfile read(Reader reader) throws IOException {
+        CallProfile profile = new CallProfile();
+        BufferedReader lineReader = new BufferedReader(reader);
+        int lineNumber = 0;
+        while (true) {
+            String line = lineReader.readLine();
+            if (line == null) {
+                break;
+            }
+            ++lineNumber;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            String[] parts = line.split("\\s+");
+            MethodReference caller = parts.length == 4 ? MethodReference.parseIfPossible(parts[1]) : null;
+            MethodReference callee = parts.length == 4 ? MethodReference.parseIfPossible(parts[3]) : null;
+            if (caller == null || callee == null) {
+                throw new IOException("Wrong call profile entry at line " + lineNumber + ": " + line);
+            }
+            long count;
+            int callLine;
+            try {
+                count = Long.parseLong(parts[0]);
+                callLine = Integer.parseInt(parts[2]);
+            } catch (NumberFormatException e) {
+                throw new IOException("Wrong number at line " + lineNumber + ": " + line);
+            }
+            profile.add(caller, callLine, callee, count);
+        }
+        return profile;
+    }
+
+    public void write(Writer writer) {
+        PrintWriter printer = new PrintWriter(writer);
+        for (Map.Entry<MethodReference, Map<CallSite, Long>> callerEntry : counts.entrySet()) {
+            for (Map.Entry<CallSite, Long> siteEntry : callerEntry.getValue().entrySet()) {
+                printer.print(siteEntry.getValue());
+                printer.print(' ');
+                printer.print(callerEntry.getKey());
+                printer.print(' ');
+                printer.print(siteEntry.getKey().line);
+                printer.print(' ');
+                printer.println(siteEntry.getKey().callee);
+            }
+        }
+        printer.flush();
+    }
+
+    private static class CallSite {
+        final int line;
+        final MethodReference callee;
+
+        CallSite(int line, MethodReference callee) {
+            this.line = line;
+            this.callee = callee;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof CallSite)) {
+                return false;
+            }
+            CallSite other = (CallSite) obj;
+            return line == other.line && callee.equals(other.callee);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(line, callee);
+        }
+    }
+}
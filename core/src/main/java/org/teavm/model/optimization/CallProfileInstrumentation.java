@@ -0,0 +1,116 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.model.optimization;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.teavm.model.BasicBlock;
+import org.teavm.model.ClassHolder;
+import org.teavm.model.Instruction;
+import org.teavm.model.ListableClassHolderSource;
+import org.teavm.model.MethodDescriptor;
+import org.teavm.model.MethodHolder;
+import org.teavm.model.MethodReference;
+import org.teavm.model.Program;
+import org.teavm.model.Variable;
+import org.teavm.model.emit.ProgramEmitter;
+import org.teavm.model.instructions.IntegerConstantInstruction;
+import org.teavm.model.instructions.InvocationType;
+import org.teavm.model.instructions.InvokeInstruction;
+import org.teavm.runtime.CallProfiler;
+
+/**
+ * <p>Makes application record its own {@link CallProfile}. Every call site that {@link Inlining} may inline,
+ * i.e. every call that is not virtual, is preceded by a call to {@link CallProfiler#count(int)} with number
+ * of the site. Descriptions of the sites are put into the application too, so that
+ * {@link CallProfiler#getProfile()} writes profile in the format of {@link CallProfile#read(java.io.Reader)},
+ * with zero count for every site that never executed.</p>
+ *
+ * <p>Sites are identified as they look right before inlining, so instrumentation should be applied at the same
+ * stage of the build, and the instrumented build should use the same optimization level as the build that
+ * consumes the profile.</p>
+ */
+public class CallProfileInstrumentation {
+    public static final MethodReference COUNT_METHOD = new MethodReference(CallProfiler.class, "count",
+            int.class, void.class);
+    private static final MethodDescriptor GET_SITES_METHOD = new MethodDescriptor("getSites", String.class);
+    private Map<String, Integer> siteIndexes = new HashMap<>();
+    private List<String> sites = new ArrayList<>();
+
+    public void apply(ListableClassHolderSource classes) {
+        for (String className : classes.getClassNames()) {
+            if (className.equals(CallProfiler.class.getName())) {
+                continue;
+            }
+            ClassHolder cls = classes.get(className);
+            for (MethodHolder method : cls.getMethods()) {
+                if (method.getProgram() != null) {
+                    apply(method.getReference(), method.getProgram());
+                }
+            }
+        }
+
+        ClassHolder profilerClass = classes.get(CallProfiler.class.getName());
+        MethodHolder getSites = profilerClass != null ? profilerClass.getMethod(GET_SITES_METHOD) : null;
+        if (getSites != null) {
+            ProgramEmitter.create(getSites, classes).constant(String.join("\n", sites)).returnValue();
+        }
+    }
+
+    public void apply(MethodReference method, Program program) {
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            BasicBlock block = program.basicBlockAt(i);
+            List<Instruction> instructions = block.getInstructions();
+            for (int j = 0; j < instructions.size(); ++j) {
+                Instruction insn = instructions.get(j);
+                if (!(insn instanceof InvokeInstruction)) {
+                    continue;
+                }
+                InvokeInstruction invoke = (InvokeInstruction) insn;
+                if (invoke.getType() == InvocationType.VIRTUAL
+                        || invoke.getMethod().getClassName().equals(CallProfiler.class.getName())) {
+                    continue;
+                }
+
+                Variable siteVar = program.createVariable();
+                IntegerConstantInstruction siteConstant = new IntegerConstantInstruction();
+                siteConstant.setConstant(getSite(method, CallProfile.lineOf(invoke.getLocation()),
+                        invoke.getMethod()));
+                siteConstant.setReceiver(siteVar);
+                siteConstant.setLocation(invoke.getLocation());
+
+                InvokeInstruction countInvoke = new InvokeInstruction();
+                countInvoke.setType(InvocationType.SPECIAL);
+                countInvoke.setMethod(COUNT_METHOD);
+                countInvoke.getArguments().add(siteVar);
+                countInvoke.setLocation(invoke.getLocation());
+
+                instructions.add(j++, siteConstant);
+                instructions.add(j++, countInvoke);
+            }
+        }
+    }
+
+    private int getSite(MethodReference caller, int line, MethodReference callee) {
+        String site = caller + " " + line + " " + callee;
+        return siteIndexes.computeIfAbsent(site, k -> {
+            sites.add(k);
+            return sites.size() - 1;
+        });
+    }
+}
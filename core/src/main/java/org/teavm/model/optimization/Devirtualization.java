@@ -15,34 +15,61 @@
  */
 package org.teavm.model.optimization;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 import org.teavm.dependency.DependencyInfo;
 import org.teavm.dependency.MethodDependencyInfo;
 import org.teavm.dependency.ValueDependencyInfo;
 import org.teavm.model.*;
+import org.teavm.model.instructions.BranchingCondition;
+import org.teavm.model.instructions.BranchingInstruction;
 import org.teavm.model.instructions.InvocationType;
 import org.teavm.model.instructions.InvokeInstruction;
+import org.teavm.model.instructions.IsInstanceInstruction;
+import org.teavm.model.instructions.JumpInstruction;
+import org.teavm.model.util.InstructionTransitionExtractor;
 
 /**
+ * <p>Replaces virtual calls by direct calls where dependency analysis allows to determine
+ * the set of possible implementations.</p>
+ *
+ * <p>Call site with a single implementation becomes a direct call. When polymorphism limit is greater than one,
+ * call site with up to that many implementations becomes a chain of <code>instanceof</code> checks, each
+ * leading to a direct call, which can be inlined later. Original virtual call remains at the end of chain,
+ * so that null receivers still get reported.</p>
  *
  * @author Alexey Andreev
  */
 public class Devirtualization {
     private DependencyInfo dependency;
     private ClassReaderSource classSource;
+    private int polymorphismLimit = 1;
 
     public Devirtualization(DependencyInfo dependency, ClassReaderSource classSource) {
         this.dependency = dependency;
         this.classSource = classSource;
     }
 
+    public int getPolymorphismLimit() {
+        return polymorphismLimit;
+    }
+
+    public void setPolymorphismLimit(int polymorphismLimit) {
+        this.polymorphismLimit = polymorphismLimit;
+    }
+
     public void apply(MethodHolder method) {
         MethodDependencyInfo methodDep = dependency.getMethod(method.getReference());
         if (methodDep == null) {
             return;
         }
         Program program = method.getProgram();
+        List<InvokeInstruction> polymorphicInvocations = new ArrayList<>();
+        List<List<MethodReference>> polymorphicImplementations = new ArrayList<>();
         for (int i = 0; i < program.basicBlockCount(); ++i) {
             BasicBlock block = program.basicBlockAt(i);
             for (Instruction insn : block.getInstructions()) {
@@ -59,13 +86,22 @@ public class Devirtualization {
                 if (implementations.size() == 1) {
                     invoke.setType(InvocationType.SPECIAL);
                     invoke.setMethod(implementations.iterator().next());
+                } else if (implementations.size() > 1 && implementations.size() <= polymorphismLimit
+                        && block.getTryCatchBlocks().isEmpty()
+                        && Arrays.stream(var.getTypes()).noneMatch(type -> type.startsWith("["))) {
+                    polymorphicInvocations.add(invoke);
+                    polymorphicImplementations.add(sortBySubtyping(implementations));
                 }
             }
         }
+
+        for (int i = 0; i < polymorphicInvocations.size(); ++i) {
+            insertGuards(program, polymorphicInvocations.get(i), polymorphicImplementations.get(i));
+        }
     }
 
     private Set<MethodReference> getImplementations(String[] classNames, MethodReference ref) {
-        Set<MethodReference> methods = new HashSet<>();
+        Set<MethodReference> methods = new LinkedHashSet<>();
         for (String className : classNames) {
             if (className.startsWith("[")) {
                 className = "java.lang.Object";
@@ -82,4 +118,114 @@ public class Devirtualization {
         }
         return methods;
     }
+
+    // Any receiver that is instance of implementation's class, but dispatches to another implementation,
+    // is instance of a subclass that declares that implementation. So checking subclasses first
+    // makes instanceof a precise guard.
+    private List<MethodReference> sortBySubtyping(Set<MethodReference> implementations) {
+        List<MethodReference> remaining = new ArrayList<>(implementations);
+        List<MethodReference> result = new ArrayList<>();
+        while (!remaining.isEmpty()) {
+            for (int i = 0; i < remaining.size(); ++i) {
+                String className = remaining.get(i).getClassName();
+                boolean hasSubclass = remaining.stream().anyMatch(other -> !other.getClassName().equals(className)
+                        && classSource.isSuperType(className, other.getClassName()).orElse(false));
+                if (!hasSubclass) {
+                    result.add(remaining.remove(i));
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    private void insertGuards(Program program, InvokeInstruction invoke, List<MethodReference> implementations) {
+        BasicBlock block = invoke.getBasicBlock();
+        List<Instruction> instructions = block.getInstructions();
+        int index = instructions.indexOf(invoke);
+
+        BasicBlock joinBlock = program.createBasicBlock();
+        List<Instruction> tail = instructions.subList(index + 1, instructions.size());
+        List<Instruction> instructionsToMove = new ArrayList<>(tail);
+        tail.clear();
+        instructions.remove(index);
+        joinBlock.getInstructions().addAll(instructionsToMove);
+        updatePhiSources(block, joinBlock);
+
+        Phi resultPhi = null;
+        if (invoke.getReceiver() != null) {
+            resultPhi = new Phi();
+            resultPhi.setReceiver(invoke.getReceiver());
+            joinBlock.getPhis().add(resultPhi);
+        }
+
+        BasicBlock current = block;
+        for (MethodReference implementation : implementations) {
+            BasicBlock callBlock = program.createBasicBlock();
+            BasicBlock nextBlock = program.createBasicBlock();
+
+            IsInstanceInstruction isInstance = new IsInstanceInstruction();
+            isInstance.setValue(invoke.getInstance());
+            isInstance.setType(ValueType.object(implementation.getClassName()));
+            isInstance.setReceiver(program.createVariable());
+            isInstance.setLocation(invoke.getLocation());
+            current.getInstructions().add(isInstance);
+
+            BranchingInstruction branching = new BranchingInstruction(BranchingCondition.NOT_EQUAL);
+            branching.setOperand(isInstance.getReceiver());
+            branching.setConsequent(callBlock);
+            branching.setAlternative(nextBlock);
+            branching.setLocation(invoke.getLocation());
+            current.getInstructions().add(branching);
+
+            InvokeInstruction directCall = new InvokeInstruction();
+            directCall.setType(InvocationType.SPECIAL);
+            directCall.setMethod(implementation);
+            directCall.setInstance(invoke.getInstance());
+            directCall.getArguments().addAll(invoke.getArguments());
+            directCall.setLocation(invoke.getLocation());
+            addCall(program, callBlock, joinBlock, directCall, resultPhi);
+
+            current = nextBlock;
+        }
+
+        addCall(program, current, joinBlock, invoke, resultPhi);
+    }
+
+    private void addCall(Program program, BasicBlock block, BasicBlock joinBlock, InvokeInstruction call,
+            Phi resultPhi) {
+        if (resultPhi != null) {
+            call.setReceiver(program.createVariable());
+            Incoming incoming = new Incoming();
+            incoming.setSource(block);
+            incoming.setValue(call.getReceiver());
+            resultPhi.getIncomings().add(incoming);
+        }
+        block.getInstructions().add(call);
+
+        JumpInstruction jump = new JumpInstruction();
+        jump.setTarget(joinBlock);
+        jump.setLocation(call.getLocation());
+        block.getInstructions().add(jump);
+    }
+
+    private void updatePhiSources(BasicBlock block, BasicBlock joinBlock) {
+        Instruction lastInsn = joinBlock.getLastInstruction();
+        if (lastInsn == null) {
+            return;
+        }
+        InstructionTransitionExtractor transitionExtractor = new InstructionTransitionExtractor();
+        lastInsn.acceptVisitor(transitionExtractor);
+        if (transitionExtractor.getTargets() == null) {
+            return;
+        }
+        List<Incoming> incomings = Arrays.stream(transitionExtractor.getTargets())
+                .flatMap(target -> target.getPhis().stream())
+                .flatMap(phi -> phi.getIncomings().stream())
+                .filter(incoming -> incoming.getSource() == block)
+                .collect(Collectors.toList());
+        for (Incoming incoming : incomings) {
+            incoming.setSource(joinBlock);
+        }
+    }
 }
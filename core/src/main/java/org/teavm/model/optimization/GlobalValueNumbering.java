@@ -32,9 +32,11 @@ public class GlobalValueNumbering implements MethodOptimization {
     private Number evaluatedConstant;
     private int receiver;
     private Program program;
+    private MethodReference method;
     private int currentBlockIndex;
     private DominatorTree domTree;
     private boolean namesPreserved;
+    private MethodEffectAnalysis methodEffects;
 
     private static class KnownValue {
         int value;
@@ -45,10 +47,16 @@ public class GlobalValueNumbering implements MethodOptimization {
         this.namesPreserved = namesPreserved;
     }
 
+    public GlobalValueNumbering(boolean namesPreserved, MethodEffectAnalysis methodEffects) {
+        this.namesPreserved = namesPreserved;
+        this.methodEffects = methodEffects;
+    }
+
     @Override
     public boolean optimize(MethodReader method, Program program) {
         boolean affected = false;
         this.program = program;
+        this.method = method.getReference();
         knownValues.clear();
         Graph cfg = ProgramUtils.buildControlFlowGraph(program);
         domTree = GraphUtils.buildDominatorTree(cfg);
@@ -686,6 +694,18 @@ public class GlobalValueNumbering implements MethodOptimization {
                 insn.setInstance(program.variableAt(instance));
             }
             insn.getArguments().replaceAll(mapper);
+
+            if (methodEffects != null && insn.getReceiver() != null && insn.getType() != InvocationType.VIRTUAL
+                    && methodEffects.getEffects(insn.getMethod(), method).isPure()) {
+                StringBuilder sb = new StringBuilder("invoke ").append(insn.getMethod()).append('(');
+                if (insn.getInstance() != null) {
+                    sb.append('@').append(insn.getInstance().getIndex()).append(';');
+                }
+                for (Variable arg : insn.getArguments()) {
+                    sb.append('@').append(arg.getIndex()).append(',');
+                }
+                bind(insn.getReceiver().getIndex(), sb.append(')').toString());
+            }
         }
 
         @Override
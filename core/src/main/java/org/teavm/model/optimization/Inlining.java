@@ -47,9 +47,37 @@ import org.teavm.model.util.ProgramUtils;
 public class Inlining {
     private static final int DEFAULT_THRESHOLD = 15;
     private static final int MAX_DEPTH = 5;
+    // Each level of nested inlining lowers the threshold, so that inlined code does not grow exponentially
+    private static final int DEPTH_PENALTY = 2;
+    // Body of a hot callee is copied into every hot site, so its size is limited as well. Four times
+    // the default threshold takes methods with a small loop or a few nested calls
+    private static final int HOT_THRESHOLD = DEFAULT_THRESHOLD * 4;
+    // Sites that together make 99% of executed calls are hot, the same cut-off as LLVM profile summary uses.
+    // Calls from the remaining sites are too rare for their overhead to matter
+    private static final double HOT_CALL_COVERAGE = 0.99;
+    private CallProfile profile;
+    private long hotCount;
+
+    public Inlining() {
+    }
+
+    /**
+     * Creates inliner driven by execution profile. Most executed call sites, that together make 99% of all
+     * recorded calls, are inlined with a much higher size threshold. Sites recorded with zero count
+     * only get methods inlined that are not larger than the call itself, so that cold code does not grow.
+     * Sites missing from the profile are treated as if there was no profile at all.
+     */
+    public Inlining(CallProfile profile) {
+        this.profile = profile;
+        hotCount = profile.getHotCount(HOT_CALL_COVERAGE);
+    }
 
     public void apply(Program program, ClassReaderSource classSource) {
-        List<PlanEntry> plan = buildPlan(program, classSource, 0);
+        apply(null, program, classSource);
+    }
+
+    public void apply(MethodReference method, Program program, ClassReaderSource classSource) {
+        List<PlanEntry> plan = buildPlan(method, program, classSource, 0);
         execPlan(program, plan, 0);
     }
 
@@ -162,7 +190,8 @@ public class Inlining {
         execPlan(program, planEntry.innerPlan, firstInlineBlock.getIndex());
     }
 
-    private List<PlanEntry> buildPlan(Program program, ClassReaderSource classSource, int depth) {
+    private List<PlanEntry> buildPlan(MethodReference method, Program program, ClassReaderSource classSource,
+            int depth) {
         if (depth >= MAX_DEPTH) {
             return Collections.emptyList();
         }
@@ -192,10 +221,13 @@ public class Inlining {
                 }
 
                 Program invokedProgram = ProgramUtils.copy(invokedMethod.getProgram());
-                int complexityThreshold = DEFAULT_THRESHOLD - depth * 2;
+                int complexityThreshold = DEFAULT_THRESHOLD - depth * DEPTH_PENALTY;
                 if (ownComplexity < DEFAULT_THRESHOLD) {
                     complexityThreshold += DEFAULT_THRESHOLD;
                 }
+                if (profile != null && method != null) {
+                    complexityThreshold = getProfiledThreshold(method, invoke, complexityThreshold, depth);
+                }
                 if (getComplexity(invokedProgram) > complexityThreshold) {
                     continue;
                 }
@@ -204,7 +236,8 @@ public class Inlining {
                 entry.targetBlock = i;
                 entry.targetInstruction = j;
                 entry.program = invokedProgram;
-                entry.innerPlan.addAll(buildPlan(invokedProgram, classSource, depth + 1));
+                entry.innerPlan.addAll(buildPlan(invokedMethod.getReference(), invokedProgram, classSource,
+                        depth + 1));
                 plan.add(entry);
             }
         }
@@ -212,6 +245,21 @@ public class Inlining {
         return plan;
     }
 
+    private int getProfiledThreshold(MethodReference caller, InvokeInstruction invoke, int threshold, int depth) {
+        int line = CallProfile.lineOf(invoke.getLocation());
+        if (!profile.contains(caller, line, invoke.getMethod())) {
+            return threshold;
+        }
+        long count = profile.getCount(caller, line, invoke.getMethod());
+        if (count == 0) {
+            return Math.min(threshold, getCallComplexity(invoke));
+        }
+        if (count >= hotCount) {
+            return Math.max(threshold, HOT_THRESHOLD - depth * DEPTH_PENALTY);
+        }
+        return threshold;
+    }
+
     private MethodReader getMethod(ClassReaderSource classSource, MethodReference methodRef) {
         ClassReader cls = classSource.get(methodRef.getClassName());
         return cls != null ? cls.getMethod(methodRef.getDescriptor()) : null;
@@ -223,17 +271,10 @@ public class Inlining {
             BasicBlock block = program.basicBlockAt(i);
             List<Instruction> instructions = block.getInstructions();
             int nopCount = (int) instructions.stream().filter(insn -> insn instanceof EmptyInstruction).count();
-            int invokeCount = instructions.stream().mapToInt(insn -> {
-                if (!(insn instanceof InvokeInstruction)) {
-                    return 0;
-                }
-                InvokeInstruction invoke = (InvokeInstruction) insn;
-                int count = invoke.getArguments().size();
-                if (invoke.getInstance() != null) {
-                    count++;
-                }
-                return count + 1;
-            }).sum();
+            int invokeCount = instructions.stream()
+                    .mapToInt(insn -> insn instanceof InvokeInstruction
+                            ? getCallComplexity((InvokeInstruction) insn) : 0)
+                    .sum();
             complexity += instructions.size() - 1 - nopCount + invokeCount;
             Instruction lastInsn = block.getLastInstruction();
             if (lastInsn instanceof SwitchInstruction) {
@@ -245,6 +286,14 @@ public class Inlining {
         return complexity;
     }
 
+    private static int getCallComplexity(InvokeInstruction invoke) {
+        int count = invoke.getArguments().size();
+        if (invoke.getInstance() != null) {
+            count++;
+        }
+        return count + 1;
+    }
+
     private class PlanEntry {
         int targetBlock;
         int targetInstruction;
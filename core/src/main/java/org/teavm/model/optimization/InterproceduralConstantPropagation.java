@@ -0,0 +1,620 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.model.optimization;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import org.teavm.callgraph.CallGraph;
+import org.teavm.callgraph.CallGraphNode;
+import org.teavm.callgraph.CallSite;
+import org.teavm.model.AccessLevel;
+import org.teavm.model.BasicBlock;
+import org.teavm.model.ClassHolder;
+import org.teavm.model.ElementModifier;
+import org.teavm.model.FieldHolder;
+import org.teavm.model.FieldReference;
+import org.teavm.model.Incoming;
+import org.teavm.model.Instruction;
+import org.teavm.model.ListableClassHolderSource;
+import org.teavm.model.MethodDescriptor;
+import org.teavm.model.MethodHolder;
+import org.teavm.model.MethodReference;
+import org.teavm.model.Phi;
+import org.teavm.model.Program;
+import org.teavm.model.Variable;
+import org.teavm.model.instructions.AssignInstruction;
+import org.teavm.model.instructions.BinaryInstruction;
+import org.teavm.model.instructions.BranchingCondition;
+import org.teavm.model.instructions.BranchingInstruction;
+import org.teavm.model.instructions.CastIntegerInstruction;
+import org.teavm.model.instructions.CastNumberInstruction;
+import org.teavm.model.instructions.ClassConstantInstruction;
+import org.teavm.model.instructions.CloneArrayInstruction;
+import org.teavm.model.instructions.ConstructArrayInstruction;
+import org.teavm.model.instructions.ConstructInstruction;
+import org.teavm.model.instructions.ConstructMultiArrayInstruction;
+import org.teavm.model.instructions.DoubleConstantInstruction;
+import org.teavm.model.instructions.EmptyInstruction;
+import org.teavm.model.instructions.ExitInstruction;
+import org.teavm.model.instructions.FloatConstantInstruction;
+import org.teavm.model.instructions.GetFieldInstruction;
+import org.teavm.model.instructions.IntegerConstantInstruction;
+import org.teavm.model.instructions.InvocationType;
+import org.teavm.model.instructions.InvokeInstruction;
+import org.teavm.model.instructions.JumpInstruction;
+import org.teavm.model.instructions.LongConstantInstruction;
+import org.teavm.model.instructions.NegateInstruction;
+import org.teavm.model.instructions.NullCheckInstruction;
+import org.teavm.model.instructions.NullConstantInstruction;
+import org.teavm.model.instructions.PutFieldInstruction;
+import org.teavm.model.instructions.StringConstantInstruction;
+import org.teavm.model.util.DefinitionExtractor;
+import org.teavm.model.util.InstructionVariableMapper;
+
+/**
+ * <p>Whole-program propagation of constants and nullness across method boundaries. Three kinds of facts
+ * are computed, each being either a constant, or knowledge that value is never null:</p>
+ *
+ * <ul>
+ *   <li>return value of a method, used at direct (static and special) call sites;</li>
+ *   <li>parameter of a method that can't be overridden (static, private or constructor), when every call site
+ *   passes the same fact. Methods that are called by host code, or by any method without a program,
+ *   (as reported by call graph) get no parameter facts;</li>
+ *   <li>final static field that is written exactly once, by static initializer of its class.</li>
+ * </ul>
+ *
+ * <p>Facts are computed iteratively until they stop changing, since return value of one method often
+ * depends on parameters or return values of others. Constants are then materialized as constant
+ * instructions, and null checks and null branches of non-null values are removed. Remaining work,
+ * like folding branches on materialized constants, is left to intraprocedural optimizations.</p>
+ *
+ * <p>Reads of a field are only replaced by a value that every read is guaranteed to observe, like in
+ * {@link UnusedFieldElimination}. A final static field may be read during a cycle of class initializers
+ * before it's stored, and such read observes default value. So the field is only considered constant
+ * when it's stored before static initializer runs any other code, and no superclass has an initializer
+ * that could read it even earlier.</p>
+ */
+public class InterproceduralConstantPropagation {
+    private static final Object NULL = new Object();
+    private static final Object NON_NULL = new Object();
+
+    private ListableClassHolderSource classes;
+    private CallGraph callGraph;
+    private Predicate<MethodReference> rootMethods;
+    private Map<MethodReference, MethodHolder> methods = new HashMap<>();
+    private Map<Program, MethodHolder> programOwners = new HashMap<>();
+    private Map<MethodReference, List<InvokeInstruction>> callSites = new HashMap<>();
+    private Map<MethodReference, Object> returnFacts = new HashMap<>();
+    private Map<MethodReference, Object[]> parameterFacts = new HashMap<>();
+    private Map<FieldReference, Object> fieldFacts = new HashMap<>();
+    private Map<Program, ProgramContext> contexts = new HashMap<>();
+    private DefinitionExtractor definitionExtractor = new DefinitionExtractor();
+
+    public InterproceduralConstantPropagation(ListableClassHolderSource classes, CallGraph callGraph,
+            Predicate<MethodReference> rootMethods) {
+        this.classes = classes;
+        this.callGraph = callGraph;
+        this.rootMethods = rootMethods;
+    }
+
+    public void apply() {
+        for (String className : classes.getClassNames()) {
+            ClassHolder cls = classes.get(className);
+            for (MethodHolder method : cls.getMethods()) {
+                if (method.getProgram() != null && method.getProgram().basicBlockCount() > 0) {
+                    methods.put(method.getReference(), method);
+                    programOwners.put(method.getProgram(), method);
+                }
+            }
+        }
+
+        collectCallSites();
+        collectFieldFacts();
+
+        boolean changed;
+        do {
+            changed = false;
+            for (MethodHolder method : methods.values()) {
+                changed |= updateReturnFact(method);
+                changed |= updateParameterFacts(method);
+            }
+        } while (changed);
+
+        for (MethodHolder method : methods.values()) {
+            rewrite(method);
+        }
+
+        methods.clear();
+        programOwners.clear();
+        callSites.clear();
+        contexts.clear();
+    }
+
+    private void collectCallSites() {
+        for (MethodHolder method : methods.values()) {
+            Program program = method.getProgram();
+            for (int i = 0; i < program.basicBlockCount(); ++i) {
+                for (Instruction insn : program.basicBlockAt(i).getInstructions()) {
+                    if (insn instanceof InvokeInstruction) {
+                        InvokeInstruction invoke = (InvokeInstruction) insn;
+                        callSites.computeIfAbsent(invoke.getMethod(), k -> new ArrayList<>()).add(invoke);
+                    }
+                }
+            }
+        }
+    }
+
+    private void collectFieldFacts() {
+        Map<FieldReference, List<PutFieldInstruction>> writes = new HashMap<>();
+        for (MethodHolder method : methods.values()) {
+            Program program = method.getProgram();
+            for (int i = 0; i < program.basicBlockCount(); ++i) {
+                for (Instruction insn : program.basicBlockAt(i).getInstructions()) {
+                    if (insn instanceof PutFieldInstruction) {
+                        PutFieldInstruction putField = (PutFieldInstruction) insn;
+                        if (putField.getInstance() == null) {
+                            writes.computeIfAbsent(putField.getField(), k -> new ArrayList<>()).add(putField);
+                        }
+                    }
+                }
+            }
+        }
+
+        for (Map.Entry<FieldReference, List<PutFieldInstruction>> entry : writes.entrySet()) {
+            FieldReference fieldRef = entry.getKey();
+            List<PutFieldInstruction> fieldWrites = entry.getValue();
+            ClassHolder cls = classes.get(fieldRef.getClassName());
+            FieldHolder field = cls != null ? cls.getField(fieldRef.getFieldName()) : null;
+            if (field == null || !field.hasModifier(ElementModifier.STATIC)
+                    || !field.hasModifier(ElementModifier.FINAL) || field.getInitialValue() != null
+                    || fieldWrites.size() != 1) {
+                continue;
+            }
+            PutFieldInstruction putField = fieldWrites.get(0);
+            MethodHolder method = programOwners.get(putField.getBasicBlock().getProgram());
+            if (method == null || !isInitializerOf(method, fieldRef.getClassName())
+                    || !isStoredBeforeOtherCode(putField) || hasInitializedAncestors(cls)) {
+                continue;
+            }
+            Object fact = evaluate(putField.getValue(), getContext(method));
+            if (fact != null) {
+                fieldFacts.put(fieldRef, fact);
+            }
+        }
+    }
+
+    /*
+     * Static initializer may call code that reads the field before it's stored. Field is only considered
+     * constant when it's stored on the straight path from the entry of initializer, before anything that
+     * can execute another method or trigger initialization of another class.
+     */
+    private static boolean isStoredBeforeOtherCode(PutFieldInstruction putField) {
+        String className = putField.getField().getClassName();
+        Set<BasicBlock> visited = new HashSet<>();
+        BasicBlock block = putField.getBasicBlock().getProgram().basicBlockAt(0);
+        while (visited.add(block)) {
+            for (Instruction insn : block.getInstructions()) {
+                if (insn == putField) {
+                    return true;
+                }
+                if (insn instanceof PutFieldInstruction) {
+                    PutFieldInstruction otherPut = (PutFieldInstruction) insn;
+                    if (otherPut.getInstance() != null || !otherPut.getField().getClassName().equals(className)) {
+                        return false;
+                    }
+                } else if (insn instanceof GetFieldInstruction) {
+                    GetFieldInstruction getField = (GetFieldInstruction) insn;
+                    if (getField.getInstance() != null || !getField.getField().getClassName().equals(className)) {
+                        return false;
+                    }
+                } else if (insn instanceof JumpInstruction) {
+                    block = ((JumpInstruction) insn).getTarget();
+                } else if (!isLocalComputation(insn)) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isLocalComputation(Instruction insn) {
+        return insn instanceof IntegerConstantInstruction || insn instanceof LongConstantInstruction
+                || insn instanceof FloatConstantInstruction || insn instanceof DoubleConstantInstruction
+                || insn instanceof StringConstantInstruction || insn instanceof NullConstantInstruction
+                || insn instanceof ClassConstantInstruction || insn instanceof AssignInstruction
+                || insn instanceof EmptyInstruction || insn instanceof BinaryInstruction
+                || insn instanceof NegateInstruction || insn instanceof CastNumberInstruction
+                || insn instanceof CastIntegerInstruction || insn instanceof ConstructArrayInstruction;
+    }
+
+    /*
+     * Superclasses are initialized after initialization of a class begins, but before its initializer
+     * runs, so their initializers can observe default value of any field of the class.
+     */
+    private boolean hasInitializedAncestors(ClassHolder cls) {
+        Set<String> visited = new HashSet<>();
+        String parent = cls.getParent();
+        while (parent != null && visited.add(parent)) {
+            ClassHolder parentClass = classes.get(parent);
+            if (parentClass == null) {
+                return false;
+            }
+            MethodHolder initializer = parentClass.getMethod(new MethodDescriptor("<clinit>", void.class));
+            if (initializer != null && initializer.getProgram() != null) {
+                return true;
+            }
+            parent = parentClass.getParent();
+        }
+        return false;
+    }
+
+    private static boolean isInitializerOf(MethodHolder method, String className) {
+        return method.getName().equals("<clinit>") && method.getOwnerName().equals(className);
+    }
+
+    private boolean updateReturnFact(MethodHolder method) {
+        if (returnFacts.containsKey(method.getReference())) {
+            return false;
+        }
+        Program program = method.getProgram();
+        ProgramContext context = getContext(method);
+        Object fact = null;
+        boolean first = true;
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            Instruction lastInsn = program.basicBlockAt(i).getLastInstruction();
+            if (!(lastInsn instanceof ExitInstruction)) {
+                continue;
+            }
+            Variable value = ((ExitInstruction) lastInsn).getValueToReturn();
+            if (value == null) {
+                return false;
+            }
+            Object valueFact = evaluate(value, context);
+            fact = first ? valueFact : meet(fact, valueFact);
+            first = false;
+            if (fact == null) {
+                return false;
+            }
+        }
+        if (fact == null) {
+            return false;
+        }
+        returnFacts.put(method.getReference(), fact);
+        return true;
+    }
+
+    private boolean updateParameterFacts(MethodHolder method) {
+        if (!canHaveParameterFacts(method)) {
+            return false;
+        }
+        List<InvokeInstruction> sites = callSites.get(method.getReference());
+        int parameterCount = method.parameterCount();
+        Object[] facts = parameterFacts.get(method.getReference());
+        if (facts == null) {
+            facts = new Object[parameterCount];
+        }
+
+        boolean changed = false;
+        for (int i = 0; i < parameterCount; ++i) {
+            if (facts[i] != null) {
+                continue;
+            }
+            Object fact = null;
+            boolean first = true;
+            for (InvokeInstruction site : sites) {
+                MethodHolder caller = programOwners.get(site.getBasicBlock().getProgram());
+                Object argumentFact = evaluate(site.getArguments().get(i), getContext(caller));
+                fact = first ? argumentFact : meet(fact, argumentFact);
+                first = false;
+                if (fact == null) {
+                    break;
+                }
+            }
+            if (fact != null) {
+                facts[i] = fact;
+                changed = true;
+            }
+        }
+        if (changed) {
+            parameterFacts.put(method.getReference(), facts);
+        }
+        return changed;
+    }
+
+    private boolean canHaveParameterFacts(MethodHolder method) {
+        if (method.parameterCount() == 0 || rootMethods.test(method.getReference())) {
+            return false;
+        }
+        if (!method.hasModifier(ElementModifier.STATIC) && method.getLevel() != AccessLevel.PRIVATE
+                && !method.getName().equals("<init>")) {
+            return false;
+        }
+        List<InvokeInstruction> sites = callSites.get(method.getReference());
+        if (sites == null || sites.isEmpty()) {
+            return false;
+        }
+        CallGraphNode node = callGraph.getNode(method.getReference());
+        if (node == null) {
+            return false;
+        }
+        for (CallSite callSite : node.getCallerCallSites()) {
+            if (!methods.containsKey(callSite.getCaller().getMethod())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private ProgramContext getContext(MethodHolder method) {
+        return contexts.computeIfAbsent(method.getProgram(), program -> new ProgramContext(method));
+    }
+
+    private Object evaluate(Variable var, ProgramContext context) {
+        return evaluate(var, context, new HashSet<>());
+    }
+
+    private Object evaluate(Variable var, ProgramContext context, Set<Variable> visiting) {
+        MethodHolder method = context.method;
+        int index = var.getIndex();
+        if (index <= method.parameterCount()) {
+            if (index == 0) {
+                return method.hasModifier(ElementModifier.STATIC) ? null : NON_NULL;
+            }
+            Object[] facts = parameterFacts.get(method.getReference());
+            return facts != null ? facts[index - 1] : null;
+        }
+        if (!visiting.add(var)) {
+            return null;
+        }
+
+        Phi phi = context.phis[index];
+        if (phi != null) {
+            Object fact = null;
+            boolean first = true;
+            for (Incoming incoming : phi.getIncomings()) {
+                Object incomingFact = evaluate(incoming.getValue(), context, visiting);
+                fact = first ? incomingFact : meet(fact, incomingFact);
+                first = false;
+                if (fact == null) {
+                    break;
+                }
+            }
+            return fact;
+        }
+
+        Instruction insn = context.definitions[index];
+        if (insn instanceof IntegerConstantInstruction) {
+            return ((IntegerConstantInstruction) insn).getConstant();
+        } else if (insn instanceof LongConstantInstruction) {
+            return ((LongConstantInstruction) insn).getConstant();
+        } else if (insn instanceof FloatConstantInstruction) {
+            return ((FloatConstantInstruction) insn).getConstant();
+        } else if (insn instanceof DoubleConstantInstruction) {
+            return ((DoubleConstantInstruction) insn).getConstant();
+        } else if (insn instanceof StringConstantInstruction) {
+            return ((StringConstantInstruction) insn).getConstant();
+        } else if (insn instanceof NullConstantInstruction) {
+            return NULL;
+        } else if (insn instanceof ConstructInstruction || insn instanceof ConstructArrayInstruction
+                || insn instanceof ConstructMultiArrayInstruction || insn instanceof ClassConstantInstruction
+                || insn instanceof CloneArrayInstruction) {
+            return NON_NULL;
+        } else if (insn instanceof AssignInstruction) {
+            return evaluate(((AssignInstruction) insn).getAssignee(), context, visiting);
+        } else if (insn instanceof NullCheckInstruction) {
+            Object fact = evaluate(((NullCheckInstruction) insn).getValue(), context, visiting);
+            return isNonNull(fact) ? fact : NON_NULL;
+        } else if (insn instanceof InvokeInstruction) {
+            InvokeInstruction invoke = (InvokeInstruction) insn;
+            return isDirect(invoke) ? returnFacts.get(invoke.getMethod()) : null;
+        } else if (insn instanceof GetFieldInstruction) {
+            GetFieldInstruction getField = (GetFieldInstruction) insn;
+            if (getField.getInstance() != null || isInitializerOf(method, getField.getField().getClassName())) {
+                return null;
+            }
+            return fieldFacts.get(getField.getField());
+        }
+        return null;
+    }
+
+    private static boolean isDirect(InvokeInstruction invoke) {
+        return invoke.getType() == InvocationType.SPECIAL || invoke.getInstance() == null;
+    }
+
+    private static Object meet(Object a, Object b) {
+        if (a == null || b == null) {
+            return null;
+        }
+        if (a.equals(b)) {
+            return a;
+        }
+        return isNonNull(a) && isNonNull(b) ? NON_NULL : null;
+    }
+
+    private static boolean isNonNull(Object fact) {
+        return fact == NON_NULL || fact instanceof String;
+    }
+
+    private void rewrite(MethodHolder method) {
+        Program program = method.getProgram();
+        ProgramContext context = getContext(method);
+
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            BasicBlock block = program.basicBlockAt(i);
+            List<Instruction> instructions = block.getInstructions();
+            for (int j = 0; j < instructions.size(); ++j) {
+                Instruction insn = instructions.get(j);
+                if (insn instanceof NullCheckInstruction) {
+                    NullCheckInstruction nullCheck = (NullCheckInstruction) insn;
+                    if (isNonNull(evaluate(nullCheck.getValue(), context))) {
+                        AssignInstruction assign = new AssignInstruction();
+                        assign.setAssignee(nullCheck.getValue());
+                        assign.setReceiver(nullCheck.getReceiver());
+                        assign.setLocation(nullCheck.getLocation());
+                        instructions.set(j, assign);
+                    }
+                } else if (insn instanceof BranchingInstruction) {
+                    rewriteNullBranch(block, (BranchingInstruction) insn, context);
+                }
+            }
+        }
+
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            BasicBlock block = program.basicBlockAt(i);
+            List<Instruction> instructions = block.getInstructions();
+            for (int j = 0; j < instructions.size(); ++j) {
+                Instruction insn = instructions.get(j);
+                if (insn instanceof InvokeInstruction) {
+                    InvokeInstruction invoke = (InvokeInstruction) insn;
+                    if (invoke.getReceiver() == null || !isDirect(invoke)) {
+                        continue;
+                    }
+                    Instruction constant = createConstant(returnFacts.get(invoke.getMethod()), invoke.getReceiver());
+                    if (constant != null) {
+                        invoke.setReceiver(null);
+                        constant.setLocation(invoke.getLocation());
+                        instructions.add(++j, constant);
+                    }
+                } else if (insn instanceof GetFieldInstruction) {
+                    GetFieldInstruction getField = (GetFieldInstruction) insn;
+                    if (getField.getInstance() != null
+                            || isInitializerOf(method, getField.getField().getClassName())) {
+                        continue;
+                    }
+                    Instruction constant = createConstant(fieldFacts.get(getField.getField()),
+                            getField.getReceiver());
+                    if (constant != null) {
+                        constant.setLocation(getField.getLocation());
+                        instructions.set(j, constant);
+                    }
+                }
+            }
+        }
+
+        Object[] facts = parameterFacts.get(method.getReference());
+        if (facts != null) {
+            Variable[] substitutions = new Variable[facts.length + 1];
+            List<Instruction> constants = new ArrayList<>();
+            for (int i = 0; i < facts.length; ++i) {
+                if (facts[i] == null || facts[i] == NON_NULL) {
+                    continue;
+                }
+                substitutions[i + 1] = program.createVariable();
+                constants.add(createConstant(facts[i], substitutions[i + 1]));
+            }
+            if (!constants.isEmpty()) {
+                InstructionVariableMapper mapper = new InstructionVariableMapper(var -> {
+                    int index = var.getIndex();
+                    return index < substitutions.length && substitutions[index] != null
+                            ? substitutions[index]
+                            : var;
+                });
+                for (int i = 0; i < program.basicBlockCount(); ++i) {
+                    mapper.apply(program.basicBlockAt(i));
+                }
+                program.basicBlockAt(0).getInstructions().addAll(0, constants);
+            }
+        }
+    }
+
+    private void rewriteNullBranch(BasicBlock block, BranchingInstruction branching, ProgramContext context) {
+        BasicBlock target;
+        if (branching.getCondition() == BranchingCondition.NULL) {
+            target = branching.getAlternative();
+        } else if (branching.getCondition() == BranchingCondition.NOT_NULL) {
+            target = branching.getConsequent();
+        } else {
+            return;
+        }
+        if (!isNonNull(evaluate(branching.getOperand(), context))) {
+            return;
+        }
+        for (BasicBlock oldTarget : Arrays.asList(branching.getConsequent(), branching.getAlternative())) {
+            if (oldTarget != target) {
+                oldTarget.removeIncomingsFrom(block);
+            }
+        }
+        JumpInstruction jump = new JumpInstruction();
+        jump.setTarget(target);
+        jump.setLocation(branching.getLocation());
+        block.getInstructions().set(block.getInstructions().size() - 1, jump);
+    }
+
+    private static Instruction createConstant(Object fact, Variable receiver) {
+        if (fact instanceof Integer) {
+            IntegerConstantInstruction insn = new IntegerConstantInstruction();
+            insn.setConstant((Integer) fact);
+            insn.setReceiver(receiver);
+            return insn;
+        } else if (fact instanceof Long) {
+            LongConstantInstruction insn = new LongConstantInstruction();
+            insn.setConstant((Long) fact);
+            insn.setReceiver(receiver);
+            return insn;
+        } else if (fact instanceof Float) {
+            FloatConstantInstruction insn = new FloatConstantInstruction();
+            insn.setConstant((Float) fact);
+            insn.setReceiver(receiver);
+            return insn;
+        } else if (fact instanceof Double) {
+            DoubleConstantInstruction insn = new DoubleConstantInstruction();
+            insn.setConstant((Double) fact);
+            insn.setReceiver(receiver);
+            return insn;
+        } else if (fact instanceof String) {
+            StringConstantInstruction insn = new StringConstantInstruction();
+            insn.setConstant((String) fact);
+            insn.setReceiver(receiver);
+            return insn;
+        } else if (fact == NULL) {
+            NullConstantInstruction insn = new NullConstantInstruction();
+            insn.setReceiver(receiver);
+            return insn;
+        }
+        return null;
+    }
+
+    private class ProgramContext {
+        final MethodHolder method;
+        final Instruction[] definitions;
+        final Phi[] phis;
+
+        ProgramContext(MethodHolder method) {
+            this.method = method;
+            Program program = method.getProgram();
+            definitions = new Instruction[program.variableCount()];
+            phis = new Phi[program.variableCount()];
+            for (int i = 0; i < program.basicBlockCount(); ++i) {
+                BasicBlock block = program.basicBlockAt(i);
+                for (Phi phi : block.getPhis()) {
+                    phis[phi.getReceiver().getIndex()] = phi;
+                }
+                for (Instruction insn : block.getInstructions()) {
+                    insn.acceptVisitor(definitionExtractor);
+                    for (Variable var : definitionExtractor.getDefinedVariables()) {
+                        definitions[var.getIndex()] = insn;
+                    }
+                }
+            }
+        }
+    }
+}
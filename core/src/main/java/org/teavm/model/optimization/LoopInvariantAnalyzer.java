@@ -16,6 +16,7 @@
 package org.teavm.model.optimization;
 
 import org.teavm.model.InvokeDynamicInstruction;
+import org.teavm.model.MethodReference;
 import org.teavm.model.instructions.ArrayLengthInstruction;
 import org.teavm.model.instructions.AssignInstruction;
 import org.teavm.model.instructions.BinaryBranchingInstruction;
@@ -39,6 +40,7 @@ import org.teavm.model.instructions.GetFieldInstruction;
 import org.teavm.model.instructions.InitClassInstruction;
 import org.teavm.model.instructions.InstructionVisitor;
 import org.teavm.model.instructions.IntegerConstantInstruction;
+import org.teavm.model.instructions.InvocationType;
 import org.teavm.model.instructions.InvokeInstruction;
 import org.teavm.model.instructions.IsInstanceInstruction;
 import org.teavm.model.instructions.JumpInstruction;
@@ -60,6 +62,16 @@ public class LoopInvariantAnalyzer implements InstructionVisitor {
     public boolean canMove;
     public boolean constant;
     public boolean sideEffect;
+    private MethodEffectAnalysis methodEffects;
+    private MethodReference method;
+
+    public LoopInvariantAnalyzer() {
+    }
+
+    public LoopInvariantAnalyzer(MethodEffectAnalysis methodEffects, MethodReference method) {
+        this.methodEffects = methodEffects;
+        this.method = method;
+    }
 
     public void reset() {
         canMove = false;
@@ -210,6 +222,15 @@ public class LoopInvariantAnalyzer implements InstructionVisitor {
 
     @Override
     public void visit(InvokeInstruction insn) {
+        if (methodEffects == null || insn.getReceiver() == null || insn.getType() == InvocationType.VIRTUAL) {
+            return;
+        }
+        MethodEffects effects = methodEffects.getEffects(insn.getMethod(), method);
+        if (!effects.readsMemory() && !effects.writesMemory() && !effects.allocates() && !effects.mayNotTerminate()) {
+            // Call is only moved out of a loop that executes it anyway, since it may throw or be expensive
+            canMove = true;
+            sideEffect = true;
+        }
     }
 
     @Override
@@ -28,6 +28,14 @@ public class LoopInvariantMotion implements MethodOptimization {
     private LoopGraph graph;
     private DominatorTree dom;
     private Program program;
+    private MethodEffectAnalysis methodEffects;
+
+    public LoopInvariantMotion() {
+    }
+
+    public LoopInvariantMotion(MethodEffectAnalysis methodEffects) {
+        this.methodEffects = methodEffects;
+    }
 
     @Override
     public boolean optimize(MethodReader method, Program program) {
@@ -53,16 +61,13 @@ public class LoopInvariantMotion implements MethodOptimization {
 
         DefinitionExtractor defExtractor = new DefinitionExtractor();
         UsageExtractor useExtractor = new UsageExtractor();
-        LoopInvariantAnalyzer analyzer = new LoopInvariantAnalyzer();
+        LoopInvariantAnalyzer analyzer = new LoopInvariantAnalyzer(methodEffects, method.getReference());
         CopyConstantVisitor constantCopier = new CopyConstantVisitor();
         int[][] loopExits = ControlFlowUtils.findLoopExits(graph);
 
         while (!stack.isEmpty()) {
             int v = stack.pop();
             Loop defLoop = graph.loopAt(v);
-            int[] exits = loopExits[v];
-            boolean dominatesExits = exits != null && Arrays.stream(exits)
-                    .allMatch(exit -> dom.dominates(v, exit));
             BasicBlock block = program.basicBlockAt(v);
             insnLoop: for (int i = 0; i < block.getInstructions().size(); ++i) {
                 Instruction insn = block.getInstructions().get(i);
@@ -82,9 +87,6 @@ public class LoopInvariantMotion implements MethodOptimization {
                 if (defLoop == null) {
                     continue;
                 }
-                if (analyzer.sideEffect && !dominatesExits) {
-                    continue;
-                }
                 insn.acceptVisitor(useExtractor);
                 Loop commonUseLoop = null;
                 for (Variable use : useExtractor.getUsedVariables()) {
@@ -109,6 +111,11 @@ public class LoopInvariantMotion implements MethodOptimization {
                         continue insnLoop;
                     }
                 }
+                // Instruction with side effect is only moved if the loop executes it at least once before exiting
+                if (analyzer.sideEffect && !Arrays.stream(loopExits[defLoop.getHead()])
+                        .allMatch(exit -> dom.dominates(v, exit))) {
+                    continue;
+                }
 
                 EmptyInstruction empty = new EmptyInstruction();
                 empty.setLocation(insn.getLocation());
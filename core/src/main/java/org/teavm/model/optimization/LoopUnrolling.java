@@ -0,0 +1,379 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.model.optimization;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.teavm.common.Graph;
+import org.teavm.model.BasicBlock;
+import org.teavm.model.Incoming;
+import org.teavm.model.Instruction;
+import org.teavm.model.MethodReader;
+import org.teavm.model.Phi;
+import org.teavm.model.Program;
+import org.teavm.model.TextLocation;
+import org.teavm.model.Variable;
+import org.teavm.model.instructions.AssignInstruction;
+import org.teavm.model.instructions.BinaryInstruction;
+import org.teavm.model.instructions.BinaryOperation;
+import org.teavm.model.instructions.BranchingCondition;
+import org.teavm.model.instructions.BranchingInstruction;
+import org.teavm.model.instructions.EmptyInstruction;
+import org.teavm.model.instructions.IntegerConstantInstruction;
+import org.teavm.model.instructions.JumpInstruction;
+import org.teavm.model.instructions.NumericOperandType;
+import org.teavm.model.util.BasicBlockMapper;
+import org.teavm.model.util.DefinitionExtractor;
+import org.teavm.model.util.PhiUpdater;
+import org.teavm.model.util.ProgramUtils;
+
+/**
+ * <p>Unrolls counted loops that consist of a single basic block, i.e. loops of form</p>
+ *
+ * <pre>
+ * do {
+ *     body;
+ *     i = i + step;
+ * } while (i &lt; n);
+ * </pre>
+ *
+ * <p>where <code>step</code> is a positive constant and <code>n</code> is loop invariant. Such loops are
+ * produced by {@link LoopInversion} from ordinary <code>for</code> loops.
+ * The loop is versioned: when it's known at entry that the next <code>factor</code> iterations won't exit,
+ * control goes to a copy of the loop which executes <code>factor</code> bodies per iteration with no exit
+ * checks between them. Remaining iterations are performed by the original loop.</p>
+ *
+ * <p>Loops whose unrolled body would exceed size budget (measured in instructions) are left intact.
+ * This optimization should run once per method after {@link GlobalValueNumbering}, since it leaves
+ * original loop in place and recognizes induction variables modulo copying only.</p>
+ */
+public class LoopUnrolling implements MethodOptimization {
+    private int factor;
+    private int sizeBudget;
+    private Program program;
+    private BasicBlock[] definitionPlaces;
+    private Instruction[] definitions;
+    private Set<BasicBlock> affectedBlocks = new HashSet<>();
+
+    public LoopUnrolling(int factor, int sizeBudget) {
+        this.factor = factor;
+        this.sizeBudget = sizeBudget;
+    }
+
+    @Override
+    public boolean optimize(MethodReader method, Program program) {
+        if (factor < 2) {
+            return false;
+        }
+        // Loop inversion leaves loop body and condition in separate blocks, merge them first
+        boolean affected = new RedundantJumpElimination().optimize(method, program);
+        this.program = program;
+        definitionPlaces = ProgramUtils.getVariableDefinitionPlaces(program);
+        definitions = getDefinitions();
+        Graph cfg = ProgramUtils.buildControlFlowGraph(program);
+
+        List<CountedLoop> loops = new ArrayList<>();
+        for (int i = 0; i < cfg.size(); ++i) {
+            if (cfg.incomingEdgesCount(i) != 2) {
+                continue;
+            }
+            int[] predecessors = cfg.incomingEdges(i);
+            int preheader = predecessors[0] == i ? predecessors[1] : predecessors[0];
+            if (predecessors[0] != i && predecessors[1] != i || preheader == i) {
+                continue;
+            }
+            CountedLoop countedLoop = analyze(program.basicBlockAt(i), program.basicBlockAt(preheader));
+            if (countedLoop != null) {
+                loops.add(countedLoop);
+            }
+        }
+
+        boolean unrolled = false;
+        for (CountedLoop loop : loops) {
+            if (affectedBlocks.contains(loop.preheader) || affectedBlocks.contains(loop.block)
+                    || affectedBlocks.contains(loop.exit)) {
+                continue;
+            }
+            affectedBlocks.add(loop.preheader);
+            affectedBlocks.add(loop.block);
+            affectedBlocks.add(loop.exit);
+            unroll(loop);
+            unrolled = true;
+        }
+
+        if (unrolled) {
+            Variable[] inputs = new Variable[method.parameterCount() + 1];
+            for (int i = 0; i < inputs.length; ++i) {
+                inputs[i] = program.variableAt(i);
+            }
+            new PhiUpdater().updatePhis(program, inputs);
+        }
+
+        affectedBlocks.clear();
+        this.program = null;
+        definitionPlaces = null;
+        definitions = null;
+        return affected | unrolled;
+    }
+
+    private CountedLoop analyze(BasicBlock block, BasicBlock preheader) {
+        if (!block.getTryCatchBlocks().isEmpty()) {
+            return null;
+        }
+        long size = block.getInstructions().stream().filter(insn -> !(insn instanceof EmptyInstruction)).count();
+        if (size * factor > sizeBudget) {
+            return null;
+        }
+        if (!(block.getLastInstruction() instanceof BranchingInstruction)) {
+            return null;
+        }
+        BranchingInstruction branching = (BranchingInstruction) block.getLastInstruction();
+        BasicBlock exit;
+        if (branching.getCondition() == BranchingCondition.LESS && branching.getConsequent() == block) {
+            exit = branching.getAlternative();
+        } else if (branching.getCondition() == BranchingCondition.GREATER_OR_EQUAL
+                && branching.getAlternative() == block) {
+            exit = branching.getConsequent();
+        } else {
+            return null;
+        }
+        if (exit == block || exit == preheader) {
+            return null;
+        }
+
+        BinaryInstruction comparison = getBinaryDefinition(branching.getOperand(), block, BinaryOperation.COMPARE);
+        if (comparison == null) {
+            return null;
+        }
+        Variable limit = resolveCopies(comparison.getSecondOperand());
+        if (definitionPlaces[limit.getIndex()] == block) {
+            return null;
+        }
+        BinaryInstruction increment = getBinaryDefinition(comparison.getFirstOperand(), block, BinaryOperation.ADD);
+        if (increment == null) {
+            return null;
+        }
+
+        Phi counter = null;
+        for (Phi phi : block.getPhis()) {
+            if (phi.getIncomings().size() != 2) {
+                return null;
+            }
+            if (resolveCopies(getIncoming(phi, block)) == increment.getReceiver()) {
+                counter = phi;
+            }
+        }
+        if (counter == null) {
+            return null;
+        }
+        Variable stepVar;
+        if (resolveCopies(increment.getFirstOperand()) == counter.getReceiver()) {
+            stepVar = increment.getSecondOperand();
+        } else if (resolveCopies(increment.getSecondOperand()) == counter.getReceiver()) {
+            stepVar = increment.getFirstOperand();
+        } else {
+            return null;
+        }
+        Instruction stepDefinition = definitions[resolveCopies(stepVar).getIndex()];
+        if (!(stepDefinition instanceof IntegerConstantInstruction)) {
+            return null;
+        }
+        int step = ((IntegerConstantInstruction) stepDefinition).getConstant();
+        if (step <= 0 || (long) step * (factor - 1) > Integer.MAX_VALUE / 2) {
+            return null;
+        }
+
+        CountedLoop loop = new CountedLoop();
+        loop.block = block;
+        loop.preheader = preheader;
+        loop.exit = exit;
+        loop.counter = counter;
+        loop.limit = limit;
+        loop.step = step;
+        loop.location = branching.getLocation();
+        return loop;
+    }
+
+    private BinaryInstruction getBinaryDefinition(Variable var, BasicBlock block, BinaryOperation operation) {
+        Instruction insn = definitions[resolveCopies(var).getIndex()];
+        if (!(insn instanceof BinaryInstruction) || insn.getBasicBlock() != block) {
+            return null;
+        }
+        BinaryInstruction binary = (BinaryInstruction) insn;
+        return binary.getOperation() == operation && binary.getOperandType() == NumericOperandType.INT
+                ? binary
+                : null;
+    }
+
+    // Merging blocks leaves copies of former phis, so values are compared modulo copying
+    private Variable resolveCopies(Variable var) {
+        while (definitions[var.getIndex()] instanceof AssignInstruction) {
+            var = ((AssignInstruction) definitions[var.getIndex()]).getAssignee();
+        }
+        return var;
+    }
+
+    private Instruction[] getDefinitions() {
+        Instruction[] result = new Instruction[program.variableCount()];
+        DefinitionExtractor definitionExtractor = new DefinitionExtractor();
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            for (Instruction insn : program.basicBlockAt(i).getInstructions()) {
+                insn.acceptVisitor(definitionExtractor);
+                for (Variable var : definitionExtractor.getDefinedVariables()) {
+                    result[var.getIndex()] = insn;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static Variable getIncoming(Phi phi, BasicBlock source) {
+        for (Incoming incoming : phi.getIncomings()) {
+            if (incoming.getSource() == source) {
+                return incoming.getValue();
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Loop is taken out of SSA form, so that phis become assignments to state variables
+     * at the end of preheader and at the end of each copy of body. Produces the following layout:
+     *
+     *     preheader:  state := initial values; goto guard
+     *     guard:      limit := n - (factor - 1) * step; if limit < n then goto entry else goto loop
+     *     entry:      if i < limit then goto unrolled else goto loop
+     *     unrolled:   body; ... body; goto check
+     *     check:      if i < limit then goto unrolled else goto exitCheck
+     *     exitCheck:  if i < n then goto loop else goto exit
+     *     loop:       body; if i < n then goto loop else goto exit
+     *
+     * The first condition in guard fails only when computing limit overflows. SSA is rebuilt afterwards.
+     */
+    private void unroll(CountedLoop loop) {
+        BasicBlock block = loop.block;
+        List<Phi> phis = new ArrayList<>(block.getPhis());
+        Variable[] state = new Variable[phis.size()];
+        Variable counterState = null;
+        List<Instruction> preheaderAssignments = new ArrayList<>();
+        List<Instruction> headAssignments = new ArrayList<>();
+        List<Instruction> tailAssignments = new ArrayList<>();
+        for (int i = 0; i < phis.size(); ++i) {
+            Phi phi = phis.get(i);
+            state[i] = program.createVariable();
+            if (phi == loop.counter) {
+                counterState = state[i];
+            }
+            preheaderAssignments.add(assign(getIncoming(phi, loop.preheader), state[i], loop.location));
+            headAssignments.add(assign(state[i], phi.getReceiver(), loop.location));
+            tailAssignments.add(assign(getIncoming(phi, block), state[i], loop.location));
+        }
+        block.getPhis().clear();
+
+        List<Instruction> preheaderInstructions = loop.preheader.getInstructions();
+        preheaderInstructions.addAll(preheaderInstructions.size() - 1, preheaderAssignments);
+        block.getInstructions().addAll(0, headAssignments);
+        block.getInstructions().addAll(block.getInstructions().size() - 1, tailAssignments);
+
+        BasicBlock guard = program.createBasicBlock();
+        BasicBlock entry = program.createBasicBlock();
+        BasicBlock unrolled = program.createBasicBlock();
+        BasicBlock check = program.createBasicBlock();
+        BasicBlock exitCheck = program.createBasicBlock();
+
+        loop.preheader.getLastInstruction().acceptVisitor(new BasicBlockMapper(
+                target -> target == block.getIndex() ? guard.getIndex() : target));
+
+        IntegerConstantInstruction distance = new IntegerConstantInstruction();
+        distance.setConstant(loop.step * (factor - 1));
+        distance.setReceiver(program.createVariable());
+        distance.setLocation(loop.location);
+        guard.getInstructions().add(distance);
+        BinaryInstruction subtraction = new BinaryInstruction(BinaryOperation.SUBTRACT, NumericOperandType.INT);
+        subtraction.setFirstOperand(loop.limit);
+        subtraction.setSecondOperand(distance.getReceiver());
+        subtraction.setReceiver(program.createVariable());
+        subtraction.setLocation(loop.location);
+        guard.getInstructions().add(subtraction);
+        Variable unrolledLimit = subtraction.getReceiver();
+        addLessThan(guard, unrolledLimit, loop.limit, entry, block, loop.location);
+
+        addLessThan(entry, counterState, unrolledLimit, unrolled, block, loop.location);
+
+        int bodySize = block.getInstructions().size() - 1;
+        for (int i = 0; i < factor; ++i) {
+            for (Instruction insn : ProgramUtils.copyInstructions(block, 0, bodySize, program)) {
+                if (!(insn instanceof EmptyInstruction)) {
+                    unrolled.getInstructions().add(insn);
+                }
+            }
+        }
+        JumpInstruction jump = new JumpInstruction();
+        jump.setTarget(check);
+        jump.setLocation(loop.location);
+        unrolled.getInstructions().add(jump);
+
+        addLessThan(check, counterState, unrolledLimit, unrolled, exitCheck, loop.location);
+        addLessThan(exitCheck, counterState, loop.limit, block, loop.exit, loop.location);
+
+        for (Phi phi : loop.exit.getPhis()) {
+            Variable value = getIncoming(phi, block);
+            if (value != null) {
+                Incoming incoming = new Incoming();
+                incoming.setSource(exitCheck);
+                incoming.setValue(value);
+                phi.getIncomings().add(incoming);
+            }
+        }
+    }
+
+    private static AssignInstruction assign(Variable value, Variable receiver, TextLocation location) {
+        AssignInstruction insn = new AssignInstruction();
+        insn.setAssignee(value);
+        insn.setReceiver(receiver);
+        insn.setLocation(location);
+        return insn;
+    }
+
+    private void addLessThan(BasicBlock block, Variable a, Variable b, BasicBlock consequent,
+            BasicBlock alternative, TextLocation location) {
+        BinaryInstruction comparison = new BinaryInstruction(BinaryOperation.COMPARE, NumericOperandType.INT);
+        comparison.setFirstOperand(a);
+        comparison.setSecondOperand(b);
+        comparison.setReceiver(program.createVariable());
+        comparison.setLocation(location);
+        block.getInstructions().add(comparison);
+
+        BranchingInstruction branching = new BranchingInstruction(BranchingCondition.LESS);
+        branching.setOperand(comparison.getReceiver());
+        branching.setConsequent(consequent);
+        branching.setAlternative(alternative);
+        branching.setLocation(location);
+        block.getInstructions().add(branching);
+    }
+
+    static class CountedLoop {
+        BasicBlock block;
+        BasicBlock preheader;
+        BasicBlock exit;
+        Phi counter;
+        Variable limit;
+        int step;
+        TextLocation location;
+    }
+}
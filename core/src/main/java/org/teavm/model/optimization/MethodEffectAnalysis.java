@@ -0,0 +1,354 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.model.optimization;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import org.teavm.common.Graph;
+import org.teavm.common.GraphBuilder;
+import org.teavm.common.IntegerArray;
+import org.teavm.interop.Pure;
+import org.teavm.model.BasicBlock;
+import org.teavm.model.ClassHolder;
+import org.teavm.model.ElementModifier;
+import org.teavm.model.FieldHolder;
+import org.teavm.model.FieldReference;
+import org.teavm.model.Instruction;
+import org.teavm.model.InvokeDynamicInstruction;
+import org.teavm.model.ListableClassHolderSource;
+import org.teavm.model.MethodDescriptor;
+import org.teavm.model.MethodHolder;
+import org.teavm.model.MethodReference;
+import org.teavm.model.Program;
+import org.teavm.model.instructions.BinaryInstruction;
+import org.teavm.model.instructions.BinaryOperation;
+import org.teavm.model.instructions.CastInstruction;
+import org.teavm.model.instructions.CloneArrayInstruction;
+import org.teavm.model.instructions.ConstructArrayInstruction;
+import org.teavm.model.instructions.ConstructInstruction;
+import org.teavm.model.instructions.ConstructMultiArrayInstruction;
+import org.teavm.model.instructions.GetElementInstruction;
+import org.teavm.model.instructions.GetFieldInstruction;
+import org.teavm.model.instructions.InitClassInstruction;
+import org.teavm.model.instructions.InvocationType;
+import org.teavm.model.instructions.InvokeInstruction;
+import org.teavm.model.instructions.MonitorEnterInstruction;
+import org.teavm.model.instructions.MonitorExitInstruction;
+import org.teavm.model.instructions.NullCheckInstruction;
+import org.teavm.model.instructions.NumericOperandType;
+import org.teavm.model.instructions.PutElementInstruction;
+import org.teavm.model.instructions.PutFieldInstruction;
+import org.teavm.model.instructions.RaiseInstruction;
+import org.teavm.model.util.ProgramUtils;
+
+/**
+ * <p>Whole-program analysis that computes {@link MethodEffects} of every method with a program.
+ * Effects of a method are effects of its instructions combined with effects of methods it calls directly,
+ * computed iteratively until they stop changing.</p>
+ *
+ * <p>Reading a final field is not considered a memory read, as the field can't change after
+ * the object is constructed, unless the caller itself stores to final fields. Such caller is a constructor
+ * or a static initializer (or a method they were inlined into) that may call a method reading the field
+ * both before and after the field is assigned.</p>
+ *
+ * <p>A method that contains a loop, calls itself directly or through other methods, or calls such method
+ * may not terminate, so calls to it are never removed, even if they have no other effects.</p>
+ *
+ * <p>Virtual calls, calls to native methods and initialization of classes with static initializers
+ * are considered to have any effect, unless the called method is marked with {@link Pure}. This includes
+ * calls to constructors, since that is where generated code initializes a class. Exceptions
+ * that backends don't check for, such as null dereference or out of bounds array access, are not taken
+ * into account.</p>
+ */
+public class MethodEffectAnalysis {
+    private static final MethodDescriptor CLINIT = new MethodDescriptor("<clinit>", void.class);
+    private static final int READS_FINAL_FIELDS = 32;
+    private ListableClassHolderSource classes;
+    private Map<MethodReference, MethodHolder> methods = new HashMap<>();
+    private Map<MethodReference, Integer> effects = new HashMap<>();
+    private Set<MethodReference> finalFieldWriters = new HashSet<>();
+    private Set<MethodReference> looping = new HashSet<>();
+    private Map<MethodReference, Set<MethodReference>> callers = new HashMap<>();
+
+    public MethodEffectAnalysis(ListableClassHolderSource classes) {
+        this.classes = classes;
+        analyze();
+    }
+
+    /**
+     * Gets effects of calling a method.
+     *
+     * @param method called method.
+     * @param caller method that contains the call.
+     */
+    public MethodEffects getEffects(MethodReference method, MethodReference caller) {
+        Integer flags = effects.get(method);
+        if (flags == null) {
+            return MethodEffects.UNKNOWN;
+        }
+        flags = inContextOf(flags, caller);
+        if (initializesClass(method)) {
+            flags |= getInitializationEffects(caller.getClassName(), method.getClassName());
+        }
+        return MethodEffects.of(flags & ~READS_FINAL_FIELDS);
+    }
+
+    private boolean initializesClass(MethodReference method) {
+        if (method.getName().equals("<init>")) {
+            // Backends initialize class when calling its constructor rather than when allocating an instance
+            return true;
+        }
+        ClassHolder cls = classes.get(method.getClassName());
+        MethodHolder methodHolder = cls != null ? cls.getMethod(method.getDescriptor()) : null;
+        return methodHolder == null || methodHolder.hasModifier(ElementModifier.STATIC);
+    }
+
+    private int inContextOf(int flags, MethodReference caller) {
+        if ((flags & READS_FINAL_FIELDS) != 0 && finalFieldWriters.contains(caller)) {
+            flags = (flags & ~READS_FINAL_FIELDS) | MethodEffects.READS_MEMORY;
+        }
+        return flags;
+    }
+
+    private void analyze() {
+        Queue<MethodReference> worklist = new ArrayDeque<>();
+        Set<MethodReference> queued = new LinkedHashSet<>();
+        for (String className : classes.getClassNames()) {
+            for (MethodHolder method : classes.get(className).getMethods()) {
+                if (method.getAnnotations().get(Pure.class.getName()) != null) {
+                    effects.put(method.getReference(), 0);
+                } else if (method.getProgram() != null && method.getProgram().basicBlockCount() > 0) {
+                    methods.put(method.getReference(), method);
+                    effects.put(method.getReference(), 0);
+                    worklist.add(method.getReference());
+                    queued.add(method.getReference());
+                    if (writesFinalFields(method.getProgram())) {
+                        finalFieldWriters.add(method.getReference());
+                    }
+                }
+            }
+        }
+
+        findLoopingMethods();
+
+        while (!worklist.isEmpty()) {
+            MethodReference methodRef = worklist.remove();
+            queued.remove(methodRef);
+            int flags = computeEffects(methods.get(methodRef));
+            if (flags != effects.get(methodRef)) {
+                effects.put(methodRef, flags);
+                for (MethodReference caller : callers.getOrDefault(methodRef, new HashSet<>())) {
+                    if (queued.add(caller)) {
+                        worklist.add(caller);
+                    }
+                }
+            }
+        }
+
+        methods.clear();
+        callers.clear();
+        looping.clear();
+    }
+
+    /*
+     * Finds methods that contain a loop or that start a cycle of calls. Other methods of the cycle and
+     * their callers don't terminate either, but they get this effect from the callee.
+     */
+    private void findLoopingMethods() {
+        List<MethodReference> methodList = new ArrayList<>(methods.keySet());
+        Map<MethodReference, Integer> indexes = new HashMap<>();
+        for (int i = 0; i < methodList.size(); ++i) {
+            indexes.put(methodList.get(i), i);
+        }
+
+        GraphBuilder callGraph = new GraphBuilder(methodList.size());
+        for (int i = 0; i < methodList.size(); ++i) {
+            Program program = methods.get(methodList.get(i)).getProgram();
+            if (findBackEdgeSources(ProgramUtils.buildControlFlowGraph(program), 0).length > 0) {
+                looping.add(methodList.get(i));
+            }
+            for (int j = 0; j < program.basicBlockCount(); ++j) {
+                for (Instruction insn : program.basicBlockAt(j).getInstructions()) {
+                    if (insn instanceof InvokeInstruction) {
+                        Integer callee = indexes.get(((InvokeInstruction) insn).getMethod());
+                        if (callee != null) {
+                            callGraph.addEdge(i, callee);
+                        }
+                    }
+                }
+            }
+        }
+
+        int[] roots = new int[methodList.size()];
+        for (int i = 0; i < roots.length; ++i) {
+            roots[i] = i;
+        }
+        for (int caller : findBackEdgeSources(callGraph.build(), roots)) {
+            looping.add(methodList.get(caller));
+        }
+    }
+
+    /*
+     * Depth-first search that reports nodes having an edge to a node which is being visited. Every cycle
+     * reachable from roots contains at least one of such nodes.
+     */
+    private static int[] findBackEdgeSources(Graph graph, int... roots) {
+        byte[] state = new byte[graph.size()];
+        int[] edgeIndex = new int[graph.size()];
+        int[] path = new int[graph.size()];
+        IntegerArray result = new IntegerArray(1);
+        for (int root : roots) {
+            if (state[root] != 0) {
+                continue;
+            }
+            int pathSize = 0;
+            path[pathSize++] = root;
+            state[root] = 1;
+            while (pathSize > 0) {
+                int node = path[pathSize - 1];
+                int[] successors = graph.outgoingEdges(node);
+                if (edgeIndex[node] == successors.length) {
+                    state[node] = 2;
+                    --pathSize;
+                    continue;
+                }
+                int next = successors[edgeIndex[node]++];
+                if (state[next] == 0) {
+                    state[next] = 1;
+                    path[pathSize++] = next;
+                } else if (state[next] == 1) {
+                    result.add(node);
+                }
+            }
+        }
+        return result.getAll();
+    }
+
+    private int computeEffects(MethodHolder method) {
+        int flags = 0;
+        if (method.hasModifier(ElementModifier.SYNCHRONIZED)) {
+            flags |= MethodEffects.WRITES_MEMORY;
+        }
+        if (looping.contains(method.getReference())) {
+            flags |= MethodEffects.MAY_NOT_TERMINATE;
+        }
+        Program program = method.getProgram();
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            BasicBlock block = program.basicBlockAt(i);
+            for (Instruction insn : block.getInstructions()) {
+                flags |= getEffects(method, insn);
+                if ((flags & MethodEffects.ALL) == MethodEffects.ALL) {
+                    return inContextOf(flags, method.getReference());
+                }
+            }
+        }
+        return inContextOf(flags, method.getReference());
+    }
+
+    private boolean writesFinalFields(Program program) {
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            for (Instruction insn : program.basicBlockAt(i).getInstructions()) {
+                if (insn instanceof PutFieldInstruction && isFinal(((PutFieldInstruction) insn).getField())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private int getEffects(MethodHolder method, Instruction insn) {
+        if (insn instanceof PutFieldInstruction || insn instanceof PutElementInstruction
+                || insn instanceof MonitorEnterInstruction || insn instanceof MonitorExitInstruction) {
+            return MethodEffects.WRITES_MEMORY;
+        } else if (insn instanceof GetFieldInstruction) {
+            return isFinal(((GetFieldInstruction) insn).getField()) ? READS_FINAL_FIELDS : MethodEffects.READS_MEMORY;
+        } else if (insn instanceof GetElementInstruction) {
+            return MethodEffects.READS_MEMORY;
+        } else if (insn instanceof ConstructInstruction) {
+            return MethodEffects.ALLOCATES
+                    | getInitializationEffects(method.getOwnerName(), ((ConstructInstruction) insn).getType());
+        } else if (insn instanceof ConstructArrayInstruction || insn instanceof ConstructMultiArrayInstruction
+                || insn instanceof CloneArrayInstruction) {
+            return MethodEffects.ALLOCATES;
+        } else if (insn instanceof InitClassInstruction) {
+            return getInitializationEffects(method.getOwnerName(), ((InitClassInstruction) insn).getClassName());
+        } else if (insn instanceof RaiseInstruction || insn instanceof NullCheckInstruction
+                || insn instanceof CastInstruction) {
+            return MethodEffects.THROWS;
+        } else if (insn instanceof BinaryInstruction) {
+            BinaryInstruction binary = (BinaryInstruction) insn;
+            boolean integer = binary.getOperandType() == NumericOperandType.INT
+                    || binary.getOperandType() == NumericOperandType.LONG;
+            boolean division = binary.getOperation() == BinaryOperation.DIVIDE
+                    || binary.getOperation() == BinaryOperation.MODULO;
+            return integer && division ? MethodEffects.THROWS : 0;
+        } else if (insn instanceof InvokeInstruction) {
+            return getInvocationEffects(method, (InvokeInstruction) insn);
+        } else if (insn instanceof InvokeDynamicInstruction) {
+            return MethodEffects.ALL;
+        }
+        return 0;
+    }
+
+    private int getInvocationEffects(MethodHolder method, InvokeInstruction invoke) {
+        MethodReference callee = invoke.getMethod();
+        Integer calleeFlags = effects.get(callee);
+        if (calleeFlags == null) {
+            return MethodEffects.ALL;
+        }
+        if (invoke.getType() == InvocationType.VIRTUAL) {
+            ClassHolder cls = classes.get(callee.getClassName());
+            MethodHolder calleeMethod = cls != null ? cls.getMethod(callee.getDescriptor()) : null;
+            if (calleeMethod == null || !calleeMethod.hasModifier(ElementModifier.FINAL)
+                    && !cls.hasModifier(ElementModifier.FINAL)) {
+                return MethodEffects.ALL;
+            }
+        }
+        callers.computeIfAbsent(callee, k -> new HashSet<>()).add(method.getReference());
+        int flags = calleeFlags;
+        if (invoke.getInstance() == null || callee.getName().equals("<init>")) {
+            flags |= getInitializationEffects(method.getOwnerName(), callee.getClassName());
+        }
+        return flags;
+    }
+
+    private boolean isFinal(FieldReference fieldRef) {
+        ClassHolder cls = classes.get(fieldRef.getClassName());
+        FieldHolder field = cls != null ? cls.getField(fieldRef.getFieldName()) : null;
+        return field != null && field.hasModifier(ElementModifier.FINAL);
+    }
+
+    private int getInitializationEffects(String ownerName, String className) {
+        if (classes.isSuperType(className, ownerName).orElse(false)) {
+            return 0;
+        }
+        while (className != null) {
+            ClassHolder cls = classes.get(className);
+            if (cls == null || cls.getMethod(CLINIT) != null) {
+                return MethodEffects.ALL;
+            }
+            className = cls.getParent();
+        }
+        return 0;
+    }
+}
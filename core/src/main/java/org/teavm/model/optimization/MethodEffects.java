@@ -0,0 +1,88 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.model.optimization;
+
+/**
+ * <p>Summary of effects that a call to a method may have, as computed by {@link MethodEffectAnalysis}.</p>
+ */
+public final class MethodEffects {
+    static final int READS_MEMORY = 1;
+    static final int WRITES_MEMORY = 2;
+    static final int ALLOCATES = 4;
+    static final int THROWS = 8;
+    static final int MAY_NOT_TERMINATE = 16;
+    static final int ALL = READS_MEMORY | WRITES_MEMORY | ALLOCATES | THROWS | MAY_NOT_TERMINATE;
+
+    public static final MethodEffects NONE = new MethodEffects(0);
+    public static final MethodEffects UNKNOWN = new MethodEffects(ALL);
+
+    private final int flags;
+
+    private MethodEffects(int flags) {
+        this.flags = flags;
+    }
+
+    static MethodEffects of(int flags) {
+        return flags == 0 ? NONE : flags == ALL ? UNKNOWN : new MethodEffects(flags);
+    }
+
+    int getFlags() {
+        return flags;
+    }
+
+    public boolean readsMemory() {
+        return (flags & READS_MEMORY) != 0;
+    }
+
+    public boolean writesMemory() {
+        return (flags & WRITES_MEMORY) != 0;
+    }
+
+    public boolean allocates() {
+        return (flags & ALLOCATES) != 0;
+    }
+
+    public boolean mayThrow() {
+        return (flags & THROWS) != 0;
+    }
+
+    /**
+     * Tells whether the method contains a loop or is recursive, so that it is not known to return.
+     */
+    public boolean mayNotTerminate() {
+        return (flags & MAY_NOT_TERMINATE) != 0;
+    }
+
+    /**
+     * Tells whether result of the call depends only on its arguments and the call has no other effects,
+     * so that a call can be replaced with result of a preceding call with equal arguments. Such call is
+     * not necessarily safe to move or remove, since it may not terminate.
+     */
+    public boolean isPure() {
+        return (flags & ~MAY_NOT_TERMINATE) == 0;
+    }
+
+    public boolean isReadOnly() {
+        return !writesMemory();
+    }
+
+    /**
+     * Tells whether the call can be removed when its result is not used.
+     */
+    public boolean isRemovable() {
+        return !writesMemory() && !mayThrow() && !mayNotTerminate();
+    }
+}
@@ -0,0 +1,391 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.model.optimization;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.teavm.model.BasicBlock;
+import org.teavm.model.FieldReference;
+import org.teavm.model.Incoming;
+import org.teavm.model.Instruction;
+import org.teavm.model.MethodReader;
+import org.teavm.model.MethodReference;
+import org.teavm.model.Phi;
+import org.teavm.model.Program;
+import org.teavm.model.TryCatchBlock;
+import org.teavm.model.TryCatchJoint;
+import org.teavm.model.ValueType;
+import org.teavm.model.Variable;
+import org.teavm.model.instructions.AssignInstruction;
+import org.teavm.model.instructions.ConstructInstruction;
+import org.teavm.model.instructions.DoubleConstantInstruction;
+import org.teavm.model.instructions.EmptyInstruction;
+import org.teavm.model.instructions.FloatConstantInstruction;
+import org.teavm.model.instructions.GetFieldInstruction;
+import org.teavm.model.instructions.InitClassInstruction;
+import org.teavm.model.instructions.IntegerConstantInstruction;
+import org.teavm.model.instructions.InvocationType;
+import org.teavm.model.instructions.InvokeInstruction;
+import org.teavm.model.instructions.LongConstantInstruction;
+import org.teavm.model.instructions.NullCheckInstruction;
+import org.teavm.model.instructions.NullConstantInstruction;
+import org.teavm.model.instructions.PutFieldInstruction;
+import org.teavm.model.util.PhiUpdater;
+import org.teavm.model.util.UsageExtractor;
+
+/**
+ * <p>Replaces objects that never leave the method by a set of local variables, one per field.</p>
+ *
+ * <p>An allocation is considered non-escaping when its value (or a copy of it, produced by assignment
+ * or null check) is only used as an instance of field reads and writes and of the trivial
+ * <code>Object</code> constructor. Such allocation becomes class initialization followed by default
+ * values of its fields, field reads and writes become assignments, and SSA form is restored
+ * by {@link PhiUpdater}.</p>
+ */
+public class ScalarReplacement implements MethodOptimization {
+    private static final MethodReference OBJECT_CONSTRUCTOR = new MethodReference(Object.class, "<init>", void.class);
+    private Program program;
+    private int[] allocations;
+    private boolean[] escaping;
+    private List<Map<String, FieldInfo>> fields;
+
+    @Override
+    public boolean optimize(MethodReader method, Program program) {
+        this.program = program;
+        findAllocations();
+        boolean found = false;
+        if (fields != null) {
+            findEscapingAllocations();
+            for (int i = 0; i < escaping.length; ++i) {
+                if (allocations[i] == i && !escaping[i]) {
+                    found = true;
+                    break;
+                }
+            }
+        }
+
+        if (found) {
+            replaceAllocations();
+            Variable[] inputs = new Variable[method.parameterCount() + 1];
+            for (int i = 0; i < inputs.length; ++i) {
+                inputs[i] = program.variableAt(i);
+            }
+            new PhiUpdater().updatePhis(program, inputs);
+        }
+
+        this.program = null;
+        allocations = null;
+        escaping = null;
+        fields = null;
+        return found;
+    }
+
+    private void findAllocations() {
+        allocations = new int[program.variableCount()];
+        Arrays.fill(allocations, -1);
+        boolean hasAllocations = false;
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            for (Instruction insn : program.basicBlockAt(i).getInstructions()) {
+                if (insn instanceof ConstructInstruction) {
+                    int receiver = ((ConstructInstruction) insn).getReceiver().getIndex();
+                    allocations[receiver] = receiver;
+                    hasAllocations = true;
+                }
+            }
+        }
+        if (!hasAllocations) {
+            return;
+        }
+
+        boolean changed;
+        do {
+            changed = false;
+            for (int i = 0; i < program.basicBlockCount(); ++i) {
+                BasicBlock block = program.basicBlockAt(i);
+                for (Phi phi : block.getPhis()) {
+                    List<Variable> sources = new ArrayList<>();
+                    for (Incoming incoming : phi.getIncomings()) {
+                        sources.add(incoming.getValue());
+                    }
+                    changed |= propagateAllocation(sources, phi.getReceiver());
+                }
+                for (Instruction insn : block.getInstructions()) {
+                    if (insn instanceof AssignInstruction) {
+                        AssignInstruction assign = (AssignInstruction) insn;
+                        changed |= propagateAllocation(Arrays.asList(assign.getAssignee()), assign.getReceiver());
+                    } else if (insn instanceof NullCheckInstruction) {
+                        NullCheckInstruction nullCheck = (NullCheckInstruction) insn;
+                        changed |= propagateAllocation(Arrays.asList(nullCheck.getValue()), nullCheck.getReceiver());
+                    }
+                }
+                for (TryCatchBlock tryCatch : block.getTryCatchBlocks()) {
+                    for (TryCatchJoint joint : tryCatch.getJoints()) {
+                        changed |= propagateAllocation(joint.getSourceVariables(), joint.getReceiver());
+                    }
+                }
+            }
+        } while (changed);
+
+        escaping = new boolean[program.variableCount()];
+        fields = new ArrayList<>(program.variableCount());
+        for (int i = 0; i < program.variableCount(); ++i) {
+            fields.add(allocations[i] == i ? new LinkedHashMap<>() : null);
+        }
+    }
+
+    // Receiver becomes a copy of allocation when all its sources refer to that allocation.
+    // Phis may refer to own receiver, e.g. when object is created before loop and used inside.
+    private boolean propagateAllocation(List<Variable> sources, Variable receiver) {
+        int allocation = -1;
+        for (Variable source : sources) {
+            if (source == receiver) {
+                continue;
+            }
+            int sourceAllocation = allocations[source.getIndex()];
+            if (sourceAllocation < 0 || (allocation >= 0 && allocation != sourceAllocation)) {
+                return false;
+            }
+            allocation = sourceAllocation;
+        }
+        if (allocation < 0 || allocations[receiver.getIndex()] == allocation) {
+            return false;
+        }
+        allocations[receiver.getIndex()] = allocation;
+        return true;
+    }
+
+    private void findEscapingAllocations() {
+        UsageExtractor usageExtractor = new UsageExtractor();
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            BasicBlock block = program.basicBlockAt(i);
+            for (Phi phi : block.getPhis()) {
+                for (Incoming incoming : phi.getIncomings()) {
+                    markEscapingUnlessCopied(incoming.getValue(), phi.getReceiver());
+                }
+            }
+            for (TryCatchBlock tryCatch : block.getTryCatchBlocks()) {
+                for (TryCatchJoint joint : tryCatch.getJoints()) {
+                    for (Variable sourceVar : joint.getSourceVariables()) {
+                        markEscapingUnlessCopied(sourceVar, joint.getReceiver());
+                    }
+                }
+            }
+
+            for (Instruction insn : block.getInstructions()) {
+                if (insn instanceof GetFieldInstruction) {
+                    GetFieldInstruction getField = (GetFieldInstruction) insn;
+                    if (getField.getInstance() != null) {
+                        useField(getField.getInstance(), getField.getField(), getField.getFieldType());
+                    }
+                } else if (insn instanceof PutFieldInstruction) {
+                    PutFieldInstruction putField = (PutFieldInstruction) insn;
+                    if (putField.getInstance() != null) {
+                        useField(putField.getInstance(), putField.getField(), putField.getFieldType());
+                    }
+                    markEscaping(putField.getValue());
+                } else if (isObjectConstructor(insn)) {
+                    continue;
+                } else if (!(insn instanceof AssignInstruction) && !(insn instanceof NullCheckInstruction)) {
+                    insn.acceptVisitor(usageExtractor);
+                    for (Variable var : usageExtractor.getUsedVariables()) {
+                        markEscaping(var);
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean isObjectConstructor(Instruction insn) {
+        if (!(insn instanceof InvokeInstruction)) {
+            return false;
+        }
+        InvokeInstruction invoke = (InvokeInstruction) insn;
+        return invoke.getType() == InvocationType.SPECIAL && invoke.getMethod().equals(OBJECT_CONSTRUCTOR);
+    }
+
+    private void markEscaping(Variable var) {
+        int allocation = allocations[var.getIndex()];
+        if (allocation >= 0) {
+            escaping[allocation] = true;
+        }
+    }
+
+    private void markEscapingUnlessCopied(Variable source, Variable receiver) {
+        if (allocations[source.getIndex()] != allocations[receiver.getIndex()]) {
+            markEscaping(source);
+        }
+    }
+
+    private void useField(Variable instance, FieldReference field, ValueType type) {
+        int allocation = allocations[instance.getIndex()];
+        if (allocation < 0 || escaping[allocation]) {
+            return;
+        }
+        if (type == null) {
+            escaping[allocation] = true;
+            return;
+        }
+
+        // The same field may be referenced via subclass, while distinct fields with equal names
+        // may come from different classes of hierarchy. We can't tell these cases apart without
+        // class source, so give up when names collide.
+        Map<String, FieldInfo> allocationFields = fields.get(allocation);
+        FieldInfo info = allocationFields.get(field.getFieldName());
+        if (info == null) {
+            allocationFields.put(field.getFieldName(), new FieldInfo(field, type));
+        } else if (!info.field.equals(field)) {
+            escaping[allocation] = true;
+        }
+    }
+
+    private void replaceAllocations() {
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            BasicBlock block = program.basicBlockAt(i);
+            block.getPhis().removeIf(phi -> isReplaced(phi.getReceiver()));
+            for (TryCatchBlock tryCatch : block.getTryCatchBlocks()) {
+                tryCatch.getJoints().removeIf(joint -> isReplaced(joint.getReceiver()));
+            }
+            List<Instruction> instructions = block.getInstructions();
+            for (int j = 0; j < instructions.size(); ++j) {
+                Instruction insn = instructions.get(j);
+                if (insn instanceof ConstructInstruction) {
+                    ConstructInstruction construct = (ConstructInstruction) insn;
+                    int allocation = construct.getReceiver().getIndex();
+                    if (isReplaced(allocation)) {
+                        List<Instruction> replacement = initialize(construct, fields.get(allocation));
+                        instructions.set(j, replacement.get(0));
+                        instructions.addAll(j + 1, replacement.subList(1, replacement.size()));
+                        j += replacement.size() - 1;
+                    }
+                } else if (insn instanceof GetFieldInstruction) {
+                    GetFieldInstruction getField = (GetFieldInstruction) insn;
+                    FieldInfo info = getReplacedField(getField.getInstance(), getField.getField());
+                    if (info != null) {
+                        AssignInstruction assign = new AssignInstruction();
+                        assign.setAssignee(info.variable);
+                        assign.setReceiver(getField.getReceiver());
+                        assign.setLocation(getField.getLocation());
+                        instructions.set(j, assign);
+                    }
+                } else if (insn instanceof PutFieldInstruction) {
+                    PutFieldInstruction putField = (PutFieldInstruction) insn;
+                    FieldInfo info = getReplacedField(putField.getInstance(), putField.getField());
+                    if (info != null) {
+                        AssignInstruction assign = new AssignInstruction();
+                        assign.setAssignee(putField.getValue());
+                        assign.setReceiver(info.variable);
+                        assign.setLocation(putField.getLocation());
+                        instructions.set(j, assign);
+                    }
+                } else if (isObjectConstructor(insn)) {
+                    if (isReplaced(((InvokeInstruction) insn).getInstance())) {
+                        removeInstruction(instructions, j);
+                    }
+                } else if (insn instanceof AssignInstruction) {
+                    if (isReplaced(((AssignInstruction) insn).getAssignee())) {
+                        removeInstruction(instructions, j);
+                    }
+                } else if (insn instanceof NullCheckInstruction) {
+                    if (isReplaced(((NullCheckInstruction) insn).getValue())) {
+                        removeInstruction(instructions, j);
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean isReplaced(Variable var) {
+        int allocation = allocations[var.getIndex()];
+        return allocation >= 0 && isReplaced(allocation);
+    }
+
+    private boolean isReplaced(int allocation) {
+        return allocation >= 0 && !escaping[allocation];
+    }
+
+    private FieldInfo getReplacedField(Variable instance, FieldReference field) {
+        if (instance == null || !isReplaced(instance)) {
+            return null;
+        }
+        return fields.get(allocations[instance.getIndex()]).get(field.getFieldName());
+    }
+
+    private void removeInstruction(List<Instruction> instructions, int index) {
+        EmptyInstruction empty = new EmptyInstruction();
+        empty.setLocation(instructions.get(index).getLocation());
+        instructions.set(index, empty);
+    }
+
+    private List<Instruction> initialize(ConstructInstruction construct, Map<String, FieldInfo> allocationFields) {
+        List<Instruction> result = new ArrayList<>();
+        InitClassInstruction initClass = new InitClassInstruction();
+        initClass.setClassName(construct.getType());
+        initClass.setLocation(construct.getLocation());
+        result.add(initClass);
+
+        for (FieldInfo info : allocationFields.values()) {
+            info.variable = program.createVariable();
+            Instruction defaultValue = createDefaultValue(info.type, info.variable);
+            defaultValue.setLocation(construct.getLocation());
+            result.add(defaultValue);
+        }
+        return result;
+    }
+
+    private static Instruction createDefaultValue(ValueType type, Variable receiver) {
+        if (type instanceof ValueType.Primitive) {
+            switch (((ValueType.Primitive) type).getKind()) {
+                case LONG: {
+                    LongConstantInstruction insn = new LongConstantInstruction();
+                    insn.setReceiver(receiver);
+                    return insn;
+                }
+                case FLOAT: {
+                    FloatConstantInstruction insn = new FloatConstantInstruction();
+                    insn.setReceiver(receiver);
+                    return insn;
+                }
+                case DOUBLE: {
+                    DoubleConstantInstruction insn = new DoubleConstantInstruction();
+                    insn.setReceiver(receiver);
+                    return insn;
+                }
+                default: {
+                    IntegerConstantInstruction insn = new IntegerConstantInstruction();
+                    insn.setReceiver(receiver);
+                    return insn;
+                }
+            }
+        }
+        NullConstantInstruction insn = new NullConstantInstruction();
+        insn.setReceiver(receiver);
+        return insn;
+    }
+
+    static class FieldInfo {
+        final FieldReference field;
+        final ValueType type;
+        Variable variable;
+
+        FieldInfo(FieldReference field, ValueType type) {
+            this.field = field;
+            this.type = type;
+        }
+    }
+}
@@ -0,0 +1,698 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.model.optimization;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.teavm.common.IntegerStack;
+import org.teavm.model.BasicBlock;
+import org.teavm.model.Incoming;
+import org.teavm.model.Instruction;
+import org.teavm.model.MethodReader;
+import org.teavm.model.Phi;
+import org.teavm.model.Program;
+import org.teavm.model.TryCatchBlock;
+import org.teavm.model.TryCatchJoint;
+import org.teavm.model.Variable;
+import org.teavm.model.instructions.AssignInstruction;
+import org.teavm.model.instructions.BinaryBranchingCondition;
+import org.teavm.model.instructions.BinaryBranchingInstruction;
+import org.teavm.model.instructions.BinaryInstruction;
+import org.teavm.model.instructions.BinaryOperation;
+import org.teavm.model.instructions.BranchingCondition;
+import org.teavm.model.instructions.BranchingInstruction;
+import org.teavm.model.instructions.CastIntegerDirection;
+import org.teavm.model.instructions.CastIntegerInstruction;
+import org.teavm.model.instructions.CastNumberInstruction;
+import org.teavm.model.instructions.DoubleConstantInstruction;
+import org.teavm.model.instructions.FloatConstantInstruction;
+import org.teavm.model.instructions.IntegerConstantInstruction;
+import org.teavm.model.instructions.JumpInstruction;
+import org.teavm.model.instructions.LongConstantInstruction;
+import org.teavm.model.instructions.NegateInstruction;
+import org.teavm.model.instructions.NullCheckInstruction;
+import org.teavm.model.instructions.NullConstantInstruction;
+import org.teavm.model.instructions.NumericOperandType;
+import org.teavm.model.instructions.StringConstantInstruction;
+import org.teavm.model.instructions.SwitchInstruction;
+import org.teavm.model.instructions.SwitchTableEntry;
+import org.teavm.model.util.DefinitionExtractor;
+import org.teavm.model.util.InstructionTransitionExtractor;
+import org.teavm.model.util.UsageExtractor;
+
+/**
+ * <p>Sparse conditional constant propagation, as described by Wegman and Zadeck.</p>
+ *
+ * <p>Simultaneously finds variables that hold the same constant on every executable path and CFG edges
+ * that can ever be taken. Constants are propagated through arithmetic, numeric casts, assignments and phis,
+ * where only incomings along executable edges are taken into account. Afterwards, constant variables are
+ * defined by constant instructions and branches with a single executable edge are replaced by jumps,
+ * which leaves never executed blocks to {@link UnreachableBasicBlockElimination}.</p>
+ */
+public class SparseConditionalConstantPropagation implements MethodOptimization {
+    private static final Object OVERDEFINED = new Object();
+    private static final Object NULL = new Object();
+
+    private Program program;
+    private Object[] values;
+    private boolean[] executable;
+    private Set<Long> executableEdges = new HashSet<>();
+    private List<List<BasicBlock>> usages;
+    private IntegerStack worklist;
+    private boolean[] queued;
+    private InstructionTransitionExtractor transitionExtractor = new InstructionTransitionExtractor();
+    private DefinitionExtractor definitionExtractor = new DefinitionExtractor();
+
+    @Override
+    public boolean optimize(MethodReader method, Program program) {
+        if (program.basicBlockCount() == 0) {
+            return false;
+        }
+        this.program = program;
+        values = new Object[program.variableCount()];
+        executable = new boolean[program.basicBlockCount()];
+        queued = new boolean[program.basicBlockCount()];
+        worklist = new IntegerStack(program.basicBlockCount());
+        executableEdges.clear();
+        prepare(method);
+
+        markExecutable(program.basicBlockAt(0));
+        while (!worklist.isEmpty()) {
+            int index = worklist.pop();
+            queued[index] = false;
+            process(program.basicBlockAt(index));
+        }
+
+        boolean changed = rewrite();
+
+        this.program = null;
+        values = null;
+        executable = null;
+        queued = null;
+        worklist = null;
+        usages = null;
+        executableEdges.clear();
+        return changed;
+    }
+
+    private void prepare(MethodReader method) {
+        for (int i = 0; i <= method.parameterCount() && i < values.length; ++i) {
+            values[i] = OVERDEFINED;
+        }
+
+        usages = new ArrayList<>(program.variableCount());
+        for (int i = 0; i < program.variableCount(); ++i) {
+            usages.add(new ArrayList<>());
+        }
+        UsageExtractor usageExtractor = new UsageExtractor();
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            BasicBlock block = program.basicBlockAt(i);
+            if (block.getExceptionVariable() != null) {
+                values[block.getExceptionVariable().getIndex()] = OVERDEFINED;
+            }
+            for (Phi phi : block.getPhis()) {
+                for (Incoming incoming : phi.getIncomings()) {
+                    usages.get(incoming.getValue().getIndex()).add(block);
+                }
+            }
+            for (Instruction insn : block.getInstructions()) {
+                insn.acceptVisitor(usageExtractor);
+                for (Variable var : usageExtractor.getUsedVariables()) {
+                    usages.get(var.getIndex()).add(block);
+                }
+            }
+            for (TryCatchBlock tryCatch : block.getTryCatchBlocks()) {
+                for (TryCatchJoint joint : tryCatch.getJoints()) {
+                    values[joint.getReceiver().getIndex()] = OVERDEFINED;
+                }
+            }
+        }
+    }
+
+    private void markExecutable(BasicBlock block) {
+        executable[block.getIndex()] = true;
+        enqueue(block);
+    }
+
+    private void enqueue(BasicBlock block) {
+        if (executable[block.getIndex()] && !queued[block.getIndex()]) {
+            queued[block.getIndex()] = true;
+            worklist.push(block.getIndex());
+        }
+    }
+
+    private void markEdge(BasicBlock from, BasicBlock to) {
+        if (executableEdges.add(edgeKey(from, to))) {
+            if (!executable[to.getIndex()]) {
+                markExecutable(to);
+            } else {
+                enqueue(to);
+            }
+        }
+    }
+
+    private long edgeKey(BasicBlock from, BasicBlock to) {
+        return ((long) from.getIndex() << 32) | to.getIndex();
+    }
+
+    private void setValue(Variable var, Object value) {
+        if (value == null) {
+            return;
+        }
+        Object oldValue = values[var.getIndex()];
+        if (oldValue == OVERDEFINED || value.equals(oldValue)) {
+            return;
+        }
+        values[var.getIndex()] = oldValue == null ? value : OVERDEFINED;
+        for (BasicBlock usage : usages.get(var.getIndex())) {
+            enqueue(usage);
+        }
+    }
+
+    private Object valueOf(Variable var) {
+        return values[var.getIndex()];
+    }
+
+    private void process(BasicBlock block) {
+        for (Phi phi : block.getPhis()) {
+            Object value = null;
+            for (Incoming incoming : phi.getIncomings()) {
+                if (!executableEdges.contains(edgeKey(incoming.getSource(), block))) {
+                    continue;
+                }
+                Object incomingValue = valueOf(incoming.getValue());
+                if (incomingValue == null) {
+                    continue;
+                }
+                if (value == null) {
+                    value = incomingValue;
+                } else if (!value.equals(incomingValue)) {
+                    value = OVERDEFINED;
+                    break;
+                }
+            }
+            setValue(phi.getReceiver(), value);
+        }
+
+        for (Instruction insn : block.getInstructions()) {
+            evaluate(insn);
+        }
+
+        for (TryCatchBlock tryCatch : block.getTryCatchBlocks()) {
+            markEdge(block, tryCatch.getHandler());
+        }
+        Instruction lastInsn = block.getLastInstruction();
+        if (lastInsn != null) {
+            for (BasicBlock target : getTargets(lastInsn)) {
+                markEdge(block, target);
+            }
+        }
+    }
+
+    private void evaluate(Instruction insn) {
+        if (insn instanceof IntegerConstantInstruction) {
+            IntegerConstantInstruction constant = (IntegerConstantInstruction) insn;
+            setValue(constant.getReceiver(), constant.getConstant());
+        } else if (insn instanceof LongConstantInstruction) {
+            LongConstantInstruction constant = (LongConstantInstruction) insn;
+            setValue(constant.getReceiver(), constant.getConstant());
+        } else if (insn instanceof FloatConstantInstruction) {
+            FloatConstantInstruction constant = (FloatConstantInstruction) insn;
+            setValue(constant.getReceiver(), constant.getConstant());
+        } else if (insn instanceof DoubleConstantInstruction) {
+            DoubleConstantInstruction constant = (DoubleConstantInstruction) insn;
+            setValue(constant.getReceiver(), constant.getConstant());
+        } else if (insn instanceof StringConstantInstruction) {
+            StringConstantInstruction constant = (StringConstantInstruction) insn;
+            setValue(constant.getReceiver(), constant.getConstant());
+        } else if (insn instanceof NullConstantInstruction) {
+            setValue(((NullConstantInstruction) insn).getReceiver(), NULL);
+        } else if (insn instanceof AssignInstruction) {
+            AssignInstruction assign = (AssignInstruction) insn;
+            setValue(assign.getReceiver(), valueOf(assign.getAssignee()));
+        } else if (insn instanceof NullCheckInstruction) {
+            NullCheckInstruction nullCheck = (NullCheckInstruction) insn;
+            Object value = valueOf(nullCheck.getValue());
+            setValue(nullCheck.getReceiver(), value == NULL ? OVERDEFINED : value);
+        } else if (insn instanceof BinaryInstruction) {
+            BinaryInstruction binary = (BinaryInstruction) insn;
+            Object first = valueOf(binary.getFirstOperand());
+            Object second = valueOf(binary.getSecondOperand());
+            if (first == null || second == null) {
+                return;
+            }
+            setValue(binary.getReceiver(), evaluateBinary(binary.getOperation(), binary.getOperandType(),
+                    first, second));
+        } else if (insn instanceof NegateInstruction) {
+            NegateInstruction negate = (NegateInstruction) insn;
+            Object operand = valueOf(negate.getOperand());
+            if (operand == null) {
+                return;
+            }
+            setValue(negate.getReceiver(), evaluateNegate(negate.getOperandType(), operand));
+        } else if (insn instanceof CastNumberInstruction) {
+            CastNumberInstruction cast = (CastNumberInstruction) insn;
+            Object operand = valueOf(cast.getValue());
+            if (operand == null) {
+                return;
+            }
+            setValue(cast.getReceiver(), evaluateCast(cast.getSourceType(), cast.getTargetType(), operand));
+        } else if (insn instanceof CastIntegerInstruction) {
+            CastIntegerInstruction cast = (CastIntegerInstruction) insn;
+            Object operand = valueOf(cast.getValue());
+            if (operand == null) {
+                return;
+            }
+            setValue(cast.getReceiver(), evaluateIntegerCast(cast, operand));
+        } else {
+            insn.acceptVisitor(definitionExtractor);
+            for (Variable var : definitionExtractor.getDefinedVariables()) {
+                setValue(var, OVERDEFINED);
+            }
+        }
+    }
+
+    private Object evaluateBinary(BinaryOperation operation, NumericOperandType type, Object first, Object second) {
+        if (!(first instanceof Number) || !(second instanceof Number)) {
+            return OVERDEFINED;
+        }
+        Number a = (Number) first;
+        Number b = (Number) second;
+        switch (type) {
+            case INT: {
+                int p = a.intValue();
+                int q = b.intValue();
+                switch (operation) {
+                    case ADD:
+                        return p + q;
+                    case SUBTRACT:
+                        return p - q;
+                    case MULTIPLY:
+                        return p * q;
+                    case DIVIDE:
+                        return q != 0 ? p / q : OVERDEFINED;
+                    case MODULO:
+                        return q != 0 ? p % q : OVERDEFINED;
+                    case COMPARE:
+                        return Integer.compare(p, q);
+                    case AND:
+                        return p & q;
+                    case OR:
+                        return p | q;
+                    case XOR:
+                        return p ^ q;
+                    case SHIFT_LEFT:
+                        return p << q;
+                    case SHIFT_RIGHT:
+                        return p >> q;
+                    case SHIFT_RIGHT_UNSIGNED:
+                        return p >>> q;
+                }
+                break;
+            }
+            case LONG: {
+                long p = a.longValue();
+                long q = b.longValue();
+                switch (operation) {
+                    case ADD:
+                        return p + q;
+                    case SUBTRACT:
+                        return p - q;
+                    case MULTIPLY:
+                        return p * q;
+                    case DIVIDE:
+                        return q != 0 ? p / q : OVERDEFINED;
+                    case MODULO:
+                        return q != 0 ? p % q : OVERDEFINED;
+                    case COMPARE:
+                        return Long.compare(p, q);
+                    case AND:
+                        return p & q;
+                    case OR:
+                        return p | q;
+                    case XOR:
+                        return p ^ q;
+                    case SHIFT_LEFT:
+                        return p << b.intValue();
+                    case SHIFT_RIGHT:
+                        return p >> b.intValue();
+                    case SHIFT_RIGHT_UNSIGNED:
+                        return p >>> b.intValue();
+                }
+                break;
+            }
+            case FLOAT:
+                // JavaScript backend computes float arithmetic in double precision and does not round results
+                // to float, so only comparisons, which are exact in both precisions, are folded
+                if (operation == BinaryOperation.COMPARE) {
+                    return compareFloating(a.floatValue(), b.floatValue());
+                }
+                break;
+            case DOUBLE: {
+                double p = a.doubleValue();
+                double q = b.doubleValue();
+                switch (operation) {
+                    case ADD:
+                        return p + q;
+                    case SUBTRACT:
+                        return p - q;
+                    case MULTIPLY:
+                        return p * q;
+                    case DIVIDE:
+                        return p / q;
+                    case MODULO:
+                        return p % q;
+                    case COMPARE:
+                        return compareFloating(p, q);
+                    default:
+                        break;
+                }
+                break;
+            }
+        }
+        return OVERDEFINED;
+    }
+
+    // Unlike Double.compare, treats zeros of different signs as equal. Result for NaN depends on
+    // bytecode instruction (fcmpl or fcmpg), which is not preserved by model, so NaN is not folded.
+    private static Object compareFloating(double p, double q) {
+        if (Double.isNaN(p) || Double.isNaN(q)) {
+            return OVERDEFINED;
+        }
+        return p > q ? 1 : p < q ? -1 : 0;
+    }
+
+    private Object evaluateNegate(NumericOperandType type, Object operand) {
+        if (!(operand instanceof Number)) {
+            return OVERDEFINED;
+        }
+        Number value = (Number) operand;
+        switch (type) {
+            case INT:
+                return -value.intValue();
+            case LONG:
+                return -value.longValue();
+            case FLOAT:
+                return -value.floatValue();
+            case DOUBLE:
+                return -value.doubleValue();
+        }
+        return OVERDEFINED;
+    }
+
+    // Conversions from floating point to integer numbers are not folded, since JavaScript backend
+    // does not saturate them as JVM does, and folding would change observed behaviour.
+    // For the same reason conversions to float are not folded: JavaScript backend does not round to float.
+    private Object evaluateCast(NumericOperandType sourceType, NumericOperandType targetType, Object operand) {
+        if (!(operand instanceof Number)) {
+            return OVERDEFINED;
+        }
+        Number value = (Number) operand;
+        boolean fromFloating = sourceType == NumericOperandType.FLOAT || sourceType == NumericOperandType.DOUBLE;
+        switch (targetType) {
+            case INT:
+                return fromFloating ? OVERDEFINED : value.intValue();
+            case LONG:
+                return fromFloating ? OVERDEFINED : value.longValue();
+            case FLOAT:
+                return sourceType == NumericOperandType.FLOAT ? value.floatValue() : OVERDEFINED;
+            case DOUBLE:
+                return value.doubleValue();
+        }
+        return OVERDEFINED;
+    }
+
+    private Object evaluateIntegerCast(CastIntegerInstruction cast, Object operand) {
+        if (!(operand instanceof Integer)) {
+            return OVERDEFINED;
+        }
+        int value = (Integer) operand;
+        if (cast.getDirection() == CastIntegerDirection.TO_INTEGER) {
+            return value;
+        }
+        switch (cast.getTargetType()) {
+            case BYTE:
+                return (int) (byte) value;
+            case SHORT:
+                return (int) (short) value;
+            case CHARACTER:
+                return (int) (char) value;
+        }
+        return OVERDEFINED;
+    }
+
+    private List<BasicBlock> getTargets(Instruction insn) {
+        List<BasicBlock> targets = new ArrayList<>();
+        if (insn instanceof BranchingInstruction) {
+            BranchingInstruction branching = (BranchingInstruction) insn;
+            Object value = valueOf(branching.getOperand());
+            if (value == null) {
+                return targets;
+            }
+            Boolean condition = evaluateCondition(branching.getCondition(), value);
+            if (condition == null || condition) {
+                targets.add(branching.getConsequent());
+            }
+            if (condition == null || !condition) {
+                targets.add(branching.getAlternative());
+            }
+        } else if (insn instanceof BinaryBranchingInstruction) {
+            BinaryBranchingInstruction branching = (BinaryBranchingInstruction) insn;
+            Object first = valueOf(branching.getFirstOperand());
+            Object second = valueOf(branching.getSecondOperand());
+            if (first == null || second == null) {
+                return targets;
+            }
+            Boolean condition = evaluateBinaryCondition(branching, first, second);
+            if (condition == null || condition) {
+                targets.add(branching.getConsequent());
+            }
+            if (condition == null || !condition) {
+                targets.add(branching.getAlternative());
+            }
+        } else if (insn instanceof SwitchInstruction) {
+            SwitchInstruction switchInsn = (SwitchInstruction) insn;
+            Object value = valueOf(switchInsn.getCondition());
+            if (value == null) {
+                return targets;
+            }
+            if (value instanceof Integer) {
+                targets.add(getSwitchTarget(switchInsn, (Integer) value));
+            } else {
+                for (SwitchTableEntry entry : switchInsn.getEntries()) {
+                    targets.add(entry.getTarget());
+                }
+                targets.add(switchInsn.getDefaultTarget());
+            }
+        } else {
+            insn.acceptVisitor(transitionExtractor);
+            if (transitionExtractor.getTargets() != null) {
+                for (BasicBlock target : transitionExtractor.getTargets()) {
+                    targets.add(target);
+                }
+            }
+        }
+        return targets;
+    }
+
+    private static BasicBlock getSwitchTarget(SwitchInstruction insn, int value) {
+        for (SwitchTableEntry entry : insn.getEntries()) {
+            if (entry.getCondition() == value) {
+                return entry.getTarget();
+            }
+        }
+        return insn.getDefaultTarget();
+    }
+
+    private static Boolean evaluateCondition(BranchingCondition condition, Object value) {
+        switch (condition) {
+            case NULL:
+                return value == NULL ? Boolean.TRUE : value instanceof String ? Boolean.FALSE : null;
+            case NOT_NULL:
+                return value == NULL ? Boolean.FALSE : value instanceof String ? Boolean.TRUE : null;
+            default:
+                break;
+        }
+        if (!(value instanceof Integer)) {
+            return null;
+        }
+        int constant = (Integer) value;
+        switch (condition) {
+            case EQUAL:
+                return constant == 0;
+            case NOT_EQUAL:
+                return constant != 0;
+            case LESS:
+                return constant < 0;
+            case LESS_OR_EQUAL:
+                return constant <= 0;
+            case GREATER:
+                return constant > 0;
+            case GREATER_OR_EQUAL:
+                return constant >= 0;
+            default:
+                return null;
+        }
+    }
+
+    private static Boolean evaluateBinaryCondition(BinaryBranchingInstruction insn, Object first, Object second) {
+        switch (insn.getCondition()) {
+            case EQUAL:
+            case NOT_EQUAL:
+                if (first instanceof Integer && second instanceof Integer) {
+                    boolean equal = first.equals(second);
+                    return insn.getCondition() == BinaryBranchingCondition.EQUAL ? equal : !equal;
+                }
+                break;
+            case REFERENCE_EQUAL:
+            case REFERENCE_NOT_EQUAL:
+                if ((first == NULL || first instanceof String) && (second == NULL || second instanceof String)
+                        && (first == NULL || second == NULL)) {
+                    boolean equal = first == second;
+                    return insn.getCondition() == BinaryBranchingCondition.REFERENCE_EQUAL ? equal : !equal;
+                }
+                break;
+        }
+        return null;
+    }
+
+    private boolean rewrite() {
+        boolean changed = false;
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            if (!executable[i]) {
+                continue;
+            }
+            BasicBlock block = program.basicBlockAt(i);
+
+            List<Instruction> phiReplacements = new ArrayList<>();
+            for (int j = 0; j < block.getPhis().size(); ++j) {
+                Phi phi = block.getPhis().get(j);
+                Instruction constant = createConstant(phi.getReceiver());
+                if (constant != null) {
+                    phiReplacements.add(constant);
+                    block.getPhis().remove(j--);
+                }
+            }
+
+            List<Instruction> instructions = block.getInstructions();
+            for (int j = 0; j < instructions.size() - 1; ++j) {
+                Instruction insn = instructions.get(j);
+                Variable receiver = getFoldableReceiver(insn);
+                if (receiver == null) {
+                    continue;
+                }
+                Instruction constant = createConstant(receiver);
+                if (constant != null) {
+                    constant.setLocation(insn.getLocation());
+                    instructions.set(j, constant);
+                    changed = true;
+                }
+            }
+
+            if (!phiReplacements.isEmpty()) {
+                instructions.addAll(0, phiReplacements);
+                changed = true;
+            }
+
+            changed |= rewriteTransition(block);
+        }
+        return changed;
+    }
+
+    private boolean rewriteTransition(BasicBlock block) {
+        Instruction lastInsn = block.getLastInstruction();
+        if (!(lastInsn instanceof BranchingInstruction) && !(lastInsn instanceof BinaryBranchingInstruction)
+                && !(lastInsn instanceof SwitchInstruction)) {
+            return false;
+        }
+        List<BasicBlock> targets = getTargets(lastInsn);
+        if (targets.size() != 1) {
+            return false;
+        }
+        BasicBlock target = targets.get(0);
+
+        lastInsn.acceptVisitor(transitionExtractor);
+        Set<BasicBlock> droppedTargets = new HashSet<>();
+        for (BasicBlock oldTarget : transitionExtractor.getTargets()) {
+            if (oldTarget != target) {
+                droppedTargets.add(oldTarget);
+            }
+        }
+        for (BasicBlock droppedTarget : droppedTargets) {
+            droppedTarget.removeIncomingsFrom(block);
+        }
+
+        JumpInstruction jump = new JumpInstruction();
+        jump.setTarget(target);
+        jump.setLocation(lastInsn.getLocation());
+        block.getInstructions().set(block.getInstructions().size() - 1, jump);
+        return true;
+    }
+
+    private static Variable getFoldableReceiver(Instruction insn) {
+        if (insn instanceof AssignInstruction) {
+            return ((AssignInstruction) insn).getReceiver();
+        } else if (insn instanceof NullCheckInstruction) {
+            return ((NullCheckInstruction) insn).getReceiver();
+        } else if (insn instanceof BinaryInstruction) {
+            return ((BinaryInstruction) insn).getReceiver();
+        } else if (insn instanceof NegateInstruction) {
+            return ((NegateInstruction) insn).getReceiver();
+        } else if (insn instanceof CastNumberInstruction) {
+            return ((CastNumberInstruction) insn).getReceiver();
+        } else if (insn instanceof CastIntegerInstruction) {
+            return ((CastIntegerInstruction) insn).getReceiver();
+        }
+        return null;
+    }
+
+    private Instruction createConstant(Variable receiver) {
+        Object value = valueOf(receiver);
+        if (value instanceof Integer) {
+            IntegerConstantInstruction insn = new IntegerConstantInstruction();
+            insn.setConstant((Integer) value);
+            insn.setReceiver(receiver);
+            return insn;
+        } else if (value instanceof Long) {
+            LongConstantInstruction insn = new LongConstantInstruction();
+            insn.setConstant((Long) value);
+            insn.setReceiver(receiver);
+            return insn;
+        } else if (value instanceof Float) {
+            FloatConstantInstruction insn = new FloatConstantInstruction();
+            insn.setConstant((Float) value);
+            insn.setReceiver(receiver);
+            return insn;
+        } else if (value instanceof Double) {
+            DoubleConstantInstruction insn = new DoubleConstantInstruction();
+            insn.setConstant((Double) value);
+            insn.setReceiver(receiver);
+            return insn;
+        } else if (value instanceof String) {
+            StringConstantInstruction insn = new StringConstantInstruction();
+            insn.setConstant((String) value);
+            insn.setReceiver(receiver);
+            return insn;
+        } else if (value == NULL) {
+            NullConstantInstruction insn = new NullConstantInstruction();
+            insn.setReceiver(receiver);
+            return insn;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,319 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.model.optimization;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import org.teavm.callgraph.CallGraphNode;
+import org.teavm.callgraph.FieldAccessSite;
+import org.teavm.dependency.DependencyInfo;
+import org.teavm.interop.Structure;
+import org.teavm.model.BasicBlock;
+import org.teavm.model.ClassHolder;
+import org.teavm.model.FieldHolder;
+import org.teavm.model.FieldReader;
+import org.teavm.model.FieldReference;
+import org.teavm.model.Instruction;
+import org.teavm.model.ListableClassHolderSource;
+import org.teavm.model.MethodHolder;
+import org.teavm.model.MethodReference;
+import org.teavm.model.Program;
+import org.teavm.model.ValueType;
+import org.teavm.model.Variable;
+import org.teavm.model.instructions.AssignInstruction;
+import org.teavm.model.instructions.DoubleConstantInstruction;
+import org.teavm.model.instructions.EmptyInstruction;
+import org.teavm.model.instructions.FloatConstantInstruction;
+import org.teavm.model.instructions.GetFieldInstruction;
+import org.teavm.model.instructions.InitClassInstruction;
+import org.teavm.model.instructions.IntegerConstantInstruction;
+import org.teavm.model.instructions.LongConstantInstruction;
+import org.teavm.model.instructions.NullConstantInstruction;
+import org.teavm.model.instructions.PutFieldInstruction;
+import org.teavm.model.util.DefinitionExtractor;
+
+/**
+ * <p>Removes fields that can't affect program behavior, along with instructions that access them.
+ * These are fields that are never read, and fields that are only assigned their default value
+ * (zero, <code>false</code> or <code>null</code>), whose reads are replaced by that value. Fields assigned
+ * another single value are kept, since a read may happen before the store, and only default value is
+ * observed by every read. Fields that are read but never written are kept, since they are usually
+ * initialized by native code.</p>
+ *
+ * <p>Fields linked by host code (entry points and backends), fields linked by generators, injectors and
+ * dependency plugins (as reported by call graph), annotated fields, which may be looked up by tools,
+ * and fields of {@link Structure}s, whose layout is significant, are kept.</p>
+ *
+ * <p>Note that removed instance field accesses no longer throw when the instance is <code>null</code>.
+ * Backends don't insert null checks for field access anyway, so {@link NullPointerException} is not
+ * guaranteed there, and a correct program can't tell the difference.</p>
+ */
+public class UnusedFieldElimination {
+    private static final Object NULL = new Object();
+
+    private ListableClassHolderSource classes;
+    private DependencyInfo dependency;
+    private Predicate<FieldReference> rootFields;
+    private Map<Program, String> programs = new HashMap<>();
+    private Map<FieldReference, List<GetFieldInstruction>> reads = new HashMap<>();
+    private Map<FieldReference, List<PutFieldInstruction>> writes = new HashMap<>();
+    private Set<FieldReference> pinnedFields = new HashSet<>();
+    private Map<Program, Instruction[]> definitions = new HashMap<>();
+
+    public UnusedFieldElimination(ListableClassHolderSource classes, DependencyInfo dependency,
+            Predicate<FieldReference> rootFields) {
+        this.classes = classes;
+        this.dependency = dependency;
+        this.rootFields = rootFields;
+    }
+
+    public void apply() {
+        Map<MethodReference, Program> methodPrograms = new HashMap<>();
+        for (String className : classes.getClassNames()) {
+            for (MethodHolder method : classes.get(className).getMethods()) {
+                if (method.getProgram() != null) {
+                    programs.put(method.getProgram(), className);
+                    methodPrograms.put(method.getReference(), method.getProgram());
+                }
+            }
+        }
+        collectAccesses();
+        pinFieldsAccessedByPlugins(methodPrograms);
+
+        for (String className : classes.getClassNames()) {
+            ClassHolder cls = classes.get(className);
+            if (classes.isSuperType(Structure.class.getName(), className).orElse(false)) {
+                continue;
+            }
+            for (FieldHolder field : cls.getFields().toArray(new FieldHolder[0])) {
+                FieldReference fieldRef = field.getReference();
+                if (pinnedFields.contains(fieldRef) || rootFields.test(fieldRef)
+                        || field.getAnnotations().all().iterator().hasNext()) {
+                    continue;
+                }
+                List<GetFieldInstruction> fieldReads = reads.getOrDefault(fieldRef, new ArrayList<>());
+                List<PutFieldInstruction> fieldWrites = writes.getOrDefault(fieldRef, new ArrayList<>());
+                if (!fieldReads.isEmpty() && (fieldWrites.isEmpty() || !hasDefaultValue(field, fieldWrites))) {
+                    continue;
+                }
+                for (PutFieldInstruction write : fieldWrites) {
+                    removeWrite(write);
+                }
+                for (GetFieldInstruction read : fieldReads) {
+                    replaceRead(read, field.getType());
+                }
+                cls.removeField(field);
+            }
+        }
+
+        programs.clear();
+        reads.clear();
+        writes.clear();
+        pinnedFields.clear();
+        definitions.clear();
+    }
+
+    /*
+     * Call graph has field access sites for all fields linked on behalf of a method. Sites that don't
+     * correspond to instructions of the method's own program come from generators, injectors and dependency
+     * plugins, which produce code that is invisible to this pass.
+     */
+    private void pinFieldsAccessedByPlugins(Map<MethodReference, Program> methodPrograms) {
+        for (MethodReference method : dependency.getReachableMethods()) {
+            CallGraphNode node = dependency.getCallGraph().getNode(method);
+            if (node == null) {
+                continue;
+            }
+            Set<FieldReference> programFields = getAccessedFields(methodPrograms.get(method));
+            for (FieldAccessSite accessSite : node.getFieldAccessSites()) {
+                FieldReference field = resolve(accessSite.getField());
+                if (!programFields.contains(field)) {
+                    pinnedFields.add(field);
+                }
+            }
+        }
+    }
+
+    private Set<FieldReference> getAccessedFields(Program program) {
+        Set<FieldReference> fields = new HashSet<>();
+        if (program == null) {
+            return fields;
+        }
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            for (Instruction insn : program.basicBlockAt(i).getInstructions()) {
+                if (insn instanceof GetFieldInstruction) {
+                    fields.add(resolve(((GetFieldInstruction) insn).getField()));
+                } else if (insn instanceof PutFieldInstruction) {
+                    fields.add(resolve(((PutFieldInstruction) insn).getField()));
+                }
+            }
+        }
+        return fields;
+    }
+
+    private FieldReference resolve(FieldReference field) {
+        FieldReader resolved = classes.resolve(field);
+        return resolved != null ? resolved.getReference() : field;
+    }
+
+    private void collectAccesses() {
+        for (Program program : programs.keySet()) {
+            for (int i = 0; i < program.basicBlockCount(); ++i) {
+                for (Instruction insn : program.basicBlockAt(i).getInstructions()) {
+                    if (insn instanceof GetFieldInstruction) {
+                        GetFieldInstruction getField = (GetFieldInstruction) insn;
+                        reads.computeIfAbsent(getField.getField(), k -> new ArrayList<>()).add(getField);
+                    } else if (insn instanceof PutFieldInstruction) {
+                        PutFieldInstruction putField = (PutFieldInstruction) insn;
+                        writes.computeIfAbsent(putField.getField(), k -> new ArrayList<>()).add(putField);
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean hasDefaultValue(FieldHolder field, List<PutFieldInstruction> fieldWrites) {
+        if (field.getInitialValue() != null) {
+            return false;
+        }
+        Object defaultValue = getDefaultValue(field.getType());
+        for (PutFieldInstruction write : fieldWrites) {
+            if (!defaultValue.equals(getConstant(write.getValue(), write.getBasicBlock().getProgram()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Object getConstant(Variable var, Program program) {
+        Instruction[] programDefinitions = definitions.computeIfAbsent(program, this::getDefinitions);
+        Set<Variable> visited = new HashSet<>();
+        while (visited.add(var)) {
+            Instruction insn = programDefinitions[var.getIndex()];
+            if (insn instanceof AssignInstruction) {
+                var = ((AssignInstruction) insn).getAssignee();
+            } else if (insn instanceof IntegerConstantInstruction) {
+                return ((IntegerConstantInstruction) insn).getConstant();
+            } else if (insn instanceof LongConstantInstruction) {
+                return ((LongConstantInstruction) insn).getConstant();
+            } else if (insn instanceof FloatConstantInstruction) {
+                return ((FloatConstantInstruction) insn).getConstant();
+            } else if (insn instanceof DoubleConstantInstruction) {
+                return ((DoubleConstantInstruction) insn).getConstant();
+            } else if (insn instanceof NullConstantInstruction) {
+                return NULL;
+            } else {
+                break;
+            }
+        }
+        return null;
+    }
+
+    private Instruction[] getDefinitions(Program program) {
+        Instruction[] result = new Instruction[program.variableCount()];
+        DefinitionExtractor definitionExtractor = new DefinitionExtractor();
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            for (Instruction insn : program.basicBlockAt(i).getInstructions()) {
+                insn.acceptVisitor(definitionExtractor);
+                for (Variable var : definitionExtractor.getDefinedVariables()) {
+                    result[var.getIndex()] = insn;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static Object getDefaultValue(ValueType type) {
+        if (type instanceof ValueType.Primitive) {
+            switch (((ValueType.Primitive) type).getKind()) {
+                case LONG:
+                    return 0L;
+                case FLOAT:
+                    return 0F;
+                case DOUBLE:
+                    return 0.0;
+                default:
+                    return 0;
+            }
+        }
+        return NULL;
+    }
+
+    private void removeWrite(PutFieldInstruction write) {
+        Instruction replacement;
+        String className = write.getField().getClassName();
+        // Write to a static field of another class triggers initialization of that class
+        if (write.getInstance() == null && !className.equals(programs.get(write.getBasicBlock().getProgram()))) {
+            InitClassInstruction initClass = new InitClassInstruction();
+            initClass.setClassName(className);
+            replacement = initClass;
+        } else {
+            replacement = new EmptyInstruction();
+        }
+        replacement.setLocation(write.getLocation());
+        replaceInstruction(write, replacement);
+    }
+
+    private static void replaceRead(GetFieldInstruction read, ValueType type) {
+        Instruction replacement;
+        Variable receiver = read.getReceiver();
+        if (type instanceof ValueType.Primitive) {
+            switch (((ValueType.Primitive) type).getKind()) {
+                case LONG: {
+                    LongConstantInstruction constant = new LongConstantInstruction();
+                    constant.setReceiver(receiver);
+                    replacement = constant;
+                    break;
+                }
+                case FLOAT: {
+                    FloatConstantInstruction constant = new FloatConstantInstruction();
+                    constant.setReceiver(receiver);
+                    replacement = constant;
+                    break;
+                }
+                case DOUBLE: {
+                    DoubleConstantInstruction constant = new DoubleConstantInstruction();
+                    constant.setReceiver(receiver);
+                    replacement = constant;
+                    break;
+                }
+                default: {
+                    IntegerConstantInstruction constant = new IntegerConstantInstruction();
+                    constant.setReceiver(receiver);
+                    replacement = constant;
+                    break;
+                }
+            }
+        } else {
+            NullConstantInstruction constant = new NullConstantInstruction();
+            constant.setReceiver(receiver);
+            replacement = constant;
+        }
+        replacement.setLocation(read.getLocation());
+        replaceInstruction(read, replacement);
+    }
+
+    private static void replaceInstruction(Instruction insn, Instruction replacement) {
+        BasicBlock block = insn.getBasicBlock();
+        List<Instruction> instructions = block.getInstructions();
+        instructions.set(instructions.indexOf(insn), replacement);
+    }
+}
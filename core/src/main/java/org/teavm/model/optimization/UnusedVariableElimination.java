@@ -20,6 +20,15 @@ import org.teavm.model.*;
 import org.teavm.model.instructions.*;
 
 public class UnusedVariableElimination implements MethodOptimization {
+    private MethodEffectAnalysis methodEffects;
+
+    public UnusedVariableElimination() {
+    }
+
+    public UnusedVariableElimination(MethodEffectAnalysis methodEffects) {
+        this.methodEffects = methodEffects;
+    }
+
     @Override
     public boolean optimize(MethodReader method, Program program) {
         if (method.getProgram() == null) {
@@ -50,7 +59,7 @@ public class UnusedVariableElimination implements MethodOptimization {
             }
         }
 
-        InstructionOptimizer insnOptimizer = new InstructionOptimizer(used);
+        InstructionOptimizer insnOptimizer = new InstructionOptimizer(used, methodEffects, method.getReference());
         for (int i = 0; i < program.basicBlockCount(); ++i) {
             BasicBlock block = program.basicBlockAt(i);
             if (block.getExceptionVariable() != null && !used[block.getExceptionVariable().getIndex()]) {
@@ -87,10 +96,14 @@ public class UnusedVariableElimination implements MethodOptimization {
 
     private static class InstructionOptimizer implements InstructionVisitor {
         private boolean[] used;
+        private MethodEffectAnalysis methodEffects;
+        private MethodReference method;
         boolean eliminate;
 
-        public InstructionOptimizer(boolean[] used) {
+        public InstructionOptimizer(boolean[] used, MethodEffectAnalysis methodEffects, MethodReference method) {
             this.used = used;
+            this.methodEffects = methodEffects;
+            this.method = method;
         }
 
         private void requestUsage(Variable var) {
@@ -245,6 +258,10 @@ public class UnusedVariableElimination implements MethodOptimization {
             if (insn.getReceiver() != null && !used[insn.getReceiver().getIndex()]) {
                 insn.setReceiver(null);
             }
+            if (insn.getReceiver() == null && methodEffects != null && insn.getType() != InvocationType.VIRTUAL
+                    && methodEffects.getEffects(insn.getMethod(), method).isRemovable()) {
+                eliminate = true;
+            }
         }
 
         @Override
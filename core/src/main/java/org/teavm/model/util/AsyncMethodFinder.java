@@ -29,6 +29,7 @@ import org.teavm.callgraph.CallSite;
 import org.teavm.diagnostics.Diagnostics;
 import org.teavm.interop.Async;
 import org.teavm.interop.Sync;
+import org.teavm.model.AccessLevel;
 import org.teavm.model.CallLocation;
 import org.teavm.model.ClassReader;
 import org.teavm.model.ElementModifier;
@@ -102,6 +103,45 @@ public class AsyncMethodFinder {
                 asyncFamilyMethods.remove(entry.getKey());
             }
         }
+        boolean familyChanged;
+        do {
+            familyChanged = addInheritedToFamily();
+        } while (familyChanged);
+    }
+
+    /*
+     * A class may inherit implementation of a method from its superclass and declaration of the same method
+     * from an interface that superclass does not implement. Virtual call through either of them reaches
+     * the same implementation, so if any of them is in the family, all of them should be there.
+     */
+    private boolean addInheritedToFamily() {
+        boolean changed = false;
+        for (String clsName : classSource.getClassNames()) {
+            ClassReader cls = classSource.get(clsName);
+            if (cls.hasModifier(ElementModifier.INTERFACE)) {
+                continue;
+            }
+            Map<MethodDescriptor, List<MethodReference>> methodsByDescriptor = new HashMap<>();
+            classSource.getAncestors(clsName).forEach(ancestor -> {
+                for (MethodReader method : ancestor.getMethods()) {
+                    if (!method.hasModifier(ElementModifier.STATIC) && method.getLevel() != AccessLevel.PRIVATE
+                            && !method.getName().equals("<init>")) {
+                        methodsByDescriptor.computeIfAbsent(method.getDescriptor(), k -> new ArrayList<>())
+                                .add(method.getReference());
+                    }
+                }
+            });
+            for (List<MethodReference> methods : methodsByDescriptor.values()) {
+                if (methods.size() > 1 && methods.stream().anyMatch(asyncFamilyMethods::containsKey)) {
+                    for (MethodReference method : methods) {
+                        if (asyncFamilyMethods.put(method, true) == null) {
+                            changed = true;
+                        }
+                    }
+                }
+            }
+        }
+        return changed;
     }
 
     private boolean hasAsyncMethods() {
@@ -0,0 +1,95 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.runtime;
+
+/**
+ * <p>Counts executions of call sites in an application built with
+ * {@link org.teavm.model.optimization.CallProfileInstrumentation}. After the application has done
+ * representative work, it calls {@link #getProfile()} and saves the result somewhere, so that it can be passed
+ * to the next build as {@link org.teavm.model.optimization.CallProfile}.</p>
+ *
+ * <p>In a build without instrumentation nothing is counted and the profile is empty.</p>
+ */
+public final class CallProfiler {
+    private static int[] counts;
+
+    private CallProfiler() {
+    }
+
+    public static void count(int site) {
+        if (counts == null || site >= counts.length) {
+            grow(site);
+        }
+        if (counts[site] != Integer.MAX_VALUE) {
+            counts[site]++;
+        }
+    }
+
+    private static void grow(int site) {
+        int[] newCounts = new int[Math.max(site + 1, counts != null ? counts.length * 2 : 256)];
+        if (counts != null) {
+            for (int i = 0; i < counts.length; ++i) {
+                newCounts[i] = counts[i];
+            }
+        }
+        counts = newCounts;
+    }
+
+    /**
+     * Forgets everything counted so far, for example to exclude start-up of the application from profile.
+     */
+    public static void reset() {
+        counts = null;
+    }
+
+    /**
+     * Produces execution profile of all instrumented call sites, including the ones never executed.
+     *
+     * @return profile in the text format of {@link org.teavm.model.optimization.CallProfile}.
+     */
+    public static String getProfile() {
+        return getProfile(getSites());
+    }
+
+    static String getProfile(String sites) {
+        // Formatting calls instrumented methods of class library, which must not get into the profile
+        int[] recordedCounts = counts;
+        counts = null;
+        try {
+            StringBuilder sb = new StringBuilder();
+            int site = 0;
+            int start = 0;
+            while (start < sites.length()) {
+                int end = sites.indexOf('\n', start);
+                if (end < 0) {
+                    end = sites.length();
+                }
+                int count = recordedCounts != null && site < recordedCounts.length ? recordedCounts[site] : 0;
+                sb.append(count).append(' ').append(sites.substring(start, end)).append('\n');
+                ++site;
+                start = end + 1;
+            }
+            return sb.toString();
+        } finally {
+            counts = recordedCounts;
+        }
+    }
+
+    // Instrumentation replaces body of this method with descriptions of all call sites, one per line
+    private static String getSites() {
+        return "";
+    }
+}
@@ -50,16 +50,25 @@ import org.teavm.model.MutableClassHolderSource;
 import org.teavm.model.Program;
 import org.teavm.model.ProgramCache;
 import org.teavm.model.optimization.ArrayUnwrapMotion;
+import org.teavm.model.optimization.BoxingElimination;
+import org.teavm.model.optimization.CallProfile;
+import org.teavm.model.optimization.CallProfileInstrumentation;
 import org.teavm.model.optimization.ClassInitElimination;
 import org.teavm.model.optimization.ConstantConditionElimination;
 import org.teavm.model.optimization.Devirtualization;
 import org.teavm.model.optimization.GlobalValueNumbering;
 import org.teavm.model.optimization.Inlining;
+import org.teavm.model.optimization.InterproceduralConstantPropagation;
 import org.teavm.model.optimization.LoopInvariantMotion;
 import org.teavm.model.optimization.LoopInversion;
+import org.teavm.model.optimization.LoopUnrolling;
+import org.teavm.model.optimization.MethodEffectAnalysis;
 import org.teavm.model.optimization.MethodOptimization;
 import org.teavm.model.optimization.RedundantJumpElimination;
+import org.teavm.model.optimization.ScalarReplacement;
+import org.teavm.model.optimization.SparseConditionalConstantPropagation;
 import org.teavm.model.optimization.UnreachableBasicBlockElimination;
+import org.teavm.model.optimization.UnusedFieldElimination;
 import org.teavm.model.optimization.UnusedVariableElimination;
 import org.teavm.model.util.ListingBuilder;
 import org.teavm.model.util.MissingItemsProcessor;
@@ -113,6 +122,12 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
     private ProgramCache programCache;
     private boolean incremental;
     private TeaVMOptimizationLevel optimizationLevel = TeaVMOptimizationLevel.SIMPLE;
+    private CallProfile callProfile;
+    private boolean callProfileInstrumented;
+    private int polymorphismLimit = 3;
+    private int loopUnrollingFactor = 4;
+    private int loopUnrollingBudget = 120;
+    private MethodEffectAnalysis methodEffects;
     private TeaVMProgressListener progressListener;
     private boolean cancelled;
     private ListableClassHolderSource writtenClasses;
@@ -210,6 +225,70 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
         this.optimizationLevel = optimizationLevel;
     }
 
+    public CallProfile getCallProfile() {
+        return callProfile;
+    }
+
+    /**
+     * Sets execution profile of the application, recorded from a previous build. When set, hot call sites
+     * are inlined more aggressively and call sites that never executed are left as is. Call sites which
+     * the profile does not mention are inlined as usual.
+     */
+    public void setCallProfile(CallProfile callProfile) {
+        this.callProfile = callProfile;
+    }
+
+    public boolean isCallProfileInstrumented() {
+        return callProfileInstrumented;
+    }
+
+    /**
+     * Makes generated code count executions of call sites, so that application can record its profile
+     * by calling {@link org.teavm.runtime.CallProfiler#getProfile()} and pass it to the next build with
+     * {@link #setCallProfile(CallProfile)}. The next build should use the same optimization level.
+     * Has no effect in incremental mode.
+     */
+    public void setCallProfileInstrumented(boolean callProfileInstrumented) {
+        this.callProfileInstrumented = callProfileInstrumented;
+    }
+
+    public int getPolymorphismLimit() {
+        return polymorphismLimit;
+    }
+
+    /**
+     * Sets maximum number of implementations of a virtual call site that can be replaced by a chain
+     * of type checks and direct calls. Only takes effect at {@link TeaVMOptimizationLevel#FULL} level,
+     * where direct calls can be inlined afterwards.
+     */
+    public void setPolymorphismLimit(int polymorphismLimit) {
+        this.polymorphismLimit = polymorphismLimit;
+    }
+
+    public int getLoopUnrollingFactor() {
+        return loopUnrollingFactor;
+    }
+
+    /**
+     * Sets how many iterations of a counted loop are merged into one iteration of unrolled loop.
+     * Values less than 2 disable loop unrolling. Only takes effect at {@link TeaVMOptimizationLevel#FULL} level.
+     */
+    public void setLoopUnrollingFactor(int loopUnrollingFactor) {
+        this.loopUnrollingFactor = loopUnrollingFactor;
+    }
+
+    public int getLoopUnrollingBudget() {
+        return loopUnrollingBudget;
+    }
+
+    /**
+     * Sets maximum number of instructions in unrolled loop body. Loops that would exceed this size
+     * are not unrolled.
+     */
+    public void setLoopUnrollingBudget(int loopUnrollingBudget) {
+        this.loopUnrollingBudget = loopUnrollingBudget;
+    }
+
     public TeaVMProgressListener getProgressListener() {
         return progressListener;
     }
@@ -342,6 +421,9 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
 
         dependencyChecker.setInterruptor(() -> progressListener.progressReached(0) == TeaVMProgressFeedback.CONTINUE);
         target.contributeDependencies(dependencyChecker);
+        if (callProfileInstrumented && !incremental) {
+            dependencyChecker.linkMethod(CallProfileInstrumentation.COUNT_METHOD, null).use();
+        }
         dependencyChecker.processDependencies();
         if (wasCancelled() || !diagnostics.getSevereProblems().isEmpty()) {
             return;
@@ -362,15 +444,33 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
         reportPhase(TeaVMPhase.OPTIMIZATION, 1);
 
         if (!incremental) {
+            eliminateUnusedFields(classSet);
+            if (wasCancelled()) {
+                return;
+            }
+
             devirtualize(classSet, dependencyChecker);
             if (wasCancelled()) {
                 return;
             }
 
+            if (callProfileInstrumented) {
+                new CallProfileInstrumentation().apply(classSet);
+            }
+
             inline(classSet);
             if (wasCancelled()) {
                 return;
             }
+
+            propagateConstants(classSet);
+            if (wasCancelled()) {
+                return;
+            }
+
+            if (optimizationLevel != TeaVMOptimizationLevel.SIMPLE) {
+                methodEffects = new MethodEffectAnalysis(classSet);
+            }
         }
 
         optimize(classSet);
@@ -416,11 +516,21 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
         }
     }
 
+    private void eliminateUnusedFields(ListableClassHolderSource classes) {
+        if (optimizationLevel == TeaVMOptimizationLevel.SIMPLE) {
+            return;
+        }
+        new UnusedFieldElimination(classes, dependencyChecker, dependencyChecker::isReachedFromRoot).apply();
+    }
+
     private void devirtualize(ListableClassHolderSource classes, DependencyInfo dependency) {
         if (wasCancelled()) {
             return;
         }
         Devirtualization devirtualization = new Devirtualization(dependency, classes);
+        if (optimizationLevel == TeaVMOptimizationLevel.FULL) {
+            devirtualization.setPolymorphismLimit(polymorphismLimit);
+        }
         for (String className : classes.getClassNames()) {
             ClassHolder cls = classes.get(className);
             for (final MethodHolder method : cls.getMethods()) {
@@ -438,12 +548,12 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
         if (optimizationLevel != TeaVMOptimizationLevel.FULL) {
             return;
         }
-        Inlining inlining = new Inlining();
+        Inlining inlining = callProfile != null ? new Inlining(callProfile) : new Inlining();
         for (String className : classes.getClassNames()) {
             ClassHolder cls = classes.get(className);
             for (MethodHolder method : cls.getMethods()) {
                 if (method.getProgram() != null) {
-                    inlining.apply(method.getProgram(), classes);
+                    inlining.apply(method.getReference(), method.getProgram(), classes);
                 }
             }
             if (wasCancelled()) {
@@ -452,6 +562,14 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
         }
     }
 
+    private void propagateConstants(ListableClassHolderSource classes) {
+        if (optimizationLevel == TeaVMOptimizationLevel.SIMPLE) {
+            return;
+        }
+        new InterproceduralConstantPropagation(classes, dependencyChecker.getCallGraph(),
+                dependencyChecker::isReachedFromRoot).apply();
+    }
+
     private void optimize(ListableClassHolderSource classSource) {
         for (String className : classSource.getClassNames()) {
             ClassHolder cls = classSource.get(className);
@@ -476,9 +594,10 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
             optimizedProgram = ProgramUtils.copy(method.getProgram());
             if (optimizedProgram.basicBlockCount() > 0) {
                 boolean changed;
+                boolean firstRound = true;
                 do {
                     changed = false;
-                    for (MethodOptimization optimization : getOptimizations()) {
+                    for (MethodOptimization optimization : getOptimizations(firstRound)) {
                         try {
                             changed |= optimization.optimize(method, optimizedProgram);
                         } catch (Exception e) {
@@ -489,6 +608,7 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
                             throw new RuntimeException(e);
                         }
                     }
+                    firstRound = false;
                 } while (changed);
 
                 target.afterOptimizations(optimizedProgram, method, classSource);
@@ -504,19 +624,27 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
         method.setProgram(optimizedProgram);
     }
 
-    private List<MethodOptimization> getOptimizations() {
+    private List<MethodOptimization> getOptimizations(boolean firstRound) {
         List<MethodOptimization> optimizations = new ArrayList<>();
         optimizations.add(new RedundantJumpElimination());
         optimizations.add(new ArrayUnwrapMotion());
         if (optimizationLevel.ordinal() >= TeaVMOptimizationLevel.ADVANCED.ordinal()) {
             optimizations.add(new LoopInversion());
-            optimizations.add(new LoopInvariantMotion());
+            optimizations.add(new LoopInvariantMotion(methodEffects));
+        }
+        optimizations.add(new GlobalValueNumbering(optimizationLevel == TeaVMOptimizationLevel.SIMPLE,
+                methodEffects));
+        // Unrolling keeps original loop to perform remaining iterations, so it must not run twice
+        if (firstRound && optimizationLevel == TeaVMOptimizationLevel.FULL) {
+            optimizations.add(new LoopUnrolling(loopUnrollingFactor, loopUnrollingBudget));
         }
-        optimizations.add(new GlobalValueNumbering(optimizationLevel == TeaVMOptimizationLevel.SIMPLE));
         if (optimizationLevel.ordinal() >= TeaVMOptimizationLevel.ADVANCED.ordinal()) {
+            optimizations.add(new BoxingElimination());
+            optimizations.add(new SparseConditionalConstantPropagation());
             optimizations.add(new ConstantConditionElimination());
             optimizations.add(new RedundantJumpElimination());
-            optimizations.add(new UnusedVariableElimination());
+            optimizations.add(new UnusedVariableElimination(methodEffects));
+            optimizations.add(new ScalarReplacement());
         }
         optimizations.add(new ClassInitElimination());
         optimizations.add(new UnreachableBasicBlockElimination());
@@ -42,17 +42,22 @@ function $rt_isAssignable(from, to) {
     }
     return false;
 }
+var $rt_createFilledArray;
+if (typeof Array.prototype.fill === 'function') {
+    $rt_createFilledArray = function(sz, value) {
+        return new Array(sz).fill(value);
+    };
+} else {
+    $rt_createFilledArray = function(sz, value) {
+        var data = new Array(sz);
+        for (var i = 0; i < sz; i = (i + 1) | 0) {
+            data[i] = value;
+        }
+        return data;
+    };
+}
 function $rt_createArray(cls, sz) {
-    var data = new Array(sz);
-    var arr = new ($rt_arraycls(cls))(data);
-    if (sz > 0) {
-        var i = 0;
-        do {
-            data[i] = null;
-            i = (i + 1) | 0;
-        } while (i < sz);
-    }
-    return arr;
+    return new ($rt_arraycls(cls))($rt_createFilledArray(sz, null));
 }
 function $rt_wrapArray(cls, data) {
     return new ($rt_arraycls(cls))(data);
@@ -61,12 +66,7 @@ function $rt_createUnfilledArray(cls, sz) {
     return new ($rt_arraycls(cls))(new Array(sz));
 }
 function $rt_createLongArray(sz) {
-    var data = new Array(sz);
-    var arr = new ($rt_arraycls($rt_longcls()))(data);
-    for (var i = 0; i < sz; i = (i + 1) | 0) {
-        data[i] = Long_ZERO;
-    }
-    return arr;
+    return new ($rt_arraycls($rt_longcls()))($rt_createFilledArray(sz, Long_ZERO));
 }
 var $rt_createNumericArray;
 var $rt_createCharArray;
@@ -433,7 +433,7 @@ function $rt_threadStarter(f) {
     return function() {
         var args = Array.prototype.slice.apply(arguments);
         $rt_startThread(function() {
-            f.apply(this, args);
+            return f.apply(this, args);
         });
     }
 }
@@ -466,6 +466,7 @@ function TeaVMThread(runner) {
     this.runner = runner;
     this.attribute = null;
     this.completeCallback = null;
+    this.generator = null;
 }
 TeaVMThread.prototype.push = function() {
     for (var i = 0; i < arguments.length; ++i) {
@@ -514,7 +515,21 @@ TeaVMThread.prototype.run = function() {
     $rt_currentNativeThread = this;
     var result;
     try {
-        result = this.runner();
+        if (this.generator === null) {
+            result = this.runner();
+            if ($rt_isGenerator(result)) {
+                this.generator = result;
+            }
+        }
+        if (this.generator !== null) {
+            this.status = 0;
+            var step = this.generator.next();
+            if (step.done) {
+                result = step.value;
+            } else {
+                this.suspend(step.value);
+            }
+        }
     } catch (e) {
         result = e;
     } finally {
@@ -552,6 +567,16 @@ function $rt_nativeThread() {
 function $rt_invalidPointer() {
     throw new Error("Invalid recorded state");
 }
+function $rt_isGenerator(obj) {
+    return Object.prototype.toString.call(obj) === "[object Generator]";
+}
+function $rt_runSync(generator) {
+    var step = generator.next();
+    if (!step.done) {
+        throw new Error("Can't suspend thread from synchronous method");
+    }
+    return step.value;
+}
 
 function $dbg_repr(obj) {
     return obj.toString ? obj.toString() : "";
@@ -0,0 +1,169 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.backend.javascript;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.util.Collections;
+import org.junit.Test;
+
+public class RuntimeTrimmerTest {
+    private static final String RUNTIME = ""
+            + "/* header */\n"
+            + "\"use strict\";\n"
+            + "function $rt_a() {\n"
+            + "    return $rt_b();\n"
+            + "}\n"
+            + "function $rt_b() {\n"
+            + "    return 1;\n"
+            + "}\n"
+            + "var $rt_c;\n"
+            + "if (typeof foo === 'undefined') {\n"
+            + "    $rt_c = function() { return Foo_x; };\n"
+            + "} else {\n"
+            + "    $rt_c = function() { return 2; };\n"
+            + "}\n"
+            + "// Foo\n"
+            + "function Foo() {\n"
+            + "}\n"
+            + "Foo.prototype.toString = function() { return \"\"; };\n"
+            + "var Foo_x = new Foo();\n"
+            + "function $dbg_x() {\n"
+            + "}\n";
+    private static final String SHARED_BLOCK_RUNTIME = ""
+            + "\"use strict\";\n"
+            + "var $rt_createIntArray;\n"
+            + "var $rt_createCharArray;\n"
+            + "var $rt_createByteArray;\n"
+            + "if (typeof 'ArrayBuffer' !== 'undefined') {\n"
+            + "    $rt_createIntArray = function(sz) { return new Int32Array(sz); };\n"
+            + "    $rt_createCharArray = function(sz) { return new Uint16Array(sz); };\n"
+            + "} else {\n"
+            + "    $rt_createIntArray = function(sz) { return new Array(sz); };\n"
+            + "    $rt_createCharArray = function(sz) { return new Array(sz); };\n"
+            + "}\n"
+            + "$rt_createByteArray = function(sz) { return new Array(sz); };\n";
+    private static final String TRICKY_RUNTIME = ""
+            + "\"use strict\";\n"
+            + "function $rt_str() {\n"
+            + "    return \"}\\n\\\"\\n\\\nfunction $rt_fake() {\\n\";\n"
+            + "}\n"
+            + "function $rt_comment() {\n"
+            + "/* }\n"
+            + "function $rt_fake2() { $rt_str(); */\n"
+            + "    return 1; // }\n"
+            + "}\n"
+            + "function $rt_regex(s) {\n"
+            + "    return s.replace(/[{\\/]/g, '}') / 2;\n"
+            + "}\n"
+            + "function $rt_template() {\n"
+            + "    return `\n"
+            + "}\n"
+            + "function $rt_fake3() {`;\n"
+            + "}\n";
+
+    @Test
+    public void fullRuntimeReproduced() {
+        RuntimeTrimmer trimmer = new RuntimeTrimmer(RUNTIME);
+        assertEquals(RUNTIME, trimmer.trim("$rt_a(); $rt_c(); $dbg_x();", Collections.emptyList()));
+    }
+
+    @Test
+    public void transitiveDependenciesKept() {
+        RuntimeTrimmer trimmer = new RuntimeTrimmer(RUNTIME);
+        String result = trimmer.trim("var x = $rt_c();", Collections.emptyList());
+        assertTrue(result.startsWith("/* header */\n\"use strict\";\n"));
+        assertTrue(result.contains("var $rt_c;"));
+        assertTrue(result.contains("if (typeof foo"));
+        assertTrue(result.contains("// Foo\nfunction Foo()"));
+        assertTrue(result.contains("Foo.prototype.toString"));
+        assertTrue(result.contains("var Foo_x"));
+        assertFalse(result.contains("$rt_a"));
+        assertFalse(result.contains("$rt_b"));
+        assertFalse(result.contains("$dbg_x"));
+    }
+
+    @Test
+    public void memberAccessInRuntimeIsNotReference() {
+        RuntimeTrimmer trimmer = new RuntimeTrimmer("function $rt_a() {}\nfunction $rt_b(x) { return x.$rt_a; }\n");
+        String result = trimmer.trim("$rt_b(null);", Collections.emptyList());
+        assertFalse(result.contains("function $rt_a"));
+        assertTrue(result.contains("function $rt_b"));
+    }
+
+    @Test
+    public void globalAccessedAsMemberKept() {
+        RuntimeTrimmer trimmer = new RuntimeTrimmer(RUNTIME);
+        String result = trimmer.trim("window.$rt_b();", Collections.emptyList());
+        assertTrue(result.contains("function $rt_b"));
+        assertFalse(result.contains("function $rt_a"));
+    }
+
+    @Test
+    public void allVariablesAssignedByKeptBlockDeclared() {
+        RuntimeTrimmer trimmer = new RuntimeTrimmer(SHARED_BLOCK_RUNTIME);
+        String result = trimmer.trim("var a = $rt_createIntArray(2);", Collections.emptyList());
+        assertTrue(result.contains("if (typeof 'ArrayBuffer'"));
+        assertTrue(result.contains("var $rt_createIntArray;"));
+        assertTrue(result.contains("var $rt_createCharArray;"));
+        assertFalse(result.contains("var $rt_createByteArray;"));
+        assertFalse(result.contains("$rt_createByteArray ="));
+    }
+
+    @Test
+    public void stringsCommentsAndRegexesIgnored() {
+        RuntimeTrimmer trimmer = new RuntimeTrimmer(TRICKY_RUNTIME);
+        assertEquals(TRICKY_RUNTIME, trimmer.trim("$rt_str(); $rt_comment(); $rt_regex(); $rt_template();",
+                Collections.emptyList()));
+
+        String result = trimmer.trim("$rt_comment();", Collections.emptyList());
+        assertEquals("\"use strict\";\n"
+                + "function $rt_comment() {\n"
+                + "/* }\n"
+                + "function $rt_fake2() { $rt_str(); */\n"
+                + "    return 1; // }\n"
+                + "}\n", result);
+
+        result = trimmer.trim("$rt_regex();", Collections.emptyList());
+        assertTrue(result.contains("function $rt_regex"));
+        assertFalse(result.contains("$rt_str"));
+        assertFalse(result.contains("$rt_template"));
+
+        result = trimmer.trim("$rt_template();", Collections.emptyList());
+        assertTrue(result.contains("function $rt_fake3() {`;\n}\n"));
+        assertFalse(result.contains("$rt_regex"));
+    }
+
+    @Test
+    public void identifiersInStringsAndCommentsAreNotReferences() {
+        RuntimeTrimmer trimmer = new RuntimeTrimmer(RUNTIME);
+        String result = trimmer.trim("var s = \"$rt_a\"; // $rt_b\n/* $dbg_x */ var r = /$rt_c/.source;",
+                Collections.emptyList());
+        assertFalse(result.contains("$rt_a"));
+        assertFalse(result.contains("$rt_b"));
+        assertFalse(result.contains("$rt_c"));
+        assertFalse(result.contains("$dbg_x"));
+    }
+
+    @Test
+    public void allVariablesOfDeclarationDefined() {
+        RuntimeTrimmer trimmer = new RuntimeTrimmer("var $rt_a = f(1, 2), $rt_b = 3;\nfunction f() {}\n");
+        String result = trimmer.trim("$rt_b;", Collections.emptyList());
+        assertTrue(result.contains("var $rt_a"));
+        assertTrue(result.contains("function f()"));
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.backend.javascript.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Test;
+import org.teavm.ast.ClassNode;
+import org.teavm.ast.decompilation.Decompiler;
+import org.teavm.backend.javascript.codegen.DefaultAliasProvider;
+import org.teavm.backend.javascript.codegen.DefaultNamingStrategy;
+import org.teavm.backend.javascript.codegen.MinifyingAliasProvider;
+import org.teavm.backend.javascript.codegen.SourceWriter;
+import org.teavm.backend.javascript.codegen.SourceWriterBuilder;
+import org.teavm.debugging.information.DummyDebugInformationEmitter;
+import org.teavm.model.ClassHolder;
+import org.teavm.model.ClassHolderSource;
+import org.teavm.model.MethodHolder;
+import org.teavm.model.MutableClassHolderSource;
+import org.teavm.model.util.ModelUtils;
+import org.teavm.model.util.RegisterAllocator;
+import org.teavm.parsing.ClasspathClassHolderSource;
+
+public class ConcurrentRenderingTest {
+    private static final ClassHolderSource classpath = new ClasspathClassHolderSource(
+            ConcurrentRenderingTest.class.getClassLoader());
+    private static final Class<?>[] CLASSES = { Shape.class, Circle.class, Square.class, Registry.class,
+            Counter.class };
+    private ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @After
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void minifiedOutputSameAsSingleThreaded() throws IOException {
+        String expected = render(true, null, 1);
+        for (int i = 0; i < 10; ++i) {
+            assertEquals(expected, render(true, executor, 16));
+        }
+    }
+
+    @Test
+    public void outputSameAsSingleThreaded() throws IOException {
+        String expected = render(false, null, 1);
+        for (Class<?> cls : CLASSES) {
+            assertTrue(expected.contains("ConcurrentRenderingTest$" + cls.getSimpleName() + "() {"));
+        }
+        for (int i = 0; i < 10; ++i) {
+            assertEquals(expected, render(false, executor, 16));
+        }
+    }
+
+    @Test
+    public void outputSameWithNarrowWindow() throws IOException {
+        String expected = render(false, null, 1);
+        for (int window = 1; window <= CLASSES.length; ++window) {
+            assertEquals(expected, render(false, executor, window));
+        }
+    }
+
+    private static String render(boolean minifying, ExecutorService executor, int window) throws IOException {
+        MutableClassHolderSource classes = new MutableClassHolderSource();
+        for (Class<?> javaClass : CLASSES) {
+            ClassHolder cls = ModelUtils.copyClass(classpath.get(javaClass.getName()));
+            for (MethodHolder method : cls.getMethods()) {
+                if (method.getProgram() != null && method.getProgram().basicBlockCount() > 0) {
+                    new RegisterAllocator().allocateRegisters(method, method.getProgram());
+                }
+            }
+            classes.putClassHolder(cls);
+        }
+        Decompiler decompiler = new Decompiler(classes, ConcurrentRenderingTest.class.getClassLoader(),
+                Collections.emptySet(), Collections.emptySet());
+        List<ClassNode> classNodes = decompiler.decompile(classes.getClassNames());
+
+        DefaultNamingStrategy naming = new DefaultNamingStrategy(minifying ? new MinifyingAliasProvider()
+                : new DefaultAliasProvider(), classpath);
+        StringBuilder output = new StringBuilder();
+        SourceWriterBuilder builder = new SourceWriterBuilder(naming);
+        builder.setMinified(minifying);
+        SourceWriter writer = builder.build(output);
+        RenderingContext context = new RenderingContext(new DummyDebugInformationEmitter(), classes,
+                ConcurrentRenderingTest.class.getClassLoader(), null, new Properties(), naming);
+        context.setMinifying(minifying);
+        Renderer renderer = new Renderer(writer, Collections.emptySet(), Collections.emptySet(), null, context);
+        renderer.setMinifying(minifying);
+        renderer.setExecutor(executor);
+        renderer.setRenderingWindow(window);
+        renderer.render(classNodes);
+        renderer.renderStringPool();
+        renderer.renderStringConstants();
+        return output.toString();
+    }
+
+    abstract static class Shape {
+        static final String UNKNOWN = "unknown";
+        String name;
+
+        Shape(String name) {
+            this.name = name;
+        }
+
+        abstract double area();
+
+        String describe() {
+            return new StringBuilder().append(name).append(": ").append(area()).toString();
+        }
+    }
+
+    static class Circle extends Shape {
+        double radius;
+
+        Circle(double radius) {
+            super("circle");
+            this.radius = radius;
+        }
+
+        @Override
+        double area() {
+            return Math.PI * radius * radius;
+        }
+    }
+
+    static class Square extends Shape {
+        double side;
+
+        Square(double side) {
+            super("square");
+            this.side = side;
+        }
+
+        @Override
+        double area() {
+            return side * side;
+        }
+    }
+
+    static class Registry {
+        static Shape[] shapes = { new Circle(1), new Square(2) };
+
+        static String describeAll() {
+            StringBuilder sb = new StringBuilder();
+            for (Shape shape : shapes) {
+                if (shape instanceof Circle) {
+                    sb.append("round ");
+                }
+                sb.append(shape.describe()).append(';');
+            }
+            return sb.length() > 0 ? sb.toString() : Shape.UNKNOWN;
+        }
+    }
+
+    static class Counter {
+        private int count;
+        private String label = "counter";
+
+        void increment() {
+            try {
+                count = Math.addExact(count, 1);
+            } catch (ArithmeticException e) {
+                label = "overflow";
+            }
+        }
+
+        String label() {
+            return new StringBuilder(label).append(count).toString();
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.backend.javascript.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.teavm.ast.ClassNode;
+import org.teavm.ast.decompilation.Decompiler;
+import org.teavm.backend.javascript.AsyncMode;
+import org.teavm.backend.javascript.codegen.DefaultAliasProvider;
+import org.teavm.backend.javascript.codegen.DefaultNamingStrategy;
+import org.teavm.backend.javascript.codegen.MinifyingAliasProvider;
+import org.teavm.backend.javascript.codegen.SourceWriter;
+import org.teavm.backend.javascript.codegen.SourceWriterBuilder;
+import org.teavm.callgraph.DefaultCallGraph;
+import org.teavm.debugging.information.DummyDebugInformationEmitter;
+import org.teavm.diagnostics.AccumulationDiagnostics;
+import org.teavm.interop.Async;
+import org.teavm.model.ClassHolder;
+import org.teavm.model.ClassHolderSource;
+import org.teavm.model.MethodHolder;
+import org.teavm.model.MethodReference;
+import org.teavm.model.MutableClassHolderSource;
+import org.teavm.model.util.AsyncMethodFinder;
+import org.teavm.model.util.ModelUtils;
+import org.teavm.model.util.RegisterAllocator;
+import org.teavm.parsing.ClasspathClassHolderSource;
+
+public class GeneratorRenderingTest {
+    private static final ClassHolderSource classpath = new ClasspathClassHolderSource(
+            GeneratorRenderingTest.class.getClassLoader());
+    private static final Class<?>[] CLASSES = { Task.class, Waiting.class, Base.class, Derived.class,
+            Client.class };
+    private static final MethodReference TASK_RUN = new MethodReference(Task.class, "run", int.class, int.class);
+    private static final MethodReference WAITING_RUN = new MethodReference(Waiting.class, "run",
+            int.class, int.class);
+    private static final MethodReference BASE_RUN = new MethodReference(Base.class, "run", int.class, int.class);
+    private static final MethodReference TWICE = new MethodReference(Client.class, "twice", Task.class, int.class);
+    private static final MethodReference ONCE = new MethodReference(Client.class, "once", Task.class, int.class);
+    private MutableClassHolderSource classes;
+    private AsyncMethodFinder asyncFinder;
+    private DefaultNamingStrategy naming;
+    private ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @Before
+    public void findAsyncMethods() {
+        classes = new MutableClassHolderSource();
+        for (Class<?> javaClass : CLASSES) {
+            ClassHolder cls = ModelUtils.copyClass(classpath.get(javaClass.getName()));
+            for (MethodHolder method : cls.getMethods()) {
+                if (method.getProgram() != null && method.getProgram().basicBlockCount() > 0) {
+                    new RegisterAllocator().allocateRegisters(method, method.getProgram());
+                }
+            }
+            classes.putClassHolder(cls);
+        }
+
+        // Virtual call is recorded as call to the declared method and to every implementation reached
+        DefaultCallGraph callGraph = new DefaultCallGraph();
+        callGraph.getNode(TWICE).addCallSite(TASK_RUN);
+        callGraph.getNode(TWICE).addCallSite(WAITING_RUN);
+        callGraph.getNode(TWICE).addCallSite(BASE_RUN);
+        callGraph.getNode(ONCE).addCallSite(TASK_RUN);
+        asyncFinder = new AsyncMethodFinder(callGraph, new AccumulationDiagnostics());
+        asyncFinder.find(classes);
+    }
+
+    @After
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void inheritedImplementationJoinsFamily() {
+        assertTrue(asyncFinder.getAsyncMethods().contains(WAITING_RUN));
+        assertTrue(asyncFinder.getAsyncMethods().contains(TWICE));
+        assertFalse(asyncFinder.getAsyncMethods().contains(ONCE));
+        assertTrue(asyncFinder.getAsyncFamilyMethods().contains(TASK_RUN));
+        assertTrue(asyncFinder.getAsyncFamilyMethods().contains(BASE_RUN));
+    }
+
+    @Test
+    public void callsDelegatedToGenerators() throws IOException {
+        String output = render(false, null);
+        assertTrue(output.contains("function* " + naming.getFullNameFor(WAITING_RUN) + "("));
+        assertTrue(output.contains("function* " + naming.getFullNameFor(BASE_RUN) + "("));
+        assertTrue(output.contains("function* " + naming.getFullNameFor(TWICE) + "("));
+        assertTrue(output.contains("function " + naming.getFullNameFor(ONCE) + "("));
+
+        String twiceBody = body(output, TWICE);
+        assertTrue(twiceBody, twiceBody.contains("(yield* "));
+        assertFalse(twiceBody, twiceBody.contains("$rt_runSync"));
+        String onceBody = body(output, ONCE);
+        assertTrue(onceBody, onceBody.contains("$rt_runSync("));
+        assertFalse(onceBody, onceBody.contains("yield"));
+    }
+
+    @Test
+    public void minifiedOutputSameAsSingleThreaded() throws IOException {
+        String expected = render(true, null);
+        assertTrue(expected.contains("function*"));
+        for (int i = 0; i < 5; ++i) {
+            assertEquals(expected, render(true, executor));
+        }
+    }
+
+    private String body(String output, MethodReference method) {
+        int start = output.indexOf(naming.getFullNameFor(method) + "(");
+        return output.substring(start, output.indexOf("\n}", start));
+    }
+
+    private String render(boolean minifying, ExecutorService executor) throws IOException {
+        Set<MethodReference> generatorMethods = new HashSet<>(asyncFinder.getAsyncMethods());
+        generatorMethods.addAll(asyncFinder.getAsyncFamilyMethods());
+        Decompiler decompiler = new Decompiler(classes, GeneratorRenderingTest.class.getClassLoader(),
+                asyncFinder.getAsyncMethods(), asyncFinder.getAsyncFamilyMethods());
+        decompiler.setSplittingAsyncMethods(false);
+        List<ClassNode> classNodes = decompiler.decompile(classes.getClassNames());
+
+        naming = new DefaultNamingStrategy(minifying ? new MinifyingAliasProvider() : new DefaultAliasProvider(),
+                classpath);
+        StringBuilder output = new StringBuilder();
+        SourceWriterBuilder builder = new SourceWriterBuilder(naming);
+        builder.setMinified(minifying);
+        SourceWriter writer = builder.build(output);
+        RenderingContext context = new RenderingContext(new DummyDebugInformationEmitter(), classes,
+                GeneratorRenderingTest.class.getClassLoader(), null, new Properties(), naming);
+        context.setMinifying(minifying);
+        context.setGeneratorMethods(generatorMethods);
+        Renderer renderer = new Renderer(writer, asyncFinder.getAsyncMethods(), asyncFinder.getAsyncFamilyMethods(),
+                null, context);
+        renderer.setMinifying(minifying);
+        renderer.setAsyncMode(AsyncMode.GENERATORS);
+        renderer.setExecutor(executor);
+        renderer.render(classNodes);
+        renderer.renderStringPool();
+        renderer.renderStringConstants();
+        return output.toString();
+    }
+
+    interface Task {
+        int run(int a);
+    }
+
+    static class Waiting implements Task {
+        @Async
+        @Override
+        public int run(int a) {
+            return a * 2;
+        }
+    }
+
+    static class Base {
+        public int run(int a) {
+            return a + 1;
+        }
+    }
+
+    // Implementation of Task.run is inherited from a class that does not implement Task
+    static class Derived extends Base implements Task {
+    }
+
+    static class Client {
+        static int twice(Task task) {
+            return task.run(1) + task.run(2);
+        }
+
+        static int once(Task task) {
+            return task.run(3);
+        }
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.model.optimization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Test;
+import org.teavm.model.BasicBlock;
+import org.teavm.model.ClassHolderSource;
+import org.teavm.model.Incoming;
+import org.teavm.model.Instruction;
+import org.teavm.model.MethodDescriptor;
+import org.teavm.model.MethodHolder;
+import org.teavm.model.Phi;
+import org.teavm.model.Program;
+import org.teavm.model.Variable;
+import org.teavm.model.instructions.BinaryBranchingCondition;
+import org.teavm.model.instructions.BinaryBranchingInstruction;
+import org.teavm.model.instructions.CastInstruction;
+import org.teavm.model.instructions.ExitInstruction;
+import org.teavm.model.instructions.IntegerConstantInstruction;
+import org.teavm.model.instructions.InvokeInstruction;
+import org.teavm.model.instructions.JumpInstruction;
+import org.teavm.model.util.DefinitionExtractor;
+import org.teavm.model.util.ProgramUtils;
+import org.teavm.model.util.UsageExtractor;
+import org.teavm.parsing.ClasspathClassHolderSource;
+
+public class BoxingEliminationTest {
+    private static final ClassHolderSource classSource = new ClasspathClassHolderSource(
+            BoxingEliminationTest.class.getClassLoader());
+
+    @Test
+    public void unboxingFolded() {
+        Program program = optimize("unbox", int.class, int.class);
+        assertEquals(0, calls(program, "valueOf"));
+        assertEquals(0, calls(program, "intValue"));
+        assertAllVariablesDefined(program, 1);
+    }
+
+    @Test
+    public void unboxingThroughCastFolded() {
+        Program program = optimize("unboxCast", int.class, int.class);
+        assertEquals(0, calls(program, "valueOf"));
+        assertEquals(0, calls(program, "intValue"));
+        assertEquals(0, casts(program));
+        assertAllVariablesDefined(program, 1);
+    }
+
+    @Test
+    public void unusedCastRemovedWithBox() {
+        Program program = optimize("unusedCast", int.class, int.class);
+        assertEquals(0, calls(program, "valueOf"));
+        assertEquals(0, casts(program));
+        assertAllVariablesDefined(program, 1);
+    }
+
+    @Test
+    public void failingCastKeptWithBox() {
+        Program program = optimize("wrongCast", int.class, int.class);
+        assertEquals(1, calls(program, "valueOf"));
+        assertEquals(1, casts(program));
+        assertAllVariablesDefined(program, 1);
+    }
+
+    @Test
+    public void phiUnboxed() {
+        Program program = optimize("unboxPhi", boolean.class, int.class, int.class, int.class);
+        assertEquals(0, calls(program, "valueOf"));
+        assertEquals(0, calls(program, "intValue"));
+        assertAllVariablesDefined(program, 3);
+    }
+
+    @Test
+    public void phiOfDifferentWrappersKept() {
+        Program program = optimize("mixedPhi", boolean.class, int.class, int.class);
+        assertEquals(2, calls(program, "valueOf"));
+        assertEquals(1, calls(program, "intValue"));
+        assertAllVariablesDefined(program, 2);
+    }
+
+    @Test
+    public void comparisonOfCachedBoxesFolded() {
+        Program program = optimize("compareCached", boolean.class);
+        assertEquals(0, referenceComparisons(program));
+        assertEquals(1, evaluate(program));
+    }
+
+    @Test
+    public void comparisonOfFreshBoxesFolded() {
+        Program program = optimize("compareFresh", boolean.class);
+        assertEquals(0, referenceComparisons(program));
+        assertEquals(0, evaluate(program));
+
+        program = optimize("compareLongs", boolean.class);
+        assertEquals(0, referenceComparisons(program));
+        assertEquals(0, evaluate(program));
+    }
+
+    @Test
+    public void comparisonOfUnknownBoxesKept() {
+        Program program = optimize("compareUnknown", int.class, boolean.class);
+        assertEquals(1, referenceComparisons(program));
+    }
+
+    private static Program optimize(String name, Class<?>... signature) {
+        MethodHolder method = classSource.get(BoxingEliminationTest.class.getName())
+                .getMethod(new MethodDescriptor(name, signature));
+        Program program = ProgramUtils.copy(method.getProgram());
+        new BoxingElimination().optimize(method, program);
+        return program;
+    }
+
+    private static int calls(Program program, String methodName) {
+        int result = 0;
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            for (Instruction insn : program.basicBlockAt(i).getInstructions()) {
+                if (insn instanceof InvokeInstruction
+                        && ((InvokeInstruction) insn).getMethod().getName().equals(methodName)) {
+                    ++result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static int casts(Program program) {
+        int result = 0;
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            for (Instruction insn : program.basicBlockAt(i).getInstructions()) {
+                if (insn instanceof CastInstruction) {
+                    ++result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static int referenceComparisons(Program program) {
+        int result = 0;
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            Instruction insn = program.basicBlockAt(i).getLastInstruction();
+            if (insn instanceof BinaryBranchingInstruction) {
+                BinaryBranchingCondition condition = ((BinaryBranchingInstruction) insn).getCondition();
+                if (condition == BinaryBranchingCondition.REFERENCE_EQUAL
+                        || condition == BinaryBranchingCondition.REFERENCE_NOT_EQUAL) {
+                    ++result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void assertAllVariablesDefined(Program program, int parameterCount) {
+        Set<Variable> defined = new HashSet<>();
+        DefinitionExtractor definitionExtractor = new DefinitionExtractor();
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            BasicBlock block = program.basicBlockAt(i);
+            for (Phi phi : block.getPhis()) {
+                defined.add(phi.getReceiver());
+            }
+            for (Instruction insn : block.getInstructions()) {
+                insn.acceptVisitor(definitionExtractor);
+                defined.addAll(Arrays.asList(definitionExtractor.getDefinedVariables()));
+            }
+        }
+
+        UsageExtractor usageExtractor = new UsageExtractor();
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            BasicBlock block = program.basicBlockAt(i);
+            for (Phi phi : block.getPhis()) {
+                for (Incoming incoming : phi.getIncomings()) {
+                    assertTrue(isDefined(defined, incoming.getValue(), parameterCount));
+                }
+            }
+            for (Instruction insn : block.getInstructions()) {
+                insn.acceptVisitor(usageExtractor);
+                for (Variable var : usageExtractor.getUsedVariables()) {
+                    assertTrue("Variable " + var.getIndex() + " is not defined", isDefined(defined, var, parameterCount));
+                }
+            }
+        }
+    }
+
+    private static boolean isDefined(Set<Variable> defined, Variable var, int parameterCount) {
+        // Variables of static methods start with unused "this", followed by parameters
+        return defined.contains(var) || var.getIndex() <= parameterCount;
+    }
+
+    // Follows jumps from the entry block, which is enough for folded methods that don't branch
+    private static int evaluate(Program program) {
+        BasicBlock previous = null;
+        BasicBlock block = program.basicBlockAt(0);
+        while (true) {
+            Instruction last = block.getLastInstruction();
+            if (last instanceof JumpInstruction) {
+                previous = block;
+                block = ((JumpInstruction) last).getTarget();
+            } else if (last instanceof ExitInstruction) {
+                Variable value = ((ExitInstruction) last).getValueToReturn();
+                for (Phi phi : block.getPhis()) {
+                    if (phi.getReceiver() == value) {
+                        for (Incoming incoming : phi.getIncomings()) {
+                            if (incoming.getSource() == previous) {
+                                value = incoming.getValue();
+                            }
+                        }
+                    }
+                }
+                return constantValue(program, value);
+            } else {
+                throw new AssertionError("Method is not folded");
+            }
+        }
+    }
+
+    private static int constantValue(Program program, Variable var) {
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            for (Instruction insn : program.basicBlockAt(i).getInstructions()) {
+                if (insn instanceof IntegerConstantInstruction
+                        && ((IntegerConstantInstruction) insn).getReceiver() == var) {
+                    return ((IntegerConstantInstruction) insn).getConstant();
+                }
+            }
+        }
+        throw new AssertionError("Value is not constant");
+    }
+
+    static int unbox(int a) {
+        Integer b = a;
+        return b;
+    }
+
+    static int unboxCast(int a) {
+        Object o = a;
+        return (Integer) o;
+    }
+
+    @SuppressWarnings("unused")
+    static int unusedCast(int a) {
+        Object o = a;
+        Integer b = (Integer) o;
+        return a;
+    }
+
+    @SuppressWarnings("unused")
+    static int wrongCast(int a) {
+        Object o = a;
+        Long b = (Long) o;
+        return a;
+    }
+
+    static int unboxPhi(boolean c, int a, int b) {
+        Integer x;
+        if (c) {
+            x = a;
+        } else {
+            x = b;
+        }
+        return x;
+    }
+
+    static int mixedPhi(boolean c, int a) {
+        Number x;
+        if (c) {
+            x = Integer.valueOf(a);
+        } else {
+            x = Long.valueOf(a);
+        }
+        return x.intValue();
+    }
+
+    static boolean compareCached() {
+        Integer a = 5;
+        Integer b = 5;
+        return a == b;
+    }
+
+    static boolean compareFresh() {
+        Integer a = 1000;
+        Integer b = 1000;
+        return a == b;
+    }
+
+    static boolean compareLongs() {
+        Long a = 5L;
+        Long b = 5L;
+        return a == b;
+    }
+
+    static boolean compareUnknown(int x) {
+        Integer a = x;
+        Integer b = x;
+        return a == b;
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.model.optimization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import org.junit.Test;
+import org.teavm.model.BasicBlock;
+import org.teavm.model.ClassHolderSource;
+import org.teavm.model.Instruction;
+import org.teavm.model.MethodHolder;
+import org.teavm.model.MethodReference;
+import org.teavm.model.Program;
+import org.teavm.model.instructions.InvokeInstruction;
+import org.teavm.model.util.ProgramUtils;
+import org.teavm.parsing.ClasspathClassHolderSource;
+
+public class CallProfileTest {
+    private static final ClassHolderSource classSource = new ClasspathClassHolderSource(
+            CallProfileTest.class.getClassLoader());
+    private static final MethodReference CALLER = new MethodReference(CallProfileTest.class, "caller",
+            int.class, int.class);
+    private static final MethodReference MEDIUM = new MethodReference(CallProfileTest.class, "medium",
+            int.class, int.class);
+    private static final MethodReference LARGE = new MethodReference(CallProfileTest.class, "large",
+            int.class, int.class);
+    private static final MethodReference OTHER = new MethodReference(CallProfileTest.class, "other",
+            int.class, int.class);
+
+    @Test
+    public void writtenProfileReadBack() throws IOException {
+        CallProfile profile = new CallProfile();
+        profile.add(CALLER, 10, MEDIUM, 5);
+        profile.add(CALLER, 11, MEDIUM, 0);
+        profile.add(CALLER, -1, LARGE, 7);
+        profile.add(CALLER, 10, MEDIUM, 2);
+
+        StringWriter writer = new StringWriter();
+        profile.write(writer);
+        CallProfile copy = CallProfile.read(new StringReader("# comment\n\n" + writer));
+
+        assertEquals(14, copy.getTotalCount());
+        assertEquals(7, copy.getCount(CALLER, 10, MEDIUM));
+        assertTrue(copy.contains(CALLER, 11, MEDIUM));
+        assertEquals(0, copy.getCount(CALLER, 11, MEDIUM));
+        assertEquals(7, copy.getCount(CALLER, -1, LARGE));
+        assertFalse(copy.contains(CALLER, 12, MEDIUM));
+        assertFalse(copy.contains(CALLER, 10, LARGE));
+        assertFalse(copy.contains(MEDIUM, 10, MEDIUM));
+
+        StringWriter secondWriter = new StringWriter();
+        copy.write(secondWriter);
+        assertEquals(writer.toString(), secondWriter.toString());
+    }
+
+    @Test
+    public void malformedEntryRejected() {
+        for (String line : new String[] { "1 " + CALLER + " " + MEDIUM, "x " + CALLER + " 1 " + MEDIUM,
+                "1 " + CALLER + " x " + MEDIUM, "1 foo 1 " + MEDIUM }) {
+            try {
+                CallProfile.read(new StringReader(line));
+                fail("Exception expected for " + line);
+            } catch (IOException e) {
+                // ok
+            }
+        }
+    }
+
+    @Test
+    public void hotCountCoversMostCalls() {
+        CallProfile profile = new CallProfile();
+        profile.add(CALLER, 1, MEDIUM, 9);
+        profile.add(CALLER, 2, MEDIUM, 900);
+        profile.add(CALLER, 3, MEDIUM, 0);
+        profile.add(CALLER, 4, MEDIUM, 90);
+        profile.add(CALLER, 5, MEDIUM, 1);
+        assertEquals(900, profile.getHotCount(0.5));
+        assertEquals(90, profile.getHotCount(0.99));
+        assertEquals(1, profile.getHotCount(1));
+        assertEquals(1, new CallProfile().getHotCount(0.99));
+    }
+
+    @Test
+    public void withoutProfileOnlySmallMethodInlined() {
+        Program program = inline(null);
+        assertEquals(0, calls(program, MEDIUM));
+        assertEquals(1, calls(program, LARGE));
+    }
+
+    @Test
+    public void hotSiteInlinedWithHigherThreshold() {
+        CallProfile profile = new CallProfile();
+        profile.add(CALLER, lineOf(LARGE), LARGE, 1000);
+        Program program = inline(profile);
+        assertEquals(0, calls(program, LARGE));
+    }
+
+    @Test
+    public void coldSiteNotInlined() {
+        CallProfile profile = new CallProfile();
+        profile.add(CALLER, lineOf(MEDIUM), MEDIUM, 0);
+        profile.add(CALLER, lineOf(LARGE), LARGE, 1000);
+        Program program = inline(profile);
+        assertEquals(1, calls(program, MEDIUM));
+        assertEquals(0, calls(program, LARGE));
+    }
+
+    @Test
+    public void siteMissingFromProfileInlinedAsUsual() {
+        CallProfile profile = new CallProfile();
+        profile.add(CALLER, lineOf(MEDIUM) + 100, MEDIUM, 0);
+        profile.add(CALLER, lineOf(LARGE), OTHER, 1000);
+        profile.add(OTHER, lineOf(MEDIUM), MEDIUM, 0);
+        Program program = inline(profile);
+        assertEquals(0, calls(program, MEDIUM));
+        assertEquals(1, calls(program, LARGE));
+    }
+
+    private static Program inline(CallProfile profile) {
+        Program program = ProgramUtils.copy(method().getProgram());
+        Inlining inlining = profile != null ? new Inlining(profile) : new Inlining();
+        inlining.apply(CALLER, program, classSource);
+        return program;
+    }
+
+    private static MethodHolder method() {
+        return classSource.get(CALLER.getClassName()).getMethod(CALLER.getDescriptor());
+    }
+
+    private static int lineOf(MethodReference callee) {
+        Program program = method().getProgram();
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            BasicBlock block = program.basicBlockAt(i);
+            for (Instruction insn : block.getInstructions()) {
+                if (insn instanceof InvokeInstruction && ((InvokeInstruction) insn).getMethod().equals(callee)) {
+                    return CallProfile.lineOf(insn.getLocation());
+                }
+            }
+        }
+        throw new AssertionError("Call to " + callee + " not found");
+    }
+
+    private static int calls(Program program, MethodReference callee) {
+        int result = 0;
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            BasicBlock block = program.basicBlockAt(i);
+            for (Instruction insn : block.getInstructions()) {
+                if (insn instanceof InvokeInstruction && ((InvokeInstruction) insn).getMethod().equals(callee)) {
+                    ++result;
+                }
+            }
+        }
+        return result;
+    }
+
+    static int caller(int a) {
+        int x = medium(a);
+        int y = large(a);
+        return x + y;
+    }
+
+    static int medium(int a) {
+        return a * 3 + a / 7 - 1;
+    }
+
+    static int large(int a) {
+        int b = a * 31 + 17;
+        int c = b ^ (a >>> 3);
+        int d = c * 13 - b;
+        int e = d ^ (c << 5);
+        int f = e * 7 + d;
+        int g = f ^ (e >>> 11);
+        int h = g * 5 - f;
+        return h ^ (g << 2);
+    }
+
+    static int other(int a) {
+        return a;
+    }
+}
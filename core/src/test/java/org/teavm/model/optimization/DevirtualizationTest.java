@@ -0,0 +1,358 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.model.optimization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import org.junit.Test;
+import org.teavm.callgraph.CallGraph;
+import org.teavm.dependency.ClassDependencyInfo;
+import org.teavm.dependency.DependencyInfo;
+import org.teavm.dependency.FieldDependencyInfo;
+import org.teavm.dependency.MethodDependencyInfo;
+import org.teavm.dependency.ValueDependencyInfo;
+import org.teavm.model.BasicBlock;
+import org.teavm.model.ClassHolderSource;
+import org.teavm.model.ClassReaderSource;
+import org.teavm.model.FieldReference;
+import org.teavm.model.Instruction;
+import org.teavm.model.MethodDescriptor;
+import org.teavm.model.MethodHolder;
+import org.teavm.model.MethodReader;
+import org.teavm.model.MethodReference;
+import org.teavm.model.Phi;
+import org.teavm.model.Program;
+import org.teavm.model.ValueType;
+import org.teavm.model.instructions.InvocationType;
+import org.teavm.model.instructions.InvokeInstruction;
+import org.teavm.model.instructions.IsInstanceInstruction;
+import org.teavm.model.util.ModelUtils;
+import org.teavm.parsing.ClasspathClassHolderSource;
+
+public class DevirtualizationTest {
+    private static final ClassHolderSource classSource = new ClasspathClassHolderSource(
+            DevirtualizationTest.class.getClassLoader());
+    private static final MethodDescriptor CALL = new MethodDescriptor("call", Base.class, int.class);
+    private static final MethodDescriptor CALL_IN_TRY = new MethodDescriptor("callInTry", Base.class, int.class);
+    private static final MethodDescriptor DESCRIBE = new MethodDescriptor("describe", Object.class, String.class);
+
+    @Test
+    public void monomorphicCallBecomesDirect() {
+        Program program = devirtualize(CALL, 3, A.class.getName());
+
+        List<InvokeInstruction> calls = invocations(program, "foo");
+        assertEquals(1, calls.size());
+        assertEquals(InvocationType.SPECIAL, calls.get(0).getType());
+        assertEquals(new MethodReference(A.class, "foo", int.class), calls.get(0).getMethod());
+        assertEquals(0, count(program, IsInstanceInstruction.class));
+    }
+
+    @Test
+    public void polymorphicCallGuarded() {
+        Program program = devirtualize(CALL, 3, A.class.getName(), B.class.getName(), SubA.class.getName());
+
+        List<InvokeInstruction> calls = invocations(program, "foo");
+        assertEquals(4, calls.size());
+        List<String> guards = new ArrayList<>();
+        for (BasicBlock block : blocks(program)) {
+            for (Instruction insn : block.getInstructions()) {
+                if (insn instanceof IsInstanceInstruction) {
+                    guards.add(((ValueType.Object) ((IsInstanceInstruction) insn).getType()).getClassName());
+                }
+            }
+        }
+        assertEquals(3, guards.size());
+        assertTrue("Subclass must be checked before its superclass",
+                guards.indexOf(SubA.class.getName()) < guards.indexOf(A.class.getName()));
+
+        long direct = calls.stream().filter(call -> call.getType() == InvocationType.SPECIAL).count();
+        assertEquals(3, direct);
+        InvokeInstruction fallback = calls.stream().filter(call -> call.getType() == InvocationType.VIRTUAL)
+                .findFirst().get();
+        assertEquals(new MethodReference(Base.class, "foo", int.class), fallback.getMethod());
+
+        List<Phi> phis = new ArrayList<>();
+        blocks(program).forEach(block -> phis.addAll(block.getPhis()));
+        assertEquals(1, phis.size());
+        assertEquals(4, phis.get(0).getIncomings().size());
+    }
+
+    @Test
+    public void polymorphismLimitRespected() {
+        Program program = devirtualize(CALL, 2, A.class.getName(), B.class.getName(), SubA.class.getName());
+
+        List<InvokeInstruction> calls = invocations(program, "foo");
+        assertEquals(1, calls.size());
+        assertEquals(InvocationType.VIRTUAL, calls.get(0).getType());
+        assertEquals(0, count(program, IsInstanceInstruction.class));
+    }
+
+    @Test
+    public void callInsideTryCatchNotGuarded() {
+        Program program = devirtualize(CALL_IN_TRY, 3, A.class.getName(), B.class.getName());
+
+        List<InvokeInstruction> calls = invocations(program, "foo");
+        assertEquals(1, calls.size());
+        assertEquals(InvocationType.VIRTUAL, calls.get(0).getType());
+        assertEquals(0, count(program, IsInstanceInstruction.class));
+    }
+
+    @Test
+    public void arrayReceiverNotGuarded() {
+        Program program = devirtualize(DESCRIBE, 3, A.class.getName(), "[I");
+
+        List<InvokeInstruction> calls = invocations(program, "toString");
+        assertEquals(1, calls.size());
+        assertEquals(InvocationType.VIRTUAL, calls.get(0).getType());
+        assertEquals(0, count(program, IsInstanceInstruction.class));
+    }
+
+    private Program devirtualize(MethodDescriptor descriptor, int polymorphismLimit, String... receiverTypes) {
+        MethodHolder method = ModelUtils.copyMethod(classSource.get(DevirtualizationTest.class.getName())
+                .getMethod(descriptor));
+        Devirtualization devirtualization = new Devirtualization(new StubDependencyInfo(receiverTypes),
+                classSource);
+        devirtualization.setPolymorphismLimit(polymorphismLimit);
+        devirtualization.apply(method);
+        return method.getProgram();
+    }
+
+    private static List<BasicBlock> blocks(Program program) {
+        List<BasicBlock> blocks = new ArrayList<>();
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            blocks.add(program.basicBlockAt(i));
+        }
+        return blocks;
+    }
+
+    private static List<InvokeInstruction> invocations(Program program, String methodName) {
+        List<InvokeInstruction> result = new ArrayList<>();
+        for (BasicBlock block : blocks(program)) {
+            for (Instruction insn : block.getInstructions()) {
+                if (insn instanceof InvokeInstruction
+                        && ((InvokeInstruction) insn).getMethod().getName().equals(methodName)) {
+                    result.add((InvokeInstruction) insn);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static int count(Program program, Class<? extends Instruction> type) {
+        int result = 0;
+        for (BasicBlock block : blocks(program)) {
+            for (Instruction insn : block.getInstructions()) {
+                if (type.isInstance(insn)) {
+                    ++result;
+                }
+            }
+        }
+        return result;
+    }
+
+    static int call(Base receiver) {
+        return receiver.foo();
+    }
+
+    static int callInTry(Base receiver) {
+        try {
+            return receiver.foo();
+        } catch (IllegalStateException e) {
+            return -1;
+        }
+    }
+
+    static String describe(Object receiver) {
+        return receiver.toString();
+    }
+
+    abstract static class Base {
+        abstract int foo();
+    }
+
+    static class A extends Base {
+        @Override
+        int foo() {
+            return 1;
+        }
+
+        @Override
+        public String toString() {
+            return "A";
+        }
+    }
+
+    static class SubA extends A {
+        @Override
+        int foo() {
+            return 3;
+        }
+    }
+
+    static class B extends Base {
+        @Override
+        int foo() {
+            return 2;
+        }
+    }
+
+    // Reports the same set of types for every variable, which is enough for methods with a single receiver
+    static class StubDependencyInfo implements DependencyInfo, MethodDependencyInfo, ValueDependencyInfo {
+        private String[] types;
+
+        StubDependencyInfo(String... types) {
+            this.types = types;
+        }
+
+        @Override
+        public ClassReaderSource getClassSource() {
+            return classSource;
+        }
+
+        @Override
+        public ClassLoader getClassLoader() {
+            return DevirtualizationTest.class.getClassLoader();
+        }
+
+        @Override
+        public Collection<MethodReference> getReachableMethods() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Collection<FieldReference> getReachableFields() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Collection<String> getReachableClasses() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FieldDependencyInfo getField(FieldReference fieldRef) {
+            return null;
+        }
+
+        @Override
+        public MethodDependencyInfo getMethod(MethodReference methodRef) {
+            return this;
+        }
+
+        @Override
+        public MethodDependencyInfo getMethodImplementation(MethodReference methodRef) {
+            MethodReader method = classSource.resolve(methodRef);
+            return method != null ? new StubMethodImplementation(method.getReference()) : null;
+        }
+
+        @Override
+        public ClassDependencyInfo getClass(String className) {
+            return null;
+        }
+
+        @Override
+        public CallGraph getCallGraph() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ValueDependencyInfo[] getVariables() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int getVariableCount() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ValueDependencyInfo getVariable(int index) {
+            return this;
+        }
+
+        @Override
+        public int getParameterCount() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ValueDependencyInfo getResult() {
+            return this;
+        }
+
+        @Override
+        public ValueDependencyInfo getThrown() {
+            return this;
+        }
+
+        @Override
+        public MethodReference getReference() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isUsed() {
+            return true;
+        }
+
+        @Override
+        public boolean isMissing() {
+            return false;
+        }
+
+        @Override
+        public String[] getTypes() {
+            return types.clone();
+        }
+
+        @Override
+        public boolean hasType(String type) {
+            return Arrays.asList(types).contains(type);
+        }
+
+        @Override
+        public boolean hasArrayType() {
+            return false;
+        }
+
+        @Override
+        public ValueDependencyInfo getArrayItem() {
+            return null;
+        }
+
+        @Override
+        public ValueDependencyInfo getClassValueNode() {
+            return null;
+        }
+    }
+
+    static class StubMethodImplementation extends StubDependencyInfo {
+        private MethodReference reference;
+
+        StubMethodImplementation(MethodReference reference) {
+            this.reference = reference;
+        }
+
+        @Override
+        public MethodReference getReference() {
+            return reference;
+        }
+    }
+}
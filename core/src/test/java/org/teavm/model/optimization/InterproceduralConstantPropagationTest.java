@@ -0,0 +1,165 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.model.optimization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Test;
+import org.teavm.callgraph.DefaultCallGraph;
+import org.teavm.model.ClassHolderSource;
+import org.teavm.model.Instruction;
+import org.teavm.model.MethodDescriptor;
+import org.teavm.model.MutableClassHolderSource;
+import org.teavm.model.Program;
+import org.teavm.model.instructions.GetFieldInstruction;
+import org.teavm.model.instructions.IntegerConstantInstruction;
+import org.teavm.model.util.ModelUtils;
+import org.teavm.parsing.ClasspathClassHolderSource;
+
+public class InterproceduralConstantPropagationTest {
+    private static final ClassHolderSource classpath = new ClasspathClassHolderSource(
+            InterproceduralConstantPropagationTest.class.getClassLoader());
+    private static final Class<?>[] CLASSES = { InterproceduralConstantPropagationTest.class, Simple.class,
+            Cyclic.class, Peer.class, Base.class, Derived.class };
+    private MutableClassHolderSource classes = new MutableClassHolderSource();
+
+    public InterproceduralConstantPropagationTest() {
+        for (Class<?> cls : CLASSES) {
+            classes.putClassHolder(ModelUtils.copyClass(classpath.get(cls.getName())));
+        }
+    }
+
+    private void propagate() {
+        new InterproceduralConstantPropagation(classes, new DefaultCallGraph(), method -> false).apply();
+    }
+
+    @Test
+    public void fieldStoredInInitializerFolded() {
+        propagate();
+        Program program = program(InterproceduralConstantPropagationTest.class, "readSimple");
+        assertEquals(0, fieldReads(program));
+        assertTrue(constants(program).contains(42));
+    }
+
+    @Test
+    public void fieldReadDuringInitializationCycleNotFolded() {
+        propagate();
+        assertEquals(1, fieldReads(program(InterproceduralConstantPropagationTest.class, "readCyclic")));
+        assertEquals(1, fieldReads(program(Peer.class, "read")));
+    }
+
+    @Test
+    public void fieldReadBySuperclassInitializerNotFolded() {
+        propagate();
+        assertEquals(1, fieldReads(program(InterproceduralConstantPropagationTest.class, "readDerived")));
+    }
+
+    @Test
+    public void methodWithEmptyProgramSkipped() {
+        classes.get(InterproceduralConstantPropagationTest.class.getName())
+                .getMethod(new MethodDescriptor("identity", int.class, int.class))
+                .setProgram(new Program());
+        propagate();
+        assertTrue(constants(program(InterproceduralConstantPropagationTest.class, "callIdentity")).contains(5));
+    }
+
+    private Program program(Class<?> cls, String name) {
+        return classes.get(cls.getName()).getMethod(new MethodDescriptor(name, int.class)).getProgram();
+    }
+
+    private static int fieldReads(Program program) {
+        int result = 0;
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            for (Instruction insn : program.basicBlockAt(i).getInstructions()) {
+                if (insn instanceof GetFieldInstruction) {
+                    ++result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static Set<Integer> constants(Program program) {
+        Set<Integer> result = new HashSet<>();
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            for (Instruction insn : program.basicBlockAt(i).getInstructions()) {
+                if (insn instanceof IntegerConstantInstruction) {
+                    result.add(((IntegerConstantInstruction) insn).getConstant());
+                }
+            }
+        }
+        return result;
+    }
+
+    static int readSimple() {
+        return Simple.VALUE;
+    }
+
+    static int readCyclic() {
+        return Cyclic.VALUE;
+    }
+
+    static int readDerived() {
+        return Derived.VALUE;
+    }
+
+    static int callIdentity() {
+        return identity(5);
+    }
+
+    static int identity(int value) {
+        return value;
+    }
+
+    static class Simple {
+        static final int VALUE;
+
+        static {
+            VALUE = 42;
+        }
+    }
+
+    static class Cyclic {
+        static final int OBSERVED;
+        static final int VALUE;
+
+        static {
+            // Returns 0, since VALUE is not stored yet
+            OBSERVED = Peer.read();
+            VALUE = 42;
+        }
+    }
+
+    static class Peer {
+        static int read() {
+            return Cyclic.VALUE;
+        }
+    }
+
+    static class Base {
+        static int observed = Derived.VALUE;
+    }
+
+    static class Derived extends Base {
+        static final int VALUE;
+
+        static {
+            VALUE = 23;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.model.optimization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.teavm.model.ClassHolderSource;
+import org.teavm.model.InterpretException;
+import org.teavm.model.Interpreter;
+import org.teavm.model.MethodDescriptor;
+import org.teavm.model.MethodHolder;
+import org.teavm.model.PreOptimizingClassHolderSource;
+import org.teavm.model.Program;
+import org.teavm.model.util.ProgramUtils;
+import org.teavm.parsing.ClasspathClassHolderSource;
+
+public class LoopUnrollingTest {
+    private static final ClassHolderSource classSource = new PreOptimizingClassHolderSource(
+            new ClasspathClassHolderSource(LoopUnrollingTest.class.getClassLoader()));
+    private static final int FACTOR = 4;
+
+    @Test
+    public void tripCountNotMultipleOfFactor() throws InterpretException {
+        Program program = unroll("sum");
+        for (int n = 0; n <= 3 * FACTOR + 1; ++n) {
+            assertEquals("n = " + n, sum(0, n), interpret(program, 0, n));
+        }
+    }
+
+    @Test
+    public void valueCarriedOutOfLoop() throws InterpretException {
+        Program program = unroll("lastCounter");
+        for (int n = 0; n <= 3 * FACTOR + 1; ++n) {
+            assertEquals("n = " + n, lastCounter(n), interpret(program, n));
+        }
+    }
+
+    @Test
+    public void limitNearMinValue() throws InterpretException {
+        // Unrolled loop's limit n - (factor - 1) overflows, only original loop must run
+        Program program = unroll("sum");
+        for (int n = Integer.MIN_VALUE; n < Integer.MIN_VALUE + 2 * FACTOR; ++n) {
+            for (int start = Integer.MIN_VALUE; start <= n + 1; ++start) {
+                assertEquals("start = " + start + ", n = " + n, sum(start, n), interpret(program, start, n));
+            }
+        }
+    }
+
+    @Test
+    public void limitChangedByLoopNotUnrolled() throws InterpretException {
+        MethodHolder method = getMethod("converge");
+        Program program = ProgramUtils.copy(method.getProgram());
+        prepare(method, program);
+        int blockCount = program.basicBlockCount();
+        new LoopUnrolling(FACTOR, 1000).optimize(method, program);
+        assertEquals(blockCount, program.basicBlockCount());
+        for (int n = 0; n <= 3 * FACTOR + 1; ++n) {
+            assertEquals("n = " + n, converge(n), interpret(program, n));
+        }
+    }
+
+    private static Program unroll(String name) {
+        MethodHolder method = getMethod(name);
+        Program program = ProgramUtils.copy(method.getProgram());
+        prepare(method, program);
+        int blockCount = program.basicBlockCount();
+        new LoopUnrolling(FACTOR, 1000).optimize(method, program);
+        assertTrue("Loop is not unrolled", program.basicBlockCount() > blockCount);
+        return program;
+    }
+
+    private static MethodHolder getMethod(String name) {
+        for (MethodHolder method : classSource.get(LoopUnrollingTest.class.getName()).getMethods()) {
+            if (method.getName().equals(name)) {
+                return method;
+            }
+        }
+        throw new AssertionError("Method not found: " + name);
+    }
+
+    // Brings loops to the inverted form, as optimization pipeline does
+    private static void prepare(MethodHolder method, Program program) {
+        new LoopInversion().optimize(method, program);
+        new GlobalValueNumbering(false).optimize(method, program);
+        new UnusedVariableElimination().optimize(method, program);
+    }
+
+    private static Object interpret(Program program, Object... arguments) throws InterpretException {
+        Object[] parameters = new Object[arguments.length + 1];
+        System.arraycopy(arguments, 0, parameters, 1, arguments.length);
+        return new Interpreter(LoopUnrollingTest.class.getClassLoader()).interpret(program, parameters);
+    }
+
+    // Loops are written in inverted form, since loop inversion is only applied where it's profitable
+
+    static int sum(int start, int n) {
+        int result = 0;
+        if (start < n) {
+            int i = start;
+            do {
+                result = result * 31 + i;
+                ++i;
+            } while (i < n);
+        }
+        return result;
+    }
+
+    static int lastCounter(int n) {
+        int i = 0;
+        int last = -1;
+        if (n > 0) {
+            do {
+                last = i;
+                i += 3;
+            } while (i < n);
+        }
+        return i * 1000 + last;
+    }
+
+    static int converge(int n) {
+        int i = 0;
+        if (i < n) {
+            do {
+                ++i;
+                --n;
+            } while (i < n);
+        }
+        return i;
+    }
+}
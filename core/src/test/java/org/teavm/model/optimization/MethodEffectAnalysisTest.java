@@ -0,0 +1,407 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.model.optimization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.teavm.common.LoopGraph;
+import org.teavm.interop.Pure;
+import org.teavm.model.BasicBlock;
+import org.teavm.model.ClassHolderSource;
+import org.teavm.model.Instruction;
+import org.teavm.model.MethodDescriptor;
+import org.teavm.model.MethodHolder;
+import org.teavm.model.MethodReference;
+import org.teavm.model.MutableClassHolderSource;
+import org.teavm.model.Program;
+import org.teavm.model.ValueType;
+import org.teavm.model.instructions.InvokeInstruction;
+import org.teavm.model.util.ModelUtils;
+import org.teavm.model.util.ProgramUtils;
+import org.teavm.parsing.ClasspathClassHolderSource;
+
+public class MethodEffectAnalysisTest {
+    private static final ClassHolderSource classpath = new ClasspathClassHolderSource(
+            MethodEffectAnalysisTest.class.getClassLoader());
+    private static final String CLASS_NAME = MethodEffectAnalysisTest.class.getName();
+    private static final MethodReference ADD = new MethodReference(MethodEffectAnalysisTest.class, "add",
+            int.class, int.class, int.class);
+    private static final MethodReference COUNTER = new MethodReference(MethodEffectAnalysisTest.class, "counter",
+            Holder.class, int.class);
+    private static final MethodReference INCREMENT = new MethodReference(MethodEffectAnalysisTest.class,
+            "increment", Holder.class, void.class);
+    private static final MethodReference COUNT_DOWN = new MethodReference(MethodEffectAnalysisTest.class,
+            "countDown", int.class, int.class);
+    private static final MethodReference VALUE = new MethodReference(MethodEffectAnalysisTest.class, "value",
+            Holder.class, int.class);
+    private MutableClassHolderSource classes = new MutableClassHolderSource();
+    private MethodEffectAnalysis analysis;
+
+    public MethodEffectAnalysisTest() {
+        classes.putClassHolder(ModelUtils.copyClass(classpath.get(CLASS_NAME)));
+        classes.putClassHolder(ModelUtils.copyClass(classpath.get(Holder.class.getName())));
+        classes.putClassHolder(ModelUtils.copyClass(classpath.get(Initialized.class.getName())));
+        classes.putClassHolder(ModelUtils.copyClass(classpath.get(Object.class.getName())));
+        analysis = new MethodEffectAnalysis(classes);
+    }
+
+    @Test
+    public void arithmeticIsPure() {
+        MethodEffects effects = effectsOf("add", int.class, int.class, int.class);
+        assertTrue(effects.isPure());
+        assertTrue(effects.isRemovable());
+    }
+
+    @Test
+    public void recursionMayNotTerminate() {
+        MethodEffects effects = effectsOf("factorial", int.class, int.class);
+        assertTrue(effects.isPure());
+        assertTrue(effects.mayNotTerminate());
+        assertFalse(effects.isRemovable());
+    }
+
+    @Test
+    public void mutualRecursionMayNotTerminate() {
+        assertTrue(effectsOf("isEven", int.class, boolean.class).mayNotTerminate());
+        assertTrue(effectsOf("isOdd", int.class, boolean.class).mayNotTerminate());
+    }
+
+    @Test
+    public void loopMayNotTerminate() {
+        MethodEffects effects = effectsOf("countDown", int.class, int.class);
+        assertTrue(effects.mayNotTerminate());
+        assertFalse(effects.isRemovable());
+        assertTrue(effectsOf("callCountDown", int.class, int.class).mayNotTerminate());
+        assertFalse(effectsOf("add", int.class, int.class, int.class).mayNotTerminate());
+    }
+
+    @Test
+    public void integerDivisionMayThrow() {
+        MethodEffects effects = effectsOf("divide", int.class, int.class, int.class);
+        assertTrue(effects.mayThrow());
+        assertFalse(effects.readsMemory());
+        assertFalse(effects.isRemovable());
+    }
+
+    @Test
+    public void fieldAccessTracked() {
+        MethodEffects read = effectsOf("counter", Holder.class, int.class);
+        assertTrue(read.readsMemory());
+        assertFalse(read.writesMemory());
+        assertFalse(read.isPure());
+        assertTrue(read.isRemovable());
+
+        MethodEffects write = effectsOf("increment", Holder.class, void.class);
+        assertTrue(write.writesMemory());
+        assertFalse(write.isRemovable());
+    }
+
+    @Test
+    public void effectsOfCalleesCombined() {
+        MethodEffects effects = effectsOf("incrementTwice", Holder.class, void.class);
+        assertTrue(effects.writesMemory());
+        assertTrue(effects.readsMemory());
+    }
+
+    @Test
+    public void finalFieldReadIsPureOutsideOfInitializer() {
+        assertTrue(effectsOf("value", Holder.class, int.class).isPure());
+        assertTrue(effectsOf("valuePlusOne", Holder.class, int.class).isPure());
+    }
+
+    @Test
+    public void finalFieldReadIsNotPureInInitializer() {
+        MethodReference constructor = new MethodReference(Holder.class, "<init>", int.class, void.class);
+        MethodEffects effects = analysis.getEffects(VALUE, constructor);
+        assertTrue(effects.readsMemory());
+        assertFalse(effects.isPure());
+    }
+
+    @Test
+    public void nativeMethodHasUnknownEffects() {
+        MethodEffects effects = effectsOf("nativeHash", int.class, int.class);
+        assertTrue(effects.writesMemory());
+        assertTrue(effects.mayThrow());
+    }
+
+    @Test
+    public void nativeMethodMarkedPure() {
+        assertTrue(effectsOf("pureNativeHash", int.class, int.class).isPure());
+    }
+
+    @Test
+    public void virtualCallHasUnknownEffects() {
+        MethodEffects effects = effectsOf("callToString", Object.class, String.class);
+        assertTrue(effects.writesMemory());
+        assertTrue(effects.mayThrow());
+    }
+
+    @Test
+    public void pureCallsMergedByGlobalValueNumbering() {
+        Program program = optimize(new GlobalValueNumbering(false, analysis), "addTwice", int.class, int.class,
+                int.class);
+        assertEquals(1, calls(program, ADD).size());
+    }
+
+    @Test
+    public void readingCallsNotMergedByGlobalValueNumbering() {
+        Program program = optimize(new GlobalValueNumbering(false, analysis), "counterTwice", Holder.class,
+                int.class);
+        assertEquals(2, calls(program, COUNTER).size());
+    }
+
+    @Test
+    public void finalFieldReadsNotMergedAcrossInitialization() {
+        Program program = optimize(new GlobalValueNumbering(false, analysis), CLASS_NAME, "valueTwice",
+                Holder.class, int.class);
+        assertEquals(1, calls(program, VALUE).size());
+
+        program = optimize(new GlobalValueNumbering(false, analysis), Holder.class.getName(), "<init>",
+                int.class, void.class);
+        assertEquals(2, calls(program, VALUE).size());
+    }
+
+    @Test
+    public void pureCallMovedOutOfLoop() {
+        Program program = optimize(new LoopInvariantMotion(analysis), "sumWithPureCall", int[].class,
+                int.class, int.class);
+        assertFalse(isInLoop(program, ADD));
+    }
+
+    @Test
+    public void pureCallNotMovedIfLoopMayNotExecuteIt() {
+        Program program = optimize(new LoopInvariantMotion(analysis), "sumWithConditionalPureCall", int[].class,
+                int.class, int.class);
+        assertTrue(isInLoop(program, ADD));
+    }
+
+    @Test
+    public void callThatMayNotTerminateKeptInLoop() {
+        Program program = optimize(new LoopInvariantMotion(analysis), "sumWithLoopingCall", int[].class,
+                int.class, int.class);
+        assertTrue(isInLoop(program, COUNT_DOWN));
+    }
+
+    @Test
+    public void readingCallKeptInLoop() {
+        Program program = optimize(new LoopInvariantMotion(analysis), "sumWithReadingCall", Holder.class,
+                int[].class, int.class);
+        assertTrue(isInLoop(program, COUNTER));
+    }
+
+    @Test
+    public void unusedCallsRemoved() {
+        Program program = optimize(new UnusedVariableElimination(analysis), "discardResults", Holder.class,
+                void.class);
+        assertEquals(0, calls(program, ADD).size());
+        assertEquals("Call that reads memory is removable", 0, calls(program, COUNTER).size());
+        assertEquals(1, calls(program, INCREMENT).size());
+        assertEquals(1, calls(program, new MethodReference(MethodEffectAnalysisTest.class, "divide",
+                int.class, int.class, int.class)).size());
+        assertEquals("Call that may not terminate is not removable", 1, calls(program, COUNT_DOWN).size());
+    }
+
+    @Test
+    public void constructorCallInitializingClassKept() {
+        Program program = optimize(new UnusedVariableElimination(analysis), "discardInstance", void.class);
+        assertEquals(1, calls(program, new MethodReference(Initialized.class, "<init>", void.class)).size());
+    }
+
+    private MethodEffects effectsOf(String name, Class<?>... signature) {
+        MethodReference method = new MethodReference(CLASS_NAME, new MethodDescriptor(name, signature));
+        return analysis.getEffects(method, new MethodReference(CLASS_NAME, "caller", ValueType.VOID));
+    }
+
+    private Program optimize(MethodOptimization optimization, String name, Class<?>... signature) {
+        return optimize(optimization, CLASS_NAME, name, signature);
+    }
+
+    private Program optimize(MethodOptimization optimization, String className, String name,
+            Class<?>... signature) {
+        MethodHolder method = classes.get(className).getMethod(new MethodDescriptor(name, signature));
+        Program program = ProgramUtils.copy(method.getProgram());
+        optimization.optimize(method, program);
+        return program;
+    }
+
+    private static boolean isInLoop(Program program, MethodReference method) {
+        LoopGraph loops = new LoopGraph(ProgramUtils.buildControlFlowGraph(program));
+        List<InvokeInstruction> calls = calls(program, method);
+        assertEquals(1, calls.size());
+        return loops.loopAt(calls.get(0).getBasicBlock().getIndex()) != null;
+    }
+
+    private static List<InvokeInstruction> calls(Program program, MethodReference method) {
+        List<InvokeInstruction> result = new ArrayList<>();
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            BasicBlock block = program.basicBlockAt(i);
+            for (Instruction insn : block.getInstructions()) {
+                if (insn instanceof InvokeInstruction && ((InvokeInstruction) insn).getMethod().equals(method)) {
+                    result.add((InvokeInstruction) insn);
+                }
+            }
+        }
+        return result;
+    }
+
+    static int add(int a, int b) {
+        return a + b;
+    }
+
+    static int factorial(int n) {
+        return n <= 1 ? 1 : n * factorial(n - 1);
+    }
+
+    static boolean isEven(int n) {
+        return n == 0 || isOdd(n - 1);
+    }
+
+    static boolean isOdd(int n) {
+        return n != 0 && isEven(n - 1);
+    }
+
+    static int countDown(int n) {
+        while (n > 0) {
+            --n;
+        }
+        return n;
+    }
+
+    static int callCountDown(int n) {
+        return countDown(n) + 1;
+    }
+
+    static int divide(int a, int b) {
+        return a / b;
+    }
+
+    static int counter(Holder holder) {
+        return holder.counter;
+    }
+
+    static void increment(Holder holder) {
+        holder.counter++;
+    }
+
+    static void incrementTwice(Holder holder) {
+        increment(holder);
+        increment(holder);
+    }
+
+    static int value(Holder holder) {
+        return holder.value;
+    }
+
+    static int valuePlusOne(Holder holder) {
+        return value(holder) + 1;
+    }
+
+    static native int nativeHash(int a);
+
+    @Pure
+    static native int pureNativeHash(int a);
+
+    static String callToString(Object object) {
+        return object.toString();
+    }
+
+    static int addTwice(int a, int b) {
+        return add(a, b) * add(a, b);
+    }
+
+    static int counterTwice(Holder holder) {
+        return counter(holder) * counter(holder);
+    }
+
+    static int valueTwice(Holder holder) {
+        return value(holder) * value(holder);
+    }
+
+    static int sumWithPureCall(int[] array, int k) {
+        int sum = 0;
+        int i = 0;
+        while (true) {
+            int factor = add(k, 2);
+            if (i >= array.length) {
+                break;
+            }
+            sum += array[i++] * factor;
+        }
+        return sum;
+    }
+
+    static int sumWithConditionalPureCall(int[] array, int k) {
+        int sum = 0;
+        for (int i = 0; i < array.length; ++i) {
+            sum += array[i] * add(k, 2);
+        }
+        return sum;
+    }
+
+    static int sumWithLoopingCall(int[] array, int k) {
+        int sum = 0;
+        int i = 0;
+        while (true) {
+            int factor = countDown(k);
+            if (i >= array.length) {
+                break;
+            }
+            sum += array[i++] * factor;
+        }
+        return sum;
+    }
+
+    static int sumWithReadingCall(Holder holder, int[] array) {
+        int sum = 0;
+        for (int i = 0; i < array.length; ++i) {
+            sum += array[i] * counter(holder);
+        }
+        return sum;
+    }
+
+    static void discardResults(Holder holder) {
+        add(1, 2);
+        counter(holder);
+        increment(holder);
+        divide(3, 4);
+        countDown(5);
+    }
+
+    static void discardInstance() {
+        new Initialized();
+    }
+
+    static class Initialized {
+        static final Object INSTANCE = new Object();
+    }
+
+    static class Holder {
+        final int value;
+        int counter;
+        int before;
+        int after;
+
+        Holder(int value) {
+            before = value(this);
+            this.value = value;
+            after = value(this);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.model.optimization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.util.List;
+import org.junit.Test;
+import org.teavm.model.BasicBlock;
+import org.teavm.model.ClassHolderSource;
+import org.teavm.model.Instruction;
+import org.teavm.model.MethodDescriptor;
+import org.teavm.model.MethodHolder;
+import org.teavm.model.PreOptimizingClassHolderSource;
+import org.teavm.model.Program;
+import org.teavm.model.Variable;
+import org.teavm.model.instructions.ConstructInstruction;
+import org.teavm.model.instructions.GetFieldInstruction;
+import org.teavm.model.instructions.NullCheckInstruction;
+import org.teavm.model.instructions.PutFieldInstruction;
+import org.teavm.model.util.ProgramUtils;
+import org.teavm.parsing.ClasspathClassHolderSource;
+
+public class ScalarReplacementTest {
+    private static final ClassHolderSource classSource = new PreOptimizingClassHolderSource(
+            new ClasspathClassHolderSource(ScalarReplacementTest.class.getClassLoader()));
+    static Point escaped;
+
+    @Test
+    public void nonEscapingObjectReplaced() {
+        Program program = optimize("sum", false);
+        assertEquals(0, count(program, ConstructInstruction.class));
+        assertEquals(0, count(program, GetFieldInstruction.class));
+        assertEquals(0, count(program, PutFieldInstruction.class));
+    }
+
+    @Test
+    public void nullChecksOfReplacedObjectRemoved() {
+        Program program = optimize("sum", true);
+        assertEquals(0, count(program, ConstructInstruction.class));
+        assertEquals(0, count(program, NullCheckInstruction.class));
+        assertEquals(0, count(program, GetFieldInstruction.class));
+    }
+
+    @Test
+    public void nullCheckedObjectEscapingToFieldKept() {
+        Program program = optimize("escape", true);
+        assertEquals(1, count(program, ConstructInstruction.class));
+        assertTrue(count(program, NullCheckInstruction.class) > 0);
+    }
+
+    private static Program optimize(String name, boolean nullChecks) {
+        MethodHolder method = classSource.get(ScalarReplacementTest.class.getName())
+                .getMethod(new MethodDescriptor(name, int.class));
+        Program program = ProgramUtils.copy(method.getProgram());
+        new Inlining().apply(method.getReference(), program, classSource);
+        if (nullChecks) {
+            insertNullChecks(program);
+        }
+        new ScalarReplacement().optimize(method, program);
+        return program;
+    }
+
+    // Puts null check before every field access, similarly to how backends check receivers of calls
+    private static void insertNullChecks(Program program) {
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            List<Instruction> instructions = program.basicBlockAt(i).getInstructions();
+            for (int j = 0; j < instructions.size(); ++j) {
+                Instruction insn = instructions.get(j);
+                Variable instance;
+                if (insn instanceof GetFieldInstruction) {
+                    instance = ((GetFieldInstruction) insn).getInstance();
+                } else if (insn instanceof PutFieldInstruction) {
+                    instance = ((PutFieldInstruction) insn).getInstance();
+                } else {
+                    continue;
+                }
+                if (instance == null) {
+                    continue;
+                }
+                NullCheckInstruction nullCheck = new NullCheckInstruction();
+                nullCheck.setValue(instance);
+                nullCheck.setReceiver(program.createVariable());
+                if (insn instanceof GetFieldInstruction) {
+                    ((GetFieldInstruction) insn).setInstance(nullCheck.getReceiver());
+                } else {
+                    ((PutFieldInstruction) insn).setInstance(nullCheck.getReceiver());
+                }
+                instructions.add(j++, nullCheck);
+            }
+        }
+    }
+
+    private static int count(Program program, Class<? extends Instruction> type) {
+        int result = 0;
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            BasicBlock block = program.basicBlockAt(i);
+            for (Instruction insn : block.getInstructions()) {
+                if (type.isInstance(insn)) {
+                    ++result;
+                }
+            }
+        }
+        return result;
+    }
+
+    static int sum() {
+        Point p = new Point(2, 3);
+        p.x += 5;
+        return p.x + p.y;
+    }
+
+    static int escape() {
+        Point p = new Point(2, 3);
+        p.x += 5;
+        escaped = p;
+        return p.x + p.y;
+    }
+
+    static class Point {
+        int x;
+        int y;
+
+        Point(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.model.optimization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.teavm.model.ClassHolderSource;
+import org.teavm.model.Instruction;
+import org.teavm.model.MethodDescriptor;
+import org.teavm.model.MethodHolder;
+import org.teavm.model.Program;
+import org.teavm.model.instructions.BinaryInstruction;
+import org.teavm.model.instructions.BranchingInstruction;
+import org.teavm.model.instructions.CastNumberInstruction;
+import org.teavm.model.instructions.DoubleConstantInstruction;
+import org.teavm.model.instructions.FloatConstantInstruction;
+import org.teavm.model.util.ProgramUtils;
+import org.teavm.parsing.ClasspathClassHolderSource;
+
+public class SparseConditionalConstantPropagationTest {
+    private static final ClassHolderSource classSource = new ClasspathClassHolderSource(
+            SparseConditionalConstantPropagationTest.class.getClassLoader());
+
+    @Test
+    public void doubleArithmeticFolded() {
+        Program program = optimize("addDoubles", double.class);
+        assertEquals(0, count(program, BinaryInstruction.class));
+        assertTrue(doubleConstants(program).contains(addDoubles()));
+    }
+
+    @Test
+    public void floatArithmeticNotFolded() {
+        // JVM result is rounded to float, while JavaScript computes the sum in double precision
+        Program program = optimize("addFloats", float.class);
+        assertEquals(1, count(program, BinaryInstruction.class));
+    }
+
+    @Test
+    public void castToFloatNotFolded() {
+        Program program = optimize("intToFloat", float.class);
+        assertEquals(1, count(program, CastNumberInstruction.class));
+        assertEquals(0, count(program, FloatConstantInstruction.class));
+
+        program = optimize("doubleToFloat", float.class);
+        assertEquals(1, count(program, CastNumberInstruction.class));
+        assertEquals(0, count(program, FloatConstantInstruction.class));
+    }
+
+    @Test
+    public void castFromFloatFolded() {
+        Program program = optimize("floatToDouble", double.class);
+        assertEquals(0, count(program, CastNumberInstruction.class));
+        assertTrue(doubleConstants(program).contains((double) 0.1f));
+    }
+
+    @Test
+    public void floatComparisonFolded() {
+        Program program = optimize("compareFloats", int.class);
+        assertEquals(0, count(program, BinaryInstruction.class));
+        assertEquals(0, count(program, BranchingInstruction.class));
+    }
+
+    private static Program optimize(String name, Class<?>... signature) {
+        MethodHolder method = classSource.get(SparseConditionalConstantPropagationTest.class.getName())
+                .getMethod(new MethodDescriptor(name, signature));
+        Program program = ProgramUtils.copy(method.getProgram());
+        new SparseConditionalConstantPropagation().optimize(method, program);
+        return program;
+    }
+
+    private static int count(Program program, Class<? extends Instruction> type) {
+        int result = 0;
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            for (Instruction insn : program.basicBlockAt(i).getInstructions()) {
+                if (type.isInstance(insn)) {
+                    ++result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static List<Double> doubleConstants(Program program) {
+        List<Double> result = new ArrayList<>();
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            for (Instruction insn : program.basicBlockAt(i).getInstructions()) {
+                if (insn instanceof DoubleConstantInstruction) {
+                    result.add(((DoubleConstantInstruction) insn).getConstant());
+                }
+            }
+        }
+        return result;
+    }
+
+    static double addDoubles() {
+        double a = 0.1;
+        double b = 0.2;
+        return a + b;
+    }
+
+    static float addFloats() {
+        float a = 0.1f;
+        float b = 0.2f;
+        return a + b;
+    }
+
+    static float intToFloat() {
+        // Not representable as float
+        int a = 16777217;
+        return a;
+    }
+
+    static float doubleToFloat() {
+        double a = 0.1;
+        return (float) a;
+    }
+
+    static double floatToDouble() {
+        float a = 0.1f;
+        return a;
+    }
+
+    static int compareFloats() {
+        float a = 0.1f;
+        float b = 0.2f;
+        return a < b ? 1 : 2;
+    }
+}
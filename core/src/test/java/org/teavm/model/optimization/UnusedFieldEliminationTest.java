@@ -0,0 +1,250 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.model.optimization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.Test;
+import org.teavm.callgraph.CallGraph;
+import org.teavm.callgraph.DefaultCallGraph;
+import org.teavm.dependency.ClassDependencyInfo;
+import org.teavm.dependency.DependencyInfo;
+import org.teavm.dependency.FieldDependencyInfo;
+import org.teavm.dependency.MethodDependencyInfo;
+import org.teavm.model.ClassHolder;
+import org.teavm.model.ClassHolderSource;
+import org.teavm.model.ClassReaderSource;
+import org.teavm.model.FieldReference;
+import org.teavm.model.Instruction;
+import org.teavm.model.MethodDescriptor;
+import org.teavm.model.MethodReference;
+import org.teavm.model.MutableClassHolderSource;
+import org.teavm.model.Program;
+import org.teavm.model.instructions.GetFieldInstruction;
+import org.teavm.model.instructions.IntegerConstantInstruction;
+import org.teavm.model.instructions.PutFieldInstruction;
+import org.teavm.model.util.ModelUtils;
+import org.teavm.parsing.ClasspathClassHolderSource;
+
+public class UnusedFieldEliminationTest {
+    private static final ClassHolderSource classpath = new ClasspathClassHolderSource(
+            UnusedFieldEliminationTest.class.getClassLoader());
+    private static final String POINT = Point.class.getName();
+    private static final MethodReference UPDATE = new MethodReference(Point.class, "update", int.class,
+            void.class);
+    private static final MethodReference GET = new MethodReference(Point.class, "get", int.class);
+    private static final MethodReference FROM_GENERATOR = new MethodReference(Point.class, "fromGenerator",
+            int.class);
+    private MutableClassHolderSource classes = new MutableClassHolderSource();
+    private DefaultCallGraph callGraph = new DefaultCallGraph();
+
+    public UnusedFieldEliminationTest() {
+        classes.putClassHolder(ModelUtils.copyClass(classpath.get(POINT)));
+        callGraph.getNode(UPDATE);
+        callGraph.getNode(GET).addFieldAccess(field("y"), null);
+        callGraph.getNode(GET).addFieldAccess(field("zero"), null);
+        callGraph.getNode(GET).addFieldAccess(field("injected"), null);
+        callGraph.getNode(FROM_GENERATOR).addFieldAccess(field("generated"), null);
+    }
+
+    @Test
+    public void writeOnlyFieldRemoved() {
+        apply();
+        assertNull(classes.get(POINT).getField("x"));
+        assertFalse(writtenFields(UPDATE).contains("x"));
+    }
+
+    @Test
+    public void readFieldKept() {
+        apply();
+        assertNotNull(classes.get(POINT).getField("y"));
+        assertTrue(writtenFields(UPDATE).contains("y"));
+        assertTrue(readFields(GET).contains("y"));
+    }
+
+    @Test
+    public void fieldWithDefaultValueFolded() {
+        apply();
+        assertNull(classes.get(POINT).getField("zero"));
+        assertFalse(writtenFields(UPDATE).contains("zero"));
+        assertFalse(readFields(GET).contains("zero"));
+        assertTrue(constants(GET).contains(0));
+    }
+
+    @Test
+    public void fieldsLinkedByPluginsKept() {
+        apply();
+        assertNotNull("Field accessed by generator", classes.get(POINT).getField("generated"));
+        assertNotNull("Field accessed by injector", classes.get(POINT).getField("injected"));
+        assertTrue(writtenFields(UPDATE).containsAll(Arrays.asList("generated", "injected")));
+    }
+
+    @Test
+    public void annotatedFieldKept() {
+        apply();
+        assertNotNull(classes.get(POINT).getField("annotated"));
+        assertTrue(writtenFields(UPDATE).contains("annotated"));
+    }
+
+    @Test
+    public void rootFieldKept() {
+        apply();
+        assertNotNull(classes.get(POINT).getField("rooted"));
+        assertTrue(writtenFields(UPDATE).contains("rooted"));
+        assertEquals(5, classes.get(POINT).getFields().size());
+    }
+
+    private void apply() {
+        new UnusedFieldElimination(classes, new StubDependencyInfo(), field -> field.equals(field("rooted")))
+                .apply();
+    }
+
+    private static FieldReference field(String name) {
+        return new FieldReference(POINT, name);
+    }
+
+    private Program program(MethodReference method) {
+        ClassHolder cls = classes.get(method.getClassName());
+        return cls.getMethod(method.getDescriptor()).getProgram();
+    }
+
+    private Set<String> writtenFields(MethodReference method) {
+        Set<String> result = new HashSet<>();
+        for (Instruction insn : instructions(program(method))) {
+            if (insn instanceof PutFieldInstruction) {
+                result.add(((PutFieldInstruction) insn).getField().getFieldName());
+            }
+        }
+        return result;
+    }
+
+    private Set<String> readFields(MethodReference method) {
+        Set<String> result = new HashSet<>();
+        for (Instruction insn : instructions(program(method))) {
+            if (insn instanceof GetFieldInstruction) {
+                result.add(((GetFieldInstruction) insn).getField().getFieldName());
+            }
+        }
+        return result;
+    }
+
+    private Set<Integer> constants(MethodReference method) {
+        Set<Integer> result = new HashSet<>();
+        for (Instruction insn : instructions(program(method))) {
+            if (insn instanceof IntegerConstantInstruction) {
+                result.add(((IntegerConstantInstruction) insn).getConstant());
+            }
+        }
+        return result;
+    }
+
+    private static List<Instruction> instructions(Program program) {
+        List<Instruction> result = new ArrayList<>();
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            result.addAll(program.basicBlockAt(i).getInstructions());
+        }
+        return result;
+    }
+
+    class StubDependencyInfo implements DependencyInfo {
+        @Override
+        public ClassReaderSource getClassSource() {
+            return classes;
+        }
+
+        @Override
+        public ClassLoader getClassLoader() {
+            return UnusedFieldEliminationTest.class.getClassLoader();
+        }
+
+        @Override
+        public Collection<MethodReference> getReachableMethods() {
+            return Arrays.asList(UPDATE, GET, FROM_GENERATOR,
+                    new MethodReference(POINT, new MethodDescriptor("<init>", void.class)));
+        }
+
+        @Override
+        public Collection<FieldReference> getReachableFields() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Collection<String> getReachableClasses() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FieldDependencyInfo getField(FieldReference fieldRef) {
+            return null;
+        }
+
+        @Override
+        public MethodDependencyInfo getMethod(MethodReference methodRef) {
+            return null;
+        }
+
+        @Override
+        public MethodDependencyInfo getMethodImplementation(MethodReference methodRef) {
+            return null;
+        }
+
+        @Override
+        public ClassDependencyInfo getClass(String className) {
+            return null;
+        }
+
+        @Override
+        public CallGraph getCallGraph() {
+            return callGraph;
+        }
+    }
+
+    static class Point {
+        int x;
+        int y;
+        int zero;
+        int generated;
+        int injected;
+        @Deprecated
+        int annotated;
+        int rooted;
+
+        void update(int v) {
+            x = v;
+            y = v;
+            zero = 0;
+            generated = v;
+            injected = v;
+            annotated = v;
+            rooted = v;
+        }
+
+        int get() {
+            return y + zero;
+        }
+
+        native int fromGenerator();
+    }
+}
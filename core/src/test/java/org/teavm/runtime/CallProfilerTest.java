@@ -0,0 +1,164 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.runtime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.io.StringReader;
+import org.junit.Test;
+import org.teavm.model.BasicBlock;
+import org.teavm.model.ClassHolderSource;
+import org.teavm.model.Instruction;
+import org.teavm.model.InterpretException;
+import org.teavm.model.Interpreter;
+import org.teavm.model.MethodReference;
+import org.teavm.model.MutableClassHolderSource;
+import org.teavm.model.Program;
+import org.teavm.model.instructions.InvokeInstruction;
+import org.teavm.model.optimization.CallProfile;
+import org.teavm.model.optimization.CallProfileInstrumentation;
+import org.teavm.model.optimization.Inlining;
+import org.teavm.model.util.ModelUtils;
+import org.teavm.model.util.ProgramUtils;
+import org.teavm.parsing.ClasspathClassHolderSource;
+
+public class CallProfilerTest {
+    private static final ClassHolderSource classSource = new ClasspathClassHolderSource(
+            CallProfilerTest.class.getClassLoader());
+    private static final MethodReference PROFILED = new MethodReference(CallProfilerTest.class, "profiled",
+            int.class, int.class);
+    private static final MethodReference FREQUENT = new MethodReference(CallProfilerTest.class, "frequent",
+            int.class, int.class);
+    private static final MethodReference RARE = new MethodReference(CallProfilerTest.class, "rare",
+            int.class, int.class);
+    private static final MethodReference GET_SITES = new MethodReference(CallProfiler.class, "getSites",
+            String.class);
+
+    @Test
+    public void recordedProfileGuidesInlining() throws Exception {
+        MutableClassHolderSource classes = new MutableClassHolderSource();
+        classes.putClassHolder(ModelUtils.copyClass(classSource.get(CallProfilerTest.class.getName())));
+        classes.putClassHolder(ModelUtils.copyClass(classSource.get(CallProfiler.class.getName())));
+        new CallProfileInstrumentation().apply(classes);
+
+        CallProfiler.reset();
+        assertEquals(profiled(100), interpret(program(classes, PROFILED), 100));
+        String sites = (String) interpret(program(classes, GET_SITES));
+        CallProfile profile = CallProfile.read(new StringReader(CallProfiler.getProfile(sites)));
+
+        assertEquals(100, profile.getCount(PROFILED, lineOf(FREQUENT), FREQUENT));
+        assertTrue(profile.contains(PROFILED, lineOf(RARE), RARE));
+        assertEquals(0, profile.getCount(PROFILED, lineOf(RARE), RARE));
+        assertFalse(profile.contains(PROFILED, lineOf(FREQUENT), CallProfileInstrumentation.COUNT_METHOD));
+
+        Program program = inline(new Inlining());
+        assertEquals(1, calls(program, FREQUENT));
+        assertEquals(0, calls(program, RARE));
+
+        program = inline(new Inlining(profile));
+        assertEquals(0, calls(program, FREQUENT));
+        assertEquals(1, calls(program, RARE));
+    }
+
+    @Test
+    public void uninstrumentedProfileEmpty() {
+        CallProfiler.reset();
+        CallProfiler.count(0);
+        assertEquals("", CallProfiler.getProfile());
+    }
+
+    @Test
+    public void countsOfSitesKeptInOrder() {
+        CallProfiler.reset();
+        CallProfiler.count(1);
+        CallProfiler.count(1);
+        CallProfiler.count(1000);
+        assertEquals("0 a\n2 b\n0 c\n", CallProfiler.getProfile("a\nb\nc"));
+        CallProfiler.count(0);
+        assertEquals("1 a\n2 b\n", CallProfiler.getProfile("a\nb"));
+    }
+
+    private static Object interpret(Program program, Object... arguments) throws InterpretException {
+        Object[] parameters = new Object[arguments.length + 1];
+        System.arraycopy(arguments, 0, parameters, 1, arguments.length);
+        return new Interpreter(CallProfilerTest.class.getClassLoader()).interpret(program, parameters);
+    }
+
+    private static Program program(ClassHolderSource classes, MethodReference method) {
+        return classes.get(method.getClassName()).getMethod(method.getDescriptor()).getProgram();
+    }
+
+    private static Program inline(Inlining inlining) {
+        Program program = ProgramUtils.copy(program(classSource, PROFILED));
+        inlining.apply(PROFILED, program, classSource);
+        return program;
+    }
+
+    private static int lineOf(MethodReference callee) {
+        Program program = program(classSource, PROFILED);
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            BasicBlock block = program.basicBlockAt(i);
+            for (Instruction insn : block.getInstructions()) {
+                if (insn instanceof InvokeInstruction && ((InvokeInstruction) insn).getMethod().equals(callee)) {
+                    return CallProfile.lineOf(insn.getLocation());
+                }
+            }
+        }
+        throw new AssertionError("Call to " + callee + " not found");
+    }
+
+    private static int calls(Program program, MethodReference callee) {
+        int result = 0;
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            BasicBlock block = program.basicBlockAt(i);
+            for (Instruction insn : block.getInstructions()) {
+                if (insn instanceof InvokeInstruction && ((InvokeInstruction) insn).getMethod().equals(callee)) {
+                    ++result;
+                }
+            }
+        }
+        return result;
+    }
+
+    // Called by interpreter via reflection, so methods must be public
+
+    public static int profiled(int n) {
+        int result = 0;
+        for (int i = 0; i < n; ++i) {
+            result += frequent(i);
+        }
+        if (result == Integer.MIN_VALUE) {
+            result = rare(result);
+        }
+        return result;
+    }
+
+    public static int frequent(int a) {
+        int b = a * 31 + 17;
+        int c = b ^ (a >>> 3);
+        int d = c * 13 - b;
+        int e = d ^ (c << 5);
+        int f = e * 7 + d;
+        int g = f ^ (e >>> 11);
+        int h = g * 5 - f;
+        return h ^ (g << 2);
+    }
+
+    public static int rare(int a) {
+        return a * 3 + a / 7 - 1;
+    }
+}
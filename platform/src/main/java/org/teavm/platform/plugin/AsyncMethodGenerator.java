@@ -16,6 +16,7 @@
 package org.teavm.platform.plugin;
 
 import java.io.IOException;
+import org.teavm.backend.javascript.AsyncMode;
 import org.teavm.backend.javascript.codegen.SourceWriter;
 import org.teavm.backend.javascript.spi.Generator;
 import org.teavm.backend.javascript.spi.GeneratorContext;
@@ -43,16 +44,15 @@ public class AsyncMethodGenerator implements Generator, DependencyPlugin {
     @Override
     public void generate(GeneratorContext context, SourceWriter writer, MethodReference methodRef) throws IOException {
         MethodReference asyncRef = getAsyncReference(methodRef);
+        boolean generator = context.getAsyncMode() == AsyncMode.GENERATORS;
         writer.append("var thread").ws().append('=').ws().append("$rt_nativeThread();").softNewLine();
         writer.append("var javaThread").ws().append('=').ws().append("$rt_getThread();").softNewLine();
-        writer.append("if").ws().append("(thread.isResuming())").ws().append("{").indent().softNewLine();
-        writer.append("thread.status").ws().append("=").ws().append("0;").softNewLine();
-        writer.append("var result").ws().append("=").ws().append("thread.attribute;").softNewLine();
-        writer.append("if").ws().append("(result instanceof Error)").ws().append("{").indent().softNewLine();
-        writer.append("throw result;").softNewLine();
-        writer.outdent().append("}").softNewLine();
-        writer.append("return result;").softNewLine();
-        writer.outdent().append("}").softNewLine();
+        if (!generator) {
+            writer.append("if").ws().append("(thread.isResuming())").ws().append("{").indent().softNewLine();
+            writer.append("thread.status").ws().append("=").ws().append("0;").softNewLine();
+            appendResult(writer);
+            writer.outdent().append("}").softNewLine();
+        }
 
         writer.append("var callback").ws().append("=").ws().append("function()").ws().append("{};").softNewLine();
         writer.append("callback.").appendMethod(completeMethod.getDescriptor()).ws().append("=").ws()
@@ -69,7 +69,11 @@ public class AsyncMethodGenerator implements Generator, DependencyPlugin {
         writer.outdent().append("};").softNewLine();
         writer.append("callback").ws().append("=").ws().appendMethodBody(AsyncCallbackWrapper.class, "create",
                 AsyncCallback.class, AsyncCallbackWrapper.class).append("(callback);").softNewLine();
-        writer.append("return thread.suspend(function()").ws().append("{").indent().softNewLine();
+        if (generator) {
+            writer.append("yield function()").ws().append("{").indent().softNewLine();
+        } else {
+            writer.append("return thread.suspend(function()").ws().append("{").indent().softNewLine();
+        }
         writer.append("try").ws().append("{").indent().softNewLine();
         writer.appendMethodBody(asyncRef).append('(');
         ClassReader cls = context.getClassSource().get(methodRef.getClassName());
@@ -84,7 +88,20 @@ public class AsyncMethodGenerator implements Generator, DependencyPlugin {
         writer.append("callback.").appendMethod(errorMethod.getDescriptor()).append("($rt_exception($e));")
                 .softNewLine();
         writer.outdent().append("}").softNewLine();
-        writer.outdent().append("});").softNewLine();
+        if (generator) {
+            writer.outdent().append("};").softNewLine();
+            appendResult(writer);
+        } else {
+            writer.outdent().append("});").softNewLine();
+        }
+    }
+
+    private void appendResult(SourceWriter writer) throws IOException {
+        writer.append("var result").ws().append("=").ws().append("thread.attribute;").softNewLine();
+        writer.append("if").ws().append("(result instanceof Error)").ws().append("{").indent().softNewLine();
+        writer.append("throw result;").softNewLine();
+        writer.outdent().append("}").softNewLine();
+        writer.append("return result;").softNewLine();
     }
 
     private MethodReference getAsyncReference(MethodReference methodRef) {
@@ -17,6 +17,7 @@ package org.teavm.platform.plugin;
 
 import java.io.IOException;
 import java.lang.annotation.Annotation;
+import org.teavm.backend.javascript.AsyncMode;
 import org.teavm.backend.javascript.codegen.SourceWriter;
 import org.teavm.backend.javascript.spi.Generator;
 import org.teavm.backend.javascript.spi.GeneratorContext;
@@ -124,6 +125,10 @@ public class PlatformGenerator implements Generator, Injector, DependencyPlugin
 
     private void generateNewInstance(GeneratorContext context, SourceWriter writer) throws IOException {
         String cls = context.getParameterName(1);
+        if (context.getAsyncMode() == AsyncMode.GENERATORS) {
+            generateNewInstanceWithGenerators(context, writer);
+            return;
+        }
 
         writer.append("if").ws().append("($rt_resuming())").ws().append("{").indent().softNewLine();
         writer.append("var $r = $rt_nativeThread().pop();").softNewLine();
@@ -144,6 +149,26 @@ public class PlatformGenerator implements Generator, Injector, DependencyPlugin
         writer.append("return $r;").softNewLine();
     }
 
+    private void generateNewInstanceWithGenerators(GeneratorContext context, SourceWriter writer)
+            throws IOException {
+        String cls = context.getParameterName(1);
+        writer.append("if").ws().append("(!").append(cls).append(".hasOwnProperty('$$constructor$$'))")
+                .ws().append("{").indent().softNewLine();
+        writer.append("return null;").softNewLine();
+        writer.outdent().append("}").softNewLine();
+
+        writer.append("var $r").ws().append('=').ws().append("new ").append(cls).append("();").softNewLine();
+        if (context.isAsync()) {
+            writer.append("var $g").ws().append('=').ws().append(cls).append(".$$constructor$$($r);").softNewLine();
+            writer.append("if").ws().append("($g !== void 0)").ws().append("{").indent().softNewLine();
+            writer.append("yield* $g;").softNewLine();
+            writer.outdent().append("}").softNewLine();
+        } else {
+            writer.append(cls).append(".$$constructor$$($r);").softNewLine();
+        }
+        writer.append("return $r;").softNewLine();
+    }
+
     private void generateLookup(GeneratorContext context, SourceWriter writer) throws IOException {
         String param = context.getParameterName(1);
         writer.append("switch ($rt_ustr(" + param + ")) {").softNewLine().indent();
@@ -171,13 +196,23 @@ public class PlatformGenerator implements Generator, Injector, DependencyPlugin
         MethodReference launchRef = new MethodReference(Platform.class, "launchThread",
                 PlatformRunnable.class, void.class);
         String runnable = context.getParameterName(1);
+        // In generators mode launchThread may be a generator function, which does nothing unless run
+        boolean runSync = timeout && context.getAsyncMode() == AsyncMode.GENERATORS
+                && (context.isAsync(launchRef) || context.isAsyncFamily(launchRef));
         writer.append("return window.setTimeout(function()").ws().append("{").indent().softNewLine();
+        if (runSync) {
+            writer.append("$rt_runSync(");
+        }
         if (timeout) {
             writer.appendMethodBody(launchRef);
         } else {
             writer.append("$rt_threadStarter(").appendMethodBody(launchRef).append(")");
         }
-        writer.append("(").append(runnable).append(");").softNewLine();
+        writer.append("(").append(runnable).append(")");
+        if (runSync) {
+            writer.append(")");
+        }
+        writer.append(";").softNewLine();
         writer.outdent().append("},").ws().append(timeout ? context.getParameterName(2) : "0")
                 .append(");").softNewLine();
     }
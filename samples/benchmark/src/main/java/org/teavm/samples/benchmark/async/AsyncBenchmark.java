@@ -0,0 +1,135 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.samples.benchmark.async;
+
+/**
+ * Measures calls of methods that may suspend a thread, so that both ways of representing such methods
+ * in JavaScript can be compared, see <code>asyncMode</code> option of TeaVM. Every operation evaluates a tree
+ * of virtual calls, where some implementations suspend, so all of them are asynchronous. Prints results
+ * to the standard output, which is browser console for TeaVM.
+ */
+public final class AsyncBenchmark {
+    private static final int[] DEPTHS = { 8, 12, 16 };
+    private static final long MIN_DURATION = 200;
+    private static int sink;
+
+    private AsyncBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        System.out.println("depth\tcalls, ms\tyielding calls, ms\tsynchronized calls, ms\tsuspend, ms");
+        for (int depth : DEPTHS) {
+            Node plain = tree(depth, false, false);
+            Node yielding = tree(depth, true, false);
+            Node synchronizedTree = tree(depth, false, true);
+            double calls = measure(() -> plain.eval(0));
+            double yieldingCalls = measure(() -> yielding.eval(0));
+            double synchronizedCalls = measure(() -> synchronizedTree.eval(0));
+            double suspend = measure(() -> suspend(depth * 64));
+            System.out.println(depth + "\t" + format(calls) + "\t" + format(yieldingCalls) + "\t"
+                    + format(synchronizedCalls) + "\t" + format(suspend));
+        }
+    }
+
+    private static Node tree(int depth, boolean yielding, boolean synchronizedBranches) {
+        if (depth == 0) {
+            return yielding ? new YieldingLeaf() : new Leaf();
+        }
+        Node left = tree(depth - 1, yielding, synchronizedBranches);
+        Node right = tree(depth - 1, yielding, synchronizedBranches);
+        return synchronizedBranches ? new SynchronizedBranch(left, right) : new Branch(left, right);
+    }
+
+    // Suspends with the given number of frames on the stack, so that all of them are saved and restored
+    private static int suspend(int depth) {
+        if (depth == 0) {
+            try {
+                Thread.sleep(0);
+            } catch (InterruptedException e) {
+                // do nothing
+            }
+            return 0;
+        }
+        return suspend(depth - 1) + 1;
+    }
+
+    private static double measure(Operation operation) {
+        // warm up
+        sink += operation.run();
+        int iterations = 0;
+        long start = System.currentTimeMillis();
+        long duration;
+        do {
+            sink += operation.run();
+            ++iterations;
+            duration = System.currentTimeMillis() - start;
+        } while (duration < MIN_DURATION);
+        return (double) duration / iterations;
+    }
+
+    private static String format(double value) {
+        return String.valueOf(Math.round(value * 1000) / 1000.0);
+    }
+
+    interface Operation {
+        int run();
+    }
+
+    interface Node {
+        int eval(int level);
+    }
+
+    static class Leaf implements Node {
+        @Override
+        public int eval(int level) {
+            return level;
+        }
+    }
+
+    static class YieldingLeaf implements Node {
+        @Override
+        public int eval(int level) {
+            Thread.yield();
+            return level;
+        }
+    }
+
+    static class Branch implements Node {
+        private Node left;
+        private Node right;
+
+        Branch(Node left, Node right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public int eval(int level) {
+            return left.eval(level + 1) + right.eval(level + 1);
+        }
+    }
+
+    static class SynchronizedBranch extends Branch {
+        SynchronizedBranch(Node left, Node right) {
+            super(left, right);
+        }
+
+        @Override
+        public synchronized int eval(int level) {
+            return super.eval(level);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.samples.benchmark.bigint;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+/**
+ * Measures multiplication, division and decimal conversion of {@link BigInteger} for operands of different
+ * lengths, so that thresholds between algorithms can be chosen for every backend. Prints results
+ * to the standard output, which is browser console for TeaVM.
+ */
+public final class BigIntegerBenchmark {
+    private static final int[] SIZES = { 16, 32, 64, 128, 256, 512, 1024, 4096, 16384 };
+    private static final long MIN_DURATION = 200;
+    private static int sink;
+
+    private BigIntegerBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        Random random = new Random(1);
+        System.out.println("ints\tmultiply, ms\tdivide, ms\ttoString, ms");
+        for (int size : SIZES) {
+            BigInteger a = new BigInteger(size * 32, random).setBit(size * 32 - 1);
+            BigInteger b = new BigInteger(size * 32, random).setBit(size * 32 - 1);
+            BigInteger product = a.multiply(b);
+            double multiply = measure(() -> a.multiply(b).bitLength());
+            double divide = measure(() -> product.divide(b).bitLength());
+            double toString = measure(() -> a.toString().length());
+            System.out.println(size + "\t" + format(multiply) + "\t" + format(divide) + "\t" + format(toString));
+        }
+    }
+
+    private static double measure(Operation operation) {
+        // warm up
+        sink += operation.run();
+        int iterations = 0;
+        long start = System.currentTimeMillis();
+        long duration;
+        do {
+            sink += operation.run();
+            ++iterations;
+            duration = System.currentTimeMillis() - start;
+        } while (duration < MIN_DURATION);
+        return (double) duration / iterations;
+    }
+
+    private static String format(double value) {
+        return String.valueOf(Math.round(value * 1000) / 1000.0);
+    }
+
+    interface Operation {
+        int run();
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.samples.benchmark.numbers;
+
+/**
+ * Conversion between doubles and strings as it was implemented in TeaVM class library before Ryu and
+ * Eisel-Lemire algorithms, kept as a baseline for {@link NumberConversionBenchmark}.
+ */
+final class LegacyDoubleConversion {
+    private static final double[] doublePowersOfTen = { 1E1, 1E2, 1E4, 1E8, 1E16, 1E32, 1E64, 1E128, 1E256 };
+    private static final double[] negDoublePowersOfTen = { 1E-1, 1E-2, 1E-4, 1E-8, 1E-16, 1E-32,
+            1E-64, 1E-128, 1E-256 };
+    private static final long[] longPowersOfTen = { 1, 10, 100, 1000, 10000, 100000, 1000000, 10000000, 100000000,
+            1000000000, 10000000000L, 100000000000L, 1000000000000L, 10000000000000L, 100000000000000L,
+            1000000000000000L, 10000000000000000L, 100000000000000000L, 1000000000000000000L };
+    private static final long[] longLogPowersOfTen = { 1, 10, 100, 10000, 100000000, 10000000000000000L, };
+    private static final int DOUBLE_DECIMAL_PRECISION = 16;
+    private static final double DOUBLE_DECIMAL_FACTOR = 1E15;
+    private static final int DOUBLE_MAX_EXPONENT = 308;
+    private static final long DOUBLE_MAX_POS = 1000000000000000L;
+
+    private LegacyDoubleConversion() {
+    }
+
+    static String toString(double value) {
+        if (value == 0 || Double.isNaN(value) || Double.isInfinite(value)) {
+            return String.valueOf(value);
+        }
+        // Get absolute value
+        boolean negative = false;
+        int sz = 1; // Decimal point always included
+        if (value < 0) {
+            negative = true;
+            value = -value;
+            ++sz; // including '-' sign of mantissa
+        }
+
+        // Split into decimal mantissa and decimal exponent
+        int exp = 0;
+        long mantissa = 0;
+        int intPart = 1;
+        int digits = 0;
+        if (value >= 1) {
+            int bit = 256;
+            exp = 0;
+            double digit = 1;
+            for (int i = doublePowersOfTen.length - 1; i >= 0; --i) {
+                if ((exp | bit) <= DOUBLE_MAX_EXPONENT && doublePowersOfTen[i] * digit <= value) {
+                    digit *= doublePowersOfTen[i];
+                    exp |= bit;
+                }
+                bit >>= 1;
+            }
+            mantissa = (long) (((value / digit) * DOUBLE_DECIMAL_FACTOR) + 0.5);
+        } else {
+            int bit = 256;
+            exp = 0;
+            double digit = 1;
+            for (int i = negDoublePowersOfTen.length - 1; i >= 0; --i) {
+                if ((exp | bit) <= DOUBLE_MAX_EXPONENT && negDoublePowersOfTen[i] * digit * 10 > value) {
+                    digit *= negDoublePowersOfTen[i];
+                    exp |= bit;
+                }
+                bit >>= 1;
+            }
+            exp = -exp;
+            mantissa = (long) (((value * DOUBLE_MAX_POS) / digit) + 0.5);
+        }
+
+        // Remove trailing zeros
+        digits = DOUBLE_DECIMAL_PRECISION;
+        int zeros = trailingDecimalZeros(mantissa);
+        if (zeros > 0) {
+            digits -= zeros;
+        }
+
+        // Handle special case of exponent close to 0
+        if (exp < 7 && exp >= -3) {
+            if (exp >= 0) {
+                intPart = exp + 1;
+                digits = Math.max(digits, intPart + 1);
+                exp = 0;
+            } else if (exp < 0) {
+                mantissa /= longPowersOfTen[-exp];
+                digits -= exp;
+                exp = 0;
+            }
+        }
+
+        // Extend buffer to store exponent
+        if (exp != 0) {
+            sz += 2;
+            if (exp <= -10 || exp >= 10) {
+                ++sz;
+            }
+            if (exp <= -100 || exp >= 100) {
+                ++sz;
+            }
+            if (exp < 0) {
+                ++sz;
+            }
+        }
+
+        if (exp != 0 && digits == intPart) {
+            digits++;
+        }
+        sz += digits;
+
+        // Print mantissa
+        char[] buffer = new char[sz];
+        int target = 0;
+        if (negative) {
+            buffer[target++] = '-';
+        }
+        long pos = DOUBLE_MAX_POS;
+        for (int i = 0; i < digits; ++i) {
+            int intDigit;
+            if (pos > 0) {
+                intDigit = (int) (mantissa / pos);
+                mantissa %= pos;
+            } else {
+                intDigit = 0;
+            }
+            buffer[target++] = (char) ('0' + intDigit);
+            if (--intPart == 0) {
+                buffer[target++] = '.';
+            }
+            pos /= 10;
+        }
+
+        // Print exponent
+        if (exp != 0) {
+            buffer[target++] = 'E';
+            if (exp < 0) {
+                exp = -exp;
+                buffer[target++] = '-';
+            }
+            if (exp >= 100) {
+                buffer[target++] = (char) ('0' + exp / 100);
+                exp %= 100;
+                buffer[target++] = (char) ('0' + exp / 10);
+            } else if (exp >= 10) {
+                buffer[target++] = (char) ('0' + exp / 10);
+            }
+            buffer[target++] = (char) ('0' + exp % 10);
+        }
+        return new String(buffer);
+    }
+
+    private static int trailingDecimalZeros(long n) {
+        long zeros = 1;
+        int result = 0;
+        int bit = 16;
+        for (int i = longLogPowersOfTen.length - 1; i >= 0; --i) {
+            if (n % (zeros * longLogPowersOfTen[i]) == 0) {
+                result |= bit;
+                zeros *= longLogPowersOfTen[i];
+            }
+            bit >>>= 1;
+        }
+        return result;
+    }
+
+    static double parseDouble(String string) throws NumberFormatException {
+        string = string.trim();
+        boolean negative = false;
+        int index = 0;
+        if (string.charAt(index) == '-') {
+            ++index;
+            negative = true;
+        } else if (string.charAt(index) == '+') {
+            ++index;
+        }
+        char c = string.charAt(index);
+        if (c < '0' || c > '9') {
+            throw new NumberFormatException();
+        }
+        long mantissa = 0;
+        int exp = 0;
+        while (string.charAt(index) == '0') {
+            if (++index == string.length()) {
+                return 0;
+            }
+        }
+        while (index < string.length()) {
+            c = string.charAt(index);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            if (mantissa < 1E17) {
+                mantissa = mantissa * 10 + (c - '0');
+            } else {
+                ++exp;
+            }
+            ++index;
+        }
+        if (index < string.length() && string.charAt(index) == '.') {
+            ++index;
+            boolean hasOneDigit = false;
+            while (index < string.length()) {
+                c = string.charAt(index);
+                if (c < '0' || c > '9') {
+                    break;
+                }
+                if (mantissa < 1E17) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    --exp;
+                }
+                ++index;
+                hasOneDigit = true;
+            }
+            if (!hasOneDigit) {
+                throw new NumberFormatException();
+            }
+        }
+        if (index < string.length()) {
+            c = string.charAt(index);
+            if (c != 'e' && c != 'E') {
+                throw new NumberFormatException();
+            }
+            ++index;
+            boolean negativeExp = false;
+            if (string.charAt(index) == '-') {
+                ++index;
+                negativeExp = true;
+            } else if (string.charAt(index) == '+') {
+                ++index;
+            }
+            int numExp = 0;
+            boolean hasOneDigit = false;
+            while (index < string.length()) {
+                c = string.charAt(index);
+                if (c < '0' || c > '9') {
+                    break;
+                }
+                numExp = 10 * numExp + (c - '0');
+                hasOneDigit = true;
+                ++index;
+            }
+            if (!hasOneDigit) {
+                throw new NumberFormatException();
+            }
+            if (negativeExp) {
+                numExp = -numExp;
+            }
+            exp += numExp;
+        }
+        if (exp > 308 || exp == 308 && mantissa > 17976931348623157L) {
+            return !negative ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+        }
+        if (negative) {
+            mantissa = -mantissa;
+        }
+        return mantissa * decimalExponent(exp);
+    }
+
+    private static double decimalExponent(int n) {
+        double d;
+        if (n < 0) {
+            d = 0.1;
+            n = -n;
+        } else {
+            d = 10;
+        }
+        double result = 1;
+        while (n != 0) {
+            if (n % 2 != 0) {
+                result *= d;
+            }
+            d *= d;
+            n /= 2;
+        }
+        return result;
+    }
+}
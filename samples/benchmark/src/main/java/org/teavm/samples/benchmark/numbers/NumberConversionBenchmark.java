@@ -0,0 +1,105 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.samples.benchmark.numbers;
+
+import java.util.Random;
+
+/**
+ * Compares conversion of doubles to strings and back with {@link LegacyDoubleConversion}, the implementation
+ * that TeaVM class library used before. Prints results to the standard output, which is browser console
+ * for TeaVM.
+ */
+public final class NumberConversionBenchmark {
+    private static final int COUNT = 10000;
+    private static final long MIN_DURATION = 200;
+    private static int sink;
+
+    private NumberConversionBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        Random random = new Random(1);
+        double[] prices = new double[COUNT];
+        double[] measurements = new double[COUNT];
+        for (int i = 0; i < COUNT; ++i) {
+            prices[i] = random.nextInt(10000000) / 100.0;
+            measurements[i] = Double.longBitsToDouble(random.nextLong() & 0x7FEFFFFFFFFFFFFFL);
+        }
+
+        System.out.println("values\ttoString, ms\tlegacy toString, ms\tparse, ms\tlegacy parse, ms");
+        run("prices", prices);
+        run("random", measurements);
+    }
+
+    private static void run(String name, double[] values) {
+        String[] strings = new String[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            strings[i] = Double.toString(values[i]);
+        }
+        double toString = measure(() -> {
+            int result = 0;
+            for (double value : values) {
+                result += Double.toString(value).length();
+            }
+            return result;
+        });
+        double legacyToString = measure(() -> {
+            int result = 0;
+            for (double value : values) {
+                result += LegacyDoubleConversion.toString(value).length();
+            }
+            return result;
+        });
+        double parse = measure(() -> {
+            int result = 0;
+            for (String string : strings) {
+                result += (int) Double.parseDouble(string);
+            }
+            return result;
+        });
+        double legacyParse = measure(() -> {
+            int result = 0;
+            for (String string : strings) {
+                result += (int) LegacyDoubleConversion.parseDouble(string);
+            }
+            return result;
+        });
+        System.out.println(name + "\t" + format(toString) + "\t" + format(legacyToString) + "\t" + format(parse)
+                + "\t" + format(legacyParse));
+    }
+
+    private static double measure(Operation operation) {
+        // warm up
+        sink += operation.run();
+        int iterations = 0;
+        long start = System.currentTimeMillis();
+        long duration;
+        do {
+            sink += operation.run();
+            ++iterations;
+            duration = System.currentTimeMillis() - start;
+        } while (duration < MIN_DURATION);
+        return (double) duration / iterations;
+    }
+
+    private static String format(double value) {
+        return String.valueOf(Math.round(value * 1000) / 1000.0);
+    }
+
+    interface Operation {
+        int run();
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.teavm.junit.TeaVMTestRunner;
+
+@RunWith(TeaVMTestRunner.class)
+public class PrimitiveCollectionsTest {
+    @Test
+    public void listAddsInsertsAndRemoves() {
+        IntArrayList list = IntArrayList.from(1, 2, 3);
+        for (int i = 4; i <= 100; ++i) {
+            list.add(i);
+        }
+        assertEquals(100, list.size());
+        list.insert(0, 0);
+        assertEquals(0, list.get(0));
+        assertEquals(50, list.removeAt(50));
+        list.removeRange(0, 10);
+        assertEquals(10, list.get(0));
+        assertEquals(-1, list.indexOf(50));
+        assertEquals(90, list.size());
+        list.set(1, 10);
+        assertEquals(2, list.removeAll(10));
+        assertEquals(12, list.get(0));
+
+        int sum = 0;
+        for (IntCursor cursor : list) {
+            assertEquals(list.get(cursor.index), cursor.value);
+            sum += cursor.value;
+        }
+        assertEquals(5050 - 55 - 50 - 11, sum);
+    }
+
+    @Test
+    public void longListComparesByContent() {
+        LongArrayList list = LongArrayList.from(1L << 40, -1L, 0L);
+        LongArrayList copy = list.clone();
+        assertEquals(list, copy);
+        assertEquals(list.hashCode(), copy.hashCode());
+        copy.add(5L);
+        assertNotEquals(list, copy);
+        assertArrayEquals(new long[] { 1L << 40, -1L, 0L, 5L }, copy.toArray());
+        assertEquals("[1099511627776, -1, 0]", list.toString());
+    }
+
+    @Test
+    public void intMapPutsAndRemovesMany() {
+        IntIntHashMap map = new IntIntHashMap();
+        for (int i = 0; i < 10000; ++i) {
+            assertEquals(0, map.put(i * 1024, i + 1));
+        }
+        assertEquals(10000, map.size());
+        for (int i = 0; i < 10000; i += 2) {
+            assertEquals(i + 1, map.remove(i * 1024));
+        }
+        assertEquals(5000, map.size());
+        for (int i = 0; i < 10000; ++i) {
+            assertEquals(i % 2 == 0 ? -1 : i + 1, map.getOrDefault(i * 1024, -1));
+            assertEquals(i % 2 != 0, map.containsKey(i * 1024));
+        }
+    }
+
+    @Test
+    public void intMapHandlesZeroKey() {
+        IntIntHashMap map = new IntIntHashMap();
+        assertFalse(map.containsKey(0));
+        map.put(0, 5);
+        assertTrue(map.containsKey(0));
+        assertEquals(1, map.size());
+        assertEquals(5, map.get(0));
+        assertEquals(8, map.addTo(0, 3));
+        assertEquals(2, map.addTo(1, 2));
+        assertEquals(8, map.remove(0));
+        assertFalse(map.containsKey(0));
+        assertEquals("[1=>2]", map.toString());
+    }
+
+    @Test
+    public void intMapIndexApi() {
+        IntIntHashMap map = new IntIntHashMap();
+        int index = map.indexOf(7);
+        assertFalse(map.indexExists(index));
+        map.indexInsert(index, 7, 1);
+        index = map.indexOf(7);
+        assertTrue(map.indexExists(index));
+        assertEquals(1, map.indexReplace(index, 2));
+        assertEquals(2, map.indexGet(index));
+        assertFalse(map.putIfAbsent(7, 3));
+        assertTrue(map.putIfAbsent(8, 3));
+        assertEquals(5, map.putOrAdd(8, 0, 2));
+    }
+
+    @Test
+    public void objectMapsIterateAndCompare() {
+        LongObjectHashMap<String> map = new LongObjectHashMap<>();
+        for (long i = -50; i < 50; ++i) {
+            map.put(i << 32, String.valueOf(i));
+        }
+        assertEquals(100, map.size());
+        int count = 0;
+        for (LongObjectCursor<String> cursor : map) {
+            assertEquals(String.valueOf(cursor.key >> 32), cursor.value);
+            ++count;
+        }
+        assertEquals(100, count);
+
+        LongObjectHashMap<String> copy = map.clone();
+        assertEquals(map, copy);
+        assertEquals(map.hashCode(), copy.hashCode());
+        copy.remove(0);
+        assertNotEquals(map, copy);
+        assertNull(copy.get(0));
+        assertEquals("0", map.get(0));
+
+        IntObjectHashMap<String> intMap = new IntObjectHashMap<>();
+        intMap.put(3, "a");
+        intMap.put(3, null);
+        assertTrue(intMap.containsKey(3));
+        assertNull(intMap.get(3));
+        intMap.clear();
+        assertTrue(intMap.isEmpty());
+    }
+}
@@ -48,6 +48,50 @@ public class DoubleTest {
         assertEquals(0, Double.parseDouble("00000.0000"), 1E-12);
     }
 
+    @Test
+    public void parsedWithCorrectRounding() {
+        assertEquals(0x1.0p53, Double.parseDouble("9007199254740993"), 0);
+        assertEquals(0x1.0000000000001p53, Double.parseDouble("9007199254740993.0000000000000000001"), 0);
+        assertEquals(0.1, Double.parseDouble("0.1000000000000000055511151231257827"), 0);
+        assertEquals(1.7976931348623157E308, Double.parseDouble("1.7976931348623157E308"), 0);
+        assertEquals(Double.POSITIVE_INFINITY, Double.parseDouble("1.7976931348623159E308"), 0);
+        assertEquals(Double.MIN_VALUE, Double.parseDouble("4.9E-324"), 0);
+        assertEquals(0, Double.parseDouble("2.4703282292062327E-324"), 0);
+        assertEquals(Double.MIN_VALUE, Double.parseDouble("2.4703282292062328E-324"), 0);
+        assertEquals(0x0.fffffffffffffp-1022, Double.parseDouble("2.2250738585072011E-308"), 0);
+        assertEquals(0x1.0p-1022, Double.parseDouble("2.2250738585072012E-308"), 0);
+        assertEquals(Double.doubleToLongBits(-0.0), Double.doubleToLongBits(Double.parseDouble("-0")));
+    }
+
+    @Test
+    public void convertedToShortestString() {
+        assertEquals("0.3", Double.toString(0.3));
+        assertEquals("0.30000000000000004", Double.toString(0.1 + 0.2));
+        assertEquals("0.6666666666666666", Double.toString(2.0 / 3));
+        assertEquals("1.0E22", Double.toString(1E22));
+        assertEquals("1.7976931348623157E308", Double.toString(Double.MAX_VALUE));
+        assertEquals("4.9E-324", Double.toString(Double.MIN_VALUE));
+        assertEquals("2.2250738585072014E-308", Double.toString(0x1.0p-1022));
+        assertEquals("9999999.0", Double.toString(9999999));
+        assertEquals("1.0E7", Double.toString(1E7));
+        assertEquals("0.001", Double.toString(0.001));
+        assertEquals("9.999E-4", Double.toString(0.0009999));
+        assertEquals("-0.0", Double.toString(-0.0));
+    }
+
+    @Test
+    public void stringConversionRoundTrips() {
+        long seed = 1;
+        for (int i = 0; i < 2000; ++i) {
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            double d = Double.longBitsToDouble(seed >>> 1);
+            if (Double.isNaN(d) || Double.isInfinite(d)) {
+                continue;
+            }
+            assertEquals(Double.doubleToLongBits(d), Double.doubleToLongBits(Double.parseDouble(Double.toString(d))));
+        }
+    }
+
     @Test
     public void longBitsExtracted() {
         assertEquals(0x41E23456789ABCDEL, Double.doubleToLongBits(0x1.23456789ABCDEP+31));
@@ -73,6 +117,15 @@ public class DoubleTest {
         assertEquals(0x0.00056789ABCDEP-1022, Double.longBitsToDouble(0x00000056789ABCDEL), 0x1.0P-19);
     }
 
+    @Test
+    public void longBitsExtractedExactly() {
+        assertEquals(0x3FE5555555555555L, Double.doubleToLongBits(2.0 / 3));
+        assertEquals(0x7FEFFFFFFFFFFFFFL, Double.doubleToLongBits(Double.MAX_VALUE));
+        assertEquals(1L, Double.doubleToLongBits(Double.MIN_VALUE));
+        assertEquals(Double.MAX_VALUE, Double.longBitsToDouble(0x7FEFFFFFFFFFFFFFL), 0);
+        assertEquals(Double.MIN_VALUE, Double.longBitsToDouble(1L), 0);
+    }
+
     @Test
     public void hexStringBuilt() {
         assertEquals("0x1.23456789abcdep31", Double.toHexString(0x1.23456789ABCDEP+31));
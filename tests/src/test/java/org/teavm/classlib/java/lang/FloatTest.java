@@ -48,6 +48,44 @@ public class FloatTest {
         assertEquals(0, Double.parseDouble("00000.0000"), 1E-12);
     }
 
+    @Test
+    public void parsedWithCorrectRounding() {
+        assertEquals(1.0f, Float.parseFloat("1.00000005960464477539062499"), 0);
+        assertEquals(1.0f, Float.parseFloat("1.000000059604644775390625"), 0);
+        assertEquals(1.0000001f, Float.parseFloat("1.00000005960464477539062501"), 0);
+        assertEquals(3.4028235E38f, Float.parseFloat("3.4028235E38"), 0);
+        assertEquals(Float.POSITIVE_INFINITY, Float.parseFloat("3.4028236E38"), 0);
+        assertEquals(Float.MIN_VALUE, Float.parseFloat("1.4E-45"), 0);
+        assertEquals(0, Float.parseFloat("7.00649232162408535461864791644958065640130970938257885878534141944"
+                + "8955413429303E-46"), 0);
+        assertEquals(Float.MIN_VALUE, Float.parseFloat("7.0064923216240853546186479164495806564013097093825788587"
+                + "85341419448955413429304E-46"), 0);
+    }
+
+    @Test
+    public void convertedToShortestString() {
+        assertEquals("0.3", Float.toString(0.3f));
+        assertEquals("0.6666667", Float.toString(2f / 3));
+        assertEquals("123456.79", Float.toString(123456.789f));
+        assertEquals("3.4028235E38", Float.toString(Float.MAX_VALUE));
+        assertEquals("1.4E-45", Float.toString(Float.MIN_VALUE));
+        assertEquals("1.0E10", Float.toString(1E10f));
+        assertEquals("-0.0", Float.toString(-0.0f));
+    }
+
+    @Test
+    public void stringConversionRoundTrips() {
+        int seed = 1;
+        for (int i = 0; i < 2000; ++i) {
+            seed = seed * 1103515245 + 12345;
+            float f = Float.intBitsToFloat(seed >>> 1);
+            if (Float.isNaN(f) || Float.isInfinite(f)) {
+                continue;
+            }
+            assertEquals(Float.floatToIntBits(f), Float.floatToIntBits(Float.parseFloat(Float.toString(f))));
+        }
+    }
+
     @Test
     public void floatBitsExtracted() {
         assertEquals(0x4591A2B4, Float.floatToIntBits(0x1.234567p+12f));
@@ -73,6 +111,15 @@ public class FloatTest {
         assertEquals(0x0.000123p-126f, Float.intBitsToFloat(0x000092), 0x000008p-126);
     }
 
+    @Test
+    public void floatBitsExtractedExactly() {
+        assertEquals(0x3F2AAAAB, Float.floatToIntBits(2f / 3));
+        assertEquals(0x7F7FFFFF, Float.floatToIntBits(Float.MAX_VALUE));
+        assertEquals(1, Float.floatToIntBits(Float.MIN_VALUE));
+        assertEquals(Float.MAX_VALUE, Float.intBitsToFloat(0x7F7FFFFF), 0);
+        assertEquals(Float.MIN_VALUE, Float.intBitsToFloat(1), 0);
+    }
+
     @Test
     public void hexStringBuilt() {
         assertEquals("0x1.23456p17", Float.toHexString(0x1.23456p17f));
@@ -22,6 +22,7 @@ package org.teavm.classlib.java.math;
 
 import static org.junit.Assert.*;
 import java.math.BigInteger;
+import java.util.Random;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.teavm.junit.TeaVMTestRunner;
@@ -699,4 +700,37 @@ public class BigIntegerDivideTest {
         }
         assertEquals("incorrect sign", 1, result.signum());
     }
+
+    /**
+     * Divide numbers long enough to use Burnikel-Ziegler division
+     */
+    @Test
+    public void testLargeNumbers() {
+        Random random = new Random(1);
+        for (int length : new int[] { 3000, 8000, 20000, 80000 }) {
+            BigInteger aNumber = new BigInteger(length, random);
+            BigInteger bNumber = new BigInteger(length / 4 + random.nextInt(length / 2), random).setBit(0);
+            if (random.nextBoolean()) {
+                aNumber = aNumber.negate();
+            }
+            BigInteger[] result = aNumber.divideAndRemainder(bNumber);
+            assertEquals(aNumber, result[0].multiply(bNumber).add(result[1]));
+            assertTrue(result[1].abs().compareTo(bNumber) < 0);
+            assertTrue(result[1].signum() == 0 || result[1].signum() == aNumber.signum());
+            assertEquals(result[0], aNumber.divide(bNumber));
+            assertEquals(result[1], aNumber.remainder(bNumber));
+        }
+    }
+
+    /**
+     * Divide a number by its exact divisor, so that quotient has many all-ones blocks
+     */
+    @Test
+    public void testLargeExactDivision() {
+        BigInteger aNumber = BigInteger.ONE.shiftLeft(20000).subtract(BigInteger.ONE);
+        BigInteger bNumber = BigInteger.ONE.shiftLeft(5000).subtract(BigInteger.ONE);
+        BigInteger[] result = aNumber.multiply(bNumber).divideAndRemainder(bNumber);
+        assertEquals(aNumber, result[0]);
+        assertEquals(BigInteger.ZERO, result[1]);
+    }
 }
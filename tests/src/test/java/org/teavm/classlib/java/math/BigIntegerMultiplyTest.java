@@ -22,6 +22,7 @@ package org.teavm.classlib.java.math;
 
 import static org.junit.Assert.*;
 import java.math.BigInteger;
+import java.util.Random;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.teavm.junit.TeaVMTestRunner;
@@ -404,4 +405,35 @@ public class BigIntegerMultiplyTest {
         }
         assertEquals("incorrect sign", 1, result.signum());
     }
+
+    /**
+     * Multiply numbers long enough to use Toom-Cook multiplication
+     */
+    @Test
+    public void testLargeNumbers() {
+        Random random = new Random(1);
+        BigInteger prime = BigInteger.valueOf(1000000007);
+        for (int length : new int[] { 1000, 4000, 9000, 30000, 100000 }) {
+            BigInteger aNumber = new BigInteger(length, random);
+            BigInteger bNumber = new BigInteger(length / 2 + random.nextInt(length / 2), random).negate();
+            BigInteger result = aNumber.multiply(bNumber);
+            BigInteger expectedMod = aNumber.mod(prime).multiply(bNumber.mod(prime)).mod(prime);
+            assertEquals(expectedMod, result.mod(prime));
+            assertEquals(-1, result.signum());
+            assertEquals(result.shiftLeft(2), aNumber.add(bNumber).pow(2).subtract(aNumber.subtract(bNumber).pow(2)));
+        }
+    }
+
+    /**
+     * Multiply numbers of all ones, where every partial product has carries
+     */
+    @Test
+    public void testLargeAllOnes() {
+        for (int length : new int[] { 5000, 20000, 70000 }) {
+            BigInteger aNumber = BigInteger.ONE.shiftLeft(length).subtract(BigInteger.ONE);
+            BigInteger expected = BigInteger.ONE.shiftLeft(2 * length).subtract(BigInteger.ONE.shiftLeft(length + 1))
+                    .add(BigInteger.ONE);
+            assertEquals(expected, aNumber.multiply(aNumber));
+        }
+    }
 }
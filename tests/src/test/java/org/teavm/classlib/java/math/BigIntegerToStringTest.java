@@ -21,6 +21,7 @@
 package org.teavm.classlib.java.math;
 
 import java.math.BigInteger;
+import java.util.Random;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.teavm.junit.TeaVMTestRunner;
@@ -159,4 +160,38 @@ public class BigIntegerToStringTest {
         String result = aNumber.toString(radix);
         assertTrue(result.equals(value));
     }
+
+    /**
+     * Convert numbers long enough to use divide-and-conquer conversion
+     */
+    @Test
+    public void testLargeNumbers() {
+        Random random = new Random(1);
+        for (int length : new int[] { 1000, 5000, 30000 }) {
+            BigInteger aNumber = new BigInteger(length, random);
+            String result = aNumber.toString();
+            assertEquals(aNumber, new BigInteger(result));
+            assertEquals("-" + result, aNumber.negate().toString());
+        }
+    }
+
+    /**
+     * Convert powers of ten, which have long runs of zeros in every half
+     */
+    @Test
+    public void testLargePowersOfTen() {
+        for (int exponent : new int[] { 700, 2304, 4608, 10000 }) {
+            BigInteger aNumber = BigInteger.TEN.pow(exponent);
+            StringBuilder expected = new StringBuilder("1");
+            for (int i = 0; i < exponent; ++i) {
+                expected.append('0');
+            }
+            assertEquals(expected.toString(), aNumber.toString());
+            expected.setCharAt(0, '0');
+            for (int i = 1; i <= exponent; ++i) {
+                expected.setCharAt(i, '9');
+            }
+            assertEquals(expected.substring(1), aNumber.subtract(BigInteger.ONE).toString());
+        }
+    }
 }
@@ -0,0 +1,159 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.text;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import java.text.DecimalFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.teavm.junit.TeaVMProperties;
+import org.teavm.junit.TeaVMProperty;
+import org.teavm.junit.TeaVMTestRunner;
+
+@RunWith(TeaVMTestRunner.class)
+@TeaVMProperties(@TeaVMProperty(key = "java.util.Locale.available", value = "en, en_US, en_GB, ru, ru_RU"))
+public class PrecompiledFormatTest {
+    private static final Date DATE = new Date(1403602429504L);
+
+    public PrecompiledFormatTest() {
+        TimeZone.setDefault(TimeZone.getTimeZone("GMT"));
+    }
+
+    private static DecimalFormat amountFormat() {
+        return new DecimalFormat("#,##0.00;(#,##0.00)");
+    }
+
+    private static SimpleDateFormat dayFormat() {
+        return new SimpleDateFormat("EEE, d MMM yyyy 'at' HH:mm");
+    }
+
+    // Pattern that is not known at build time, so the format is created by parsing it at run time
+    private static String runtime(String pattern) {
+        return new StringBuilder(pattern).toString();
+    }
+
+    @Test
+    public void decimalFormatMatchesParsedAtRunTime() {
+        Locale locale = Locale.getDefault();
+        Locale.setDefault(Locale.ENGLISH);
+        try {
+            DecimalFormat expected = new DecimalFormat(runtime("#,##0.00;(#,##0.00)"));
+            for (double value : new double[] { 0, 1.005, -1234.5, 1234567.891, -0.001 }) {
+                assertEquals(expected.format(value), amountFormat().format(value));
+            }
+            assertEquals("1,234.50", amountFormat().format(1234.5));
+            assertEquals("(1,234.50)", amountFormat().format(-1234.5));
+            assertEquals("12%", new DecimalFormat("0%").format(0.12));
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    @Test
+    public void decimalFormatsAreIndependent() {
+        Locale locale = Locale.getDefault();
+        Locale.setDefault(Locale.ENGLISH);
+        try {
+            DecimalFormat first = amountFormat();
+            first.setMinimumFractionDigits(3);
+            first.setGroupingUsed(false);
+            first.setPositivePrefix("+");
+            assertEquals("+1234.500", first.format(1234.5));
+            assertEquals("1,234.50", amountFormat().format(1234.5));
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    @Test
+    public void decimalFormatFollowsDefaultLocale() {
+        Locale locale = Locale.getDefault();
+        try {
+            Locale.setDefault(Locale.ENGLISH);
+            assertEquals("3.14", new DecimalFormat("0.00").format(3.14159));
+            Locale.setDefault(new Locale("ru", "RU"));
+            assertEquals("3,14", new DecimalFormat("0.00").format(3.14159));
+            assertEquals(new DecimalFormat(runtime("#,##0.00;(#,##0.00)")).format(-1234.5),
+                    amountFormat().format(-1234.5));
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    @Test
+    public void dateFormatMatchesParsedAtRunTime() {
+        Locale locale = Locale.getDefault();
+        Locale.setDefault(Locale.ENGLISH);
+        try {
+            assertEquals("Tue, 24 Jun 2014 at 09:33", dayFormat().format(DATE));
+            assertEquals(new SimpleDateFormat(runtime("EEE, d MMM yyyy 'at' HH:mm")).format(DATE),
+                    dayFormat().format(DATE));
+            assertEquals("EEE, d MMM yyyy 'at' HH:mm", dayFormat().toPattern());
+            assertEquals("09 o'clock", new SimpleDateFormat("HH 'o''clock'").format(DATE));
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    @Test
+    public void dateFormatFollowsDefaultLocale() {
+        Locale locale = Locale.getDefault();
+        try {
+            Locale.setDefault(Locale.ENGLISH);
+            assertEquals("Tue, 24 Jun 2014 at 09:33", dayFormat().format(DATE));
+            Locale.setDefault(new Locale("ru", "RU"));
+            assertEquals(new SimpleDateFormat(runtime("EEE, d MMM yyyy 'at' HH:mm")).format(DATE),
+                    dayFormat().format(DATE));
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    @Test
+    public void dateFormatsAreIndependent() {
+        Locale locale = Locale.getDefault();
+        Locale.setDefault(Locale.ENGLISH);
+        try {
+            SimpleDateFormat first = dayFormat();
+            first.applyPattern("yyyy-MM-dd");
+            assertEquals("2014-06-24", first.format(DATE));
+            assertEquals("Tue, 24 Jun 2014 at 09:33", dayFormat().format(DATE));
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    @Test
+    public void incorrectPatternRejectedAtRunTime() {
+        try {
+            new DecimalFormat("#.#.#");
+            fail("Exception expected");
+        } catch (IllegalArgumentException e) {
+            // ok
+        }
+        try {
+            new SimpleDateFormat("XXXX");
+            fail("Exception expected");
+        } catch (IllegalArgumentException e) {
+            // ok
+        }
+    }
+}
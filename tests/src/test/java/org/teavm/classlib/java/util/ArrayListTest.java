@@ -17,7 +17,9 @@ package org.teavm.classlib.java.util;
 
 import static org.junit.Assert.*;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.ConcurrentModificationException;
+import java.util.Iterator;
 import java.util.List;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -106,6 +108,29 @@ public class ArrayListTest {
         assertEquals(-1, list.indexOf(100));
     }
 
+    @Test
+    public void sortedInPlace() {
+        List<Integer> list = new ArrayList<>();
+        for (int i = 0; i < 100; ++i) {
+            list.add((i * 37) % 100);
+        }
+        Collections.sort(list);
+        for (int i = 0; i < 100; ++i) {
+            assertEquals(Integer.valueOf(i), list.get(i));
+        }
+        list.sort(Collections.reverseOrder());
+        assertEquals(Integer.valueOf(99), list.get(0));
+        assertEquals(Integer.valueOf(0), list.get(99));
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void sortInvalidatesIterator() {
+        List<Integer> list = fillFromZeroToNine();
+        Iterator<Integer> iter = list.iterator();
+        list.sort(null);
+        iter.next();
+    }
+
     private List<Integer> fillFromZeroToNine() {
         List<Integer> list = new ArrayList<>();
         for (int i = 0; i < 10; ++i) {
@@ -18,6 +18,8 @@ package org.teavm.classlib.java.util;
 import static org.junit.Assert.*;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
+import java.util.function.IntConsumer;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.teavm.junit.TeaVMTestRunner;
@@ -36,6 +38,140 @@ public class ArraysTest {
         assertEquals(Integer.valueOf(7), array[5]);
     }
 
+    @Test
+    public void primitiveArraySorted() {
+        int[] ints = new int[1000];
+        int seed = 17;
+        for (int i = 0; i < ints.length; ++i) {
+            seed = seed * 1103515245 + 12345;
+            ints[i] = (seed >>> 16) % 100;
+        }
+        int[] expected = ints.clone();
+        for (int i = 1; i < expected.length; ++i) {
+            for (int j = i; j > 0 && expected[j - 1] > expected[j]; --j) {
+                int tmp = expected[j];
+                expected[j] = expected[j - 1];
+                expected[j - 1] = tmp;
+            }
+        }
+        Arrays.sort(ints);
+        assertArrayEquals(expected, ints);
+
+        long[] longs = { 5L << 40, -3, 7, 1L << 40, 0 };
+        Arrays.sort(longs);
+        assertArrayEquals(new long[] { -3, 0, 7, 1L << 40, 5L << 40 }, longs);
+
+        char[] chars = "teavm".toCharArray();
+        Arrays.sort(chars);
+        assertEquals("aemtv", new String(chars));
+    }
+
+    @Test
+    public void primitiveArrayRangeSorted() {
+        int[] ints = { 9, 5, 4, 3, 2, 1, 0 };
+        Arrays.sort(ints, 1, 5);
+        assertArrayEquals(new int[] { 9, 2, 3, 4, 5, 1, 0 }, ints);
+
+        byte[] bytes = { 3, 2, 1 };
+        Arrays.sort(bytes, 1, 1);
+        assertArrayEquals(new byte[] { 3, 2, 1 }, bytes);
+    }
+
+    @Test
+    public void floatingPointArraySorted() {
+        double[] doubles = { 1, Double.NaN, 0.0, -0.0, -1, Double.NEGATIVE_INFINITY, 0.0, -0.0 };
+        Arrays.sort(doubles);
+        assertArrayEquals(new double[] { Double.NEGATIVE_INFINITY, -1, -0.0, -0.0, 0.0, 0.0, 1, Double.NaN },
+                doubles, 0);
+        assertEquals(Double.doubleToLongBits(-0.0), Double.doubleToLongBits(doubles[2]));
+        assertEquals(Double.doubleToLongBits(-0.0), Double.doubleToLongBits(doubles[3]));
+        assertEquals(Double.doubleToLongBits(0.0), Double.doubleToLongBits(doubles[4]));
+
+        float[] floats = { Float.NaN, 2, 0.0f, 1, -0.0f };
+        Arrays.sort(floats, 1, 5);
+        assertTrue(Float.isNaN(floats[0]));
+        assertEquals(Float.floatToIntBits(-0.0f), Float.floatToIntBits(floats[1]));
+        assertEquals(Float.floatToIntBits(0.0f), Float.floatToIntBits(floats[2]));
+        assertEquals(1, floats[3], 0);
+        assertEquals(2, floats[4], 0);
+    }
+
+    @Test
+    public void fewValuedArraySorted() {
+        Random random = new Random(23);
+        for (int distinct : new int[] { 2, 3, 7 }) {
+            int[] ints = new int[100000];
+            int[] counts = new int[distinct];
+            for (int i = 0; i < ints.length; ++i) {
+                ints[i] = random.nextInt(distinct) * 1000;
+                counts[ints[i] / 1000]++;
+            }
+            Arrays.sort(ints);
+            int index = 0;
+            for (int value = 0; value < distinct; ++value) {
+                for (int i = 0; i < counts[value]; ++i) {
+                    assertEquals(value * 1000, ints[index++]);
+                }
+            }
+        }
+
+        double[] doubles = new double[100000];
+        int negativeCount = 0;
+        for (int i = 0; i < doubles.length; ++i) {
+            if (random.nextBoolean()) {
+                doubles[i] = -0.5;
+                negativeCount++;
+            } else {
+                doubles[i] = 0.5;
+            }
+        }
+        Arrays.sort(doubles);
+        assertEquals(-0.5, doubles[negativeCount - 1], 0);
+        assertEquals(0.5, doubles[negativeCount], 0);
+
+        byte[] bytes = new byte[100000];
+        for (int i = 0; i < bytes.length; ++i) {
+            bytes[i] = (byte) (i % 3 == 0 ? 1 : 0);
+        }
+        Arrays.sort(bytes);
+        assertEquals(0, bytes[bytes.length / 3 * 2 - 1]);
+        assertEquals(1, bytes[bytes.length / 3 * 2]);
+    }
+
+    @Test
+    public void objectArraySortIsStable() {
+        String[] array = new String[200];
+        for (int i = 0; i < array.length; ++i) {
+            array[i] = (char) ('a' + (i * 7) % 5) + String.valueOf(i);
+        }
+        Arrays.sort(array, 10, 190, (a, b) -> Character.compare(a.charAt(0), b.charAt(0)));
+        for (int i = 11; i < 190; ++i) {
+            char prev = array[i - 1].charAt(0);
+            char current = array[i].charAt(0);
+            assertTrue(prev <= current);
+            if (prev == current) {
+                assertTrue(Integer.parseInt(array[i - 1].substring(1)) < Integer.parseInt(array[i].substring(1)));
+            }
+        }
+        assertEquals("a0", array[0]);
+        assertEquals("d199", array[199]);
+    }
+
+    @Test
+    public void nearlySortedArraySorted() {
+        Integer[] array = new Integer[1000];
+        for (int i = 0; i < array.length; ++i) {
+            array[i] = i;
+        }
+        array[500] = -1;
+        array[900] = 2000;
+        Arrays.sort(array);
+        assertEquals(Integer.valueOf(-1), array[0]);
+        assertEquals(Integer.valueOf(499), array[500]);
+        assertEquals(Integer.valueOf(501), array[501]);
+        assertEquals(Integer.valueOf(2000), array[999]);
+    }
+
     @Test
     public void binarySearchWorks() {
         Integer[] array = { 2, 4, 6, 8, 10, 12, 14, 16 };
@@ -63,4 +199,112 @@ public class ArraysTest {
         array[3] = array;
         assertEquals("[1, 2, null, [...], foo]", Arrays.deepToString(array));
     }
+
+    @Test
+    public void rangeFilled() {
+        int[] ints = { 1, 2, 3, 4, 5 };
+        Arrays.fill(ints, 1, 4, 9);
+        assertArrayEquals(new int[] { 1, 9, 9, 9, 5 }, ints);
+
+        long[] longs = new long[4];
+        Arrays.fill(longs, 2, 4, 1L << 40);
+        assertArrayEquals(new long[] { 0, 0, 1L << 40, 1L << 40 }, longs);
+
+        char[] chars = "abcd".toCharArray();
+        Arrays.fill(chars, 0, 2, 'z');
+        assertEquals("zzcd", new String(chars));
+
+        double[] doubles = new double[3];
+        Arrays.fill(doubles, 0.5);
+        assertArrayEquals(new double[] { 0.5, 0.5, 0.5 }, doubles, 0);
+    }
+
+    @Test
+    public void fillRangeChecked() {
+        assertFillRangeChecked(length -> Arrays.fill(new long[length], -1, 1, 0L),
+                length -> Arrays.fill(new long[length], 0, length + 1, 0L),
+                length -> Arrays.fill(new long[length], 2, 1, 0L));
+        assertFillRangeChecked(length -> Arrays.fill(new int[length], -1, 1, 0),
+                length -> Arrays.fill(new int[length], 0, length + 1, 0),
+                length -> Arrays.fill(new int[length], 2, 1, 0));
+        assertFillRangeChecked(length -> Arrays.fill(new short[length], -1, 1, (short) 0),
+                length -> Arrays.fill(new short[length], 0, length + 1, (short) 0),
+                length -> Arrays.fill(new short[length], 2, 1, (short) 0));
+        assertFillRangeChecked(length -> Arrays.fill(new char[length], -1, 1, 'a'),
+                length -> Arrays.fill(new char[length], 0, length + 1, 'a'),
+                length -> Arrays.fill(new char[length], 2, 1, 'a'));
+        assertFillRangeChecked(length -> Arrays.fill(new byte[length], -1, 1, (byte) 0),
+                length -> Arrays.fill(new byte[length], 0, length + 1, (byte) 0),
+                length -> Arrays.fill(new byte[length], 2, 1, (byte) 0));
+        assertFillRangeChecked(length -> Arrays.fill(new boolean[length], -1, 1, true),
+                length -> Arrays.fill(new boolean[length], 0, length + 1, true),
+                length -> Arrays.fill(new boolean[length], 2, 1, true));
+        assertFillRangeChecked(length -> Arrays.fill(new float[length], -1, 1, 0f),
+                length -> Arrays.fill(new float[length], 0, length + 1, 0f),
+                length -> Arrays.fill(new float[length], 2, 1, 0f));
+        assertFillRangeChecked(length -> Arrays.fill(new double[length], -1, 1, 0.0),
+                length -> Arrays.fill(new double[length], 0, length + 1, 0.0),
+                length -> Arrays.fill(new double[length], 2, 1, 0.0));
+        assertFillRangeChecked(length -> Arrays.fill(new Object[length], -1, 1, null),
+                length -> Arrays.fill(new Object[length], 0, length + 1, null),
+                length -> Arrays.fill(new Object[length], 2, 1, null));
+    }
+
+    private void assertFillRangeChecked(IntConsumer negativeFrom, IntConsumer toAfterEnd, IntConsumer reversed) {
+        try {
+            negativeFrom.accept(3);
+            fail("Negative fromIndex accepted");
+        } catch (ArrayIndexOutOfBoundsException e) {
+            // expected
+        }
+        try {
+            toAfterEnd.accept(3);
+            fail("toIndex after end of array accepted");
+        } catch (ArrayIndexOutOfBoundsException e) {
+            // expected
+        }
+        try {
+            reversed.accept(3);
+            fail("fromIndex > toIndex accepted");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void longRangeFilled() {
+        byte[] bytes = new byte[37];
+        Arrays.fill(bytes, 3, 36, (byte) 5);
+        for (int i = 0; i < bytes.length; ++i) {
+            assertEquals(i >= 3 && i < 36 ? 5 : 0, bytes[i]);
+        }
+        double[] doubles = new double[20];
+        Arrays.fill(doubles, 19, 20, 1.5);
+        assertEquals(1.5, doubles[19], 0);
+        assertEquals(0, doubles[18], 0);
+        Arrays.fill(doubles, 5, 5, 2.5);
+        assertEquals(0, doubles[5], 0);
+    }
+
+    @Test
+    public void primitiveArrayCopied() {
+        int[] array = { 1, 2, 3, 4, 5, 6 };
+        System.arraycopy(array, 0, array, 2, 4);
+        assertArrayEquals(new int[] { 1, 2, 1, 2, 3, 4 }, array);
+        System.arraycopy(array, 2, array, 0, 4);
+        assertArrayEquals(new int[] { 1, 2, 3, 4, 3, 4 }, array);
+
+        byte[] bytes = new byte[4];
+        System.arraycopy(new byte[] { 7, 8 }, 0, bytes, 1, 2);
+        assertArrayEquals(new byte[] { 0, 7, 8, 0 }, bytes);
+    }
+
+    @Test
+    public void objectArrayCreatedWithNulls() {
+        Object[] array = new Object[3];
+        assertNull(array[0]);
+        assertNull(array[2]);
+        long[] longs = new long[3];
+        assertEquals(0L, longs[1]);
+    }
 }
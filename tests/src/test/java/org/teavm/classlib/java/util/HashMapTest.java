@@ -0,0 +1,165 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util;
+
+import static org.junit.Assert.*;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.teavm.junit.TeaVMTestRunner;
+
+@RunWith(TeaVMTestRunner.class)
+public class HashMapTest {
+    @Test
+    public void putsAndRemovesMany() {
+        Map<Integer, Integer> map = new HashMap<>();
+        for (int i = 0; i < 10000; ++i) {
+            assertNull(map.put(i * 1024, i));
+        }
+        assertEquals(10000, map.size());
+        for (int i = 0; i < 10000; i += 2) {
+            assertEquals((Integer) i, map.remove(i * 1024));
+        }
+        assertEquals(5000, map.size());
+        for (int i = 0; i < 10000; ++i) {
+            assertEquals(i % 2 == 0 ? null : (Integer) i, map.get(i * 1024));
+        }
+        for (int i = 0; i < 10000; i += 2) {
+            assertNull(map.put(i * 1024, -i));
+        }
+        for (int i = 0; i < 10000; ++i) {
+            assertEquals((Integer) (i % 2 == 0 ? -i : i), map.get(i * 1024));
+        }
+    }
+
+    @Test
+    public void handlesCollisionsAndNullKey() {
+        Map<Object, String> map = new HashMap<>();
+        for (int i = 0; i < 100; ++i) {
+            map.put(new CollidingKey(i), String.valueOf(i));
+        }
+        map.put(null, "null");
+        for (int i = 0; i < 100; i += 3) {
+            map.remove(new CollidingKey(i));
+        }
+        for (int i = 0; i < 100; ++i) {
+            assertEquals(i % 3 == 0 ? null : String.valueOf(i), map.get(new CollidingKey(i)));
+        }
+        assertEquals("null", map.get(null));
+        assertTrue(map.containsKey(null));
+        assertTrue(map.containsValue("null"));
+        assertEquals("null", map.remove(null));
+        assertFalse(map.containsKey(null));
+    }
+
+    @Test
+    public void removesThroughIterator() {
+        Map<Integer, Integer> map = new HashMap<>();
+        for (int i = 0; i < 100; ++i) {
+            map.put(i, i);
+        }
+        for (Iterator<Integer> iter = map.keySet().iterator(); iter.hasNext();) {
+            if (iter.next() % 2 == 0) {
+                iter.remove();
+            }
+        }
+        assertEquals(50, map.size());
+        Set<Integer> remaining = new HashSet<>();
+        for (Map.Entry<Integer, Integer> entry : map.entrySet()) {
+            assertTrue(entry.getKey() % 2 == 1);
+            remaining.add(entry.getKey());
+        }
+        assertEquals(50, remaining.size());
+    }
+
+    @Test
+    public void entryWritesThrough() {
+        Map<String, Integer> map = new HashMap<>();
+        map.put("a", 1);
+        map.put("b", 2);
+        for (Map.Entry<String, Integer> entry : map.entrySet()) {
+            assertEquals(entry.getValue(), entry.setValue(entry.getValue() * 10));
+        }
+        assertEquals((Integer) 10, map.get("a"));
+        assertEquals((Integer) 20, map.get("b"));
+
+        Map.Entry<String, Integer> entry = map.entrySet().iterator().next();
+        map.put(entry.getKey(), 30);
+        assertEquals((Integer) 30, entry.getValue());
+    }
+
+    @Test
+    public void iteratorFailsFast() {
+        Map<Integer, Integer> map = new HashMap<>();
+        map.put(1, 1);
+        map.put(2, 2);
+        Iterator<Integer> iter = map.keySet().iterator();
+        iter.next();
+        map.put(3, 3);
+        try {
+            iter.next();
+            fail("Exception expected");
+        } catch (ConcurrentModificationException e) {
+            // ok
+        }
+
+        iter = map.values().iterator();
+        try {
+            iter.remove();
+            fail("Exception expected");
+        } catch (IllegalStateException e) {
+            // ok
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void clonesIndependently() {
+        HashMap<String, String> map = new HashMap<>();
+        map.put("a", "1");
+        map.put("b", "2");
+        HashMap<String, String> copy = (HashMap<String, String>) map.clone();
+        map.remove("a");
+        copy.put("c", "3");
+        assertEquals(1, map.size());
+        assertEquals(3, copy.size());
+        assertEquals("1", copy.get("a"));
+        assertNull(map.get("c"));
+    }
+
+    private static class CollidingKey {
+        private final int value;
+
+        CollidingKey(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof CollidingKey && ((CollidingKey) obj).value == value;
+        }
+
+        @Override
+        public int hashCode() {
+            return value % 3;
+        }
+    }
+}
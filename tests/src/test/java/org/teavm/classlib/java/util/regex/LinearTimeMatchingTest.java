@@ -0,0 +1,89 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.regex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.teavm.junit.TeaVMTestRunner;
+
+@RunWith(TeaVMTestRunner.class)
+public class LinearTimeMatchingTest {
+    @Test
+    public void doesNotBacktrackExponentially() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100; ++i) {
+            sb.append('a');
+        }
+        sb.append('c');
+        String input = sb.toString();
+
+        assertFalse(Pattern.compile("(a|aa)*b").matcher(input).find());
+        assertFalse(Pattern.compile("(a+a+)+b").matcher(input).matches());
+
+        Matcher matcher = Pattern.compile("(a|aa)*c").matcher(input);
+        assertTrue(matcher.matches());
+        assertEquals(99, matcher.start(1));
+    }
+
+    @Test
+    public void survivesStateCacheOverflow() {
+        String input = randomInput(5000);
+
+        assertEquals(input.charAt(input.length() - 13) == 'a',
+                Pattern.compile("[ab]*a[ab]{12}").matcher(input).matches());
+
+        Matcher matcher = Pattern.compile("a([ab]{10})b").matcher(input);
+        int expectedCount = 0;
+        for (int i = 0; i + 12 <= input.length(); ++i) {
+            if (input.charAt(i) == 'a' && input.charAt(i + 11) == 'b') {
+                assertTrue(matcher.find());
+                assertEquals(i, matcher.start());
+                assertEquals(input.substring(i + 1, i + 11), matcher.group(1));
+                ++expectedCount;
+                i += 11;
+            }
+        }
+        assertFalse(matcher.find());
+        assertTrue(expectedCount > 0);
+    }
+
+    @Test
+    public void matchesUnicodeCategories() {
+        Matcher matcher = Pattern.compile("(\\p{L}+)\\s(\\p{Nd}+)").matcher("h\u00E9llo 12 w\u00F6rld \u0663");
+        assertTrue(matcher.find());
+        assertEquals("h\u00E9llo", matcher.group(1));
+        assertEquals("12", matcher.group(2));
+        assertTrue(matcher.find());
+        assertEquals("w\u00F6rld", matcher.group(1));
+        assertEquals("\u0663", matcher.group(2));
+        assertFalse(matcher.find());
+    }
+
+    private static String randomInput(int length) {
+        StringBuilder sb = new StringBuilder();
+        int seed = 12345;
+        for (int i = 0; i < length; ++i) {
+            seed = seed * 1103515245 + 12345;
+            sb.append((seed >>> 16) % 2 == 0 ? 'a' : 'b');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.regex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.teavm.junit.TeaVMTestRunner;
+
+@RunWith(TeaVMTestRunner.class)
+public class PrecompiledPatternTest {
+    private static Pattern datePattern() {
+        return Pattern.compile("(\\d{4})-(\\d{2})-(\\d{2})");
+    }
+
+    @Test
+    public void findsGroups() {
+        Matcher matcher = datePattern().matcher("from 2017-03-05 to 2017-04-01");
+        assertTrue(matcher.find());
+        assertEquals(5, matcher.start());
+        assertEquals("2017", matcher.group(1));
+        assertEquals("03", matcher.group(2));
+        assertEquals("05", matcher.group(3));
+        assertTrue(matcher.find());
+        assertEquals("04", matcher.group(2));
+        assertFalse(matcher.find());
+    }
+
+    @Test
+    public void keepsSource() {
+        assertEquals("(\\d{4})-(\\d{2})-(\\d{2})", datePattern().pattern());
+        assertEquals(3, datePattern().matcher("").groupCount());
+    }
+
+    @Test
+    public void prefersFirstAlternative() {
+        Matcher matcher = Pattern.compile("a|ab|(abc)").matcher("abc");
+        assertTrue(matcher.find());
+        assertEquals("a", matcher.group());
+        assertNull(matcher.group(1));
+
+        matcher = Pattern.compile("(a+?)(b*)").matcher("aabb");
+        assertTrue(matcher.matches());
+        assertEquals("aa", matcher.group(1));
+        assertEquals("bb", matcher.group(2));
+    }
+
+    @Test
+    public void evaluatesAssertions() {
+        Matcher matcher = Pattern.compile("^\\w+$", Pattern.MULTILINE).matcher("foo\nbar baz\r\nqux");
+        assertTrue(matcher.find());
+        assertEquals("foo", matcher.group());
+        assertTrue(matcher.find());
+        assertEquals("qux", matcher.group());
+        assertFalse(matcher.find());
+
+        matcher = Pattern.compile("\\bcat\\b").matcher("concat cat_ cat");
+        assertTrue(matcher.find());
+        assertEquals(12, matcher.start());
+    }
+
+    @Test
+    public void reportsHitEnd() {
+        Matcher matcher = Pattern.compile("ab+").matcher("xabb");
+        assertTrue(matcher.find());
+        assertTrue(matcher.hitEnd());
+
+        matcher = Pattern.compile("ab+").matcher("xabbx");
+        assertTrue(matcher.find());
+        assertFalse(matcher.hitEnd());
+    }
+
+    @Test
+    public void caseInsensitive() {
+        assertTrue(Pattern.compile("[a-c]+x", Pattern.CASE_INSENSITIVE).matcher("aBcX").matches());
+        assertFalse(Pattern.compile("[a-c]+x").matcher("aBcX").matches());
+    }
+
+    @Test
+    public void fallsBackToBacktracking() {
+        Matcher matcher = Pattern.compile("(a+)b").matcher("xaab");
+        matcher.region(2, 4);
+        assertTrue(matcher.lookingAt());
+        assertEquals("a", matcher.group(1));
+
+        matcher = Pattern.compile(".").matcher("\uD800\uDC00");
+        assertTrue(matcher.matches());
+
+        assertTrue(Pattern.compile("(\\w)\\1").matcher("xx").matches());
+    }
+}
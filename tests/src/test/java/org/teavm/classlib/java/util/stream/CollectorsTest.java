@@ -0,0 +1,95 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.stream;
+
+import static org.junit.Assert.*;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.teavm.junit.TeaVMTestRunner;
+
+@RunWith(TeaVMTestRunner.class)
+public class CollectorsTest {
+    @Test
+    public void collectsToCollections() {
+        assertEquals(Arrays.asList(1, 2, 2), Stream.of(1, 2, 2).collect(Collectors.toList()));
+        assertEquals(new HashSet<>(Arrays.asList(1, 2)), Stream.of(1, 2, 2).collect(Collectors.toSet()));
+    }
+
+    @Test
+    public void joins() {
+        assertEquals("abc", Stream.of("a", "b", "c").collect(Collectors.joining()));
+        assertEquals("a, b, c", Stream.of("a", "b", "c").collect(Collectors.joining(", ")));
+        assertEquals("[a, b]", Stream.of("a", "b").collect(Collectors.joining(", ", "[", "]")));
+        assertEquals(",,c", Stream.of("", "", "c").collect(Collectors.joining(",")));
+        assertEquals("[]", Stream.<String>empty().collect(Collectors.joining(", ", "[", "]")));
+    }
+
+    @Test
+    public void groups() {
+        Map<Integer, List<String>> groups = Stream.of("a", "bb", "c", "dd", "eee")
+                .collect(Collectors.groupingBy(String::length));
+        assertEquals(Arrays.asList("a", "c"), groups.get(1));
+        assertEquals(Arrays.asList("bb", "dd"), groups.get(2));
+        assertEquals(Arrays.asList("eee"), groups.get(3));
+
+        Map<Integer, Long> counts = Stream.of("a", "bb", "c", "dd", "eee")
+                .collect(Collectors.groupingBy(String::length, TreeMap::new, Collectors.counting()));
+        assertEquals("{1=2, 2=2, 3=1}", counts.toString());
+    }
+
+    @Test
+    public void partitions() {
+        Map<Boolean, List<Integer>> parts = Stream.of(1, 2, 3, 4, 5)
+                .collect(Collectors.partitioningBy(x -> x % 2 == 0));
+        assertEquals(Arrays.asList(2, 4), parts.get(true));
+        assertEquals(Arrays.asList(1, 3, 5), parts.get(false));
+    }
+
+    @Test
+    public void collectsToMap() {
+        Map<String, Integer> map = Stream.of("a", "bb").collect(Collectors.toMap(s -> s, String::length));
+        assertEquals(Integer.valueOf(2), map.get("bb"));
+        Map<Integer, String> merged = Stream.of("a", "b", "cc")
+                .collect(Collectors.toMap(String::length, s -> s, (a, b) -> a + b));
+        assertEquals("ab", merged.get(1));
+        try {
+            Stream.of("a", "b").collect(Collectors.toMap(String::length, s -> s));
+            fail("Exception expected");
+        } catch (IllegalStateException e) {
+            // ok
+        }
+    }
+
+    @Test
+    public void summarizes() {
+        assertEquals(Integer.valueOf(6), Stream.of("a", "bb", "ccc").collect(Collectors.summingInt(String::length)));
+        assertEquals(2.0, Stream.of("a", "bb", "ccc").collect(Collectors.averagingInt(String::length)), 0.0001);
+        assertEquals(Long.valueOf(3), Stream.of("a", "bb", "ccc").collect(Collectors.counting()));
+        assertEquals("ccc", Stream.of("a", "ccc", "bb")
+                .collect(Collectors.maxBy((a, b) -> Integer.compare(a.length(), b.length()))).get());
+        assertEquals(Integer.valueOf(3), Stream.of("a", "bb").collect(Collectors.collectingAndThen(
+                Collectors.joining(), String::length)));
+        assertEquals(Arrays.asList(1, 2), Stream.of("a", "bb").collect(Collectors.mapping(String::length,
+                Collectors.toList())));
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.stream;
+
+import static org.junit.Assert.*;
+import java.util.Arrays;
+import java.util.IntSummaryStatistics;
+import java.util.PrimitiveIterator;
+import java.util.stream.Collectors;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.teavm.junit.TeaVMTestRunner;
+
+@RunWith(TeaVMTestRunner.class)
+public class PrimitiveStreamTest {
+    @Test
+    public void generatesRanges() {
+        assertArrayEquals(new int[] { 0, 1, 2, 3 }, IntStream.range(0, 4).toArray());
+        assertArrayEquals(new int[] { 0, 1, 2, 3, 4 }, IntStream.rangeClosed(0, 4).toArray());
+        assertEquals(0, IntStream.range(4, 0).count());
+        assertEquals(2, IntStream.rangeClosed(Integer.MAX_VALUE - 1, Integer.MAX_VALUE).count());
+        assertEquals(15, LongStream.rangeClosed(1, 5).sum());
+    }
+
+    @Test
+    public void filtersAndMaps() {
+        assertArrayEquals(new int[] { 0, 9, 36 }, IntStream.range(0, 10).filter(x -> x % 3 == 0).map(x -> x * x)
+                .limit(3).toArray());
+        assertEquals("a0a1a2", IntStream.range(0, 3).mapToObj(x -> "a" + x).collect(Collectors.joining()));
+        assertArrayEquals(new long[] { 2, 4 }, IntStream.of(1, 2).mapToLong(x -> x * 2L).toArray());
+        assertArrayEquals(new double[] { 0.5, 1 }, IntStream.of(1, 2).mapToDouble(x -> x / 2.0).toArray(), 0);
+        assertArrayEquals(new int[] { 1, 2 }, DoubleStream.of(1.5, 2.5).mapToInt(x -> (int) x).toArray());
+    }
+
+    @Test
+    public void aggregates() {
+        assertEquals(45, IntStream.range(0, 10).sum());
+        assertEquals(9, IntStream.range(0, 10).max().getAsInt());
+        assertEquals(0, IntStream.range(0, 10).min().getAsInt());
+        assertFalse(IntStream.empty().max().isPresent());
+        assertEquals(4.5, IntStream.range(0, 10).average().getAsDouble(), 0.0001);
+        assertFalse(IntStream.empty().average().isPresent());
+        assertEquals(120, LongStream.rangeClosed(1, 5).reduce(1, (a, b) -> a * b));
+        assertEquals(1.0, DoubleStream.of(0.1, 0.2, 0.3, 0.4).sum(), 1e-15);
+
+        IntSummaryStatistics statistics = IntStream.of(3, 1, 2).summaryStatistics();
+        assertEquals(3, statistics.getCount());
+        assertEquals(6, statistics.getSum());
+        assertEquals(1, statistics.getMin());
+        assertEquals(3, statistics.getMax());
+    }
+
+    @Test
+    public void sortsAndRemovesDuplicates() {
+        assertArrayEquals(new int[] { 1, 2, 3 }, IntStream.of(3, 1, 2, 3, 1).distinct().sorted().toArray());
+        assertArrayEquals(new double[] { -1, 0.5, 2 }, DoubleStream.of(2, -1, 0.5).sorted().toArray(), 0);
+    }
+
+    @Test
+    public void flatMaps() {
+        assertArrayEquals(new int[] { 0, 0, 1, 0, 1, 2 }, IntStream.rangeClosed(1, 3)
+                .flatMap(x -> IntStream.range(0, x)).toArray());
+    }
+
+    @Test
+    public void convertsBetweenKinds() {
+        assertEquals(Arrays.asList(1, 2, 3), IntStream.rangeClosed(1, 3).boxed().collect(Collectors.toList()));
+        assertArrayEquals(new long[] { 1, 2 }, IntStream.of(1, 2).asLongStream().toArray());
+        assertArrayEquals(new double[] { 1, 2 }, LongStream.of(1, 2).asDoubleStream().toArray(), 0);
+        assertEquals(6, Arrays.asList("a", "bb", "ccc").stream().mapToInt(String::length).sum());
+    }
+
+    @Test
+    public void streamsArrayRanges() {
+        int[] array = { 1, 2, 3, 4, 5 };
+        assertArrayEquals(new int[] { 2, 3, 4 }, Arrays.stream(array, 1, 4).toArray());
+        assertEquals(15, Arrays.stream(array).sum());
+        assertEquals(3.0, Arrays.stream(new double[] { 1, 2 }).sum(), 0);
+        assertEquals(3, Arrays.stream(new long[] { 1, 2 }).sum());
+    }
+
+    @Test
+    public void iterates() {
+        PrimitiveIterator.OfInt iter = IntStream.iterate(1, x -> x * 2).iterator();
+        assertEquals(1, iter.nextInt());
+        assertEquals(2, iter.nextInt());
+        assertEquals(4, iter.nextInt());
+        assertTrue(iter.hasNext());
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.stream;
+
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.teavm.junit.TeaVMTestRunner;
+
+@RunWith(TeaVMTestRunner.class)
+public class StreamTest {
+    @Test
+    public void filtersAndMaps() {
+        List<Integer> list = Arrays.asList(1, 2, 3, 4, 5, 6);
+        assertEquals(Arrays.asList("2", "4", "6"), list.stream().filter(x -> x % 2 == 0).map(String::valueOf)
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void streamsArrayList() {
+        List<String> list = new ArrayList<>(Arrays.asList("a", "bb", "ccc"));
+        assertEquals(6, list.stream().mapToInt(String::length).sum());
+        assertArrayEquals(new String[] { "bb", "ccc" }, list.stream().skip(1).toArray(String[]::new));
+        assertEquals(3, list.stream().count());
+    }
+
+    @Test
+    public void limitDoesNotPullExtraElements() {
+        List<Integer> pulled = new ArrayList<>();
+        List<Integer> result = Stream.iterate(1, x -> x + 1).peek(pulled::add).limit(3)
+                .collect(Collectors.toList());
+        assertEquals(Arrays.asList(1, 2, 3), result);
+        assertEquals(Arrays.asList(1, 2, 3), pulled);
+    }
+
+    @Test
+    public void shortCircuits() {
+        List<Integer> visited = new ArrayList<>();
+        assertTrue(Stream.of(1, 2, 3, 4).peek(visited::add).anyMatch(x -> x == 2));
+        assertEquals(Arrays.asList(1, 2), visited);
+        assertFalse(Stream.of(1, 2, 3).allMatch(x -> x < 3));
+        assertTrue(Stream.of(1, 2, 3).noneMatch(x -> x > 3));
+        assertEquals(Integer.valueOf(3), Stream.of(1, 2, 3, 4).filter(x -> x > 2).findFirst().get());
+        assertFalse(Stream.<Integer>empty().findFirst().isPresent());
+    }
+
+    @Test
+    public void flatMaps() {
+        assertEquals(Arrays.asList(1, 1, 2, 2, 3), Stream.of(1, 2, 3).flatMap(x -> Stream.of(x, x)).limit(5)
+                .collect(Collectors.toList()));
+        assertEquals(Arrays.asList(2, 20, 3), Stream.of(1, 2, 3).flatMap(x -> Stream.of(x, x * 10)).skip(2)
+                .limit(3).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void sortsAndRemovesDuplicates() {
+        assertEquals(Arrays.asList(1, 2, 3, 5), Stream.of(5, 3, 1, 2, 3, 5).distinct().sorted()
+                .collect(Collectors.toList()));
+        assertEquals(Arrays.asList("ccc", "bb", "a"), Stream.of("bb", "a", "ccc")
+                .sorted(Comparator.comparing(String::length).reversed()).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void reduces() {
+        assertEquals(Integer.valueOf(15), Stream.of(1, 2, 3, 4, 5).reduce(0, Integer::sum));
+        assertEquals(Integer.valueOf(120), Stream.of(1, 2, 3, 4, 5).reduce((a, b) -> a * b).get());
+        assertFalse(Stream.<Integer>empty().reduce(Integer::sum).isPresent());
+        assertEquals("c", Stream.of("a", "c", "b").max(Comparator.naturalOrder()).get());
+        assertEquals("a", Stream.of("a", "c", "b").min(Comparator.naturalOrder()).get());
+    }
+
+    @Test
+    public void concatenates() {
+        assertEquals("1234", Stream.concat(Stream.of(1, 2), Stream.of(3, 4)).map(String::valueOf)
+                .collect(Collectors.joining()));
+        assertEquals(Arrays.asList(1, 2, 3), Stream.concat(Stream.of(1, 2), Stream.of(3, 4)).limit(3)
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void iterates() {
+        Iterator<Integer> iter = Stream.of(1, 2, 3).filter(x -> x != 2).iterator();
+        assertTrue(iter.hasNext());
+        assertEquals(Integer.valueOf(1), iter.next());
+        assertEquals(Integer.valueOf(3), iter.next());
+        assertFalse(iter.hasNext());
+        try {
+            iter.next();
+            fail("Exception expected");
+        } catch (NoSuchElementException e) {
+            // ok
+        }
+    }
+
+    @Test
+    public void runsCloseHandlers() {
+        StringBuilder sb = new StringBuilder();
+        Stream<Integer> stream = Stream.of(1).onClose(() -> sb.append("a")).map(x -> x)
+                .onClose(() -> sb.append("b"));
+        stream.close();
+        assertEquals("ab", sb.toString());
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ *  Copyright 2017 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.optimization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.teavm.junit.TeaVMOptimization;
+import org.teavm.junit.TeaVMTestRunner;
+import org.teavm.vm.TeaVMOptimizationLevel;
+
+@RunWith(TeaVMTestRunner.class)
+@TeaVMOptimization(TeaVMOptimizationLevel.FULL)
+public class ScalarReplacementTest {
+    // Values are taken from a mutable field, so that they are not known at build time
+    private static int[] values = { 0, 1, 2, 3 };
+    private static Point escaped;
+
+    @Test
+    public void fieldsUpdatedInLoop() {
+        Point p = new Point(values[0], values[0]);
+        for (int i = 0; i < 10; ++i) {
+            p.x += i;
+            p.y++;
+        }
+        assertEquals(45, p.x);
+        assertEquals(10, p.y);
+    }
+
+    @Test
+    public void objectsMergedByPhi() {
+        for (int i = 0; i < 2; ++i) {
+            Point p;
+            if (values[i] == 0) {
+                p = new Point(values[1], values[2]);
+            } else {
+                p = new Point(values[3], values[1]);
+            }
+            p.x *= 10;
+            assertEquals(i == 0 ? 10 : 30, p.x);
+            assertEquals(i == 0 ? 2 : 1, p.y);
+        }
+    }
+
+    @Test
+    public void objectEscapesThroughPhi() {
+        Point shared = new Point(values[1], values[1]);
+        escaped = shared;
+        for (int i = 0; i < 2; ++i) {
+            Point p = values[i] == 0 ? new Point(values[2], values[2]) : shared;
+            p.x = values[3];
+        }
+        assertEquals(3, escaped.x);
+        assertEquals(1, escaped.y);
+    }
+
+    @Test
+    public void fieldValuesSeenByCatch() {
+        Point p = new Point(values[0], values[0]);
+        try {
+            p.x = values[1];
+            throwIf(values[1] == 1);
+            p.x = values[2];
+        } catch (IllegalStateException e) {
+            p.y = p.x + 10;
+        }
+        assertEquals(1, p.x);
+        assertEquals(11, p.y);
+    }
+
+    @Test
+    public void objectReassignedInTryEscapesFromCatch() {
+        Point p = new Point(values[0], values[0]);
+        try {
+            p = new Point(values[1], values[2]);
+            throwIf(values[1] == 1);
+            p = new Point(values[3], values[3]);
+        } catch (IllegalStateException e) {
+            escaped = p;
+        }
+        assertEquals(1, escaped.x);
+        assertEquals(2, escaped.y);
+        assertSame(escaped, p);
+    }
+
+    @Test
+    public void objectComparedWithNull() {
+        Point p = new Point(values[2], values[3]);
+        assertNotNull(p);
+        int sum = 0;
+        if (p != null) {
+            sum = p.x + p.y;
+        }
+        assertEquals(5, sum);
+    }
+
+    @Test
+    public void objectMergedWithNull() {
+        for (int i = 0; i < 2; ++i) {
+            Point p = values[i] == 0 ? null : new Point(values[2], values[3]);
+            if (i == 0) {
+                assertNull(p);
+            } else {
+                assertEquals(6, p.x * p.y);
+            }
+        }
+    }
+
+    private static void throwIf(boolean condition) {
+        if (condition) {
+            throw new IllegalStateException();
+        }
+    }
+
+    static class Point {
+        int x;
+        int y;
+
+        Point(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+    }
+}
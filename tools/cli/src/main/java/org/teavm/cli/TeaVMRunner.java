@@ -20,6 +20,7 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import org.apache.commons.cli.*;
+import org.teavm.backend.javascript.AsyncMode;
 import org.teavm.backend.wasm.render.WasmBinaryVersion;
 import org.teavm.tooling.RuntimeCopyOperation;
 import org.teavm.tooling.TeaVMTargetType;
@@ -69,9 +70,27 @@ public final class TeaVMRunner {
                 .withArgName("number")
                 .create("O"));
         options.addOption(OptionBuilder
-                .withArgName("separate|merge|none")
+                .withArgName("file")
+                .hasArg()
+                .withDescription("execution profile of a previous build, used to guide inlining")
+                .withLongOpt("profile")
+                .create());
+        options.addOption(OptionBuilder
+                .withDescription("count calls, so that application can record its execution profile "
+                        + "with CallProfiler.getProfile()")
+                .withLongOpt("instrument-calls")
+                .create());
+        options.addOption(OptionBuilder
+                .withArgName("state-machine|generators")
                 .hasArg()
-                .withDescription("how to attach runtime. Possible values are: separate|merge|none")
+                .withDescription("how to render methods that may suspend thread. Possible values are: "
+                        + "state-machine|generators")
+                .withLongOpt("async-mode")
+                .create());
+        options.addOption(OptionBuilder
+                .withArgName("separate|merge|merge-trimmed|none")
+                .hasArg()
+                .withDescription("how to attach runtime. Possible values are: separate|merge|merge-trimmed|none")
                 .withLongOpt("runtime")
                 .create("r"));
         options.addOption(OptionBuilder
@@ -158,6 +177,9 @@ public final class TeaVMRunner {
                 case "merge":
                     tool.setRuntime(RuntimeCopyOperation.MERGED);
                     break;
+                case "merge-trimmed":
+                    tool.setRuntime(RuntimeCopyOperation.MERGED_TRIMMED);
+                    break;
                 case "none":
                     tool.setRuntime(RuntimeCopyOperation.NONE);
                     break;
@@ -200,6 +222,27 @@ public final class TeaVMRunner {
             }
         }
 
+        if (commandLine.hasOption("profile")) {
+            tool.setCallProfileFile(new File(commandLine.getOptionValue("profile")));
+        }
+        if (commandLine.hasOption("instrument-calls")) {
+            tool.setCallProfileInstrumented(true);
+        }
+        if (commandLine.hasOption("async-mode")) {
+            switch (commandLine.getOptionValue("async-mode")) {
+                case "state-machine":
+                    tool.setAsyncMode(AsyncMode.STATE_MACHINE);
+                    break;
+                case "generators":
+                    tool.setAsyncMode(AsyncMode.GENERATORS);
+                    break;
+                default:
+                    System.err.println("Wrong parameter for --async-mode option specified");
+                    printUsage(options);
+                    return;
+            }
+        }
+
         if (commandLine.hasOption('S')) {
             tool.setSourceMapsFileGenerated(true);
         }
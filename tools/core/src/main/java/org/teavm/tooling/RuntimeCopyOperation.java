@@ -18,5 +18,6 @@ package org.teavm.tooling;
 public enum RuntimeCopyOperation {
     SEPARATE,
     MERGED,
+    MERGED_TRIMMED,
     NONE
 }
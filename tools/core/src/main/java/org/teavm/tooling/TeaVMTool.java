@@ -16,6 +16,7 @@
 package org.teavm.tooling;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -33,7 +34,9 @@ import java.util.List;
 import java.util.Properties;
 import java.util.Set;
 import org.apache.commons.io.IOUtils;
+import org.teavm.backend.javascript.AsyncMode;
 import org.teavm.backend.javascript.JavaScriptTarget;
+import org.teavm.backend.javascript.RuntimeTrimmer;
 import org.teavm.backend.javascript.rendering.RenderingManager;
 import org.teavm.backend.wasm.WasmTarget;
 import org.teavm.backend.wasm.render.WasmBinaryVersion;
@@ -54,6 +57,7 @@ import org.teavm.model.MethodReader;
 import org.teavm.model.MethodReference;
 import org.teavm.model.PreOptimizingClassHolderSource;
 import org.teavm.model.ProgramReader;
+import org.teavm.model.optimization.CallProfile;
 import org.teavm.parsing.ClasspathClassHolderSource;
 import org.teavm.tooling.sources.SourceFileProvider;
 import org.teavm.tooling.sources.SourceFilesCopier;
@@ -95,6 +99,13 @@ public class TeaVMTool implements BaseTeaVMTool {
     private TeaVMProgressListener progressListener;
     private TeaVM vm;
     private TeaVMOptimizationLevel optimizationLevel = TeaVMOptimizationLevel.SIMPLE;
+    private File callProfileFile;
+    private boolean callProfileInstrumented;
+    private int polymorphismLimit = 3;
+    private int loopUnrollingFactor = 4;
+    private int loopUnrollingBudget = 120;
+    private int renderingThreadCount = 1;
+    private AsyncMode asyncMode = AsyncMode.STATE_MACHINE;
     private List<SourceFileProvider> sourceFileProviders = new ArrayList<>();
     private DebugInformationBuilder debugEmitter;
     private JavaScriptTarget javaScriptTarget;
@@ -238,6 +249,62 @@ public class TeaVMTool implements BaseTeaVMTool {
         this.optimizationLevel = optimizationLevel;
     }
 
+    public File getCallProfileFile() {
+        return callProfileFile;
+    }
+
+    public void setCallProfileFile(File callProfileFile) {
+        this.callProfileFile = callProfileFile;
+    }
+
+    public boolean isCallProfileInstrumented() {
+        return callProfileInstrumented;
+    }
+
+    public void setCallProfileInstrumented(boolean callProfileInstrumented) {
+        this.callProfileInstrumented = callProfileInstrumented;
+    }
+
+    public int getPolymorphismLimit() {
+        return polymorphismLimit;
+    }
+
+    public void setPolymorphismLimit(int polymorphismLimit) {
+        this.polymorphismLimit = polymorphismLimit;
+    }
+
+    public int getLoopUnrollingFactor() {
+        return loopUnrollingFactor;
+    }
+
+    public void setLoopUnrollingFactor(int loopUnrollingFactor) {
+        this.loopUnrollingFactor = loopUnrollingFactor;
+    }
+
+    public int getLoopUnrollingBudget() {
+        return loopUnrollingBudget;
+    }
+
+    public void setLoopUnrollingBudget(int loopUnrollingBudget) {
+        this.loopUnrollingBudget = loopUnrollingBudget;
+    }
+
+    public int getRenderingThreadCount() {
+        return renderingThreadCount;
+    }
+
+    public void setRenderingThreadCount(int renderingThreadCount) {
+        this.renderingThreadCount = renderingThreadCount;
+    }
+
+    public AsyncMode getAsyncMode() {
+        return asyncMode;
+    }
+
+    public void setAsyncMode(AsyncMode asyncMode) {
+        this.asyncMode = asyncMode;
+    }
+
     public ClassLoader getClassLoader() {
         return classLoader;
     }
@@ -325,6 +392,8 @@ public class TeaVMTool implements BaseTeaVMTool {
     private TeaVMTarget prepareJavaScriptTarget() {
         javaScriptTarget = new JavaScriptTarget();
         javaScriptTarget.setMinifying(minifying);
+        javaScriptTarget.setRenderingThreadCount(renderingThreadCount);
+        javaScriptTarget.setAsyncMode(asyncMode);
 
         debugEmitter = debugInformationGenerated || sourceMapsFileGenerated
                 ? new DebugInformationBuilder() : null;
@@ -384,6 +453,15 @@ public class TeaVMTool implements BaseTeaVMTool {
             vm.setProgramCache(programCache);
             vm.setIncremental(incremental);
             vm.setOptimizationLevel(optimizationLevel);
+            vm.setPolymorphismLimit(polymorphismLimit);
+            vm.setLoopUnrollingFactor(loopUnrollingFactor);
+            vm.setLoopUnrollingBudget(loopUnrollingBudget);
+            if (callProfileFile != null) {
+                try (Reader reader = new InputStreamReader(new FileInputStream(callProfileFile), "UTF-8")) {
+                    vm.setCallProfile(CallProfile.read(reader));
+                }
+            }
+            vm.setCallProfileInstrumented(callProfileInstrumented);
 
             vm.installPlugins();
             for (ClassHolderTransformer transformer : transformers) {
@@ -419,7 +497,16 @@ public class TeaVMTool implements BaseTeaVMTool {
             }
             targetDirectory.mkdirs();
 
-            if (runtime == RuntimeCopyOperation.MERGED) {
+            boolean runtimeTrimmed = false;
+            if (runtime == RuntimeCopyOperation.MERGED_TRIMMED) {
+                if (debugInformationGenerated || sourceMapsFileGenerated) {
+                    log.info("Debug information requires unshifted line numbers, merging full runtime");
+                } else {
+                    runtimeTrimmed = true;
+                }
+            }
+            if (runtime == RuntimeCopyOperation.MERGED
+                    || (runtime == RuntimeCopyOperation.MERGED_TRIMMED && !runtimeTrimmed)) {
                 javaScriptTarget.add(runtimeInjector);
             }
             BuildTarget buildTarget = new DirectoryBuildTarget(targetDirectory);
@@ -442,10 +529,14 @@ public class TeaVMTool implements BaseTeaVMTool {
                 TeaVMProblemRenderer.describeProblems(vm, log);
             }
 
+            if (targetType == TeaVMTargetType.JAVASCRIPT && runtimeTrimmed) {
+                prependTrimmedRuntime(new File(targetDirectory, outputName));
+            }
             if (targetType == TeaVMTargetType.JAVASCRIPT) {
                 try (OutputStream output = new FileOutputStream(new File(targetDirectory, outputName), true)) {
                     Writer writer = new OutputStreamWriter(output, "UTF-8");
                     additionalJavaScriptOutput(writer);
+                    writer.flush();
                 }
             }
 
@@ -544,6 +635,25 @@ public class TeaVMTool implements BaseTeaVMTool {
         }
     };
 
+    private void prependTrimmedRuntime(File file) throws IOException {
+        StringWriter runtimeWriter = new StringWriter();
+        resourceToWriter("org/teavm/backend/javascript/runtime.js", runtimeWriter);
+        String code;
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8")) {
+            code = IOUtils.toString(reader);
+        }
+        List<String> roots = new ArrayList<>();
+        if (mainClass != null) {
+            roots.add("$rt_mainStarter");
+        }
+        String runtimeCode = new RuntimeTrimmer(runtimeWriter.toString()).trim(code, roots);
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8")) {
+            writer.append(runtimeCode).append('\n').append(code);
+        }
+        log.info("Runtime trimmed to " + runtimeCode.length() + " of " + runtimeWriter.getBuffer().length()
+                + " characters");
+    }
+
     private void resourceToFile(String resource, String fileName) throws IOException {
         try (InputStream input = TeaVMTool.class.getClassLoader().getResourceAsStream(resource)) {
             try (OutputStream output = new FileOutputStream(new File(targetDirectory, fileName))) {
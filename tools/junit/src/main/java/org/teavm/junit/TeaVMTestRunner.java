@@ -62,6 +62,7 @@ import org.teavm.tooling.TeaVMProblemRenderer;
 import org.teavm.vm.DirectoryBuildTarget;
 import org.teavm.vm.TeaVM;
 import org.teavm.vm.TeaVMBuilder;
+import org.teavm.vm.TeaVMOptimizationLevel;
 
 public class TeaVMTestRunner extends Runner {
     private static final String PATH_PARAM = "teavm.junit.target";
@@ -351,6 +352,7 @@ public class TeaVMTestRunner extends Runner {
                 .setClassSource(classSource)
                 .build();
         vm.setIncremental(false);
+        vm.setOptimizationLevel(getOptimizationLevel(method));
         vm.installPlugins();
 
         new TestExceptionPlugin().install(vm);
@@ -385,6 +387,14 @@ public class TeaVMTestRunner extends Runner {
         }
     }
 
+    private static TeaVMOptimizationLevel getOptimizationLevel(Method method) {
+        TeaVMOptimization optimization = method.getAnnotation(TeaVMOptimization.class);
+        if (optimization == null) {
+            optimization = method.getDeclaringClass().getAnnotation(TeaVMOptimization.class);
+        }
+        return optimization != null ? optimization.value() : TeaVMOptimizationLevel.SIMPLE;
+    }
+
     private MethodDescriptor getDescriptor(Method method) {
         ValueType[] signature = Stream.concat(Arrays.stream(method.getParameterTypes()).map(ValueType::parse),
                 Stream.of(ValueType.parse(method.getReturnType())))
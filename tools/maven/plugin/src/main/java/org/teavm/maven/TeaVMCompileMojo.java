@@ -24,6 +24,7 @@ import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.teavm.backend.javascript.AsyncMode;
 import org.teavm.backend.wasm.render.WasmBinaryVersion;
 import org.teavm.tooling.ClassAlias;
 import org.teavm.tooling.MethodAlias;
@@ -69,6 +70,21 @@ public class TeaVMCompileMojo extends AbstractTeaVMMojo {
     @Parameter
     private TeaVMOptimizationLevel optimizationLevel = TeaVMOptimizationLevel.SIMPLE;
 
+    @Parameter
+    private File callProfileFile;
+
+    @Parameter
+    private boolean callProfileInstrumented;
+
+    @Parameter
+    private int polymorphismLimit = 3;
+
+    @Parameter
+    private int renderingThreadCount = 1;
+
+    @Parameter
+    private AsyncMode asyncMode = AsyncMode.STATE_MACHINE;
+
     @Parameter
     private TeaVMTargetType targetType = TeaVMTargetType.JAVASCRIPT;
 
@@ -98,6 +114,11 @@ public class TeaVMCompileMojo extends AbstractTeaVMMojo {
                 tool.setTargetFileName(targetFileName);
             }
             tool.setOptimizationLevel(optimizationLevel);
+            tool.setCallProfileFile(callProfileFile);
+            tool.setCallProfileInstrumented(callProfileInstrumented);
+            tool.setPolymorphismLimit(polymorphismLimit);
+            tool.setRenderingThreadCount(renderingThreadCount);
+            tool.setAsyncMode(asyncMode);
             if (classAliases != null) {
                 tool.getClassAliases().addAll(Arrays.asList(classAliases));
             }